@@ -0,0 +1,216 @@
+package com.commercetools.sunrise.cms;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Benchmark of the memory taken by serialized pages and the time it takes to restore them, with and without
+ * {@link PageCompressor}.
+ * <p>
+ * Pages consist of markdown text generated from a common vocabulary and common phrases, like the rich text fields
+ * of real pages. The dictionary is trained on sample pages other than the measured ones.
+ * <p>
+ * It is run with system properties, e.g. {@code -Dbench.pages=20000 -Dbench.textSize=8192}:
+ * <ul>
+ * <li>bench.pages - number of measured pages, 5000 by default</li>
+ * <li>bench.samples - number of pages the dictionary is trained on, 500 by default</li>
+ * <li>bench.dictionarySize - maximum size of the dictionary in bytes, 32768 by default</li>
+ * <li>bench.textSize - approximate size of the text fields of a page in bytes, 4096 by default</li>
+ * <li>bench.rounds - number of times every page is restored, 5 by default</li>
+ * </ul>
+ */
+public final class PageCompressionBenchmark {
+
+    private static final String[] WORDS = ("the a our your with for and of to in on this new collection season "
+            + "cotton wool leather soft classic modern fit comfortable look style shoes jacket shirt dress bag "
+            + "perfect every day occasion made from quality material available sizes colors free shipping "
+            + "returns order delivery discover explore shop now sale offer limited edition").split(" ");
+    private static final String[] PHRASES = {
+            "All orders over **50 EUR** are shipped free of charge.",
+            "You can return any item within 30 days, see [our return policy](https://example.com/returns).",
+            "Wash at 30 degrees, do not tumble dry.",
+            "[Shop now](https://example.com/shop/new-arrivals)",
+            "Questions? Contact our customer service at service@example.com."
+    };
+
+    private final int pages;
+    private final int samples;
+    private final int dictionarySize;
+    private final int textSize;
+    private final int rounds;
+
+    PageCompressionBenchmark(final int pages, final int samples, final int dictionarySize, final int textSize,
+                             final int rounds) {
+        this.pages = pages;
+        this.samples = samples;
+        this.dictionarySize = dictionarySize;
+        this.textSize = textSize;
+        this.rounds = rounds;
+    }
+
+    public static void main(final String[] args) {
+        final PageCompressionBenchmark benchmark = new PageCompressionBenchmark(
+                Integer.getInteger("bench.pages", 5000),
+                Integer.getInteger("bench.samples", 500),
+                Integer.getInteger("bench.dictionarySize", PageCompressor.MAX_DICTIONARY_SIZE),
+                Integer.getInteger("bench.textSize", 4096),
+                Integer.getInteger("bench.rounds", 5));
+        benchmark.run().forEach(System.out::println);
+    }
+
+    /**
+     * Serialize and restore the pages without compression, compressed without a dictionary and with a trained one.
+     *
+     * @return results in this order
+     */
+    List<Result> run() {
+        final Random random = new Random(42);
+        final List<CmsPage> samplePages = new ArrayList<>();
+        for (int i = 0; i < samples; i++) {
+            samplePages.add(page(random, i));
+        }
+        final List<CmsPageSnapshot> measuredPages = new ArrayList<>();
+        for (int i = 0; i < pages; i++) {
+            measuredPages.add(page(random, samples + i));
+        }
+        final long trainingStart = System.nanoTime();
+        final PageCompressor trained = PageCompressor.trainedOn(samplePages, dictionarySize);
+        final long trainingNanos = System.nanoTime() - trainingStart;
+
+        final List<Result> results = new ArrayList<>();
+        results.add(measure("uncompressed", measuredPages, null, 0));
+        results.add(measure("deflate", measuredPages, PageCompressor.withoutDictionary(), 0));
+        results.add(measure("deflate with dictionary", measuredPages, trained, trainingNanos));
+        return results;
+    }
+
+    private Result measure(final String name, final List<CmsPageSnapshot> measuredPages,
+                           final PageCompressor compressor, final long trainingNanos) {
+        final List<byte[]> serialized = new ArrayList<>(measuredPages.size());
+        long uncompressedBytes = 0;
+        long storedBytes = 0;
+        final long compressionStart = System.nanoTime();
+        for (CmsPageSnapshot page : measuredPages) {
+            final byte[] bytes = page.toBytes();
+            final byte[] stored = compressor != null ? compressor.compress(bytes) : bytes;
+            serialized.add(stored);
+            uncompressedBytes += bytes.length;
+            storedBytes += stored.length;
+        }
+        final long compressionNanos = System.nanoTime() - compressionStart;
+        // the first round warms up the code paths and is not measured
+        long restoreNanos = 0;
+        long checksum = 0;
+        for (int round = 0; round <= rounds; round++) {
+            final long roundStart = System.nanoTime();
+            for (byte[] stored : serialized) {
+                final CmsPage page =
+                        CmsPageSnapshot.fromBytes(compressor != null ? compressor.decompress(stored) : stored);
+                checksum += page.field("title").map(String::length).orElse(0);
+            }
+            if (round > 0) {
+                restoreNanos += System.nanoTime() - roundStart;
+            }
+        }
+        if (checksum == 0) {
+            throw new IllegalStateException("Restored pages have no title");
+        }
+        return new Result(name, measuredPages.size(), uncompressedBytes, storedBytes, trainingNanos,
+                compressionNanos, restoreNanos / Math.max(1, rounds));
+    }
+
+    private CmsPageSnapshot page(final Random random, final int number) {
+        final Map<String, String> fields = new HashMap<>();
+        fields.put("title", "Page " + number + ": " + sentence(random, 4));
+        fields.put("teaser.headline", sentence(random, 6));
+        fields.put("teaser.link", "https://example.com/shop/" + WORDS[random.nextInt(WORDS.length)] + "-" + number);
+        fields.put("body", markdown(random, textSize * 3 / 4));
+        fields.put("footer", markdown(random, textSize / 4));
+        return CmsPageSnapshot.of(fields, String.valueOf(number), null);
+    }
+
+    private static String markdown(final Random random, final int size) {
+        final StringBuilder text = new StringBuilder(size + 100);
+        while (text.length() < size) {
+            final int kind = random.nextInt(10);
+            if (kind == 0) {
+                text.append("## ").append(sentence(random, 3)).append("\n\n");
+            } else if (kind < 3) {
+                text.append(PHRASES[random.nextInt(PHRASES.length)]).append("\n\n");
+            } else if (kind == 3) {
+                text.append("* ").append(sentence(random, 5)).append('\n')
+                        .append("* ").append(sentence(random, 5)).append("\n\n");
+            } else {
+                text.append(sentence(random, 8 + random.nextInt(12))).append(' ')
+                        .append(sentence(random, 8 + random.nextInt(12))).append("\n\n");
+            }
+        }
+        return text.toString();
+    }
+
+    private static String sentence(final Random random, final int words) {
+        final StringBuilder sentence = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            final String word = WORDS[random.nextInt(WORDS.length)];
+            if (i == 0) {
+                sentence.append(Character.toUpperCase(word.charAt(0))).append(word, 1, word.length());
+            } else {
+                sentence.append(' ').append(random.nextInt(8) == 0 ? "**" + word + "**" : word);
+            }
+        }
+        return sentence.append('.').toString();
+    }
+
+    /**
+     * Outcome of the benchmark of one way of storing the pages.
+     */
+    static final class Result {
+        private final String name;
+        private final int pages;
+        private final long uncompressedBytes;
+        private final long storedBytes;
+        private final long trainingNanos;
+        private final long compressionNanos;
+        private final long restoreNanos;
+
+        private Result(final String name, final int pages, final long uncompressedBytes, final long storedBytes,
+                       final long trainingNanos, final long compressionNanos, final long restoreNanos) {
+            this.name = name;
+            this.pages = pages;
+            this.uncompressedBytes = uncompressedBytes;
+            this.storedBytes = storedBytes;
+            this.trainingNanos = trainingNanos;
+            this.compressionNanos = compressionNanos;
+            this.restoreNanos = restoreNanos;
+        }
+
+        long bytesPerPage() {
+            return storedBytes / pages;
+        }
+
+        double compressionRatio() {
+            return (double) uncompressedBytes / storedBytes;
+        }
+
+        /**
+         * @return time in microseconds it takes on average to restore a page from its stored form
+         */
+        double restoreMicros() {
+            return restoreNanos / 1e3 / pages;
+        }
+
+        @Override
+        public String toString() {
+            final String result = String.format(Locale.ENGLISH,
+                    "%s: %d bytes per page, ratio %.1f, restore %.1f us per page, compress %.1f us per page",
+                    name, bytesPerPage(), compressionRatio(), restoreMicros(), compressionNanos / 1e3 / pages);
+            return trainingNanos > 0
+                    ? result + String.format(Locale.ENGLISH, ", training %.0f ms", trainingNanos / 1e6)
+                    : result;
+        }
+    }
+}
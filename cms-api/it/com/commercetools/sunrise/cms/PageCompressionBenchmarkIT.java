@@ -0,0 +1,24 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class PageCompressionBenchmarkIT {
+
+    @Test
+    public void dictionaryReducesMemoryPerPage() throws Exception {
+        final List<PageCompressionBenchmark.Result> results =
+                new PageCompressionBenchmark(200, 100, 16 * 1024, 2048, 1).run();
+
+        final PageCompressionBenchmark.Result uncompressed = results.get(0);
+        final PageCompressionBenchmark.Result deflate = results.get(1);
+        final PageCompressionBenchmark.Result dictionary = results.get(2);
+        assertThat(uncompressed.compressionRatio()).isEqualTo(1.0);
+        assertThat(deflate.bytesPerPage()).isLessThan(uncompressed.bytesPerPage());
+        assertThat(dictionary.bytesPerPage()).isLessThan(deflate.bytesPerPage());
+        assertThat(dictionary.restoreMicros()).isPositive();
+    }
+}
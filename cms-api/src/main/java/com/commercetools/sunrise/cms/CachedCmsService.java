@@ -0,0 +1,666 @@
+package com.commercetools.sunrise.cms;
+
+import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * {@link CmsService} caching pages provided by another service.
+ * <p>
+ * Pages are cached for configured time, after which they are refreshed with {@link CmsService#refresh} on the next
+ * request. Concurrent requests for a page which is not cached result in a single request to the underlying service.
+ * Failures are not cached.
+ * <p>
+ * Instead of a single time for all the pages, each page can be cached for a time adapted to how often its content
+ * actually changes, within configured bounds. Whenever a page is refreshed, its {@link CmsPage#version()} is compared
+ * with the one of the cached page: the time is doubled if the content has not changed and halved if it has. Pages which
+ * rarely change, like legal notes, are then refreshed about as seldom as the upper bound allows, while volatile ones,
+ * like campaign banners, stay fresh without a short time for all the pages.
+ * <p>
+ * Empty results, e.g. for non-existent keys requested by bots or broken links, can be cached as well, for their own
+ * (usually shorter) time and up to their own limit, separate from the pages. To keep a flood of distinct keys from
+ * pushing out the keys missing repeatedly, a new key is admitted to the full cache of empty results only if it has
+ * been missing more often recently than the least recently used key it would replace. How often keys are missing is
+ * tracked by {@link FrequencySketch}, whose size does not depend on the number of distinct keys.
+ * <p>
+ * The cache consists of two tiers. The first one keeps a limited number of the most recently used pages on the heap.
+ * Pages evicted from it are moved to the optional second tier, which keeps them serialized outside of the heap as
+ * {@link CmsPageSnapshot}s, so that the working set is not limited by the heap size and does not put pressure on the
+ * garbage collector. A page found in the second tier is restored as snapshot and moved back to the first one. Pages
+ * which do not support {@link CmsPage#allFields()} cannot be serialized and are dropped instead.
+ * <p>
+ * The second tier can keep the pages compressed by a {@link PageCompressor}, which makes them take a fraction of
+ * the memory at the cost of decompressing them on access. A compressed page is then moved back to the first tier
+ * only if it has been requested more often recently than the least recently used page it would replace there,
+ * as tracked by another {@link FrequencySketch}. Otherwise it is served from the second tier again on the next
+ * request, so that the pages requested now and then do not push the most requested ones out of the first tier.
+ * <p>
+ * The most requested pages can be tracked by {@link HotPageTracker} and refreshed ahead of their expiry, so that they
+ * never expire on the path of a request: a hot page requested once most of its time has passed is served from
+ * the cache while it is refreshed in the background, and {@link #refreshHotPages()} refreshes the ones due without
+ * waiting for a request. The list of hot pages can be kept with {@link #hotPages()} and prefetched on the next start
+ * with {@link #prefetch(byte[])}, so that no list of pages to warm up the cache with needs to be maintained.
+ */
+public final class CachedCmsService implements CmsService {
+
+    private final CmsService service;
+    private final long ttlMillis;
+    private final long minTtlMillis;
+    private final long maxTtlMillis;
+    private final LongSupplier clock;
+    private final Map<PageCacheKey, CachedPage> heapTier;
+    private final Map<PageCacheKey, CachedPage> evictedPages = new HashMap<>();
+    private final List<PageCacheKey> evictedKeys = new ArrayList<>();
+    private final int maxHeapPages;
+    @Nullable
+    private final OffHeapPageStore<PageCacheKey> offHeapTier;
+    @Nullable
+    private final PageCompressor compressor;
+    @Nullable
+    private final FrequencySketch pageFrequency;
+    @Nullable
+    private final HotPageTracker hotPages;
+    private final double refreshAheadRatio;
+    private final long emptyResultTtlMillis;
+    private final int maxEmptyResults;
+    private final LinkedHashMap<PageCacheKey, Long> emptyResults = new LinkedHashMap<>(16, 0.75f, true);
+    @Nullable
+    private final FrequencySketch emptyResultFrequency;
+    private final ConcurrentMap<PageCacheKey, PendingPage> pendingPages = new ConcurrentHashMap<>();
+
+    private CachedCmsService(final Builder builder) {
+        this.service = builder.service;
+        this.minTtlMillis = builder.minTtlMillis;
+        this.maxTtlMillis = builder.maxTtlMillis;
+        this.ttlMillis = boundTtl(builder.ttlMillis);
+        this.clock = builder.clock;
+        this.offHeapTier = builder.offHeapCapacity > 0
+                ? new OffHeapPageStore<>(builder.offHeapCapacity, builder.offHeapBlockSize)
+                : null;
+        this.compressor = offHeapTier != null ? builder.compressor : null;
+        this.pageFrequency = compressor != null || builder.hotPages > 0
+                ? new FrequencySketch(Math.max(builder.maxHeapPages, builder.hotPages))
+                : null;
+        this.hotPages = builder.hotPages > 0 ? new HotPageTracker(pageFrequency, builder.hotPages) : null;
+        this.refreshAheadRatio = builder.refreshAheadRatio;
+        this.emptyResultTtlMillis = builder.emptyResultTtlMillis;
+        this.maxEmptyResults = builder.maxEmptyResults;
+        this.emptyResultFrequency = emptyResultTtlMillis > 0 ? new FrequencySketch(builder.maxEmptyResults) : null;
+        final int maxHeapPages = builder.maxHeapPages;
+        this.maxHeapPages = maxHeapPages;
+        this.heapTier = new LinkedHashMap<PageCacheKey, CachedPage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<PageCacheKey, CachedPage> eldest) {
+                if (size() > maxHeapPages) {
+                    if (offHeapTier != null) {
+                        evictedPages.put(eldest.getKey(), eldest.getValue());
+                        evictedKeys.add(eldest.getKey());
+                    }
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    @Override
+    public CompletionStage<Optional<CmsPage>> page(final String pageKey, final List<Locale> locales) {
+        final PageCacheKey key = new PageCacheKey(pageKey, locales);
+        if (pageFrequency != null) {
+            pageFrequency.increment(key);
+        }
+        if (hotPages != null) {
+            hotPages.offer(key);
+        }
+        final CachedPage cachedPage = findCachedPage(key);
+        final long now = clock.getAsLong();
+        if (cachedPage != null && !cachedPage.isExpired(now)) {
+            if (hotPages != null && hotPages.isHot(key) && isDueForRefresh(cachedPage, now)) {
+                load(key, cachedPage);
+            }
+            return CompletableFuture.completedFuture(Optional.of(cachedPage.page));
+        } else if (cachedPage == null && isKnownToBeEmpty(key)) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+        return load(key, cachedPage);
+    }
+
+    /**
+     * Refresh the hot pages which are not cached or whose time in the cache is mostly over, e.g. periodically by
+     * a background job, so that they are refreshed even if not requested then.
+     *
+     * @return stage completed once all the pages are refreshed, exceptionally if any of them failed
+     * @throws IllegalStateException if hot pages are not tracked
+     */
+    public CompletionStage<Void> refreshHotPages() {
+        return refresh(hotPageTracker().hottest());
+    }
+
+    /**
+     * Get the currently hot pages, e.g. to be stored at shutdown and prefetched on the next start.
+     *
+     * @return serialized list of the hot pages, the most requested first
+     * @throws IllegalStateException if hot pages are not tracked
+     */
+    public byte[] hotPages() {
+        return HotPageTracker.toBytes(hotPageTracker().hottest());
+    }
+
+    /**
+     * Load given pages into the cache, e.g. the hot pages of the previous run, and start tracking them as hot pages.
+     *
+     * @param hotPages serialized list of pages obtained from {@link #hotPages()}
+     * @return stage completed once all the pages are loaded, exceptionally if any of them failed
+     * @throws IllegalArgumentException if given bytes do not form a serialized list of pages
+     * @throws IllegalStateException    if hot pages are not tracked
+     */
+    public CompletionStage<Void> prefetch(final byte[] hotPages) {
+        final HotPageTracker tracker = hotPageTracker();
+        final List<PageCacheKey> keys = HotPageTracker.fromBytes(hotPages);
+        keys.forEach(tracker::offer);
+        return refresh(keys);
+    }
+
+    private CompletionStage<Void> refresh(final Collection<PageCacheKey> keys) {
+        final long now = clock.getAsLong();
+        return CompletableFuture.allOf(keys.stream()
+                .map(key -> {
+                    final CachedPage cachedPage = findCachedPage(key);
+                    if (cachedPage == null && !isKnownToBeEmpty(key)) {
+                        return load(key, null);
+                    } else if (cachedPage != null && isDueForRefresh(cachedPage, now)) {
+                        return load(key, cachedPage);
+                    }
+                    return CompletableFuture.completedFuture(Optional.<CmsPage>empty());
+                })
+                .map(CompletionStage::toCompletableFuture)
+                .toArray(CompletableFuture[]::new));
+    }
+
+    private HotPageTracker hotPageTracker() {
+        if (hotPages == null) {
+            throw new IllegalStateException("Hot pages are not tracked, see Builder#refreshAhead");
+        }
+        return hotPages;
+    }
+
+    private boolean isDueForRefresh(final CachedPage cachedPage, final long now) {
+        return now - cachedPage.loadedAt >= cachedPage.ttlMillis * refreshAheadRatio;
+    }
+
+    private boolean isKnownToBeEmpty(final PageCacheKey key) {
+        if (emptyResultTtlMillis <= 0) {
+            return false;
+        }
+        synchronized (emptyResults) {
+            final Long loadedAt = emptyResults.get(key);
+            if (loadedAt != null && clock.getAsLong() - loadedAt >= emptyResultTtlMillis) {
+                emptyResults.remove(key);
+                return false;
+            }
+            return loadedAt != null;
+        }
+    }
+
+    /**
+     * Cache the empty result if there is room for it or if it replaces a key which has been missing less often.
+     */
+    private void putEmptyResult(final PageCacheKey key) {
+        if (emptyResultFrequency == null) {
+            return;
+        }
+        emptyResultFrequency.increment(key);
+        synchronized (emptyResults) {
+            if (!emptyResults.containsKey(key) && emptyResults.size() >= maxEmptyResults) {
+                final PageCacheKey victim = emptyResults.keySet().iterator().next();
+                if (emptyResultFrequency.estimate(key) <= emptyResultFrequency.estimate(victim)) {
+                    return;
+                }
+                emptyResults.remove(victim);
+            }
+            emptyResults.put(key, clock.getAsLong());
+        }
+    }
+
+    @Nullable
+    private CachedPage findCachedPage(final PageCacheKey key) {
+        CachedPage cachedPage;
+        synchronized (heapTier) {
+            cachedPage = heapTier.get(key);
+            if (cachedPage == null) {
+                cachedPage = evictedPages.get(key);
+            }
+        }
+        if (cachedPage == null && offHeapTier != null) {
+            cachedPage = offHeapTier.get(key).map(this::restore).orElse(null);
+            if (cachedPage != null && isHotterThanHeap(key)) {
+                putOnHeap(key, cachedPage);
+            }
+        }
+        return cachedPage;
+    }
+
+    /**
+     * Whether a page of the second tier should replace the least recently used page of the first one,
+     * which is always the case if the second tier is not compressed.
+     */
+    private boolean isHotterThanHeap(final PageCacheKey key) {
+        if (compressor == null || pageFrequency == null) {
+            return true;
+        }
+        synchronized (heapTier) {
+            if (heapTier.size() < maxHeapPages) {
+                return true;
+            }
+            final PageCacheKey victim = heapTier.keySet().iterator().next();
+            return pageFrequency.estimate(key) > pageFrequency.estimate(victim);
+        }
+    }
+
+    /**
+     * Request the page from the underlying service unless it is already being requested.
+     * <p>
+     * Each caller gets its own future, so that one of them cancelling it does not affect the others. Once all the
+     * callers waiting for the page have cancelled their futures, the request to the underlying service is cancelled
+     * as well, and the next caller requests the page anew.
+     */
+    private CompletionStage<Optional<CmsPage>> load(final PageCacheKey key, @Nullable final CachedPage stalePage) {
+        final PendingPage pendingPage = new PendingPage(key);
+        PendingPage existingPage;
+        while ((existingPage = pendingPages.putIfAbsent(key, pendingPage)) != null) {
+            final CompletableFuture<Optional<CmsPage>> waiter = existingPage.join();
+            if (waiter != null) {
+                return waiter;
+            }
+            pendingPages.remove(key, existingPage);
+        }
+        final CompletableFuture<Optional<CmsPage>> waiter = pendingPage.join();
+        final CompletionStage<Optional<CmsPage>> request;
+        try {
+            request = stalePage != null
+                    ? service.refresh(key.pageKey(), key.locales(), stalePage.page)
+                    : service.page(key.pageKey(), key.locales());
+        } catch (RuntimeException e) {
+            pendingPage.complete(null, e);
+            return waiter;
+        }
+        pendingPage.started(request.toCompletableFuture());
+        request.whenComplete((page, error) -> {
+            if (error == null) {
+                if (page.isPresent()) {
+                    final long pageTtlMillis = stalePage != null ? adaptTtl(stalePage, page.get()) : ttlMillis;
+                    putOnHeap(key, new CachedPage(page.get(), clock.getAsLong(), pageTtlMillis));
+                } else {
+                    invalidate(key);
+                    putEmptyResult(key);
+                }
+            }
+            pendingPage.complete(page, error);
+        });
+        return waiter;
+    }
+
+    /**
+     * Time for which the refreshed page is cached, adapted to whether its content has changed since it was cached,
+     * or kept if that cannot be told from the versions of the pages.
+     */
+    private long adaptTtl(final CachedPage stalePage, final CmsPage refreshedPage) {
+        if (!isAdaptive()) {
+            return ttlMillis;
+        }
+        final Optional<String> staleVersion = stalePage.page.version();
+        final Optional<String> refreshedVersion = refreshedPage.version();
+        if (refreshedPage == stalePage.page || (staleVersion.isPresent() && staleVersion.equals(refreshedVersion))) {
+            return boundTtl(stalePage.ttlMillis > Long.MAX_VALUE / 2 ? Long.MAX_VALUE : stalePage.ttlMillis * 2);
+        } else if (staleVersion.isPresent() && refreshedVersion.isPresent()) {
+            return boundTtl(stalePage.ttlMillis / 2);
+        }
+        return stalePage.ttlMillis;
+    }
+
+    private boolean isAdaptive() {
+        return maxTtlMillis > 0;
+    }
+
+    private long boundTtl(final long ttlMillis) {
+        return isAdaptive() ? Math.min(maxTtlMillis, Math.max(minTtlMillis, ttlMillis)) : ttlMillis;
+    }
+
+    private void putOnHeap(final PageCacheKey key, final CachedPage cachedPage) {
+        final List<PageCacheKey> keysToMove;
+        synchronized (heapTier) {
+            evictedPages.remove(key);
+            heapTier.put(key, cachedPage);
+            keysToMove = new ArrayList<>(evictedKeys);
+            evictedKeys.clear();
+        }
+        if (offHeapTier != null) {
+            offHeapTier.remove(key);
+            keysToMove.forEach(this::moveOffHeap);
+        }
+    }
+
+    /**
+     * Move the page evicted from the first tier to the second one.
+     * <p>
+     * The page is serialized and compressed outside of the lock of the first tier, meanwhile it stays readable
+     * as evicted page. It is not stored if it has been invalidated or put back on heap in the meantime.
+     */
+    private void moveOffHeap(final PageCacheKey key) {
+        final CachedPage cachedPage;
+        synchronized (heapTier) {
+            cachedPage = evictedPages.get(key);
+        }
+        if (cachedPage == null || offHeapTier == null) {
+            return;
+        }
+        final Optional<byte[]> bytes = cachedPage.toBytes()
+                .map(pageBytes -> compressor != null ? compressor.compress(pageBytes) : pageBytes);
+        synchronized (offHeapTier) {
+            final boolean isStillEvicted;
+            synchronized (heapTier) {
+                isStillEvicted = evictedPages.remove(key, cachedPage);
+            }
+            if (isStillEvicted) {
+                bytes.ifPresent(pageBytes -> offHeapTier.put(key, pageBytes));
+            }
+        }
+    }
+
+    private CachedPage restore(final byte[] bytes) {
+        return CachedPage.fromBytes(compressor != null ? compressor.decompress(bytes) : bytes);
+    }
+
+    private void invalidate(final PageCacheKey key) {
+        synchronized (heapTier) {
+            heapTier.remove(key);
+            evictedPages.remove(key);
+        }
+        if (offHeapTier != null) {
+            offHeapTier.remove(key);
+        }
+    }
+
+    /**
+     * Create builder of a cache in front of given service.
+     *
+     * @param service providing the pages to be cached
+     * @return builder with default settings
+     */
+    public static Builder builder(final CmsService service) {
+        return new Builder(service);
+    }
+
+    /**
+     * Builder of {@link CachedCmsService}.
+     */
+    public static final class Builder {
+
+        private final CmsService service;
+        private int maxHeapPages = 1000;
+        private long ttlMillis = TimeUnit.MINUTES.toMillis(5);
+        private long minTtlMillis = 0;
+        private long maxTtlMillis = 0;
+        private long offHeapCapacity = 0;
+        private int offHeapBlockSize = 1024;
+        private long emptyResultTtlMillis = 0;
+        private int maxEmptyResults = 10_000;
+        @Nullable
+        private PageCompressor compressor = null;
+        private int hotPages = 0;
+        private double refreshAheadRatio = 1;
+        private LongSupplier clock = System::currentTimeMillis;
+
+        private Builder(final CmsService service) {
+            this.service = service;
+        }
+
+        /**
+         * Maximum number of pages kept on the heap.
+         *
+         * @param maxHeapPages 1000 by default
+         * @return this builder
+         */
+        public Builder maxHeapPages(final int maxHeapPages) {
+            this.maxHeapPages = maxHeapPages;
+            return this;
+        }
+
+        /**
+         * Time after which a cached page is refreshed.
+         *
+         * @param ttl  5 minutes by default
+         * @param unit time unit of given duration
+         * @return this builder
+         */
+        public Builder ttl(final long ttl, final TimeUnit unit) {
+            this.ttlMillis = unit.toMillis(ttl);
+            return this;
+        }
+
+        /**
+         * Bounds of the time for which each page is cached, adapted to how often its content changes. Pages are
+         * cached for the time configured with {@link #ttl(long, TimeUnit)} at first, brought within the bounds.
+         *
+         * @param minTtl shortest time a page is cached for
+         * @param maxTtl longest time a page is cached for, 0 by default, which disables the adaptation
+         * @param unit   time unit of given durations
+         * @return this builder
+         */
+        public Builder adaptiveTtl(final long minTtl, final long maxTtl, final TimeUnit unit) {
+            if (minTtl > maxTtl) {
+                throw new IllegalArgumentException("Minimum TTL must not exceed maximum TTL");
+            }
+            this.minTtlMillis = unit.toMillis(minTtl);
+            this.maxTtlMillis = unit.toMillis(maxTtl);
+            return this;
+        }
+
+        /**
+         * Number of bytes allocated outside of the heap for pages evicted from the heap.
+         *
+         * @param offHeapCapacity 0 by default, which disables the off-heap tier
+         * @return this builder
+         */
+        public Builder offHeapCapacity(final long offHeapCapacity) {
+            this.offHeapCapacity = offHeapCapacity;
+            return this;
+        }
+
+        /**
+         * Size of the blocks the off-heap memory is divided into. A serialized page occupies at least one block.
+         *
+         * @param offHeapBlockSize 1024 bytes by default
+         * @return this builder
+         */
+        public Builder offHeapBlockSize(final int offHeapBlockSize) {
+            this.offHeapBlockSize = offHeapBlockSize;
+            return this;
+        }
+
+        /**
+         * Compressor of the pages kept off the heap, e.g. one with a dictionary trained on typical pages.
+         * <p>
+         * Pages are compressed by the request which evicted them from the heap, outside of the lock of the heap.
+         *
+         * @param compressor none by default, which keeps the pages uncompressed
+         * @return this builder
+         */
+        public Builder compressor(@Nullable final PageCompressor compressor) {
+            this.compressor = compressor;
+            return this;
+        }
+
+        /**
+         * Time for which an empty result is cached.
+         *
+         * @param emptyResultTtl 0 by default, which disables caching of empty results
+         * @param unit           time unit of given duration
+         * @return this builder
+         */
+        public Builder emptyResultTtl(final long emptyResultTtl, final TimeUnit unit) {
+            this.emptyResultTtlMillis = unit.toMillis(emptyResultTtl);
+            return this;
+        }
+
+        /**
+         * Maximum number of cached empty results, independent of the number of cached pages.
+         *
+         * @param maxEmptyResults 10000 by default
+         * @return this builder
+         */
+        public Builder maxEmptyResults(final int maxEmptyResults) {
+            this.maxEmptyResults = maxEmptyResults;
+            return this;
+        }
+
+        /**
+         * Track the most requested pages and refresh them once given share of their time in the cache has passed,
+         * in the background while they are still served from the cache, see {@link CachedCmsService#refreshHotPages()}.
+         *
+         * @param hotPages     number of most requested pages tracked, 0 by default, which disables the tracking
+         * @param refreshRatio share of the time in the cache after which a hot page is refreshed, e.g. 0.8
+         * @return this builder
+         */
+        public Builder refreshAhead(final int hotPages, final double refreshRatio) {
+            if (hotPages < 0 || refreshRatio <= 0 || refreshRatio > 1) {
+                throw new IllegalArgumentException("Number of hot pages must not be negative and refresh ratio must be "
+                        + "between 0 and 1, got " + hotPages + " and " + refreshRatio);
+            }
+            this.hotPages = hotPages;
+            this.refreshAheadRatio = refreshRatio;
+            return this;
+        }
+
+        Builder clock(final LongSupplier clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public CachedCmsService build() {
+            return new CachedCmsService(this);
+        }
+    }
+
+    /**
+     * Request of a page to the underlying service, shared by all the callers waiting for it.
+     */
+    private final class PendingPage {
+        private final PageCacheKey key;
+        private final CompletableFuture<Optional<CmsPage>> future = new CompletableFuture<>();
+        @Nullable
+        private CompletableFuture<?> request;
+        private int waiters = 0;
+        private boolean abandoned = false;
+
+        private PendingPage(final PageCacheKey key) {
+            this.key = key;
+        }
+
+        /**
+         * @return future of another caller waiting for the page, or null if all the callers have given up on it
+         */
+        @Nullable
+        private synchronized CompletableFuture<Optional<CmsPage>> join() {
+            if (abandoned) {
+                return null;
+            }
+            waiters++;
+            final CompletableFuture<Optional<CmsPage>> waiter = future.thenApply(Function.identity());
+            waiter.whenComplete((page, error) -> {
+                if (waiter.isCancelled()) {
+                    leave();
+                }
+            });
+            return waiter;
+        }
+
+        private void started(final CompletableFuture<?> request) {
+            final boolean isAbandoned;
+            synchronized (this) {
+                this.request = request;
+                isAbandoned = abandoned;
+            }
+            if (isAbandoned) {
+                request.cancel(false);
+            }
+        }
+
+        private void leave() {
+            final CompletableFuture<?> abandonedRequest;
+            synchronized (this) {
+                if (--waiters > 0 || future.isDone()) {
+                    return;
+                }
+                abandoned = true;
+                abandonedRequest = request;
+            }
+            pendingPages.remove(key, this);
+            if (abandonedRequest != null) {
+                abandonedRequest.cancel(false);
+            }
+        }
+
+        private void complete(@Nullable final Optional<CmsPage> page, @Nullable final Throwable error) {
+            pendingPages.remove(key, this);
+            if (error != null) {
+                future.completeExceptionally(error);
+            } else {
+                future.complete(page);
+            }
+        }
+    }
+
+    private static final class CachedPage {
+        private final CmsPage page;
+        private final long loadedAt;
+        private final long ttlMillis;
+
+        private CachedPage(final CmsPage page, final long loadedAt, final long ttlMillis) {
+            this.page = page;
+            this.loadedAt = loadedAt;
+            this.ttlMillis = ttlMillis;
+        }
+
+        private boolean isExpired(final long now) {
+            return now - loadedAt >= ttlMillis;
+        }
+
+        /**
+         * Serialize the page together with the time it was loaded at and the time it is cached for.
+         */
+        private Optional<byte[]> toBytes() {
+            return CmsPageSnapshot.of(page).map(snapshot -> {
+                final byte[] snapshotBytes = snapshot.toBytes();
+                return ByteBuffer.allocate(2 * Long.BYTES + snapshotBytes.length)
+                        .putLong(loadedAt)
+                        .putLong(ttlMillis)
+                        .put(snapshotBytes)
+                        .array();
+            });
+        }
+
+        private static CachedPage fromBytes(final byte[] bytes) {
+            final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+            final long loadedAt = buffer.getLong();
+            final long ttlMillis = buffer.getLong();
+            final byte[] snapshotBytes = Arrays.copyOfRange(bytes, 2 * Long.BYTES, bytes.length);
+            return new CachedPage(CmsPageSnapshot.fromBytes(snapshotBytes), loadedAt, ttlMillis);
+        }
+    }
+}
@@ -0,0 +1,260 @@
+package com.commercetools.sunrise.cms;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Immutable description of a file linked from a {@link CmsPage}, e.g. an image of a banner, as provided by
+ * {@link CmsPage#asset(String)}.
+ * <p>
+ * Besides the URL of the original file it holds its metadata, as far as the CMS provides it, and for images a set
+ * of variants of different widths and formats prepared by the CMS, e.g. to be listed in the {@code srcset} attribute
+ * of an {@code <img>} or {@code <source>} element:
+ * <pre>{@code
+ * <source type="image/webp" srcset="@asset.srcset("webp")">
+ * }</pre>
+ */
+public final class CmsAsset {
+
+    private final String url;
+    @Nullable
+    private final String contentType;
+    @Nullable
+    private final Long size;
+    @Nullable
+    private final Integer width;
+    @Nullable
+    private final Integer height;
+    private final List<ImageVariant> variants;
+
+    private CmsAsset(final Builder builder) {
+        this.url = builder.url;
+        this.contentType = builder.contentType;
+        this.size = builder.size;
+        this.width = builder.width;
+        this.height = builder.height;
+        this.variants = Collections.unmodifiableList(new ArrayList<>(builder.variants));
+    }
+
+    /**
+     * @return URL of the original file
+     */
+    public String url() {
+        return url;
+    }
+
+    /**
+     * @return MIME type of the file, e.g. image/jpeg, or absent if not known
+     */
+    public Optional<String> contentType() {
+        return Optional.ofNullable(contentType);
+    }
+
+    /**
+     * @return size of the original file in bytes, or absent if not known
+     */
+    public Optional<Long> size() {
+        return Optional.ofNullable(size);
+    }
+
+    /**
+     * @return width of the original image in pixels, or absent if not known or not an image
+     */
+    public Optional<Integer> width() {
+        return Optional.ofNullable(width);
+    }
+
+    /**
+     * @return height of the original image in pixels, or absent if not known or not an image
+     */
+    public Optional<Integer> height() {
+        return Optional.ofNullable(height);
+    }
+
+    /**
+     * @return variants of the image in all formats, ordered by format and then by width, or empty if there are none
+     */
+    public List<ImageVariant> variants() {
+        return variants;
+    }
+
+    /**
+     * Get the variants of the image in given format.
+     *
+     * @param format of the variants, e.g. webp
+     * @return variants ordered by width, or empty if there are none in given format
+     */
+    public List<ImageVariant> variants(final String format) {
+        return variants.stream()
+                .filter(variant -> variant.format().equals(format))
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * Get the value of {@code srcset} attribute listing the variants of the image in given format.
+     *
+     * @param format of the variants, e.g. webp
+     * @return candidate strings of the variants with their widths, e.g. {@code //img/a.jpg?w=320&fm=webp 320w, ...},
+     * or empty string if there are no variants in given format
+     */
+    public String srcset(final String format) {
+        return variants(format).stream()
+                .map(variant -> variant.url() + " " + variant.width() + "w")
+                .collect(Collectors.joining(", "));
+    }
+
+    @Override
+    public String toString() {
+        return "CmsAsset{url=" + url + ", contentType=" + contentType + ", size=" + size + ", width=" + width
+                + ", height=" + height + ", variants=" + variants.size() + "}";
+    }
+
+    /**
+     * Create builder of an asset.
+     *
+     * @param url of the original file
+     * @return builder with no metadata and no variants
+     */
+    public static Builder builder(final String url) {
+        return new Builder(url);
+    }
+
+    /**
+     * Builder of {@link CmsAsset}.
+     */
+    public static final class Builder {
+
+        private final String url;
+        @Nullable
+        private String contentType;
+        @Nullable
+        private Long size;
+        @Nullable
+        private Integer width;
+        @Nullable
+        private Integer height;
+        private final List<ImageVariant> variants = new ArrayList<>();
+
+        private Builder(final String url) {
+            this.url = url;
+        }
+
+        /**
+         * @param contentType MIME type of the file, none by default
+         * @return this builder
+         */
+        public Builder contentType(@Nullable final String contentType) {
+            this.contentType = contentType;
+            return this;
+        }
+
+        /**
+         * @param size of the original file in bytes, none by default
+         * @return this builder
+         */
+        public Builder size(@Nullable final Long size) {
+            this.size = size;
+            return this;
+        }
+
+        /**
+         * @param width  of the original image in pixels, none by default
+         * @param height of the original image in pixels, none by default
+         * @return this builder
+         */
+        public Builder dimensions(@Nullable final Integer width, @Nullable final Integer height) {
+            this.width = width;
+            this.height = height;
+            return this;
+        }
+
+        /**
+         * Add a variant of the image, in the order they should be listed.
+         *
+         * @param variant of the image
+         * @return this builder
+         */
+        public Builder variant(final ImageVariant variant) {
+            this.variants.add(variant);
+            return this;
+        }
+
+        public CmsAsset build() {
+            return new CmsAsset(this);
+        }
+    }
+
+    /**
+     * Variant of an image scaled to a width and converted to a format by the CMS.
+     */
+    public static final class ImageVariant {
+
+        private final String url;
+        private final int width;
+        private final String format;
+
+        private ImageVariant(final String url, final int width, final String format) {
+            this.url = url;
+            this.width = width;
+            this.format = format;
+        }
+
+        /**
+         * @return URL of the variant
+         */
+        public String url() {
+            return url;
+        }
+
+        /**
+         * @return width of the variant in pixels
+         */
+        public int width() {
+            return width;
+        }
+
+        /**
+         * @return format of the variant, e.g. webp
+         */
+        public String format() {
+            return format;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final ImageVariant that = (ImageVariant) o;
+            return width == that.width && url.equals(that.url) && format.equals(that.format);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(url, width, format);
+        }
+
+        @Override
+        public String toString() {
+            return url + " " + width + "w";
+        }
+
+        /**
+         * @param url    of the variant
+         * @param width  of the variant in pixels
+         * @param format of the variant, e.g. webp
+         * @return variant of an image
+         */
+        public static ImageVariant of(final String url, final int width, final String format) {
+            return new ImageVariant(url, width, format);
+        }
+    }
+}
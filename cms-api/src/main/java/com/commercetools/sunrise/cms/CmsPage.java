@@ -1,5 +1,7 @@
 package com.commercetools.sunrise.cms;
 
+import java.time.Instant;
+import java.util.Map;
 import java.util.Optional;
 
 /**
@@ -53,4 +55,73 @@ public interface CmsPage {
     default String fieldOrEmpty(final String path) {
         return field(path).orElse("");
     }
+
+    /**
+     * Get HTML rendered from the text content of cms node identified by the given path, e.g. from Markdown.
+     * <p>
+     * Path has the same form as for {@link #field(String)}. Rendering is expensive, so pages supporting it are
+     * expected to render each text once per its version, e.g. by caching the result of {@link TextRenderer}.
+     * <p>
+     * Pages are not required to support it, in which case empty result is returned.
+     *
+     * @param path identifying the field (e.g. banner[2].description)
+     * @return HTML of the text content of node identified by the path, or absent if not found or not supported
+     */
+    default Optional<String> html(final String path) {
+        return Optional.empty();
+    }
+
+    /**
+     * Get the file, e.g. an image, linked from cms node identified by the given path, along with its metadata and
+     * variants, e.g. to render a responsive image.
+     * <p>
+     * Path has the same form as for {@link #field(String)}, for which the URL of the file is provided.
+     * <p>
+     * Pages are not required to support it, in which case empty result is returned.
+     *
+     * @param path identifying the field (e.g. banner[2].image)
+     * @return file linked from node identified by the path, or absent if not found or not supported
+     */
+    default Optional<CmsAsset> asset(final String path) {
+        return Optional.empty();
+    }
+
+    /**
+     * Get string representations of all the cms nodes of this page which have one, keyed by their paths.
+     * <p>
+     * Every path contained in the result is a valid argument to {@link #field(String)} which returns the same content.
+     * This allows the page to be copied, e.g. to {@link CmsPageSnapshot}, independently of the underlying CMS.
+     * <p>
+     * Pages are not required to support it, in which case empty result is returned.
+     *
+     * @return content of all nodes of this page keyed by their paths, or absent if not supported
+     */
+    default Optional<Map<String, String>> allFields() {
+        return Optional.empty();
+    }
+
+    /**
+     * Get an opaque identifier of the version of the content of this page.
+     * <p>
+     * It changes whenever any content contained in the page changes, and stays the same otherwise, e.g. when the
+     * same page is fetched again. This makes it suitable to be used as HTTP entity tag.
+     * <p>
+     * Pages are not required to support it, in which case empty result is returned.
+     *
+     * @return version of the content of this page, or absent if not supported
+     */
+    default Optional<String> version() {
+        return Optional.empty();
+    }
+
+    /**
+     * Get the time of the latest modification of any content contained in this page.
+     * <p>
+     * Pages are not required to support it, in which case empty result is returned.
+     *
+     * @return time of the latest modification, or absent if not supported
+     */
+    default Optional<Instant> lastModified() {
+        return Optional.empty();
+    }
 }
@@ -0,0 +1,252 @@
+package com.commercetools.sunrise.cms;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import javax.annotation.Nullable;
+
+/**
+ * Immutable copy of all the fields of a {@link CmsPage}, independent of the CMS it comes from.
+ * <p>
+ * Snapshot holds nothing but the string representation of each field keyed by its path, along with the version
+ * of the page, which makes it lightweight and cheap to serialize with {@link #toBytes()}. The HTML rendered from
+ * the fields and the linked assets, as provided by {@link CmsPage#html(String)} and {@link CmsPage#asset(String)},
+ * are kept as well, so that they are not lost when the page is serialized, e.g. by {@link CachedCmsService} or
+ * {@link PeerCmsService}.
+ */
+public final class CmsPageSnapshot implements CmsPage {
+
+    private static final byte FORMAT_VERSION = 4;
+
+    private final Map<String, String> fields;
+    private final Map<String, String> html;
+    private final Map<String, CmsAsset> assets;
+    @Nullable
+    private final String version;
+    @Nullable
+    private final Instant lastModified;
+
+    private CmsPageSnapshot(final Map<String, String> fields, final Map<String, String> html,
+                            final Map<String, CmsAsset> assets, @Nullable final String version,
+                            @Nullable final Instant lastModified) {
+        this.fields = fields;
+        this.html = html;
+        this.assets = assets;
+        this.version = version;
+        this.lastModified = lastModified;
+    }
+
+    @Override
+    public Optional<String> field(final String path) {
+        return Optional.ofNullable(fields.get(path));
+    }
+
+    @Override
+    public Optional<String> html(final String path) {
+        return Optional.ofNullable(html.get(path));
+    }
+
+    @Override
+    public Optional<CmsAsset> asset(final String path) {
+        return Optional.ofNullable(assets.get(path));
+    }
+
+    @Override
+    public Optional<Map<String, String>> allFields() {
+        return Optional.of(fields);
+    }
+
+    @Override
+    public Optional<String> version() {
+        return Optional.ofNullable(version);
+    }
+
+    @Override
+    public Optional<Instant> lastModified() {
+        return Optional.ofNullable(lastModified);
+    }
+
+    /**
+     * Serialize this snapshot so that it can be restored with {@link #fromBytes(byte[])}.
+     *
+     * @return serialized form of this snapshot
+     */
+    public byte[] toBytes() {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(FORMAT_VERSION);
+            output.writeBoolean(version != null);
+            if (version != null) {
+                writeString(output, version);
+            }
+            output.writeBoolean(lastModified != null);
+            if (lastModified != null) {
+                output.writeLong(lastModified.getEpochSecond());
+                output.writeInt(lastModified.getNano());
+            }
+            writeStrings(output, fields);
+            writeStrings(output, html);
+            output.writeInt(assets.size());
+            for (Map.Entry<String, CmsAsset> asset : assets.entrySet()) {
+                writeString(output, asset.getKey());
+                writeAsset(output, asset.getValue());
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize page snapshot", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Restore snapshot serialized with {@link #toBytes()}.
+     *
+     * @param bytes serialized form of the snapshot
+     * @return restored snapshot
+     * @throws IllegalArgumentException if given bytes do not form a serialized snapshot
+     */
+    public static CmsPageSnapshot fromBytes(final byte[] bytes) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            final byte formatVersion = input.readByte();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported page snapshot format " + formatVersion);
+            }
+            final String version = input.readBoolean() ? readString(input) : null;
+            final Instant lastModified = input.readBoolean()
+                    ? Instant.ofEpochSecond(input.readLong(), input.readInt())
+                    : null;
+            final Map<String, String> fields = readStrings(input);
+            final Map<String, String> html = readStrings(input);
+            final int assetCount = input.readInt();
+            final Map<String, CmsAsset> assets = new HashMap<>(assetCount * 4 / 3 + 1);
+            for (int i = 0; i < assetCount; i++) {
+                assets.put(readString(input), readAsset(input));
+            }
+            return new CmsPageSnapshot(fields, html, Collections.unmodifiableMap(assets), version, lastModified);
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed page snapshot", e);
+        }
+    }
+
+    /**
+     * Create snapshot of given page if it supports {@link CmsPage#allFields()}.
+     * <p>
+     * The HTML of every field the page renders and every asset it links are copied too, which renders and describes
+     * all of them unless the page has already done so.
+     *
+     * @param page to be copied
+     * @return snapshot of the page, or absent if the page does not provide all its fields
+     */
+    public static Optional<CmsPageSnapshot> of(final CmsPage page) {
+        if (page instanceof CmsPageSnapshot) {
+            return Optional.of((CmsPageSnapshot) page);
+        }
+        return page.allFields().map(fields -> {
+            final Map<String, String> html = new HashMap<>();
+            final Map<String, CmsAsset> assets = new HashMap<>();
+            for (String path : fields.keySet()) {
+                page.html(path).ifPresent(content -> html.put(path, content));
+                page.asset(path).ifPresent(asset -> assets.put(path, asset));
+            }
+            return new CmsPageSnapshot(Collections.unmodifiableMap(new HashMap<>(fields)),
+                    Collections.unmodifiableMap(html), Collections.unmodifiableMap(assets),
+                    page.version().orElse(null), page.lastModified().orElse(null));
+        });
+    }
+
+    /**
+     * Create snapshot of a page consisting of given fields.
+     *
+     * @param fields string representation of fields keyed by their paths
+     * @return snapshot of the page
+     */
+    public static CmsPageSnapshot of(final Map<String, String> fields) {
+        return of(fields, null, null);
+    }
+
+    /**
+     * Create snapshot of a page consisting of given fields, of given version.
+     *
+     * @param fields       string representation of fields keyed by their paths
+     * @param version      version of the content of the page, if known
+     * @param lastModified time of the latest modification of the page, if known
+     * @return snapshot of the page
+     */
+    public static CmsPageSnapshot of(final Map<String, String> fields, @Nullable final String version,
+                                     @Nullable final Instant lastModified) {
+        return new CmsPageSnapshot(Collections.unmodifiableMap(new HashMap<>(fields)), Collections.emptyMap(),
+                Collections.emptyMap(), version, lastModified);
+    }
+
+    private static void writeStrings(final DataOutputStream output, final Map<String, String> values)
+            throws IOException {
+        output.writeInt(values.size());
+        for (Map.Entry<String, String> value : values.entrySet()) {
+            writeString(output, value.getKey());
+            writeString(output, value.getValue());
+        }
+    }
+
+    private static Map<String, String> readStrings(final DataInputStream input) throws IOException {
+        final int size = input.readInt();
+        final Map<String, String> values = new HashMap<>(size * 4 / 3 + 1);
+        for (int i = 0; i < size; i++) {
+            values.put(readString(input), readString(input));
+        }
+        return Collections.unmodifiableMap(values);
+    }
+
+    private static void writeAsset(final DataOutputStream output, final CmsAsset asset) throws IOException {
+        writeString(output, asset.url());
+        output.writeBoolean(asset.contentType().isPresent());
+        if (asset.contentType().isPresent()) {
+            writeString(output, asset.contentType().get());
+        }
+        output.writeLong(asset.size().orElse(-1L));
+        output.writeInt(asset.width().orElse(-1));
+        output.writeInt(asset.height().orElse(-1));
+        output.writeInt(asset.variants().size());
+        for (CmsAsset.ImageVariant variant : asset.variants()) {
+            writeString(output, variant.url());
+            output.writeInt(variant.width());
+            writeString(output, variant.format());
+        }
+    }
+
+    private static CmsAsset readAsset(final DataInputStream input) throws IOException {
+        final CmsAsset.Builder asset = CmsAsset.builder(readString(input));
+        if (input.readBoolean()) {
+            asset.contentType(readString(input));
+        }
+        final long size = input.readLong();
+        final int width = input.readInt();
+        final int height = input.readInt();
+        asset.size(size >= 0 ? size : null)
+                .dimensions(width >= 0 ? width : null, height >= 0 ? height : null);
+        final int variantCount = input.readInt();
+        for (int i = 0; i < variantCount; i++) {
+            asset.variant(CmsAsset.ImageVariant.of(readString(input), input.readInt(), readString(input)));
+        }
+        return asset.build();
+    }
+
+    private static void writeString(final DataOutputStream output, final String value) throws IOException {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        output.writeInt(bytes.length);
+        output.write(bytes);
+    }
+
+    private static String readString(final DataInputStream input) throws IOException {
+        final byte[] bytes = new byte[input.readInt()];
+        input.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
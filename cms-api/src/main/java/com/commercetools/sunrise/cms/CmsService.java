@@ -24,4 +24,20 @@ public interface CmsService {
      */
     CompletionStage<Optional<CmsPage>> page(String pageKey, List<Locale> locales);
 
+    /**
+     * Retrieves again the page identified by the given key which was previously obtained from this service
+     * for the same locales, e.g. when refreshing a cached page.
+     * <p>
+     * Implementations able to tell that the content has not changed since might return the given page without
+     * transferring and processing it again. By default the page is simply retrieved anew.
+     *
+     * @param pageKey    identifier of the page
+     * @param locales    list of locales for which the content is expected to be defined
+     * @param cachedPage page previously obtained for the same key and locales
+     * @return up to date page or empty result
+     */
+    default CompletionStage<Optional<CmsPage>> refresh(final String pageKey, final List<Locale> locales,
+                                                       final CmsPage cachedPage) {
+        return page(pageKey, locales);
+    }
 }
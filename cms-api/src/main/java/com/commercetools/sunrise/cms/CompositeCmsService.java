@@ -0,0 +1,176 @@
+package com.commercetools.sunrise.cms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * {@link CmsService} providing pages from several other services, e.g. a global and a market specific CMS space
+ * with a file based fallback.
+ * <p>
+ * All the services are requested at once, so that the latency depends on the fastest service providing the page
+ * rather than on the sum of them. How their results are combined is given by {@link Strategy}. A service failing
+ * is treated as one not providing the page, and the failure is passed on only if no service provides it.
+ * <p>
+ * Cancelling the returned future cancels the requests to all the services. Requests whose result is not needed
+ * anymore are cancelled as soon as that is known.
+ */
+public final class CompositeCmsService implements CmsService {
+
+    private final Strategy strategy;
+    private final List<CmsService> services;
+
+    private CompositeCmsService(final Strategy strategy, final List<CmsService> services) {
+        if (services.isEmpty()) {
+            throw new IllegalArgumentException("At least one service is required");
+        }
+        this.strategy = strategy;
+        this.services = services;
+    }
+
+    @Override
+    public CompletionStage<Optional<CmsPage>> page(final String pageKey, final List<Locale> locales) {
+        final List<CompletableFuture<Optional<CmsPage>>> requests = services.stream()
+                .map(service -> request(service, pageKey, locales))
+                .collect(Collectors.toList());
+        final CompletableFuture<Optional<CmsPage>> result = new CompletableFuture<>();
+        result.whenComplete((page, error) -> requests.forEach(request -> request.cancel(false)));
+        switch (strategy) {
+            case FIRST_NON_EMPTY:
+                completeWithFirstPage(result, requests);
+                break;
+            case PRIORITY:
+                requests.forEach(request -> request.whenComplete((page, error) ->
+                        completeWithPriorityPage(result, requests)));
+                break;
+            case OVERLAY:
+                CompletableFuture.allOf(requests.toArray(new CompletableFuture<?>[requests.size()]))
+                        .whenComplete((nothing, error) -> completeWithOverlayPage(result, requests));
+                break;
+            default:
+                throw new IllegalStateException("Unknown strategy " + strategy);
+        }
+        return result;
+    }
+
+    /**
+     * Request the page from given service, turning a failure thrown right away into a failed request, so that it is
+     * treated as any other failure and the requests to the other services are still started and cancelled.
+     */
+    private static CompletableFuture<Optional<CmsPage>> request(final CmsService service, final String pageKey,
+                                                                final List<Locale> locales) {
+        try {
+            return service.page(pageKey, locales).toCompletableFuture();
+        } catch (RuntimeException e) {
+            final CompletableFuture<Optional<CmsPage>> failedRequest = new CompletableFuture<>();
+            failedRequest.completeExceptionally(e);
+            return failedRequest;
+        }
+    }
+
+    private static void completeWithFirstPage(final CompletableFuture<Optional<CmsPage>> result,
+                                              final List<CompletableFuture<Optional<CmsPage>>> requests) {
+        final AtomicInteger pendingRequests = new AtomicInteger(requests.size());
+        requests.forEach(request -> request.whenComplete((page, error) -> {
+            if (error == null && page.isPresent()) {
+                result.complete(page);
+            }
+            if (pendingRequests.decrementAndGet() == 0) {
+                completeWithoutPage(result, requests);
+            }
+        }));
+    }
+
+    /**
+     * Complete with the page of the first service providing it once all the services before it are known not to.
+     */
+    private static void completeWithPriorityPage(final CompletableFuture<Optional<CmsPage>> result,
+                                                 final List<CompletableFuture<Optional<CmsPage>>> requests) {
+        for (CompletableFuture<Optional<CmsPage>> request : requests) {
+            if (!request.isDone()) {
+                return;
+            }
+            final Optional<CmsPage> page = pageOf(request);
+            if (page.isPresent()) {
+                result.complete(page);
+                return;
+            }
+        }
+        completeWithoutPage(result, requests);
+    }
+
+    private static void completeWithOverlayPage(final CompletableFuture<Optional<CmsPage>> result,
+                                                final List<CompletableFuture<Optional<CmsPage>>> requests) {
+        final List<CmsPage> pages = new ArrayList<>();
+        requests.forEach(request -> pageOf(request).ifPresent(pages::add));
+        if (pages.isEmpty()) {
+            completeWithoutPage(result, requests);
+        } else {
+            result.complete(Optional.of(pages.size() == 1 ? pages.get(0) : OverlayCmsPage.of(pages)));
+        }
+    }
+
+    /**
+     * Complete with the failure of the first failed service, if any, or with empty result.
+     */
+    private static void completeWithoutPage(final CompletableFuture<Optional<CmsPage>> result,
+                                            final List<CompletableFuture<Optional<CmsPage>>> requests) {
+        for (CompletableFuture<Optional<CmsPage>> request : requests) {
+            if (request.isCompletedExceptionally() && !request.isCancelled()) {
+                try {
+                    request.join();
+                } catch (CompletionException e) {
+                    result.completeExceptionally(e.getCause());
+                    return;
+                }
+            }
+        }
+        result.complete(Optional.empty());
+    }
+
+    /**
+     * @return page provided by a completed request, or absent if it failed
+     */
+    private static Optional<CmsPage> pageOf(final CompletableFuture<Optional<CmsPage>> request) {
+        return request.isCompletedExceptionally() ? Optional.empty() : request.join();
+    }
+
+    /**
+     * Create service combining pages of given services with given strategy.
+     *
+     * @param strategy how the pages of the services are combined
+     * @param services in order of their priority, the first one having the highest
+     * @return composite of the services
+     */
+    public static CompositeCmsService of(final Strategy strategy, final List<CmsService> services) {
+        return new CompositeCmsService(strategy, Collections.unmodifiableList(new ArrayList<>(services)));
+    }
+
+    /**
+     * How pages of several services are combined.
+     */
+    public enum Strategy {
+        /**
+         * The first page provided by any service is the result, regardless of the order of the services.
+         * Requests to the other services are cancelled then.
+         */
+        FIRST_NON_EMPTY,
+        /**
+         * The page of the first service in order providing it is the result, which is known once all the services
+         * before it have provided nothing. Requests to the services after it are cancelled then.
+         */
+        PRIORITY,
+        /**
+         * The pages provided by all the services are merged field by field, where a field of a page of a service
+         * overrides the same field of the pages of the services after it.
+         */
+        OVERLAY
+    }
+}
@@ -0,0 +1,60 @@
+package com.commercetools.sunrise.cms;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Assigns keys to nodes so that adding or removing a node moves only the keys of that node.
+ * <p>
+ * Every node is placed on a ring of 64-bit hashes at several points, called virtual nodes, and a key belongs to
+ * the node at the first point following the hash of the key. The more virtual nodes, the more evenly keys are spread.
+ * Nodes are identified by their string representation, so that all the members of a cluster configured with the same
+ * nodes assign every key to the same node, regardless of the order of the nodes.
+ *
+ * @param <N> type of the nodes
+ */
+final class ConsistentHashRing<N> {
+
+    private final TreeMap<Long, N> ring = new TreeMap<>();
+
+    /**
+     * @param nodes        members of the ring, at least one
+     * @param virtualNodes number of points on the ring per node
+     */
+    ConsistentHashRing(final Collection<N> nodes, final int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes <= 0) {
+            throw new IllegalArgumentException("Ring needs at least one node with at least one virtual node");
+        }
+        for (N node : nodes) {
+            for (int i = 0; i < virtualNodes; i++) {
+                ring.put(hash(node + "#" + i), node);
+            }
+        }
+    }
+
+    /**
+     * @param key to be assigned
+     * @return node the key belongs to
+     */
+    N owner(final String key) {
+        final Map.Entry<Long, N> next = ring.ceilingEntry(hash(key));
+        return next != null ? next.getValue() : ring.firstEntry().getValue();
+    }
+
+    /**
+     * FNV-1a hash of the UTF-8 bytes of the value, with the bits mixed by the finalizer of SplitMix64 so that
+     * similar values are spread over the whole ring.
+     */
+    static long hash(final String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xFF;
+            hash *= 0x100000001b3L;
+        }
+        hash = (hash ^ (hash >>> 30)) * 0xbf58476d1ce4e5b9L;
+        hash = (hash ^ (hash >>> 27)) * 0x94d049bb133111ebL;
+        return hash ^ (hash >>> 31);
+    }
+}
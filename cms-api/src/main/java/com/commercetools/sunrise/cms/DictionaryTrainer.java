@@ -0,0 +1,138 @@
+package com.commercetools.sunrise.cms;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Builds a compression dictionary out of the segments of sample data with the most content shared by other samples.
+ * <p>
+ * Every sample is split into overlapping candidate segments. Content is tracked as short sequences of bytes, counted
+ * at most once per sample, so that only sequences occurring in several samples add to the score of a segment, and not
+ * those repeated within a single sample, which compress well without a dictionary. Segments are then taken in the
+ * order of their scores, and once a segment is taken its sequences stop counting, so that the dictionary does not
+ * contain the same content twice. The best segments are put at the end of the dictionary, where references to them
+ * are the shortest.
+ * <p>
+ * Sequences are counted in a table of fixed size indexed by their hashes, so the memory used does not depend on
+ * the size of the samples. Hash collisions might only overestimate how common some content is.
+ */
+final class DictionaryTrainer {
+
+    private static final int SEQUENCE_LENGTH = 8;
+    private static final int SEGMENT_LENGTH = 48;
+    private static final int SEGMENT_STRIDE = 8;
+    private static final int TABLE_BITS = 20;
+
+    private final List<byte[]> samples;
+    private final int[] sampleCounts = new int[1 << TABLE_BITS];
+
+    private DictionaryTrainer(final List<byte[]> samples) {
+        this.samples = samples;
+        final int[] lastSample = new int[sampleCounts.length];
+        for (int sample = 0; sample < samples.size(); sample++) {
+            final byte[] bytes = samples.get(sample);
+            for (int i = 0; i + SEQUENCE_LENGTH <= bytes.length; i++) {
+                final int index = index(bytes, i);
+                if (lastSample[index] != sample + 1) {
+                    lastSample[index] = sample + 1;
+                    sampleCounts[index]++;
+                }
+            }
+        }
+    }
+
+    /**
+     * Build dictionary of content common to given samples.
+     *
+     * @param samples        data to be compressed with the dictionary
+     * @param dictionarySize maximum size of the dictionary in bytes
+     * @return dictionary with the most common content at its end, empty if the samples have nothing in common
+     */
+    static byte[] train(final List<byte[]> samples, final int dictionarySize) {
+        return new DictionaryTrainer(samples).selectSegments(dictionarySize);
+    }
+
+    private byte[] selectSegments(final int dictionarySize) {
+        final PriorityQueue<Segment> candidates =
+                new PriorityQueue<>(Comparator.comparingLong((Segment s) -> s.score).reversed());
+        for (int sample = 0; sample < samples.size(); sample++) {
+            final int length = samples.get(sample).length;
+            for (int start = 0; start + SEQUENCE_LENGTH <= length; start += SEGMENT_STRIDE) {
+                final Segment segment = new Segment(sample, start, Math.min(SEGMENT_LENGTH, length - start));
+                segment.score = score(segment);
+                if (segment.score > 0) {
+                    candidates.add(segment);
+                }
+            }
+        }
+        final List<Segment> selected = new ArrayList<>();
+        int size = 0;
+        Segment best;
+        while ((best = candidates.poll()) != null && size < dictionarySize) {
+            // scores only decrease as segments are selected, so a segment still scoring at least as much as the next
+            // candidate after being rescored is the best one
+            final long score = score(best);
+            final Segment next = candidates.peek();
+            if (score > 0 && next != null && score < next.score) {
+                best.score = score;
+                candidates.add(best);
+            } else if (score > 0 && size + best.length <= dictionarySize) {
+                selected.add(best);
+                size += best.length;
+                forget(best);
+            }
+        }
+        final ByteArrayOutputStream dictionary = new ByteArrayOutputStream(size);
+        for (int i = selected.size() - 1; i >= 0; i--) {
+            final Segment segment = selected.get(i);
+            dictionary.write(samples.get(segment.sample), segment.start, segment.length);
+        }
+        return dictionary.toByteArray();
+    }
+
+    /**
+     * Sum the counts of the sequences of given segment which are shared by several samples.
+     */
+    private long score(final Segment segment) {
+        final byte[] bytes = samples.get(segment.sample);
+        long score = 0;
+        for (int i = segment.start; i + SEQUENCE_LENGTH <= segment.start + segment.length; i++) {
+            final int count = sampleCounts[index(bytes, i)];
+            if (count > 1) {
+                score += count;
+            }
+        }
+        return score;
+    }
+
+    private void forget(final Segment segment) {
+        final byte[] bytes = samples.get(segment.sample);
+        for (int i = segment.start; i + SEQUENCE_LENGTH <= segment.start + segment.length; i++) {
+            sampleCounts[index(bytes, i)] = 0;
+        }
+    }
+
+    private static int index(final byte[] bytes, final int offset) {
+        long sequence = 0;
+        for (int i = offset; i < offset + SEQUENCE_LENGTH; i++) {
+            sequence = (sequence << 8) | (bytes[i] & 0xFF);
+        }
+        return (int) ((sequence * 0x9E3779B97F4A7C15L) >>> (Long.SIZE - TABLE_BITS));
+    }
+
+    private static final class Segment {
+        private final int sample;
+        private final int start;
+        private final int length;
+        private long score;
+
+        private Segment(final int sample, final int start, final int length) {
+            this.sample = sample;
+            this.start = start;
+            this.length = length;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.commercetools.sunrise.cms;
+
+import javax.annotation.Nullable;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Executors for fetches blocking their thread while waiting for the CMS, e.g. the callback executor of a Contentful
+ * service.
+ * <p>
+ * On Java 21 or newer every fetch gets its own virtual thread, which releases its carrier thread while waiting for
+ * I/O, so thousands of fetches can be in progress at once without sizing a pool for them. Virtual threads are looked
+ * up reflectively, so the library keeps running on Java 8, where every fetch gets a pooled platform thread instead.
+ * <p>
+ * A virtual thread cannot release its carrier while it holds a monitor, so code run by these executors should guard
+ * blocking calls with {@link java.util.concurrent.locks.ReentrantLock} rather than {@code synchronized}.
+ */
+public final class FetchExecutors {
+
+    @Nullable
+    private static final Method OF_VIRTUAL = method(Thread.class, "ofVirtual");
+    @Nullable
+    private static final Method NAME = method(builderClass(), "name", String.class, long.class);
+    @Nullable
+    private static final Method FACTORY = method(builderClass(), "factory");
+    @Nullable
+    private static final Method NEW_THREAD_PER_TASK_EXECUTOR = method(Executors.class, "newThreadPerTaskExecutor",
+            ThreadFactory.class);
+
+    private FetchExecutors() {
+    }
+
+    /**
+     * @return true if the running JVM supports virtual threads, i.e. it is Java 21 or newer
+     */
+    public static boolean isVirtualThreadsAvailable() {
+        return OF_VIRTUAL != null && NAME != null && FACTORY != null && NEW_THREAD_PER_TASK_EXECUTOR != null;
+    }
+
+    /**
+     * Create executor running every fetch on a new virtual thread if available, or on a thread of an unbounded pool
+     * of daemon platform threads otherwise. The number of fetches in progress can be limited by {@link FetchScheduler}.
+     *
+     * @param name prefix of the names of the threads, followed by their number
+     * @return executor to be shut down once it is not needed anymore
+     */
+    public static ExecutorService threadPerFetch(final String name) {
+        if (isVirtualThreadsAvailable()) {
+            try {
+                final Object builder = NAME.invoke(OF_VIRTUAL.invoke(null), name + "-", 1L);
+                final ThreadFactory factory = (ThreadFactory) FACTORY.invoke(builder);
+                return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, factory);
+            } catch (IllegalAccessException | InvocationTargetException e) {
+                // not expected for public methods of the JDK, platform threads work as well
+            }
+        }
+        return platformThreadPerFetch(name);
+    }
+
+    /**
+     * Create executor running every fetch on a thread of an unbounded pool of daemon platform threads, which are
+     * reused for subsequent fetches.
+     *
+     * @param name prefix of the names of the threads, followed by their number
+     * @return executor to be shut down once it is not needed anymore
+     */
+    public static ExecutorService platformThreadPerFetch(final String name) {
+        final AtomicInteger threadCount = new AtomicInteger();
+        return Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, name + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Nullable
+    private static Class<?> builderClass() {
+        try {
+            return Class.forName("java.lang.Thread$Builder");
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+    }
+
+    @Nullable
+    private static Method method(@Nullable final Class<?> type, final String name, final Class<?>... parameterTypes) {
+        if (type == null) {
+            return null;
+        }
+        try {
+            return type.getMethod(name, parameterTypes);
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
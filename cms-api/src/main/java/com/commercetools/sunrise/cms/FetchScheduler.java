@@ -0,0 +1,192 @@
+package com.commercetools.sunrise.cms;
+
+import javax.annotation.Nullable;
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Limits the number of fetches from a CMS in progress at once, letting interactive fetches go ahead of background ones.
+ * <p>
+ * Fetches over the limit wait in a queue per {@link Priority}. Whenever a fetch completes, the next one is started
+ * from the interactive queue, and only if it is empty from the background queue. Background fetches are moreover
+ * limited to a share of the concurrency, so that there are always slots left for interactive fetches: refresh,
+ * warm-up or sitemap generation is deferred while user-facing requests back up and never occupies all the slots.
+ * <p>
+ * A fetch counts as in progress from its start until the completion of the future it returns, regardless of the
+ * threads it runs on. Cancelling the future returned by {@link #schedule} removes a waiting fetch from the queue
+ * or cancels the future of a started one.
+ */
+public final class FetchScheduler {
+
+    private final int maxConcurrentFetches;
+    private final int maxBackgroundFetches;
+    private final Queue<ScheduledFetch<?>> interactiveQueue = new ArrayDeque<>();
+    private final Queue<ScheduledFetch<?>> backgroundQueue = new ArrayDeque<>();
+    private int runningFetches = 0;
+    private int runningBackgroundFetches = 0;
+    private final AtomicInteger dispatchRequests = new AtomicInteger();
+
+    private FetchScheduler(final int maxConcurrentFetches, final int maxBackgroundFetches) {
+        if (maxBackgroundFetches <= 0 || maxBackgroundFetches >= maxConcurrentFetches) {
+            throw new IllegalArgumentException("Background fetches must be limited to between 1 and "
+                    + (maxConcurrentFetches - 1) + ", got " + maxBackgroundFetches);
+        }
+        this.maxConcurrentFetches = maxConcurrentFetches;
+        this.maxBackgroundFetches = maxBackgroundFetches;
+    }
+
+    /**
+     * Start given fetch as soon as its priority allows.
+     *
+     * @param priority of the fetch
+     * @param fetch    starts the fetch and returns its result
+     * @param <T>      type of the result
+     * @return future completed with the result of the fetch
+     */
+    public <T> CompletableFuture<T> schedule(final Priority priority,
+                                             final Supplier<? extends CompletionStage<T>> fetch) {
+        final ScheduledFetch<T> scheduledFetch = new ScheduledFetch<>(priority, fetch);
+        synchronized (this) {
+            (priority == Priority.INTERACTIVE ? interactiveQueue : backgroundQueue).add(scheduledFetch);
+        }
+        dispatch();
+        return scheduledFetch.future;
+    }
+
+    /**
+     * @return number of fetches in progress
+     */
+    public synchronized int runningFetches() {
+        return runningFetches;
+    }
+
+    /**
+     * @param priority of the fetches
+     * @return number of fetches of given priority waiting to be started
+     */
+    public synchronized int queuedFetches(final Priority priority) {
+        return (priority == Priority.INTERACTIVE ? interactiveQueue : backgroundQueue).size();
+    }
+
+    /**
+     * Start as many fetches as the limits allow.
+     * <p>
+     * Fetches completing synchronously release their slot from within this method, so only the first of the nested
+     * calls does the work and the others just make it go over the queues once more.
+     */
+    private void dispatch() {
+        if (dispatchRequests.getAndIncrement() != 0) {
+            return;
+        }
+        int missedRequests = 1;
+        do {
+            ScheduledFetch<?> next;
+            while ((next = takeNext()) != null) {
+                next.start();
+            }
+            missedRequests = dispatchRequests.addAndGet(-missedRequests);
+        } while (missedRequests != 0);
+    }
+
+    @Nullable
+    private synchronized ScheduledFetch<?> takeNext() {
+        if (runningFetches >= maxConcurrentFetches) {
+            return null;
+        }
+        ScheduledFetch<?> next = pollNotCancelled(interactiveQueue);
+        if (next == null && runningBackgroundFetches < maxBackgroundFetches) {
+            next = pollNotCancelled(backgroundQueue);
+        }
+        if (next != null) {
+            runningFetches++;
+            if (next.priority == Priority.BACKGROUND) {
+                runningBackgroundFetches++;
+            }
+        }
+        return next;
+    }
+
+    @Nullable
+    private static ScheduledFetch<?> pollNotCancelled(final Queue<ScheduledFetch<?>> queue) {
+        ScheduledFetch<?> next = queue.poll();
+        while (next != null && next.future.isDone()) {
+            next = queue.poll();
+        }
+        return next;
+    }
+
+    private void release(final ScheduledFetch<?> fetch) {
+        synchronized (this) {
+            runningFetches--;
+            if (fetch.priority == Priority.BACKGROUND) {
+                runningBackgroundFetches--;
+            }
+        }
+        dispatch();
+    }
+
+    /**
+     * Create scheduler with given limits.
+     *
+     * @param maxConcurrentFetches maximum number of fetches in progress at once
+     * @param maxBackgroundFetches maximum number of background fetches in progress at once,
+     *                             less than the maximum of all the fetches
+     * @return scheduler with nothing in progress
+     */
+    public static FetchScheduler of(final int maxConcurrentFetches, final int maxBackgroundFetches) {
+        return new FetchScheduler(maxConcurrentFetches, maxBackgroundFetches);
+    }
+
+    /**
+     * Priority of a fetch.
+     */
+    public enum Priority {
+        /**
+         * Fetch somebody is waiting for, e.g. a page requested to render a response.
+         */
+        INTERACTIVE,
+        /**
+         * Fetch nobody is waiting for, e.g. refresh ahead of expiry, warm-up or enumeration of all pages.
+         */
+        BACKGROUND
+    }
+
+    private final class ScheduledFetch<T> {
+        private final Priority priority;
+        private final Supplier<? extends CompletionStage<T>> fetch;
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private ScheduledFetch(final Priority priority, final Supplier<? extends CompletionStage<T>> fetch) {
+            this.priority = priority;
+            this.fetch = fetch;
+        }
+
+        private void start() {
+            final CompletableFuture<T> started;
+            try {
+                started = fetch.get().toCompletableFuture();
+            } catch (RuntimeException e) {
+                release(this);
+                future.completeExceptionally(e);
+                return;
+            }
+            future.whenComplete((result, error) -> {
+                if (future.isCancelled()) {
+                    started.cancel(false);
+                }
+            });
+            started.whenComplete((result, error) -> {
+                release(this);
+                if (error != null) {
+                    future.completeExceptionally(error);
+                } else {
+                    future.complete(result);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.commercetools.sunrise.cms;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Approximate counter of how often keys occur, in the form of count-min sketch.
+ * <p>
+ * Each key is counted in several rows of counters at positions given by differently seeded hashes, and its frequency
+ * is estimated as the minimum of them. Hash collisions might therefore only overestimate the frequency. The memory
+ * used does not depend on the number of distinct keys, which makes the sketch suitable for tracking high-cardinality
+ * traffic.
+ * <p>
+ * All counters are halved once enough keys have been counted, so that the estimates reflect recent traffic.
+ * <p>
+ * The sketch is lock-free and safe to use by several threads. Concurrent updates might be lost during halving,
+ * which only affects accuracy.
+ */
+final class FrequencySketch {
+
+    private static final int DEPTH = 4;
+    private static final long[] SEEDS = {
+            0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L};
+
+    private final AtomicIntegerArray counters;
+    private final int widthMask;
+    private final long sampleSize;
+    private final AtomicLong additions = new AtomicLong();
+
+    /**
+     * @param expectedKeys number of distinct keys expected to be tracked at once
+     */
+    FrequencySketch(final int expectedKeys) {
+        final int width = Integer.highestOneBit(Math.max(16, expectedKeys - 1) << 1);
+        this.counters = new AtomicIntegerArray(DEPTH * width);
+        this.widthMask = width - 1;
+        this.sampleSize = 10L * width;
+    }
+
+    /**
+     * Count another occurrence of given key.
+     *
+     * @param key to be counted
+     */
+    void increment(final Object key) {
+        final int hash = key.hashCode();
+        for (int row = 0; row < DEPTH; row++) {
+            counters.incrementAndGet(index(hash, row));
+        }
+        if (additions.incrementAndGet() % sampleSize == 0) {
+            halve();
+        }
+    }
+
+    /**
+     * @param key to be looked up
+     * @return approximate number of recent occurrences of given key, never less than the actual one
+     */
+    int estimate(final Object key) {
+        final int hash = key.hashCode();
+        int estimate = Integer.MAX_VALUE;
+        for (int row = 0; row < DEPTH; row++) {
+            estimate = Math.min(estimate, counters.get(index(hash, row)));
+        }
+        return estimate;
+    }
+
+    /**
+     * @return number of times the counters have been halved so far
+     */
+    long halvings() {
+        return additions.get() / sampleSize;
+    }
+
+    private void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            counters.set(i, counters.get(i) >>> 1);
+        }
+    }
+
+    private int index(final int hash, final int row) {
+        long mixed = (hash + SEEDS[row]) * SEEDS[row];
+        mixed ^= mixed >>> 32;
+        return row * (widthMask + 1) + ((int) mixed & widthMask);
+    }
+}
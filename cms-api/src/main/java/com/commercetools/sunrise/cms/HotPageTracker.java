@@ -0,0 +1,185 @@
+package com.commercetools.sunrise.cms;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+/**
+ * Keeps track of the most requested pages, as estimated by a {@link FrequencySketch}.
+ * <p>
+ * A requested page becomes a candidate if there is room for it or if it has been requested more often recently than
+ * the least requested of the current top pages. Once there are twice as many candidates as top pages, those
+ * requested least often are dropped by whichever thread gets there first, while the others carry on, so requests
+ * never wait for each other. The bar for new candidates decays together with the estimates of the sketch, so that pages
+ * becoming popular later are not kept out by estimates of the past. The memory used is given by the number of top
+ * pages, plus the sketch.
+ * <p>
+ * The top pages can be serialized with {@link #toBytes(List)}, e.g. to be prefetched on the next start.
+ */
+final class HotPageTracker {
+
+    private static final byte FORMAT_VERSION = 1;
+
+    private final FrequencySketch frequency;
+    private final int capacity;
+    private final ConcurrentMap<PageCacheKey, Boolean> candidates = new ConcurrentHashMap<>();
+    private final AtomicBoolean trimming = new AtomicBoolean();
+    private volatile Threshold threshold = new Threshold(0, 0);
+
+    /**
+     * @param frequency counting the requests of the pages, by whoever requests them
+     * @param capacity  number of top pages tracked
+     */
+    HotPageTracker(final FrequencySketch frequency, final int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Number of hot pages must be positive, got " + capacity);
+        }
+        this.frequency = frequency;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Consider given page, which has just been counted by the sketch, for the top pages.
+     *
+     * @param key of the requested page
+     */
+    void offer(final PageCacheKey key) {
+        if (candidates.containsKey(key)) {
+            return;
+        }
+        if (candidates.size() < capacity || frequency.estimate(key) > threshold()) {
+            candidates.put(key, Boolean.TRUE);
+            if (candidates.size() >= 2 * capacity) {
+                trim();
+            }
+        }
+    }
+
+    /**
+     * @param key of a page
+     * @return true if the page is one of the candidates for the top pages
+     */
+    boolean isHot(final PageCacheKey key) {
+        return candidates.containsKey(key);
+    }
+
+    /**
+     * List the top pages, and set the bar for new candidates to the least requested of them.
+     *
+     * @return the top pages, the most requested first
+     */
+    List<PageCacheKey> hottest() {
+        final List<PageCacheKey> byFrequency = byFrequency();
+        final List<PageCacheKey> hottest = new ArrayList<>(
+                byFrequency.subList(0, Math.min(capacity, byFrequency.size())));
+        setThreshold(hottest.size() < capacity ? 0 : frequency.estimate(hottest.get(capacity - 1)));
+        return hottest;
+    }
+
+    /**
+     * Drop the candidates requested least often, and raise the bar for new ones to the least requested top page.
+     */
+    private void trim() {
+        if (trimming.compareAndSet(false, true)) {
+            try {
+                final List<PageCacheKey> byFrequency = byFrequency();
+                if (byFrequency.size() > capacity) {
+                    byFrequency.subList(capacity, byFrequency.size()).forEach(candidates::remove);
+                    setThreshold(frequency.estimate(byFrequency.get(capacity - 1)));
+                }
+            } finally {
+                trimming.set(false);
+            }
+        }
+    }
+
+    /**
+     * @return the bar for new candidates, halved as many times as the sketch has been halved since it was set
+     */
+    private int threshold() {
+        final Threshold current = threshold;
+        final long halvings = frequency.halvings() - current.halvings;
+        return halvings < Integer.SIZE ? current.estimate >>> halvings : 0;
+    }
+
+    private void setThreshold(final int estimate) {
+        threshold = new Threshold(estimate, frequency.halvings());
+    }
+
+    private List<PageCacheKey> byFrequency() {
+        return candidates.keySet().stream()
+                .collect(Collectors.toMap(key -> key, frequency::estimate))
+                .entrySet().stream()
+                .sorted(Map.Entry.<PageCacheKey, Integer>comparingByValue(Comparator.reverseOrder()))
+                .map(Map.Entry::getKey)
+                .collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Serialize given pages so that they can be restored with {@link #fromBytes(byte[])}.
+     */
+    static byte[] toBytes(final List<PageCacheKey> keys) {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream output = new DataOutputStream(bytes)) {
+            output.writeByte(FORMAT_VERSION);
+            output.writeInt(keys.size());
+            for (PageCacheKey key : keys) {
+                output.writeUTF(key.pageKey());
+                output.writeShort(key.locales().size());
+                for (Locale locale : key.locales()) {
+                    output.writeUTF(locale.toLanguageTag());
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not serialize hot pages", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @throws IllegalArgumentException if given bytes do not form serialized pages
+     */
+    static List<PageCacheKey> fromBytes(final byte[] bytes) {
+        try (DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            final byte formatVersion = input.readByte();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unsupported hot pages format " + formatVersion);
+            }
+            final int size = input.readInt();
+            final List<PageCacheKey> keys = new ArrayList<>(Math.min(size, 1024));
+            for (int i = 0; i < size; i++) {
+                final String pageKey = input.readUTF();
+                final int localeCount = input.readUnsignedShort();
+                final List<Locale> locales = new ArrayList<>(localeCount);
+                for (int j = 0; j < localeCount; j++) {
+                    locales.add(Locale.forLanguageTag(input.readUTF()));
+                }
+                keys.add(new PageCacheKey(pageKey, locales));
+            }
+            return keys;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed hot pages", e);
+        }
+    }
+
+    private static final class Threshold {
+        private final int estimate;
+        private final long halvings;
+
+        private Threshold(final int estimate, final long halvings) {
+            this.estimate = estimate;
+            this.halvings = halvings;
+        }
+    }
+}
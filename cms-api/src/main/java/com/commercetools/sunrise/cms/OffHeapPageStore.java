@@ -0,0 +1,140 @@
+package com.commercetools.sunrise.cms;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded store of serialized pages kept outside of the Java heap.
+ * <p>
+ * Memory is allocated upfront as direct {@link ByteBuffer} slabs divided into blocks of equal size. Each stored value
+ * occupies as many blocks as needed, not necessarily adjacent ones, so the memory never gets fragmented and
+ * is never handed back to the garbage collector. When there are not enough free blocks the least recently used values
+ * are evicted.
+ * <p>
+ * Only the block indexes of stored values are kept on the heap.
+ *
+ * @param <K> type of the keys identifying stored values
+ */
+final class OffHeapPageStore<K> {
+
+    private static final int MAX_SLAB_SIZE = 64 * 1024 * 1024;
+
+    private final int blockSize;
+    private final int blocksPerSlab;
+    private final ByteBuffer[] slabs;
+    private final int[] freeBlocks;
+    private int freeBlockCount;
+    private final LinkedHashMap<K, Allocation> allocations = new LinkedHashMap<>(16, 0.75f, true);
+
+    OffHeapPageStore(final long capacity, final int blockSize) {
+        final long blockCount = capacity / blockSize;
+        if (blockSize <= 0 || blockCount <= 0 || blockCount > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid off-heap capacity " + capacity
+                    + " for block size " + blockSize);
+        }
+        this.blockSize = blockSize;
+        this.blocksPerSlab = Math.max(1, MAX_SLAB_SIZE / blockSize);
+        this.slabs = new ByteBuffer[(int) ((blockCount + blocksPerSlab - 1) / blocksPerSlab)];
+        for (int i = 0; i < slabs.length; i++) {
+            final long slabBlocks = Math.min(blocksPerSlab, blockCount - (long) i * blocksPerSlab);
+            slabs[i] = ByteBuffer.allocateDirect((int) slabBlocks * blockSize);
+        }
+        this.freeBlocks = new int[(int) blockCount];
+        for (int i = 0; i < freeBlocks.length; i++) {
+            freeBlocks[i] = freeBlocks.length - 1 - i;
+        }
+        this.freeBlockCount = freeBlocks.length;
+    }
+
+    /**
+     * Store given value, evicting the least recently used ones if needed.
+     * <p>
+     * Value bigger than the whole store is not stored.
+     *
+     * @param key   identifying the value
+     * @param value to be stored
+     * @return true if the value was stored
+     */
+    synchronized boolean put(final K key, final byte[] value) {
+        remove(key);
+        final int neededBlocks = Math.max(1, (value.length + blockSize - 1) / blockSize);
+        if (neededBlocks > freeBlocks.length) {
+            return false;
+        }
+        while (freeBlockCount < neededBlocks) {
+            evictEldest();
+        }
+        final int[] blocks = new int[neededBlocks];
+        for (int i = 0; i < neededBlocks; i++) {
+            blocks[i] = freeBlocks[--freeBlockCount];
+            final int offset = i * blockSize;
+            block(blocks[i]).put(value, offset, Math.min(blockSize, value.length - offset));
+        }
+        allocations.put(key, new Allocation(blocks, value.length));
+        return true;
+    }
+
+    /**
+     * Get a copy of the value stored for given key.
+     *
+     * @param key identifying the value
+     * @return copy of stored value, or absent if there is none
+     */
+    synchronized Optional<byte[]> get(final K key) {
+        final Allocation allocation = allocations.get(key);
+        if (allocation == null) {
+            return Optional.empty();
+        }
+        final byte[] value = new byte[allocation.length];
+        for (int i = 0; i < allocation.blocks.length; i++) {
+            final int offset = i * blockSize;
+            block(allocation.blocks[i]).get(value, offset, Math.min(blockSize, value.length - offset));
+        }
+        return Optional.of(value);
+    }
+
+    synchronized void remove(final K key) {
+        final Allocation allocation = allocations.remove(key);
+        if (allocation != null) {
+            release(allocation);
+        }
+    }
+
+    synchronized int size() {
+        return allocations.size();
+    }
+
+    private void evictEldest() {
+        final Iterator<Map.Entry<K, Allocation>> eldest = allocations.entrySet().iterator();
+        release(eldest.next().getValue());
+        eldest.remove();
+    }
+
+    private void release(final Allocation allocation) {
+        for (int block : allocation.blocks) {
+            freeBlocks[freeBlockCount++] = block;
+        }
+    }
+
+    /**
+     * View of the memory occupied by given block, positioned at its beginning.
+     */
+    private ByteBuffer block(final int block) {
+        final ByteBuffer slab = slabs[block / blocksPerSlab].duplicate();
+        slab.position((block % blocksPerSlab) * blockSize);
+        return slab;
+    }
+
+    private static final class Allocation {
+        private final int[] blocks;
+        private final int length;
+
+        private Allocation(final int[] blocks, final int length) {
+            this.blocks = blocks;
+            this.length = length;
+        }
+    }
+}
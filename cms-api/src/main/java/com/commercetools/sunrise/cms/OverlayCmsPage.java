@@ -0,0 +1,100 @@
+package com.commercetools.sunrise.cms;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Page merging the fields of several pages, where a field of a page overrides the same field of the pages after it.
+ * <p>
+ * It provides all of its fields, version and last modification time only if all the merged pages provide them.
+ */
+final class OverlayCmsPage implements CmsPage {
+
+    private final List<CmsPage> pages;
+
+    private OverlayCmsPage(final List<CmsPage> pages) {
+        this.pages = pages;
+    }
+
+    @Override
+    public Optional<String> field(final String path) {
+        for (CmsPage page : pages) {
+            final Optional<String> field = page.field(path);
+            if (field.isPresent()) {
+                return field;
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<String> html(final String path) {
+        for (CmsPage page : pages) {
+            final Optional<String> html = page.html(path);
+            if (html.isPresent()) {
+                return html;
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<CmsAsset> asset(final String path) {
+        for (CmsPage page : pages) {
+            final Optional<CmsAsset> asset = page.asset(path);
+            if (asset.isPresent()) {
+                return asset;
+            }
+        }
+        return Optional.empty();
+    }
+
+    @Override
+    public Optional<Map<String, String>> allFields() {
+        final Map<String, String> fields = new HashMap<>();
+        for (CmsPage page : pages) {
+            final Optional<Map<String, String>> pageFields = page.allFields();
+            if (!pageFields.isPresent()) {
+                return Optional.empty();
+            }
+            pageFields.get().forEach(fields::putIfAbsent);
+        }
+        return Optional.of(fields);
+    }
+
+    /**
+     * @return versions of the merged pages joined in their order
+     */
+    @Override
+    public Optional<String> version() {
+        final List<Optional<String>> versions = pages.stream()
+                .map(CmsPage::version)
+                .collect(Collectors.toList());
+        return versions.stream().allMatch(Optional::isPresent)
+                ? Optional.of(versions.stream().map(Optional::get).collect(Collectors.joining("+")))
+                : Optional.empty();
+    }
+
+    @Override
+    public Optional<Instant> lastModified() {
+        Instant lastModified = null;
+        for (CmsPage page : pages) {
+            final Optional<Instant> pageLastModified = page.lastModified();
+            if (!pageLastModified.isPresent()) {
+                return Optional.empty();
+            }
+            if (lastModified == null || pageLastModified.get().isAfter(lastModified)) {
+                lastModified = pageLastModified.get();
+            }
+        }
+        return Optional.ofNullable(lastModified);
+    }
+
+    static OverlayCmsPage of(final List<CmsPage> pages) {
+        return new OverlayCmsPage(pages);
+    }
+}
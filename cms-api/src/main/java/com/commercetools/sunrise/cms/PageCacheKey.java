@@ -0,0 +1,51 @@
+package com.commercetools.sunrise.cms;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Identifies a cached page by the key and the locales it was requested for.
+ */
+final class PageCacheKey {
+
+    private final String pageKey;
+    private final List<Locale> locales;
+
+    PageCacheKey(final String pageKey, final List<Locale> locales) {
+        this.pageKey = pageKey;
+        this.locales = Collections.unmodifiableList(new ArrayList<>(locales));
+    }
+
+    String pageKey() {
+        return pageKey;
+    }
+
+    List<Locale> locales() {
+        return locales;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final PageCacheKey that = (PageCacheKey) o;
+        return Objects.equals(pageKey, that.pageKey) && Objects.equals(locales, that.locales);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(pageKey, locales);
+    }
+
+    @Override
+    public String toString() {
+        return pageKey + locales;
+    }
+}
@@ -0,0 +1,146 @@
+package com.commercetools.sunrise.cms;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses serialized pages with Deflate, optionally primed with a dictionary of content common to many pages.
+ * <p>
+ * Text fields of a page, e.g. rich text or markdown, usually compress well on their own. Pages are small though,
+ * so much of what they have in common with other pages, like field paths, markup and recurring phrases, occurs in
+ * each of them only once and cannot be compressed away. A dictionary trained on sample pages with
+ * {@link #trainedOn(Collection, int)} provides such content to every page upfront, which makes even small pages
+ * compress several times. The dictionary has to be the same for compression and decompression, so it can be kept
+ * with {@link #dictionary()} and used again with {@link #withDictionary(byte[])}.
+ * <p>
+ * The compressor is immutable and safe to use by several threads.
+ */
+public final class PageCompressor {
+
+    /**
+     * Largest useful dictionary, as Deflate looks back at most 32 KiB.
+     */
+    public static final int MAX_DICTIONARY_SIZE = 32 * 1024;
+
+    private final byte[] dictionary;
+
+    private PageCompressor(final byte[] dictionary) {
+        this.dictionary = dictionary;
+    }
+
+    /**
+     * @return copy of the dictionary this compressor is primed with, empty if there is none
+     */
+    public byte[] dictionary() {
+        return dictionary.clone();
+    }
+
+    /**
+     * Compress given bytes.
+     *
+     * @param bytes to be compressed
+     * @return length of the given bytes followed by their raw Deflate stream
+     */
+    byte[] compress(final byte[] bytes) {
+        final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            if (dictionary.length > 0) {
+                deflater.setDictionary(dictionary);
+            }
+            deflater.setInput(bytes);
+            deflater.finish();
+            byte[] buffer = new byte[Integer.BYTES + bytes.length / 2 + 64];
+            ByteBuffer.wrap(buffer).putInt(bytes.length);
+            int length = Integer.BYTES;
+            while (!deflater.finished()) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            return Arrays.copyOf(buffer, length);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    /**
+     * Decompress bytes compressed with {@link #compress(byte[])} by a compressor with the same dictionary.
+     *
+     * @param compressed bytes to be decompressed
+     * @return original bytes
+     * @throws IllegalArgumentException if the bytes cannot be decompressed with this compressor
+     */
+    byte[] decompress(final byte[] compressed) {
+        final Inflater inflater = new Inflater(true);
+        try {
+            if (dictionary.length > 0) {
+                inflater.setDictionary(dictionary);
+            }
+            final byte[] bytes = new byte[ByteBuffer.wrap(compressed).getInt()];
+            inflater.setInput(compressed, Integer.BYTES, compressed.length - Integer.BYTES);
+            int length = 0;
+            while (length < bytes.length) {
+                final int inflated = inflater.inflate(bytes, length, bytes.length - length);
+                if (inflated == 0 && (inflater.needsInput() || inflater.finished())) {
+                    throw new IllegalArgumentException("Truncated compressed page");
+                }
+                length += inflated;
+            }
+            return bytes;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Malformed compressed page", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    /**
+     * Create compressor without a dictionary.
+     *
+     * @return compressor using the default Deflate level
+     */
+    public static PageCompressor withoutDictionary() {
+        return new PageCompressor(new byte[0]);
+    }
+
+    /**
+     * Create compressor primed with given dictionary, e.g. one trained earlier and kept with {@link #dictionary()}.
+     * <p>
+     * Content used most often should be at the end of the dictionary, where it can be referred to most cheaply.
+     *
+     * @param dictionary content common to many pages
+     * @return compressor using the default Deflate level
+     */
+    public static PageCompressor withDictionary(final byte[] dictionary) {
+        final int offset = Math.max(0, dictionary.length - MAX_DICTIONARY_SIZE);
+        return new PageCompressor(Arrays.copyOfRange(dictionary, offset, dictionary.length));
+    }
+
+    /**
+     * Create compressor primed with a dictionary of content shared by given sample pages.
+     * <p>
+     * The samples should be representative of the pages to be compressed, e.g. a few hundred pages of each type.
+     * Pages which do not support {@link CmsPage#allFields()} are skipped.
+     *
+     * @param samplePages    pages to look for common content in
+     * @param dictionarySize maximum size of the dictionary in bytes, at most {@link #MAX_DICTIONARY_SIZE}
+     * @return compressor using the default Deflate level
+     */
+    public static PageCompressor trainedOn(final Collection<? extends CmsPage> samplePages, final int dictionarySize) {
+        final List<byte[]> samples = samplePages.stream()
+                .map(CmsPageSnapshot::of)
+                .filter(Optional::isPresent)
+                .map(snapshot -> snapshot.get().toBytes())
+                .collect(Collectors.toList());
+        final byte[] dictionary = DictionaryTrainer.train(samples, Math.min(dictionarySize, MAX_DICTIONARY_SIZE));
+        return new PageCompressor(dictionary);
+    }
+}
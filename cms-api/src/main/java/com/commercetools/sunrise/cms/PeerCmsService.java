@@ -0,0 +1,525 @@
+package com.commercetools.sunrise.cms;
+
+import com.commercetools.sunrise.cms.PeerProtocol.PageRequest;
+import com.commercetools.sunrise.cms.PeerProtocol.PageResponse;
+
+import javax.annotation.Nullable;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * {@link CmsService} spreading the loading of pages over a cluster of nodes, so that every page is loaded from the CMS
+ * by a single node only, regardless of the number of nodes.
+ * <p>
+ * Every page, identified by its key and locales, is owned by one of the nodes, chosen by {@link ConsistentHashRing}
+ * of all the nodes of the cluster. The owner loads the page with its own service, and the other nodes request it
+ * from the owner over a small binary protocol on persistent TCP connections. All the nodes have to be configured with
+ * the same list of nodes, so that they agree on the owners, and adding or removing a node moves only the pages of
+ * that node to other owners.
+ * <p>
+ * Typically every node puts a {@link CachedCmsService} in front of this service, caching all the pages it serves,
+ * and another one behind it, caching the pages it owns, in front of the service loading them from the CMS:
+ * <pre>{@code
+ * CmsService ownedPages = CachedCmsService.builder(contentfulService).build();
+ * PeerCmsService peers = PeerCmsService.builder(ownedPages, self, executor).peers(allNodes).start();
+ * CmsService service = CachedCmsService.builder(peers).build();
+ * }</pre>
+ * Expired pages are then refreshed from their owner, which answers that the page is not modified if it has the same
+ * version, and only the owner refreshes it from the CMS, once for the whole cluster.
+ * <p>
+ * If the owner cannot be connected to in time, the page is loaded by the requesting node itself, so that a failing node
+ * does not make its pages unavailable. An owner which is reachable but slow is waited for up to the read timeout,
+ * after which the request fails instead, as does a failure of the owner to load the page. Otherwise an overloaded
+ * owner would make every other node load its pages from the CMS as well. Pages are transferred
+ * as {@link CmsPageSnapshot}s, so only pages providing {@link CmsPage#allFields()} can be requested from peers.
+ * <p>
+ * Requests to peers block a thread of the given executor while they are in progress. Requests of peers are served by
+ * a thread per connection.
+ * <p>
+ * The protocol has neither authentication nor encryption, so the port of the nodes must be reachable only by the other
+ * nodes of the cluster and never exposed publicly. Nodes are identified by their resolved IP address and port, so
+ * different host names of the same node, e.g. {@code localhost} and {@code 127.0.0.1}, denote the same node.
+ */
+public final class PeerCmsService implements CmsService, AutoCloseable {
+
+    private final CmsService loader;
+    private final Peer self;
+    private final List<Peer> peers = new ArrayList<>();
+    private final ConsistentHashRing<Peer> ring;
+    private final Executor executor;
+    private final ServerSocket serverSocket;
+    private final ExecutorService serverExecutor;
+    private final Future<?> acceptor;
+    private final Set<Socket> servedSockets = ConcurrentHashMap.newKeySet();
+    private volatile boolean closed = false;
+
+    private PeerCmsService(final Builder builder, final ServerSocket serverSocket) {
+        this.loader = builder.loader;
+        this.self = new Peer(builder.self, builder);
+        final Set<String> peerIds = new HashSet<>();
+        peers.add(self);
+        peerIds.add(self.id);
+        for (InetSocketAddress address : builder.peers) {
+            final Peer peer = new Peer(address, builder);
+            if (peerIds.add(peer.id)) {
+                peers.add(peer);
+            }
+        }
+        this.ring = new ConsistentHashRing<>(peers, builder.virtualNodes);
+        this.executor = builder.executor;
+        this.serverSocket = serverSocket;
+        final AtomicInteger threadCount = new AtomicInteger();
+        this.serverExecutor = Executors.newCachedThreadPool(runnable -> {
+            final Thread thread = new Thread(runnable, "cms-peer-" + self + "-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.acceptor = serverExecutor.submit(this::acceptConnections);
+    }
+
+    @Override
+    public CompletionStage<Optional<CmsPage>> page(final String pageKey, final List<Locale> locales) {
+        return fetch(pageKey, locales, null);
+    }
+
+    @Override
+    public CompletionStage<Optional<CmsPage>> refresh(final String pageKey, final List<Locale> locales,
+                                                      final CmsPage cachedPage) {
+        return fetch(pageKey, locales, cachedPage);
+    }
+
+    /**
+     * Whether the page of given key and locales is owned by this node.
+     *
+     * @param pageKey identifier of the page
+     * @param locales of the page
+     * @return true if this node loads the page itself
+     */
+    public boolean isOwner(final String pageKey, final List<Locale> locales) {
+        return ring.owner(ringKey(pageKey, locales)) == self;
+    }
+
+    /**
+     * Stop serving peers and close all the connections. The address of this node can be listened on again once this
+     * method returns.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        closeQuietly(serverSocket);
+        try {
+            acceptor.get(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            // the server socket is closed anyway
+        }
+        servedSockets.forEach(PeerCmsService::closeQuietly);
+        serverExecutor.shutdownNow();
+        peers.forEach(Peer::closeIdleConnections);
+    }
+
+    private CompletionStage<Optional<CmsPage>> fetch(final String pageKey, final List<Locale> locales,
+                                                     @Nullable final CmsPage cachedPage) {
+        final Peer owner = ring.owner(ringKey(pageKey, locales));
+        if (owner == self) {
+            return load(pageKey, locales, cachedPage);
+        }
+        final CompletableFuture<Optional<CmsPage>> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            if (!future.isDone()) {
+                final Optional<CmsPage> page;
+                try {
+                    page = owner.request(pageKey, locales, cachedPage);
+                } catch (UnreachablePeerException e) {
+                    load(pageKey, locales, cachedPage).whenComplete((result, error) -> {
+                        if (error != null) {
+                            future.completeExceptionally(error);
+                        } else {
+                            future.complete(result);
+                        }
+                    });
+                    return;
+                } catch (IOException e) {
+                    future.completeExceptionally(new CmsServiceException("Peer " + owner + " did not provide page "
+                            + pageKey + ": " + e.getMessage(), e));
+                    return;
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                    return;
+                }
+                future.complete(page);
+            }
+        });
+        return future;
+    }
+
+    private CompletionStage<Optional<CmsPage>> load(final String pageKey, final List<Locale> locales,
+                                                    @Nullable final CmsPage cachedPage) {
+        return cachedPage != null ? loader.refresh(pageKey, locales, cachedPage) : loader.page(pageKey, locales);
+    }
+
+    private void acceptConnections() {
+        while (!closed) {
+            try {
+                final Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                servedSockets.add(socket);
+                serverExecutor.execute(() -> serve(socket));
+            } catch (IOException e) {
+                // the server socket is closed or the connection was dropped before it was accepted
+            }
+        }
+    }
+
+    /**
+     * Answer requests coming over given connection until the peer closes it.
+     */
+    private void serve(final Socket socket) {
+        try (DataInputStream input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+             DataOutputStream output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()))) {
+            while (!closed) {
+                final PageRequest request;
+                try {
+                    request = PeerProtocol.readRequest(input);
+                } catch (EOFException e) {
+                    return;
+                }
+                respond(output, request);
+            }
+        } catch (IOException e) {
+            // the connection was dropped, the peer will load the page itself
+        } finally {
+            servedSockets.remove(socket);
+            closeQuietly(socket);
+        }
+    }
+
+    private void respond(final DataOutputStream output, final PageRequest request) throws IOException {
+        final Optional<CmsPage> page;
+        try {
+            page = loader.page(request.pageKey, request.locales).toCompletableFuture().join();
+        } catch (CompletionException e) {
+            PeerProtocol.writeError(output, String.valueOf(e.getCause().getMessage()));
+            return;
+        } catch (RuntimeException e) {
+            PeerProtocol.writeError(output, String.valueOf(e.getMessage()));
+            return;
+        }
+        if (!page.isPresent()) {
+            PeerProtocol.writeResponse(output, PeerProtocol.NOT_FOUND, new byte[0]);
+        } else if (request.cachedVersion != null
+                && page.get().version().filter(request.cachedVersion::equals).isPresent()) {
+            PeerProtocol.writeResponse(output, PeerProtocol.NOT_MODIFIED, new byte[0]);
+        } else {
+            final Optional<CmsPageSnapshot> snapshot = CmsPageSnapshot.of(page.get());
+            if (snapshot.isPresent()) {
+                PeerProtocol.writeResponse(output, PeerProtocol.FOUND, snapshot.get().toBytes());
+            } else {
+                PeerProtocol.writeError(output, "Page " + request.pageKey + " does not provide all its fields");
+            }
+        }
+    }
+
+    private static String ringKey(final String pageKey, final List<Locale> locales) {
+        return pageKey + "|" + locales.stream().map(Locale::toLanguageTag).collect(Collectors.joining(","));
+    }
+
+    private static void closeQuietly(final AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            // nothing left to do with it
+        }
+    }
+
+    /**
+     * Create builder of the service of the node at given address.
+     *
+     * @param loader   loading the pages owned by this node, e.g. from the CMS
+     * @param self     address of this node, as known to the other nodes; it is listened on
+     * @param executor defines execution context in which requests to peers are executed
+     * @return builder with default settings and no peers
+     */
+    public static Builder builder(final CmsService loader, final InetSocketAddress self, final Executor executor) {
+        return new Builder(loader, self, executor);
+    }
+
+    /**
+     * Builder of {@link PeerCmsService}.
+     */
+    public static final class Builder {
+
+        private final CmsService loader;
+        private final InetSocketAddress self;
+        private final Executor executor;
+        private final List<InetSocketAddress> peers = new ArrayList<>();
+        private int virtualNodes = 100;
+        private long connectTimeoutMillis = TimeUnit.SECONDS.toMillis(1);
+        private long readTimeoutMillis = TimeUnit.SECONDS.toMillis(30);
+        private int maxIdleConnections = 8;
+
+        private Builder(final CmsService loader, final InetSocketAddress self, final Executor executor) {
+            this.loader = loader;
+            this.self = self;
+            this.executor = executor;
+        }
+
+        /**
+         * All the nodes of the cluster, the same for every node. This node is included even if it is not listed.
+         *
+         * @param peers addresses of the nodes as they are known to each other
+         * @return this builder
+         */
+        public Builder peers(final Collection<InetSocketAddress> peers) {
+            this.peers.clear();
+            this.peers.addAll(peers);
+            return this;
+        }
+
+        /**
+         * Number of points on the hash ring per node. More points spread the pages more evenly.
+         *
+         * @param virtualNodes 100 by default
+         * @return this builder
+         */
+        public Builder virtualNodes(final int virtualNodes) {
+            this.virtualNodes = virtualNodes;
+            return this;
+        }
+
+        /**
+         * Time to connect to a peer, after which the page is loaded by this node.
+         *
+         * @param timeout 1 second by default
+         * @param unit    time unit of given duration
+         * @return this builder
+         */
+        public Builder connectTimeout(final long timeout, final TimeUnit unit) {
+            this.connectTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Time to wait for the response of a connected peer, after which the request fails. It should be well above
+         * the time the peer needs to load a page from the CMS, including its retries.
+         *
+         * @param timeout 30 seconds by default
+         * @param unit    time unit of given duration
+         * @return this builder
+         */
+        public Builder readTimeout(final long timeout, final TimeUnit unit) {
+            this.readTimeoutMillis = unit.toMillis(timeout);
+            return this;
+        }
+
+        /**
+         * Maximum number of idle connections kept open to every peer.
+         *
+         * @param maxIdleConnections 8 by default
+         * @return this builder
+         */
+        public Builder maxIdleConnections(final int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        /**
+         * Start listening for requests of peers on the address of this node only, i.e. on the interface it resolves to.
+         * The port must not be exposed outside of the cluster.
+         *
+         * @return service serving the peers
+         * @throws IOException if the port cannot be listened on
+         */
+        public PeerCmsService start() throws IOException {
+            final ServerSocket serverSocket = new ServerSocket();
+            serverSocket.setReuseAddress(true);
+            try {
+                serverSocket.bind(self);
+            } catch (IOException e) {
+                closeQuietly(serverSocket);
+                throw e;
+            }
+            return new PeerCmsService(this, serverSocket);
+        }
+    }
+
+    /**
+     * Node of the cluster, along with the idle connections to it.
+     */
+    private static final class Peer {
+        private final InetSocketAddress address;
+        private final String id;
+        private final int connectTimeoutMillis;
+        private final int readTimeoutMillis;
+        private final int maxIdleConnections;
+        private final Deque<Connection> idleConnections = new ConcurrentLinkedDeque<>();
+
+        private Peer(final InetSocketAddress address, final Builder builder) {
+            this.address = address;
+            this.id = (address.isUnresolved() ? address.getHostString() : address.getAddress().getHostAddress())
+                    + ":" + address.getPort();
+            this.connectTimeoutMillis = (int) builder.connectTimeoutMillis;
+            this.readTimeoutMillis = (int) builder.readTimeoutMillis;
+            this.maxIdleConnections = builder.maxIdleConnections;
+        }
+
+        /**
+         * Request the page over an idle connection, or a new one if there is none. An idle connection found closed,
+         * e.g. because the peer has been restarted meanwhile, is replaced by a new one once. A timeout is not retried,
+         * as the peer is busy rather than gone.
+         */
+        private Optional<CmsPage> request(final String pageKey, final List<Locale> locales,
+                                          @Nullable final CmsPage cachedPage) throws IOException {
+            final PageRequest request = new PageRequest(pageKey, locales, cachedPage != null
+                    ? cachedPage.version().orElse(null)
+                    : null);
+            Connection connection = idleConnections.pollFirst();
+            PageResponse response;
+            try {
+                if (connection == null) {
+                    connection = connect();
+                }
+                response = connection.exchange(request);
+            } catch (IOException e) {
+                if (connection != null) {
+                    closeQuietly(connection);
+                }
+                if (connection == null || connection.isNew || !isClosedByPeer(e)) {
+                    throw e;
+                }
+                connection = connect();
+                response = exchangeOrClose(connection, request);
+            }
+            release(connection);
+            switch (response.status) {
+                case PeerProtocol.FOUND:
+                    return Optional.of(CmsPageSnapshot.fromBytes(response.payload));
+                case PeerProtocol.NOT_FOUND:
+                    return Optional.empty();
+                case PeerProtocol.NOT_MODIFIED:
+                    return Optional.ofNullable(cachedPage);
+                case PeerProtocol.ERROR:
+                    throw new CmsServiceException("Peer " + id + " could not provide page " + pageKey + ": "
+                            + response.errorMessage(), null);
+                default:
+                    throw new IOException("Unknown status " + response.status + " of peer " + id);
+            }
+        }
+
+        /**
+         * Whether the exchange failed because the peer closed the connection, i.e. it was reset or ended.
+         */
+        private static boolean isClosedByPeer(final IOException e) {
+            return e instanceof EOFException || e instanceof SocketException;
+        }
+
+        private static PageResponse exchangeOrClose(final Connection connection, final PageRequest request)
+                throws IOException {
+            try {
+                return connection.exchange(request);
+            } catch (IOException e) {
+                closeQuietly(connection);
+                throw e;
+            }
+        }
+
+        private Connection connect() throws UnreachablePeerException {
+            final Socket socket = new Socket();
+            try {
+                socket.setTcpNoDelay(true);
+                socket.setSoTimeout(readTimeoutMillis);
+                socket.connect(address, connectTimeoutMillis);
+                return new Connection(socket);
+            } catch (IOException e) {
+                closeQuietly(socket);
+                throw new UnreachablePeerException(this, e);
+            }
+        }
+
+        private void release(final Connection connection) {
+            connection.isNew = false;
+            if (idleConnections.size() < maxIdleConnections) {
+                idleConnections.addFirst(connection);
+            } else {
+                closeQuietly(connection);
+            }
+        }
+
+        private void closeIdleConnections() {
+            Connection connection;
+            while ((connection = idleConnections.pollFirst()) != null) {
+                closeQuietly(connection);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return id;
+        }
+    }
+
+    /**
+     * Failure to connect to a peer, e.g. because it is down or refuses connections.
+     */
+    private static final class UnreachablePeerException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        private UnreachablePeerException(final Peer peer, final IOException cause) {
+            super("Peer " + peer + " cannot be connected to", cause);
+        }
+    }
+
+    private static final class Connection implements AutoCloseable {
+        private final Socket socket;
+        private final DataInputStream input;
+        private final DataOutputStream output;
+        private boolean isNew = true;
+
+        private Connection(final Socket socket) throws IOException {
+            this.socket = socket;
+            this.input = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            this.output = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        }
+
+        private PageResponse exchange(final PageRequest request) throws IOException {
+            PeerProtocol.writeRequest(output, request);
+            return PeerProtocol.readResponse(input);
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.commercetools.sunrise.cms;
+
+import javax.annotation.Nullable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Binary protocol by which {@link PeerCmsService} nodes request pages from each other.
+ * <p>
+ * A connection carries any number of requests, one after another, each followed by its response. A request consists
+ * of the protocol version, the page key, the language tags of the locales and the version of the page the requesting
+ * node has cached, if any. A response consists of a status and a payload depending on it: the page serialized as
+ * {@link CmsPageSnapshot} if it is found, nothing if it is not found or it is not modified, or an error message.
+ */
+final class PeerProtocol {
+
+    static final byte VERSION = 1;
+
+    static final byte FOUND = 1;
+    static final byte NOT_FOUND = 2;
+    static final byte NOT_MODIFIED = 3;
+    static final byte ERROR = 4;
+
+    private static final int MAX_PAYLOAD_SIZE = 64 * 1024 * 1024;
+
+    private PeerProtocol() {
+    }
+
+    static void writeRequest(final DataOutputStream output, final PageRequest request) throws IOException {
+        output.writeByte(VERSION);
+        output.writeUTF(request.pageKey);
+        output.writeShort(request.locales.size());
+        for (Locale locale : request.locales) {
+            output.writeUTF(locale.toLanguageTag());
+        }
+        output.writeBoolean(request.cachedVersion != null);
+        if (request.cachedVersion != null) {
+            output.writeUTF(request.cachedVersion);
+        }
+        output.flush();
+    }
+
+    static PageRequest readRequest(final DataInputStream input) throws IOException {
+        final byte version = input.readByte();
+        if (version != VERSION) {
+            throw new IOException("Unsupported peer protocol version " + version);
+        }
+        final String pageKey = input.readUTF();
+        final int localeCount = input.readUnsignedShort();
+        final List<Locale> locales = new ArrayList<>(localeCount);
+        for (int i = 0; i < localeCount; i++) {
+            locales.add(Locale.forLanguageTag(input.readUTF()));
+        }
+        final String cachedVersion = input.readBoolean() ? input.readUTF() : null;
+        return new PageRequest(pageKey, locales, cachedVersion);
+    }
+
+    static void writeResponse(final DataOutputStream output, final byte status, final byte[] payload)
+            throws IOException {
+        output.writeByte(status);
+        output.writeInt(payload.length);
+        output.write(payload);
+        output.flush();
+    }
+
+    static void writeError(final DataOutputStream output, final String message) throws IOException {
+        writeResponse(output, ERROR, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static PageResponse readResponse(final DataInputStream input) throws IOException {
+        final byte status = input.readByte();
+        final int length = input.readInt();
+        if (length < 0 || length > MAX_PAYLOAD_SIZE) {
+            throw new IOException("Invalid peer response length " + length);
+        }
+        final byte[] payload = new byte[length];
+        input.readFully(payload);
+        return new PageResponse(status, payload);
+    }
+
+    static final class PageRequest {
+        final String pageKey;
+        final List<Locale> locales;
+        @Nullable
+        final String cachedVersion;
+
+        PageRequest(final String pageKey, final List<Locale> locales, @Nullable final String cachedVersion) {
+            this.pageKey = pageKey;
+            this.locales = locales;
+            this.cachedVersion = cachedVersion;
+        }
+    }
+
+    static final class PageResponse {
+        final byte status;
+        final byte[] payload;
+
+        private PageResponse(final byte status, final byte[] payload) {
+            this.status = status;
+            this.payload = payload;
+        }
+
+        String errorMessage() {
+            return new String(payload, StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.commercetools.sunrise.cms;
+
+/**
+ * Converts the text content of a field, e.g. Markdown, to HTML, as provided by {@link CmsPage#html(String)}.
+ * <p>
+ * It is typically an adapter of a Markdown library, e.g. with commonmark-java:
+ * <pre>{@code
+ * Parser parser = Parser.builder().build();
+ * HtmlRenderer renderer = HtmlRenderer.builder().build();
+ * TextRenderer textRenderer = text -> renderer.render(parser.parse(text));
+ * }</pre>
+ * It is called concurrently for different texts, so it has to be thread-safe.
+ */
+@FunctionalInterface
+public interface TextRenderer {
+
+    /**
+     * @param text content of a field
+     * @return HTML representation of the text
+     */
+    String render(String text);
+}
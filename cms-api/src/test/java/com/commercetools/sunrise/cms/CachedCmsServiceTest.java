@@ -0,0 +1,513 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CachedCmsServiceTest {
+
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void cachesPages() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service).clock(now::get).build();
+
+        final Optional<CmsPage> page = get(cachedService.page("home", emptyList()));
+        final Optional<CmsPage> cachedPage = get(cachedService.page("home", emptyList()));
+
+        assertThat(cachedPage.get()).isSameAs(page.get());
+        assertThat(service.pageCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void cachesPagesPerLocales() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service).clock(now::get).build();
+
+        get(cachedService.page("home", singletonList(Locale.GERMANY)));
+        get(cachedService.page("home", singletonList(Locale.ENGLISH)));
+
+        assertThat(service.pageCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void refreshesExpiredPages() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service)
+                .ttl(1, TimeUnit.MINUTES)
+                .clock(now::get)
+                .build();
+
+        get(cachedService.page("home", emptyList()));
+        now.addAndGet(TimeUnit.MINUTES.toMillis(1));
+        get(cachedService.page("home", emptyList()));
+
+        assertThat(service.pageCount.get()).isEqualTo(1);
+        assertThat(service.refreshCount.get()).isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotCacheEmptyResults() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service).clock(now::get).build();
+
+        get(cachedService.page("missing", emptyList()));
+        final Optional<CmsPage> page = get(cachedService.page("missing", emptyList()));
+
+        assertThat(page).isNotPresent();
+        assertThat(service.pageCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void cachesEmptyResultsForTheirOwnTime() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service)
+                .emptyResultTtl(10, TimeUnit.SECONDS)
+                .clock(now::get)
+                .build();
+
+        get(cachedService.page("missing", emptyList()));
+        final Optional<CmsPage> page = get(cachedService.page("missing", emptyList()));
+        now.addAndGet(TimeUnit.SECONDS.toMillis(10));
+        get(cachedService.page("missing", emptyList()));
+
+        assertThat(page).isNotPresent();
+        assertThat(service.pageCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void keysMissingOnceDoNotReplaceKeysMissingRepeatedly() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service)
+                .emptyResultTtl(10, TimeUnit.SECONDS)
+                .maxEmptyResults(1)
+                .clock(now::get)
+                .build();
+        for (int i = 0; i < 3; i++) {
+            get(cachedService.page("missing", emptyList()));
+            now.addAndGet(TimeUnit.SECONDS.toMillis(10));
+        }
+        final int pageCount = service.pageCount.get();
+
+        get(cachedService.page("missing-bot-1", emptyList()));
+        get(cachedService.page("missing-bot-2", emptyList()));
+        get(cachedService.page("missing", emptyList()));
+        get(cachedService.page("missing", emptyList()));
+
+        assertThat(service.pageCount.get()).isEqualTo(pageCount + 3);
+    }
+
+    @Test
+    public void cancellingOneOfConcurrentRequestsDoesNotAffectOthers() throws Exception {
+        final CompletableFuture<Optional<CmsPage>> pendingPage = new CompletableFuture<>();
+        final CmsPage page = (f -> Optional.of("home"));
+        final CmsService cachedService = CachedCmsService.builder((pageKey, locales) -> pendingPage)
+                .clock(now::get)
+                .build();
+
+        final CompletableFuture<Optional<CmsPage>> cancelled =
+                cachedService.page("home", emptyList()).toCompletableFuture();
+        final CompletableFuture<Optional<CmsPage>> other =
+                cachedService.page("home", emptyList()).toCompletableFuture();
+        cancelled.cancel(true);
+        pendingPage.complete(Optional.of(page));
+
+        assertThat(cancelled.isCancelled()).isTrue();
+        assertThat(other.join()).isPresent();
+    }
+
+    @Test
+    public void cancellingAllConcurrentRequestsCancelsRequestToService() throws Exception {
+        final List<CompletableFuture<Optional<CmsPage>>> requests = new ArrayList<>();
+        final CmsService cachedService = CachedCmsService.builder((pageKey, locales) -> {
+            final CompletableFuture<Optional<CmsPage>> request = new CompletableFuture<>();
+            requests.add(request);
+            return request;
+        }).clock(now::get).build();
+
+        final CompletableFuture<Optional<CmsPage>> first =
+                cachedService.page("home", emptyList()).toCompletableFuture();
+        final CompletableFuture<Optional<CmsPage>> second =
+                cachedService.page("home", emptyList()).toCompletableFuture();
+        first.cancel(true);
+        assertThat(requests.get(0).isCancelled()).isFalse();
+        second.cancel(true);
+        assertThat(requests.get(0).isCancelled()).isTrue();
+
+        final CompletableFuture<Optional<CmsPage>> third =
+                cachedService.page("home", emptyList()).toCompletableFuture();
+        requests.get(1).complete(Optional.of(f -> Optional.of("home")));
+
+        assertThat(requests).hasSize(2);
+        assertThat(third.join()).isPresent();
+    }
+
+    @Test
+    public void serviceThrowingDoesNotBlockLaterRequests() throws Exception {
+        final AtomicInteger requestCount = new AtomicInteger();
+        final CmsService cachedService = CachedCmsService.builder((pageKey, locales) -> {
+            if (requestCount.incrementAndGet() == 1) {
+                throw new IllegalStateException("Service is not ready");
+            }
+            return CompletableFuture.completedFuture(Optional.of(f -> Optional.of(pageKey)));
+        }).clock(now::get).build();
+
+        final CompletableFuture<Optional<CmsPage>> failed =
+                cachedService.page("home", emptyList()).toCompletableFuture();
+        final Optional<CmsPage> page = get(cachedService.page("home", emptyList()));
+
+        assertThat(failed.isCompletedExceptionally()).isTrue();
+        assertThat(page).isPresent();
+        assertThat(requestCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void movesPagesEvictedFromHeapOffHeap() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service)
+                .maxHeapPages(1)
+                .offHeapCapacity(4096)
+                .clock(now::get)
+                .build();
+
+        get(cachedService.page("home", emptyList()));
+        get(cachedService.page("about", emptyList()));
+        final Optional<CmsPage> page = get(cachedService.page("home", emptyList()));
+
+        assertThat(page).isPresent();
+        assertThat(page.get()).isInstanceOf(CmsPageSnapshot.class);
+        assertThat(page.get().field("key")).hasValue("home");
+        assertThat(service.pageCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void compressesPagesKeptOffHeap() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service)
+                .maxHeapPages(1)
+                .offHeapCapacity(4096)
+                .offHeapBlockSize(64)
+                .compressor(PageCompressor.withoutDictionary())
+                .clock(now::get)
+                .build();
+
+        get(cachedService.page("home", emptyList()));
+        get(cachedService.page("about", emptyList()));
+        final Optional<CmsPage> page = get(cachedService.page("home", emptyList()));
+
+        assertThat(page).isPresent();
+        assertThat(page.get().field("key")).hasValue("home");
+        assertThat(service.pageCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void keepsHtmlAndAssetsOfPagesKeptOffHeap() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service)
+                .maxHeapPages(1)
+                .offHeapCapacity(4096)
+                .compressor(PageCompressor.withoutDictionary())
+                .clock(now::get)
+                .build();
+
+        get(cachedService.page("home", emptyList()));
+        get(cachedService.page("about", emptyList()));
+        final CmsPage page = get(cachedService.page("home", emptyList())).get();
+
+        assertThat(page).isInstanceOf(CmsPageSnapshot.class);
+        assertThat(page.html("description")).hasValue("<p><em>home</em></p>");
+        assertThat(page.asset("image").map(CmsAsset::url)).hasValue("//images/home.jpg");
+        assertThat(page.asset("image").flatMap(CmsAsset::width)).hasValue(1920);
+        assertThat(page.asset("image").map(asset -> asset.srcset("webp")))
+                .hasValue("//images/home.jpg?w=320&fm=webp 320w");
+        assertThat(page.asset("key")).isNotPresent();
+    }
+
+    @Test
+    public void withCompression_movesBackOnHeapOnlyPagesRequestedMoreOften() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service)
+                .maxHeapPages(1)
+                .offHeapCapacity(4096)
+                .compressor(PageCompressor.withoutDictionary())
+                .clock(now::get)
+                .build();
+        for (int i = 0; i < 3; i++) {
+            get(cachedService.page("home", emptyList()));
+        }
+        get(cachedService.page("about", emptyList()));
+
+        final CmsPage home = get(cachedService.page("home", emptyList())).get();
+        final CmsPage about = get(cachedService.page("about", emptyList())).get();
+
+        assertThat(get(cachedService.page("home", emptyList())).get()).isSameAs(home);
+        assertThat(get(cachedService.page("about", emptyList())).get()).isNotSameAs(about);
+        assertThat(about.field("key")).hasValue("about");
+        assertThat(service.pageCount.get()).isEqualTo(2);
+    }
+
+    @Test
+    public void withoutOffHeapTier_dropsPagesEvictedFromHeap() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service)
+                .maxHeapPages(1)
+                .clock(now::get)
+                .build();
+
+        get(cachedService.page("home", emptyList()));
+        get(cachedService.page("about", emptyList()));
+        get(cachedService.page("home", emptyList()));
+
+        assertThat(service.pageCount.get()).isEqualTo(3);
+    }
+
+    private static Optional<CmsPage> get(final CompletionStage<Optional<CmsPage>> stage) {
+        return stage.toCompletableFuture().join();
+    }
+
+    @Test
+    public void adaptsTtlToHowOftenPageChanges() throws Exception {
+        final VersionedCmsService service = new VersionedCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service)
+                .ttl(1, TimeUnit.MINUTES)
+                .adaptiveTtl(30, 480, TimeUnit.SECONDS)
+                .clock(now::get)
+                .build();
+        get(cachedService.page("home", emptyList()));
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(1));
+        get(cachedService.page("home", emptyList()));
+
+        assertThat(service.refreshCount.get()).isEqualTo(1);
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(1));
+        get(cachedService.page("home", emptyList()));
+
+        assertThat(service.refreshCount.get()).as("unchanged page is cached twice as long").isEqualTo(1);
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(1));
+        get(cachedService.page("home", emptyList()));
+        service.version.incrementAndGet();
+        now.addAndGet(TimeUnit.MINUTES.toMillis(4));
+        final Optional<CmsPage> changedPage = get(cachedService.page("home", emptyList()));
+
+        assertThat(service.refreshCount.get()).isEqualTo(3);
+        assertThat(changedPage.get().version()).hasValue("1");
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(2));
+        get(cachedService.page("home", emptyList()));
+
+        assertThat(service.refreshCount.get()).as("changed page is cached half as long").isEqualTo(4);
+    }
+
+    @Test
+    public void keepsAdaptedTtlWithinBounds() throws Exception {
+        final VersionedCmsService service = new VersionedCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service)
+                .ttl(1, TimeUnit.MINUTES)
+                .adaptiveTtl(1, 2, TimeUnit.MINUTES)
+                .clock(now::get)
+                .build();
+        get(cachedService.page("home", emptyList()));
+
+        for (int i = 0; i < 5; i++) {
+            now.addAndGet(TimeUnit.MINUTES.toMillis(2));
+            get(cachedService.page("home", emptyList()));
+        }
+
+        assertThat(service.refreshCount.get()).isEqualTo(5);
+
+        for (int i = 0; i < 5; i++) {
+            service.version.incrementAndGet();
+            now.addAndGet(TimeUnit.MINUTES.toMillis(1));
+            get(cachedService.page("home", emptyList()));
+        }
+
+        assertThat(service.refreshCount.get()).isEqualTo(9);
+    }
+
+    @Test
+    public void refreshesHotPagesAheadOfExpiry() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service)
+                .ttl(100, TimeUnit.SECONDS)
+                .refreshAhead(10, 0.8)
+                .clock(now::get)
+                .build();
+        final Optional<CmsPage> page = get(cachedService.page("home", emptyList()));
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(79));
+        get(cachedService.page("home", emptyList()));
+
+        assertThat(service.refreshCount.get()).isZero();
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(1));
+        final Optional<CmsPage> servedPage = get(cachedService.page("home", emptyList()));
+
+        assertThat(servedPage.get()).isSameAs(page.get());
+        assertThat(service.refreshCount.get()).isEqualTo(1);
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(79));
+        get(cachedService.page("home", emptyList()));
+
+        assertThat(service.refreshCount.get()).as("refreshed page is cached anew").isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotRefreshColdPagesAheadOfExpiry() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CmsService cachedService = CachedCmsService.builder(service)
+                .ttl(100, TimeUnit.SECONDS)
+                .refreshAhead(1, 0.5)
+                .clock(now::get)
+                .build();
+        for (int i = 0; i < 5; i++) {
+            get(cachedService.page("home", emptyList()));
+        }
+        get(cachedService.page("imprint", emptyList()));
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(60));
+        get(cachedService.page("imprint", emptyList()));
+
+        assertThat(service.refreshCount.get()).isZero();
+    }
+
+    @Test
+    public void refreshesHotPagesDueWithoutRequest() throws Exception {
+        final CountingCmsService service = new CountingCmsService();
+        final CachedCmsService cachedService = CachedCmsService.builder(service)
+                .ttl(100, TimeUnit.SECONDS)
+                .refreshAhead(10, 0.8)
+                .clock(now::get)
+                .build();
+        get(cachedService.page("home", emptyList()));
+        now.addAndGet(TimeUnit.SECONDS.toMillis(50));
+        get(cachedService.page("footer", emptyList()));
+
+        now.addAndGet(TimeUnit.SECONDS.toMillis(30));
+        cachedService.refreshHotPages().toCompletableFuture().get();
+
+        assertThat(service.refreshCount.get()).as("only home is due").isEqualTo(1);
+    }
+
+    @Test
+    public void prefetchesHotPagesOfPreviousRun() throws Exception {
+        final CachedCmsService previousRun = CachedCmsService.builder(new CountingCmsService())
+                .refreshAhead(2, 0.8)
+                .clock(now::get)
+                .build();
+        for (int i = 0; i < 3; i++) {
+            get(previousRun.page("home", singletonList(Locale.GERMANY)));
+            get(previousRun.page("footer", emptyList()));
+        }
+        get(previousRun.page("imprint", emptyList()));
+        final CountingCmsService service = new CountingCmsService();
+        final CachedCmsService cachedService = CachedCmsService.builder(service)
+                .refreshAhead(2, 0.8)
+                .clock(now::get)
+                .build();
+
+        cachedService.prefetch(previousRun.hotPages()).toCompletableFuture().get();
+        get(cachedService.page("home", singletonList(Locale.GERMANY)));
+        get(cachedService.page("footer", emptyList()));
+
+        assertThat(service.pageCount.get()).isEqualTo(2);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void hotPagesNeedRefreshAhead() throws Exception {
+        CachedCmsService.builder(new CountingCmsService()).build().hotPages();
+    }
+
+    private static class CountingCmsService implements CmsService {
+        private final AtomicInteger pageCount = new AtomicInteger();
+        private final AtomicInteger refreshCount = new AtomicInteger();
+
+        @Override
+        public CompletionStage<Optional<CmsPage>> page(final String pageKey, final List<Locale> locales) {
+            pageCount.incrementAndGet();
+            return CompletableFuture.completedFuture(pageKey.startsWith("missing")
+                    ? Optional.empty()
+                    : Optional.of(page(pageKey)));
+        }
+
+        @Override
+        public CompletionStage<Optional<CmsPage>> refresh(final String pageKey, final List<Locale> locales,
+                                                          final CmsPage cachedPage) {
+            refreshCount.incrementAndGet();
+            return CompletableFuture.completedFuture(Optional.of(cachedPage));
+        }
+
+        private static CmsPage page(final String pageKey) {
+            final Map<String, String> fields = new HashMap<>();
+            fields.put("key", pageKey);
+            fields.put("description", "*" + pageKey + "*");
+            fields.put("image", "//images/" + pageKey + ".jpg");
+            final String variantUrl = fields.get("image") + "?w=320&fm=webp";
+            return new CmsPage() {
+                @Override
+                public Optional<String> field(final String path) {
+                    return Optional.ofNullable(fields.get(path));
+                }
+
+                @Override
+                public Optional<String> html(final String path) {
+                    return path.equals("description")
+                            ? Optional.of("<p><em>" + pageKey + "</em></p>")
+                            : Optional.empty();
+                }
+
+                @Override
+                public Optional<CmsAsset> asset(final String path) {
+                    return path.equals("image")
+                            ? Optional.of(CmsAsset.builder(fields.get("image"))
+                                    .contentType("image/jpeg")
+                                    .dimensions(1920, 1080)
+                                    .variant(CmsAsset.ImageVariant.of(variantUrl, 320, "webp"))
+                                    .build())
+                            : Optional.empty();
+                }
+
+                @Override
+                public Optional<Map<String, String>> allFields() {
+                    return Optional.of(fields);
+                }
+            };
+        }
+    }
+
+    private static class VersionedCmsService implements CmsService {
+        private final AtomicInteger version = new AtomicInteger();
+        private final AtomicInteger refreshCount = new AtomicInteger();
+
+        @Override
+        public CompletionStage<Optional<CmsPage>> page(final String pageKey, final List<Locale> locales) {
+            final Map<String, String> fields = new HashMap<>();
+            fields.put("key", pageKey);
+            return CompletableFuture.completedFuture(Optional.of(
+                    CmsPageSnapshot.of(fields, String.valueOf(version.get()), null)));
+        }
+
+        @Override
+        public CompletionStage<Optional<CmsPage>> refresh(final String pageKey, final List<Locale> locales,
+                                                          final CmsPage cachedPage) {
+            refreshCount.incrementAndGet();
+            return page(pageKey, locales);
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CmsAssetTest {
+
+    private final CmsAsset asset = CmsAsset.builder("//img/banner.jpg")
+            .contentType("image/jpeg")
+            .dimensions(800, 400)
+            .variant(CmsAsset.ImageVariant.of("//img/banner.jpg?w=320&fm=avif", 320, "avif"))
+            .variant(CmsAsset.ImageVariant.of("//img/banner.jpg?w=800&fm=avif", 800, "avif"))
+            .variant(CmsAsset.ImageVariant.of("//img/banner.jpg?w=320&fm=webp", 320, "webp"))
+            .build();
+
+    @Test
+    public void listsVariantsOfFormatInSrcset() throws Exception {
+        assertThat(asset.srcset("avif"))
+                .isEqualTo("//img/banner.jpg?w=320&fm=avif 320w, //img/banner.jpg?w=800&fm=avif 800w");
+        assertThat(asset.srcset("webp")).isEqualTo("//img/banner.jpg?w=320&fm=webp 320w");
+        assertThat(asset.srcset("png")).isEmpty();
+    }
+
+    @Test
+    public void providesVariantsOfFormat() throws Exception {
+        assertThat(asset.variants()).hasSize(3);
+        assertThat(asset.variants("webp"))
+                .containsExactly(CmsAsset.ImageVariant.of("//img/banner.jpg?w=320&fm=webp", 320, "webp"));
+    }
+
+    @Test
+    public void providesKnownMetadataOnly() throws Exception {
+        assertThat(asset.url()).isEqualTo("//img/banner.jpg");
+        assertThat(asset.contentType()).hasValue("image/jpeg");
+        assertThat(asset.width()).hasValue(800);
+        assertThat(asset.height()).hasValue(400);
+        assertThat(asset.size()).isNotPresent();
+    }
+}
@@ -0,0 +1,164 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public class CmsPageSnapshotTest {
+
+    @Test
+    public void restoresSerializedFields() throws Exception {
+        final Map<String, String> fields = new HashMap<>();
+        fields.put("title", "Zażółć gęślą jaźń");
+        fields.put("banner[1].image", "//host/image.png");
+        fields.put("empty", "");
+
+        final CmsPageSnapshot snapshot = CmsPageSnapshot.fromBytes(CmsPageSnapshot.of(fields).toBytes());
+
+        assertThat(snapshot.field("title")).hasValue("Zażółć gęślą jaźń");
+        assertThat(snapshot.field("banner[1].image")).hasValue("//host/image.png");
+        assertThat(snapshot.field("empty")).hasValue("");
+        assertThat(snapshot.field("missing")).isNotPresent();
+        assertThat(snapshot.allFields()).contains(fields);
+    }
+
+    @Test
+    public void restoresSerializedVersion() throws Exception {
+        final Instant lastModified = Instant.parse("2017-03-01T10:15:30.123Z");
+        final CmsPageSnapshot snapshot = CmsPageSnapshot.fromBytes(
+                CmsPageSnapshot.of(new HashMap<>(), "abc123", lastModified).toBytes());
+
+        assertThat(snapshot.version()).hasValue("abc123");
+        assertThat(snapshot.lastModified()).hasValue(lastModified);
+    }
+
+    @Test
+    public void restoresSnapshotWithoutVersion() throws Exception {
+        final CmsPageSnapshot snapshot = CmsPageSnapshot.fromBytes(CmsPageSnapshot.of(new HashMap<>()).toBytes());
+
+        assertThat(snapshot.version()).isNotPresent();
+        assertThat(snapshot.lastModified()).isNotPresent();
+    }
+
+    @Test
+    public void copiesPageProvidingAllFields() throws Exception {
+        final CmsPage page = new CmsPage() {
+            @Override
+            public Optional<String> field(final String path) {
+                return Optional.of("foo");
+            }
+
+            @Override
+            public Optional<Map<String, String>> allFields() {
+                final Map<String, String> fields = new HashMap<>();
+                fields.put("path", "foo");
+                return Optional.of(fields);
+            }
+
+            @Override
+            public Optional<String> version() {
+                return Optional.of("v1");
+            }
+        };
+
+        assertThat(CmsPageSnapshot.of(page).flatMap(snapshot -> snapshot.field("path"))).hasValue("foo");
+        assertThat(CmsPageSnapshot.of(page).flatMap(CmsPage::version)).hasValue("v1");
+    }
+
+    @Test
+    public void keepsRenderedHtmlOfCopiedPage() throws Exception {
+        final CmsPage page = new CmsPage() {
+            @Override
+            public Optional<String> field(final String path) {
+                return allFields().map(fields -> fields.get(path));
+            }
+
+            @Override
+            public Optional<String> html(final String path) {
+                return path.equals("description") ? Optional.of("<p><em>foo</em></p>") : Optional.empty();
+            }
+
+            @Override
+            public Optional<Map<String, String>> allFields() {
+                final Map<String, String> fields = new HashMap<>();
+                fields.put("title", "Foo");
+                fields.put("description", "*foo*");
+                return Optional.of(fields);
+            }
+        };
+
+        final CmsPageSnapshot snapshot = CmsPageSnapshot.fromBytes(CmsPageSnapshot.of(page).get().toBytes());
+
+        assertThat(snapshot.html("description")).hasValue("<p><em>foo</em></p>");
+        assertThat(snapshot.html("title")).isNotPresent();
+        assertThat(snapshot.field("description")).hasValue("*foo*");
+    }
+
+    @Test
+    public void keepsAssetsOfCopiedPage() throws Exception {
+        final CmsAsset image = CmsAsset.builder("//host/image.png")
+                .contentType("image/png")
+                .size(123_456L)
+                .dimensions(800, 600)
+                .variant(CmsAsset.ImageVariant.of("//host/image.png?w=320&fm=webp", 320, "webp"))
+                .variant(CmsAsset.ImageVariant.of("//host/image.png?w=640&fm=webp", 640, "webp"))
+                .build();
+        final CmsAsset file = CmsAsset.builder("//host/terms.pdf").build();
+        final CmsPage page = new CmsPage() {
+            @Override
+            public Optional<String> field(final String path) {
+                return allFields().map(fields -> fields.get(path));
+            }
+
+            @Override
+            public Optional<CmsAsset> asset(final String path) {
+                return Optional.ofNullable(path.equals("image") ? image : path.equals("terms") ? file : null);
+            }
+
+            @Override
+            public Optional<Map<String, String>> allFields() {
+                final Map<String, String> fields = new HashMap<>();
+                fields.put("title", "Foo");
+                fields.put("image", "//host/image.png");
+                fields.put("terms", "//host/terms.pdf");
+                return Optional.of(fields);
+            }
+        };
+
+        final CmsPageSnapshot snapshot = CmsPageSnapshot.fromBytes(CmsPageSnapshot.of(page).get().toBytes());
+
+        final CmsAsset restoredImage = snapshot.asset("image").get();
+        assertThat(restoredImage.url()).isEqualTo("//host/image.png");
+        assertThat(restoredImage.contentType()).hasValue("image/png");
+        assertThat(restoredImage.size()).hasValue(123_456L);
+        assertThat(restoredImage.width()).hasValue(800);
+        assertThat(restoredImage.height()).hasValue(600);
+        assertThat(restoredImage.variants()).isEqualTo(image.variants());
+        final CmsAsset restoredFile = snapshot.asset("terms").get();
+        assertThat(restoredFile.contentType()).isNotPresent();
+        assertThat(restoredFile.size()).isNotPresent();
+        assertThat(restoredFile.width()).isNotPresent();
+        assertThat(restoredFile.variants()).isEmpty();
+        assertThat(snapshot.asset("title")).isNotPresent();
+    }
+
+    @Test
+    public void cannotCopyPageNotProvidingAllFields() throws Exception {
+        final CmsPage page = (f -> Optional.of("foo"));
+
+        assertThat(CmsPageSnapshot.of(page)).isNotPresent();
+    }
+
+    @Test
+    public void failsOnMalformedBytes() throws Exception {
+        final Throwable thrown = catchThrowable(() -> CmsPageSnapshot.fromBytes(new byte[]{4, 0, 0}));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+}
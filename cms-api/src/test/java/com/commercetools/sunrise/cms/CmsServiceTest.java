@@ -0,0 +1,24 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class CmsServiceTest {
+
+    @Test
+    public void refreshRetrievesPageAnewByDefault() throws Exception {
+        final CmsPage freshPage = (f -> Optional.of("fresh"));
+        final CmsPage cachedPage = (f -> Optional.of("cached"));
+        final CmsService cmsService = (pageKey, locales) -> CompletableFuture.completedFuture(Optional.of(freshPage));
+
+        final Optional<CmsPage> page =
+                cmsService.refresh("aPage", emptyList(), cachedPage).toCompletableFuture().join();
+
+        assertThat(page).contains(freshPage);
+    }
+}
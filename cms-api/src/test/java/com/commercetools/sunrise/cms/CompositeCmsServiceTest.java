@@ -0,0 +1,181 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static com.commercetools.sunrise.cms.CompositeCmsService.Strategy.FIRST_NON_EMPTY;
+import static com.commercetools.sunrise.cms.CompositeCmsService.Strategy.OVERLAY;
+import static com.commercetools.sunrise.cms.CompositeCmsService.Strategy.PRIORITY;
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public class CompositeCmsServiceTest {
+
+    private final CompletableFuture<Optional<CmsPage>> first = new CompletableFuture<>();
+    private final CompletableFuture<Optional<CmsPage>> second = new CompletableFuture<>();
+    private final CompletableFuture<Optional<CmsPage>> third = new CompletableFuture<>();
+
+    @Test
+    public void firstNonEmptyCompletesWithFastestPage() throws Exception {
+        final CompletableFuture<Optional<CmsPage>> result = page(FIRST_NON_EMPTY);
+        final CmsPage page = page("title", "second");
+
+        first.complete(Optional.empty());
+        second.complete(Optional.of(page));
+
+        assertThat(result.join()).hasValue(page);
+        assertThat(third.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void firstNonEmptyIgnoresFailureIfPageIsFound() throws Exception {
+        final CompletableFuture<Optional<CmsPage>> result = page(FIRST_NON_EMPTY);
+        final CmsPage page = page("title", "third");
+
+        first.completeExceptionally(new CmsServiceException("failed", null));
+        second.complete(Optional.empty());
+        third.complete(Optional.of(page));
+
+        assertThat(result.join()).hasValue(page);
+    }
+
+    @Test
+    public void failsWithFailureOfServiceIfNoPageIsFound() throws Exception {
+        final CompletableFuture<Optional<CmsPage>> result = page(FIRST_NON_EMPTY);
+        final CmsServiceException failure = new CmsServiceException("failed", null);
+
+        first.complete(Optional.empty());
+        second.completeExceptionally(failure);
+        third.complete(Optional.empty());
+
+        assertThat(catchThrowable(result::join).getCause()).isSameAs(failure);
+    }
+
+    @Test
+    public void treatsServiceFailingRightAwayAsFailedService() throws Exception {
+        final CmsServiceException failure = new CmsServiceException("failed", null);
+        final CmsService service = CompositeCmsService.of(PRIORITY, asList(
+                (pageKey, locales) -> first,
+                (pageKey, locales) -> {
+                    throw failure;
+                },
+                (pageKey, locales) -> third));
+
+        final CompletableFuture<Optional<CmsPage>> result = service.page("home", emptyList()).toCompletableFuture();
+        first.complete(Optional.empty());
+        third.complete(Optional.empty());
+
+        assertThat(catchThrowable(result::join).getCause()).isSameAs(failure);
+    }
+
+    @Test
+    public void cancelsStartedRequestsIfServiceFailsRightAway() throws Exception {
+        final CmsPage page = page("title", "first");
+        final CmsService service = CompositeCmsService.of(PRIORITY, asList(
+                (pageKey, locales) -> first,
+                (pageKey, locales) -> second,
+                (pageKey, locales) -> {
+                    throw new IllegalStateException("failed");
+                }));
+
+        final CompletableFuture<Optional<CmsPage>> result = service.page("home", emptyList()).toCompletableFuture();
+        first.complete(Optional.of(page));
+
+        assertThat(result.join()).hasValue(page);
+        assertThat(second.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void isEmptyIfNoServiceProvidesPage() throws Exception {
+        final CompletableFuture<Optional<CmsPage>> result = page(PRIORITY);
+
+        first.complete(Optional.empty());
+        second.complete(Optional.empty());
+        third.complete(Optional.empty());
+
+        assertThat(result.join()).isNotPresent();
+    }
+
+    @Test
+    public void priorityWaitsForServicesOfHigherPriority() throws Exception {
+        final CompletableFuture<Optional<CmsPage>> result = page(PRIORITY);
+        final CmsPage firstPage = page("title", "first");
+
+        second.complete(Optional.of(page("title", "second")));
+
+        assertThat(result.isDone()).isFalse();
+
+        first.complete(Optional.of(firstPage));
+
+        assertThat(result.join()).hasValue(firstPage);
+    }
+
+    @Test
+    public void priorityCancelsServicesOfLowerPriority() throws Exception {
+        final CompletableFuture<Optional<CmsPage>> result = page(PRIORITY);
+        final CmsPage secondPage = page("title", "second");
+
+        first.complete(Optional.empty());
+        second.complete(Optional.of(secondPage));
+
+        assertThat(result.join()).hasValue(secondPage);
+        assertThat(third.isCancelled()).isTrue();
+    }
+
+    @Test
+    public void overlayMergesFieldsOfAllPages() throws Exception {
+        final CompletableFuture<Optional<CmsPage>> result = page(OVERLAY);
+        final Map<String, String> marketFields = new HashMap<>();
+        marketFields.put("title", "market title");
+        final Map<String, String> globalFields = new HashMap<>();
+        globalFields.put("title", "global title");
+        globalFields.put("footer", "global footer");
+
+        first.complete(Optional.of(CmsPageSnapshot.of(marketFields, "market", Instant.ofEpochSecond(2))));
+        second.complete(Optional.empty());
+        third.complete(Optional.of(CmsPageSnapshot.of(globalFields, "global", Instant.ofEpochSecond(1))));
+        final CmsPage page = result.join().get();
+
+        assertThat(page.field("title")).hasValue("market title");
+        assertThat(page.field("footer")).hasValue("global footer");
+        assertThat(page.field("missing")).isNotPresent();
+        assertThat(page.allFields().get())
+                .containsEntry("title", "market title")
+                .containsEntry("footer", "global footer")
+                .hasSize(2);
+        assertThat(page.version()).hasValue("market+global");
+        assertThat(page.lastModified()).hasValue(Instant.ofEpochSecond(2));
+    }
+
+    @Test
+    public void cancellationIsPropagatedToAllServices() throws Exception {
+        final CompletableFuture<Optional<CmsPage>> result = page(OVERLAY);
+
+        result.cancel(false);
+
+        assertThat(first.isCancelled()).isTrue();
+        assertThat(second.isCancelled()).isTrue();
+        assertThat(third.isCancelled()).isTrue();
+    }
+
+    private CompletableFuture<Optional<CmsPage>> page(final CompositeCmsService.Strategy strategy) {
+        final CmsService service = CompositeCmsService.of(strategy, asList(
+                (pageKey, locales) -> first,
+                (pageKey, locales) -> second,
+                (pageKey, locales) -> third));
+        return service.page("home", emptyList()).toCompletableFuture();
+    }
+
+    private static CmsPage page(final String path, final String value) {
+        final Map<String, String> fields = new HashMap<>();
+        fields.put(path, value);
+        return CmsPageSnapshot.of(fields);
+    }
+}
@@ -0,0 +1,63 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public class ConsistentHashRingTest {
+
+    @Test
+    public void assignsKeysRegardlessOfOrderOfNodes() throws Exception {
+        final ConsistentHashRing<String> ring = new ConsistentHashRing<>(asList("a:1", "b:1", "c:1"), 100);
+        final ConsistentHashRing<String> reordered = new ConsistentHashRing<>(asList("c:1", "a:1", "b:1"), 100);
+
+        for (int i = 0; i < 1000; i++) {
+            assertThat(reordered.owner("page-" + i)).isEqualTo(ring.owner("page-" + i));
+        }
+    }
+
+    @Test
+    public void spreadsKeysEvenly() throws Exception {
+        final List<String> nodes = asList("a:1", "b:1", "c:1", "d:1");
+        final ConsistentHashRing<String> ring = new ConsistentHashRing<>(nodes, 100);
+        final Map<String, Integer> keysPerNode = new HashMap<>();
+
+        for (int i = 0; i < 10_000; i++) {
+            keysPerNode.merge(ring.owner("page-" + i), 1, Integer::sum);
+        }
+
+        assertThat(keysPerNode).hasSize(4);
+        assertThat(keysPerNode.values()).allMatch(keys -> keys > 1500 && keys < 3500);
+    }
+
+    @Test
+    public void addedNodeTakesKeysOnlyFromOtherNodes() throws Exception {
+        final ConsistentHashRing<String> ring = new ConsistentHashRing<>(asList("a:1", "b:1", "c:1"), 100);
+        final ConsistentHashRing<String> extended = new ConsistentHashRing<>(asList("a:1", "b:1", "c:1", "d:1"), 100);
+        int movedKeys = 0;
+
+        for (int i = 0; i < 10_000; i++) {
+            final String owner = extended.owner("page-" + i);
+            if (!owner.equals(ring.owner("page-" + i))) {
+                assertThat(owner).isEqualTo("d:1");
+                movedKeys++;
+            }
+        }
+
+        assertThat(movedKeys).isBetween(1500, 3500);
+    }
+
+    @Test
+    public void requiresNodes() throws Exception {
+        final Throwable thrown = catchThrowable(() -> new ConsistentHashRing<>(emptyList(), 100));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+}
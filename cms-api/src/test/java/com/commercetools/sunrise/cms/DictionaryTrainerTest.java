@@ -0,0 +1,63 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DictionaryTrainerTest {
+
+    @Test
+    public void prefersContentSharedBySamples() throws Exception {
+        final List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            samples.add(bytes("unique " + i + " random " + (i * 7919) + " | shared content of every sample | " + i));
+        }
+
+        final String dictionary = string(DictionaryTrainer.train(samples, 48));
+
+        assertThat(dictionary).contains("shared content of every sample");
+        assertThat(dictionary).doesNotContain("unique");
+    }
+
+    @Test
+    public void containsSharedContentOnlyOnce() throws Exception {
+        final List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            samples.add(bytes(i + " shared content of every sample " + i));
+        }
+
+        final String dictionary = string(DictionaryTrainer.train(samples, 1024));
+
+        assertThat(dictionary.indexOf("content of every")).isEqualTo(dictionary.lastIndexOf("content of every"));
+    }
+
+    @Test
+    public void isLimitedToGivenSize() throws Exception {
+        final List<byte[]> samples = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            samples.add(bytes("first shared part of the samples, second shared part of the samples, " + i));
+        }
+
+        assertThat(DictionaryTrainer.train(samples, 60).length).isLessThanOrEqualTo(60);
+    }
+
+    @Test
+    public void isEmptyIfSamplesHaveNothingInCommon() throws Exception {
+        final byte[] dictionary = DictionaryTrainer.train(asList(bytes("first sample"), bytes("other example")), 1024);
+
+        assertThat(dictionary).isEmpty();
+    }
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String string(final byte[] bytes) {
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,68 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FetchExecutorsTest {
+
+    @Test
+    public void runsFetchesOnNamedThreads() throws Exception {
+        final ExecutorService executor = FetchExecutors.threadPerFetch("test-fetch");
+        try {
+            final String threadName = CompletableFuture.supplyAsync(() -> Thread.currentThread().getName(), executor)
+                    .get(5, TimeUnit.SECONDS);
+
+            assertThat(threadName).startsWith("test-fetch-");
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void runsBlockedFetchesAtOnce() throws Exception {
+        final int fetches = 100;
+        final CountDownLatch started = new CountDownLatch(fetches);
+        final CountDownLatch released = new CountDownLatch(1);
+        final ExecutorService executor = FetchExecutors.threadPerFetch("test-fetch");
+        try {
+            for (int i = 0; i < fetches; i++) {
+                executor.execute(() -> {
+                    started.countDown();
+                    awaitQuietly(released);
+                });
+            }
+
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            released.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void runsFetchesOnDaemonPlatformThreads() throws Exception {
+        final ExecutorService executor = FetchExecutors.platformThreadPerFetch("test-fetch");
+        try {
+            final Boolean daemon = CompletableFuture.supplyAsync(() -> Thread.currentThread().isDaemon(), executor)
+                    .get(5, TimeUnit.SECONDS);
+
+            assertThat(daemon).isTrue();
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void awaitQuietly(final CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import static com.commercetools.sunrise.cms.FetchScheduler.Priority.BACKGROUND;
+import static com.commercetools.sunrise.cms.FetchScheduler.Priority.INTERACTIVE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public class FetchSchedulerTest {
+
+    private final List<String> startedFetches = new ArrayList<>();
+    private final List<CompletableFuture<String>> pendingResults = new ArrayList<>();
+
+    @Test
+    public void startsFetchesUpToTheLimit() throws Exception {
+        final FetchScheduler scheduler = FetchScheduler.of(2, 1);
+
+        final CompletableFuture<String> first = scheduler.schedule(INTERACTIVE, () -> fetch("first"));
+        scheduler.schedule(INTERACTIVE, () -> fetch("second"));
+        scheduler.schedule(INTERACTIVE, () -> fetch("third"));
+
+        assertThat(startedFetches).containsExactly("first", "second");
+        assertThat(scheduler.queuedFetches(INTERACTIVE)).isEqualTo(1);
+
+        pendingResults.get(0).complete("done");
+
+        assertThat(first.join()).isEqualTo("done");
+        assertThat(startedFetches).containsExactly("first", "second", "third");
+        assertThat(scheduler.runningFetches()).isEqualTo(2);
+    }
+
+    @Test
+    public void startsInteractiveFetchesAheadOfBackgroundOnes() throws Exception {
+        final FetchScheduler scheduler = FetchScheduler.of(2, 1);
+        scheduler.schedule(INTERACTIVE, () -> fetch("interactive1"));
+        scheduler.schedule(INTERACTIVE, () -> fetch("interactive2"));
+        scheduler.schedule(BACKGROUND, () -> fetch("background"));
+        scheduler.schedule(INTERACTIVE, () -> fetch("interactive3"));
+
+        pendingResults.get(0).complete("done");
+
+        assertThat(startedFetches).containsExactly("interactive1", "interactive2", "interactive3");
+
+        pendingResults.get(1).complete("done");
+
+        assertThat(startedFetches).containsExactly("interactive1", "interactive2", "interactive3", "background");
+    }
+
+    @Test
+    public void limitsBackgroundFetchesToTheirShare() throws Exception {
+        final FetchScheduler scheduler = FetchScheduler.of(3, 1);
+
+        scheduler.schedule(BACKGROUND, () -> fetch("background1"));
+        scheduler.schedule(BACKGROUND, () -> fetch("background2"));
+        scheduler.schedule(INTERACTIVE, () -> fetch("interactive"));
+
+        assertThat(startedFetches).containsExactly("background1", "interactive");
+        assertThat(scheduler.queuedFetches(BACKGROUND)).isEqualTo(1);
+    }
+
+    @Test
+    public void skipsFetchCancelledWhileQueued() throws Exception {
+        final FetchScheduler scheduler = FetchScheduler.of(2, 1);
+        scheduler.schedule(INTERACTIVE, () -> fetch("first"));
+        scheduler.schedule(INTERACTIVE, () -> fetch("second"));
+        final CompletableFuture<String> cancelled = scheduler.schedule(INTERACTIVE, () -> fetch("cancelled"));
+        scheduler.schedule(INTERACTIVE, () -> fetch("third"));
+
+        cancelled.cancel(false);
+        pendingResults.get(0).complete("done");
+
+        assertThat(startedFetches).containsExactly("first", "second", "third");
+    }
+
+    @Test
+    public void cancelsStartedFetch() throws Exception {
+        final FetchScheduler scheduler = FetchScheduler.of(2, 1);
+        final CompletableFuture<String> fetch = scheduler.schedule(INTERACTIVE, () -> fetch("first"));
+
+        fetch.cancel(false);
+
+        assertThat(pendingResults.get(0).isCancelled()).isTrue();
+        assertThat(scheduler.runningFetches()).isZero();
+    }
+
+    @Test
+    public void releasesSlotOfFailedFetch() throws Exception {
+        final FetchScheduler scheduler = FetchScheduler.of(2, 1);
+        final RuntimeException failure = new RuntimeException("failed");
+
+        final CompletableFuture<String> fetch = scheduler.schedule(INTERACTIVE, () -> {
+            throw failure;
+        });
+
+        assertThat(catchThrowable(fetch::join).getCause()).isSameAs(failure);
+        assertThat(scheduler.runningFetches()).isZero();
+    }
+
+    @Test
+    public void startsFetchesCompletingSynchronouslyOneAfterAnother() throws Exception {
+        final FetchScheduler scheduler = FetchScheduler.of(2, 1);
+
+        for (int i = 0; i < 10_000; i++) {
+            scheduler.schedule(BACKGROUND, () -> CompletableFuture.completedFuture("done"));
+        }
+
+        assertThat(scheduler.runningFetches()).isZero();
+        assertThat(scheduler.queuedFetches(BACKGROUND)).isZero();
+    }
+
+    @Test
+    public void requiresRoomForInteractiveFetches() throws Exception {
+        final Throwable thrown = catchThrowable(() -> FetchScheduler.of(2, 2));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private CompletableFuture<String> fetch(final String name) {
+        startedFetches.add(name);
+        final CompletableFuture<String> result = new CompletableFuture<>();
+        pendingResults.add(result);
+        return result;
+    }
+}
@@ -0,0 +1,46 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FrequencySketchTest {
+
+    @Test
+    public void neverUnderestimates() throws Exception {
+        final FrequencySketch sketch = new FrequencySketch(100);
+        for (int i = 0; i < 100; i++) {
+            for (int j = 0; j <= i % 5; j++) {
+                sketch.increment("key" + i);
+            }
+        }
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(sketch.estimate("key" + i)).isGreaterThanOrEqualTo(i % 5 + 1);
+        }
+    }
+
+    @Test
+    public void estimatesUnseenKeysLow() throws Exception {
+        final FrequencySketch sketch = new FrequencySketch(100);
+        for (int i = 0; i < 50; i++) {
+            sketch.increment("frequent");
+        }
+
+        assertThat(sketch.estimate("frequent")).isEqualTo(50);
+        assertThat(sketch.estimate("unseen")).isLessThan(50);
+    }
+
+    @Test
+    public void halvesCountersOverTime() throws Exception {
+        final FrequencySketch sketch = new FrequencySketch(16);
+        for (int i = 0; i < 20; i++) {
+            sketch.increment("old");
+        }
+        for (int i = 0; i < 10_000; i++) {
+            sketch.increment("new" + i);
+        }
+
+        assertThat(sketch.estimate("old")).isLessThan(20);
+    }
+}
@@ -0,0 +1,141 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public class HotPageTrackerTest {
+
+    private final FrequencySketch frequency = new FrequencySketch(1000);
+
+    @Test
+    public void tracksMostRequestedPages() throws Exception {
+        final HotPageTracker tracker = new HotPageTracker(frequency, 3);
+
+        for (int i = 0; i < 100; i++) {
+            request(tracker, key("cold-" + i));
+            if (i < 50) {
+                request(tracker, key("home"));
+            }
+            if (i < 40) {
+                request(tracker, key("footer"));
+            }
+            if (i < 30) {
+                request(tracker, key("campaign"));
+            }
+        }
+
+        assertThat(tracker.hottest()).containsExactly(key("home"), key("footer"), key("campaign"));
+        assertThat(tracker.isHot(key("home"))).isTrue();
+    }
+
+    @Test
+    public void keepsNumberOfCandidatesBounded() throws Exception {
+        final HotPageTracker tracker = new HotPageTracker(frequency, 10);
+        final List<PageCacheKey> keys = IntStream.range(0, 10_000)
+                .mapToObj(i -> key("page-" + i))
+                .collect(Collectors.toList());
+
+        keys.forEach(key -> request(tracker, key));
+
+        assertThat(keys.stream().filter(tracker::isHot).count()).isLessThan(20);
+        assertThat(tracker.hottest()).hasSize(10);
+    }
+
+    @Test
+    public void pageRequestedOnceDoesNotReplaceHotPage() throws Exception {
+        final HotPageTracker tracker = new HotPageTracker(frequency, 1);
+        for (int i = 0; i < 5; i++) {
+            request(tracker, key("home"));
+        }
+
+        request(tracker, key("once"));
+
+        assertThat(tracker.isHot(key("once"))).isFalse();
+        assertThat(tracker.hottest()).containsExactly(key("home"));
+    }
+
+    @Test
+    public void admitsPageBecomingPopularAfterTrafficShifted() throws Exception {
+        final HotPageTracker tracker = new HotPageTracker(frequency, 1);
+        for (int i = 0; i < 200; i++) {
+            request(tracker, key("old"));
+        }
+
+        for (int i = 0; i < 50_000; i++) {
+            request(tracker, key(i % 200 == 0 ? "new" : "cold-" + i));
+        }
+
+        assertThat(tracker.isHot(key("new"))).isTrue();
+        assertThat(tracker.hottest()).containsExactly(key("new"));
+    }
+
+    @Test
+    public void tracksPagesRequestedConcurrently() throws Exception {
+        final HotPageTracker tracker = new HotPageTracker(frequency, 5);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < 4; thread++) {
+                final int seed = thread;
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        request(tracker, key(i % 2 == 0 ? "home" : "page-" + seed + "-" + i));
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        assertThat(tracker.hottest()).hasSize(5).startsWith(key("home"));
+    }
+
+    @Test
+    public void serializesPages() throws Exception {
+        final List<PageCacheKey> keys = Arrays.asList(
+                new PageCacheKey("home", Arrays.asList(Locale.GERMANY, Locale.ENGLISH)),
+                new PageCacheKey("footer", emptyList()));
+
+        assertThat(HotPageTracker.fromBytes(HotPageTracker.toBytes(keys))).isEqualTo(keys);
+    }
+
+    @Test
+    public void rejectsMalformedPages() throws Exception {
+        assertThat(catchThrowable(() -> HotPageTracker.fromBytes(new byte[]{1, 0, 0})))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> HotPageTracker.fromBytes(new byte[]{42})))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void rejectsNonPositiveCapacity() throws Exception {
+        assertThat(catchThrowable(() -> new HotPageTracker(frequency, 0)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void request(final HotPageTracker tracker, final PageCacheKey key) {
+        frequency.increment(key);
+        tracker.offer(key);
+    }
+
+    private static PageCacheKey key(final String pageKey) {
+        return new PageCacheKey(pageKey, singletonList(Locale.GERMANY));
+    }
+}
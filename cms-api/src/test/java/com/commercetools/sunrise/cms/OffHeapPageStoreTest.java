@@ -0,0 +1,59 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class OffHeapPageStoreTest {
+
+    @Test
+    public void storesValuesSpanningSeveralBlocks() throws Exception {
+        final OffHeapPageStore<String> store = new OffHeapPageStore<>(64, 8);
+        final byte[] value = "a value longer than one block".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(store.put("key", value)).isTrue();
+
+        assertThat(store.get("key").map(Arrays::toString)).hasValue(Arrays.toString(value));
+        assertThat(store.get("other")).isNotPresent();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedValues() throws Exception {
+        final OffHeapPageStore<String> store = new OffHeapPageStore<>(32, 8);
+        store.put("first", new byte[16]);
+        store.put("second", new byte[16]);
+        store.get("first");
+
+        store.put("third", new byte[9]);
+
+        assertThat(store.get("first")).isPresent();
+        assertThat(store.get("second")).isNotPresent();
+        assertThat(store.get("third")).isPresent();
+        assertThat(store.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void doesNotStoreValuesBiggerThanStore() throws Exception {
+        final OffHeapPageStore<String> store = new OffHeapPageStore<>(32, 8);
+        store.put("first", new byte[8]);
+
+        assertThat(store.put("huge", new byte[33])).isFalse();
+
+        assertThat(store.get("first")).isPresent();
+        assertThat(store.get("huge")).isNotPresent();
+    }
+
+    @Test
+    public void replacesValueOfSameKey() throws Exception {
+        final OffHeapPageStore<String> store = new OffHeapPageStore<>(16, 8);
+        store.put("key", new byte[16]);
+
+        store.put("key", new byte[]{42});
+
+        assertThat(store.get("key").map(value -> value[0])).hasValue((byte) 42);
+        assertThat(store.size()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,79 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public class PageCompressorTest {
+
+    @Test
+    public void restoresCompressedBytes() throws Exception {
+        final PageCompressor compressor = PageCompressor.withoutDictionary();
+        final byte[] bytes = page(1).toBytes();
+
+        final byte[] compressed = compressor.compress(bytes);
+
+        assertThat(compressed.length).isLessThan(bytes.length);
+        assertThat(compressor.decompress(compressed)).isEqualTo(bytes);
+    }
+
+    @Test
+    public void restoresEmptyBytes() throws Exception {
+        final PageCompressor compressor = PageCompressor.withoutDictionary();
+
+        assertThat(compressor.decompress(compressor.compress(new byte[0]))).isEmpty();
+    }
+
+    @Test
+    public void trainedDictionaryImprovesCompressionOfOtherPages() throws Exception {
+        final List<CmsPage> samples = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            samples.add(page(i));
+        }
+        final PageCompressor trained = PageCompressor.trainedOn(samples, 4096);
+        final byte[] bytes = page(100).toBytes();
+
+        final byte[] compressed = trained.compress(bytes);
+
+        assertThat(trained.dictionary().length).isPositive().isLessThanOrEqualTo(4096);
+        assertThat(compressed.length).isLessThan(PageCompressor.withoutDictionary().compress(bytes).length / 2);
+        assertThat(trained.decompress(compressed)).isEqualTo(bytes);
+    }
+
+    @Test
+    public void restoresBytesWithKeptDictionary() throws Exception {
+        final PageCompressor trained = PageCompressor.trainedOn(Arrays.asList(page(1), page(2), page(3)), 1024);
+        final byte[] compressed = trained.compress(page(4).toBytes());
+
+        final PageCompressor restored = PageCompressor.withDictionary(trained.dictionary());
+
+        assertThat(restored.decompress(compressed)).isEqualTo(page(4).toBytes());
+    }
+
+    @Test
+    public void failsToRestoreBytesWithOtherDictionary() throws Exception {
+        final byte[] compressed = PageCompressor.withDictionary(page(1).toBytes()).compress(page(2).toBytes());
+
+        final Throwable thrown = catchThrowable(() -> PageCompressor.withoutDictionary().decompress(compressed));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static CmsPageSnapshot page(final int number) {
+        final Map<String, String> fields = new HashMap<>();
+        fields.put("content.title", "Article number " + number);
+        fields.put("content.body", "## Shipping and returns\n\nAll orders over **50 EUR** are shipped free of charge "
+                + "within " + (number % 5 + 1) + " working days. You can return any item within 30 days, "
+                + "see [our return policy](https://example.com/returns) for details.\n\n"
+                + "## Care instructions\n\nWash at " + (number % 3 * 10 + 30) + " degrees, do not tumble dry.");
+        fields.put("content.footer", "Questions? Contact our customer service at service@example.com.");
+        return CmsPageSnapshot.of(fields, "v" + number, null);
+    }
+}
@@ -0,0 +1,216 @@
+package com.commercetools.sunrise.cms;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public class PeerCmsServiceTest {
+
+    private static final List<Locale> LOCALES = singletonList(Locale.GERMANY);
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final List<PeerCmsService> nodes = new ArrayList<>();
+    private final Map<String, String> loadedBy = new ConcurrentHashMap<>();
+    private final Map<String, Integer> loadCounts = new ConcurrentHashMap<>();
+    private final List<InetSocketAddress> addresses = new ArrayList<>();
+
+    @After
+    public void tearDown() throws Exception {
+        nodes.forEach(PeerCmsService::close);
+        executor.shutdown();
+        scheduler.shutdownNow();
+    }
+
+    @Test
+    public void onlyOwnerLoadsPage() throws Exception {
+        startNodes(3);
+
+        for (int i = 0; i < 30; i++) {
+            for (PeerCmsService node : nodes) {
+                final CmsPage page = get(node.page("page-" + i, LOCALES)).get();
+                assertThat(page.field("key")).hasValue("page-" + i);
+            }
+        }
+
+        assertThat(loadCounts).hasSize(30);
+        assertThat(loadCounts.values()).containsOnly(3);
+        for (int i = 0; i < 30; i++) {
+            final String owner = loadedBy.get("page-" + i);
+            assertThat(nodes.get(Integer.parseInt(owner)).isOwner("page-" + i, LOCALES)).isTrue();
+        }
+        assertThat(loadedBy.values()).contains("0", "1", "2");
+    }
+
+    @Test
+    public void providesEmptyResultOfOwner() throws Exception {
+        startNodes(2);
+        final String pageKey = keyOwnedBy(1, "-missing");
+
+        assertThat(get(nodes.get(0).page(pageKey, LOCALES))).isNotPresent();
+    }
+
+    @Test
+    public void keepsCachedPageNotModifiedOnOwner() throws Exception {
+        startNodes(2);
+        final String pageKey = keyOwnedBy(1, "");
+        final CmsPage cachedPage = get(nodes.get(0).page(pageKey, LOCALES)).get();
+
+        final CmsPage refreshedPage = get(nodes.get(0).refresh(pageKey, LOCALES, cachedPage)).get();
+
+        assertThat(refreshedPage).isSameAs(cachedPage);
+    }
+
+    @Test
+    public void reportsFailureOfOwner() throws Exception {
+        startNodes(2);
+        final String pageKey = keyOwnedBy(1, "-failing");
+
+        final Throwable thrown = catchThrowable(() -> get(nodes.get(0).page(pageKey, LOCALES)));
+
+        assertThat(thrown.getCause()).isInstanceOf(CmsServiceException.class).hasMessageContaining("failed");
+    }
+
+    @Test
+    public void loadsPageItselfIfOwnerIsDown() throws Exception {
+        startNodes(2);
+        final String pageKey = keyOwnedBy(1, "");
+        nodes.get(1).close();
+
+        final CmsPage page = get(nodes.get(0).page(pageKey, LOCALES)).get();
+
+        assertThat(page.field("key")).hasValue(pageKey);
+        assertThat(loadedBy.get(pageKey)).isEqualTo("0");
+    }
+
+    @Test
+    public void failsIfOwnerDoesNotRespondInTime() throws Exception {
+        startNodes(2);
+        final String pageKey = keyOwnedBy(1, "-slow");
+
+        final Throwable thrown = catchThrowable(() -> get(nodes.get(0).page(pageKey, LOCALES)));
+
+        assertThat(thrown.getCause()).isInstanceOf(CmsServiceException.class);
+        assertThat(loadedBy.get(pageKey)).isEqualTo("1");
+        assertThat(loadCounts.get(pageKey)).isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotRetryTimedOutRequestOverNewConnection() throws Exception {
+        startNodes(2);
+        get(nodes.get(0).page(keyOwnedBy(1, ""), LOCALES));
+        final String pageKey = keyOwnedBy(1, "-slow");
+
+        catchThrowable(() -> get(nodes.get(0).page(pageKey, LOCALES)));
+
+        assertThat(loadCounts.get(pageKey)).isEqualTo(1);
+    }
+
+    @Test
+    public void retriesRequestOverNewConnectionIfOwnerRestarted() throws Exception {
+        startNodes(2);
+        get(nodes.get(0).page(keyOwnedBy(1, ""), LOCALES));
+        final InetSocketAddress ownerAddress = addresses.get(1);
+        nodes.get(1).close();
+        nodes.set(1, PeerCmsService.builder(loader("restarted"), ownerAddress, executor).peers(addresses).start());
+        final String pageKey = keyOwnedBy(1, "");
+
+        get(nodes.get(0).page(pageKey, LOCALES));
+
+        assertThat(loadedBy.get(pageKey)).isEqualTo("restarted");
+    }
+
+    @Test
+    public void agreesOnOwnersRegardlessOfHostNamesOfNodes() throws Exception {
+        final int port0 = freePort();
+        final int port1 = freePort();
+        nodes.add(PeerCmsService.builder(loader("0"), new InetSocketAddress("localhost", port0), executor)
+                .peers(Arrays.asList(new InetSocketAddress("127.0.0.1", port0),
+                        new InetSocketAddress("127.0.0.1", port1)))
+                .start());
+        nodes.add(PeerCmsService.builder(loader("1"), new InetSocketAddress("127.0.0.1", port1), executor)
+                .peers(Arrays.asList(new InetSocketAddress("localhost", port0),
+                        new InetSocketAddress("localhost", port1)))
+                .start());
+
+        for (int i = 0; i < 30; i++) {
+            final boolean isOwnedBy0 = nodes.get(0).isOwner("page-" + i, LOCALES);
+            assertThat(nodes.get(1).isOwner("page-" + i, LOCALES)).isNotEqualTo(isOwnedBy0);
+        }
+    }
+
+    private void startNodes(final int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            addresses.add(new InetSocketAddress("localhost", freePort()));
+        }
+        for (int i = 0; i < count; i++) {
+            nodes.add(PeerCmsService.builder(loader(String.valueOf(i)), addresses.get(i), executor)
+                    .peers(addresses)
+                    .connectTimeout(500, TimeUnit.MILLISECONDS)
+                    .readTimeout(500, TimeUnit.MILLISECONDS)
+                    .start());
+        }
+    }
+
+    private CmsService loader(final String node) {
+        return (pageKey, locales) -> {
+            final CompletableFuture<Optional<CmsPage>> page = new CompletableFuture<>();
+            if (pageKey.endsWith("-missing")) {
+                page.complete(Optional.empty());
+            } else if (pageKey.endsWith("-failing")) {
+                page.completeExceptionally(new CmsServiceException("Loading " + pageKey + " failed", null));
+            } else {
+                loadedBy.put(pageKey, node);
+                loadCounts.merge(pageKey, 1, Integer::sum);
+                final Map<String, String> fields = new HashMap<>();
+                fields.put("key", pageKey);
+                final Optional<CmsPage> loadedPage = Optional.of(CmsPageSnapshot.of(fields, "v1", null));
+                if (pageKey.endsWith("-slow")) {
+                    scheduler.schedule(() -> page.complete(loadedPage), 2, TimeUnit.SECONDS);
+                } else {
+                    page.complete(loadedPage);
+                }
+            }
+            return page;
+        };
+    }
+
+    private String keyOwnedBy(final int node, final String suffix) {
+        for (int i = 0; ; i++) {
+            if (nodes.get(node).isOwner("page-" + i + suffix, LOCALES)) {
+                return "page-" + i + suffix;
+            }
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static Optional<CmsPage> get(final CompletionStage<Optional<CmsPage>> stage) {
+        return stage.toCompletableFuture().join();
+    }
+}
@@ -0,0 +1,68 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsPage;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContentfulGraphQLCmsServiceIT {
+
+    private static final List<String> PATHS = asList("teaser.headline", "hero", "tags[1]", "missing.field");
+
+    @Test
+    public void fetchesOnlyFieldsOnGivenPaths() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ContentfulStandInServer server = ContentfulStandInServer.builder().payloadSize(10_000).start()) {
+            final SharedContentfulClient client =
+                    SharedContentfulClient.builder(ContentfulStandInServer.SPACE_ID, "token")
+                            .endpoint(server.endpoint())
+                            .graphQLEndpoint(server.graphQLEndpoint())
+                            .build();
+            final ContentfulGraphQLCmsService service = client.graphQLService(ContentfulStandInServer.PAGE_TYPE,
+                    ContentfulStandInServer.PAGE_QUERY_FIELD, PATHS, executor);
+
+            final CmsPage page = service.page("home", singletonList(Locale.US)).toCompletableFuture().join().get();
+
+            assertThat(server.graphQLQueries()).hasSize(1);
+            assertThat(server.graphQLQueries().get(0)).doesNotContain("body");
+            assertThat(page.allFields().get())
+                    .containsEntry("teaser.headline", "Teaser of home")
+                    .containsEntry("hero", "//images.ctfassets.net/standin/hero.jpg")
+                    .containsEntry("tags[1]", "sale")
+                    .hasSize(3);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void providesSameValuesAsRestService() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ContentfulStandInServer server = ContentfulStandInServer.builder().payloadSize(1000).start()) {
+            final SharedContentfulClient client =
+                    SharedContentfulClient.builder(ContentfulStandInServer.SPACE_ID, "token")
+                            .endpoint(server.endpoint())
+                            .graphQLEndpoint(server.graphQLEndpoint())
+                            .build();
+            final CmsPage graphQLPage = client.graphQLService(ContentfulStandInServer.PAGE_TYPE,
+                    ContentfulStandInServer.PAGE_QUERY_FIELD, PATHS, executor)
+                    .page("home", singletonList(Locale.US)).toCompletableFuture().join().get();
+            final CmsPage restPage = client.service(ContentfulStandInServer.PAGE_TYPE,
+                    ContentfulStandInServer.PAGE_QUERY_FIELD, executor)
+                    .page("home", singletonList(Locale.US)).toCompletableFuture().join().get();
+
+            for (final String path : PATHS) {
+                assertThat(graphQLPage.field(path)).as(path).isEqualTo(restPage.field(path));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsService;
+import com.commercetools.sunrise.cms.FetchExecutors;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Load test of {@link ContentfulCmsService} talking to {@link ContentfulStandInServer}.
+ * <p>
+ * Given number of clients request random pages so that together they keep the target request rate, each of them
+ * waiting for its previous page before requesting the next one. Throughput, latency percentiles, failures and
+ * thread usage are reported at the end.
+ * <p>
+ * Latency of a request is measured from the time it was due according to the target rate rather than from the time
+ * it was actually sent, so that requests delayed by a stalled service count the time they waited for their client.
+ * Measuring from the time of sending would leave that wait out exactly when the service is overloaded. Service time,
+ * measured from sending, is reported alongside.
+ * <p>
+ * It is run with system properties, e.g. {@code -Dload.rate=500 -Dload.clients=50 -Dload.duration=60}:
+ * <ul>
+ * <li>load.rate - target number of requests per second, 200 by default</li>
+ * <li>load.clients - number of concurrent clients, 20 by default</li>
+ * <li>load.duration - duration in seconds, 30 by default</li>
+ * <li>load.pages - number of distinct pages requested, 1000 by default</li>
+ * <li>load.callbackThreads - size of the pool executing requests to Contentful, 32 by default</li>
+ * <li>load.virtualThreads - whether every request to Contentful gets a virtual thread of its own instead of a thread
+ * of the pool, false by default, which needs Java 21 or newer</li>
+ * <li>load.payloadSize - size of page content in bytes, 10240 by default</li>
+ * <li>load.latencyMedian - median latency of the stand-in server in milliseconds, 20 by default</li>
+ * <li>load.latencySigma - spread of the log-normally distributed latency of the stand-in server, 0.5 by default</li>
+ * <li>load.errorRate - share of responses failing with HTTP 500, none by default</li>
+ * <li>load.throttleRate - share of responses failing with HTTP 429, none by default</li>
+ * </ul>
+ * Running it once with the pool and once with {@code -Dload.virtualThreads=true} compares both, and adding
+ * {@code -Djdk.tracePinnedThreads=short} reports virtual threads blocking while pinned to their carrier.
+ */
+public final class ContentfulLoadTest {
+
+    private final int rate;
+    private final int clients;
+    private final long durationMillis;
+    private final int pages;
+    private final int callbackThreads;
+    private final boolean virtualThreads;
+
+    private final LongAdder successes = new LongAdder();
+    private final LongAdder emptyResults = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final AtomicInteger lateRequests = new AtomicInteger();
+
+    ContentfulLoadTest(final int rate, final int clients, final long durationMillis, final int pages,
+                       final int callbackThreads) {
+        this(rate, clients, durationMillis, pages, callbackThreads, false);
+    }
+
+    ContentfulLoadTest(final int rate, final int clients, final long durationMillis, final int pages,
+                       final int callbackThreads, final boolean virtualThreads) {
+        if (virtualThreads && !FetchExecutors.isVirtualThreadsAvailable()) {
+            throw new IllegalStateException("Virtual threads need Java 21 or newer");
+        }
+        this.rate = rate;
+        this.clients = clients;
+        this.durationMillis = durationMillis;
+        this.pages = pages;
+        this.callbackThreads = callbackThreads;
+        this.virtualThreads = virtualThreads;
+    }
+
+    public static void main(final String[] args) throws Exception {
+        final ContentfulStandInServer.Builder serverBuilder = ContentfulStandInServer.builder()
+                .payloadSize(Integer.getInteger("load.payloadSize", 10 * 1024))
+                .latencyMillis(ContentfulStandInServer.logNormalLatency(Long.getLong("load.latencyMedian", 20),
+                        Double.parseDouble(System.getProperty("load.latencySigma", "0.5"))))
+                .errorRate(Double.parseDouble(System.getProperty("load.errorRate", "0")))
+                .throttleRate(Double.parseDouble(System.getProperty("load.throttleRate", "0")));
+        final ContentfulLoadTest loadTest = new ContentfulLoadTest(
+                Integer.getInteger("load.rate", 200),
+                Integer.getInteger("load.clients", 20),
+                TimeUnit.SECONDS.toMillis(Integer.getInteger("load.duration", 30)),
+                Integer.getInteger("load.pages", 1000),
+                Integer.getInteger("load.callbackThreads", 32),
+                Boolean.getBoolean("load.virtualThreads"));
+        try (ContentfulStandInServer server = serverBuilder.start()) {
+            System.out.println(loadTest.run(server));
+        }
+    }
+
+    /**
+     * Drive the service against given server and wait until the configured duration passes.
+     *
+     * @param server stand-in of Contentful
+     * @return report of the run
+     */
+    Report run(final ContentfulStandInServer server) throws InterruptedException {
+        final ExecutorService callbackExecutor = virtualThreads
+                ? FetchExecutors.threadPerFetch("contentful-fetch")
+                : Executors.newFixedThreadPool(callbackThreads);
+        final ExecutorService clientExecutor = Executors.newFixedThreadPool(clients);
+        final SharedContentfulClient sharedClient =
+                SharedContentfulClient.builder(ContentfulStandInServer.SPACE_ID, "token")
+                        .endpoint(server.endpoint())
+                        .maxIdleConnections(callbackThreads)
+                        .build();
+        final CmsService cmsService = sharedClient.service(ContentfulStandInServer.PAGE_TYPE,
+                ContentfulStandInServer.PAGE_QUERY_FIELD, callbackExecutor);
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        final int threadsBefore = threads.getThreadCount();
+        threads.resetPeakThreadCount();
+
+        final List<long[]> latencies = new ArrayList<>();
+        final List<long[]> serviceTimes = new ArrayList<>();
+        final CountDownLatch finished = new CountDownLatch(clients);
+        final long start = System.nanoTime();
+        final long end = start + TimeUnit.MILLISECONDS.toNanos(durationMillis);
+        final long intervalNanos = TimeUnit.SECONDS.toNanos(clients) / rate;
+        for (int i = 0; i < clients; i++) {
+            final long[] clientLatencies = new long[(int) (durationMillis * rate / clients / 1000 + 1)];
+            final long[] clientServiceTimes = new long[clientLatencies.length];
+            latencies.add(clientLatencies);
+            serviceTimes.add(clientServiceTimes);
+            final long firstRequest = start + i * intervalNanos / clients;
+            clientExecutor.execute(() -> {
+                try {
+                    runClient(cmsService, clientLatencies, clientServiceTimes, firstRequest, intervalNanos, end);
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+        finished.await();
+        final long elapsedNanos = System.nanoTime() - start;
+        final int peakThreads = threads.getPeakThreadCount();
+        clientExecutor.shutdown();
+        callbackExecutor.shutdown();
+        return new Report(virtualThreads ? "virtual threads" : callbackThreads + " pooled threads",
+                elapsedNanos, successes.sum(), emptyResults.sum(), failures.sum(), lateRequests.get(),
+                merge(latencies), merge(serviceTimes), server.requestCount(), peakThreads - threadsBefore);
+    }
+
+    /**
+     * Latencies are recorded from the time each request was due, service times from the time it was sent.
+     */
+    private void runClient(final CmsService cmsService, final long[] latencies, final long[] serviceTimes,
+                           final long firstRequest, final long intervalNanos, final long end) {
+        long nextRequest = firstRequest;
+        int requestCount = 0;
+        while (nextRequest < end && requestCount < latencies.length) {
+            final long delay = nextRequest - System.nanoTime();
+            if (delay > 0) {
+                sleepNanos(delay);
+            } else if (delay < -intervalNanos) {
+                lateRequests.incrementAndGet();
+            }
+            final String pageKey = "page-" + ThreadLocalRandom.current().nextInt(pages);
+            final long requestStart = System.nanoTime();
+            try {
+                final boolean found = cmsService.page(pageKey, singletonList(Locale.US))
+                        .toCompletableFuture().join()
+                        .isPresent();
+                (found ? successes : emptyResults).increment();
+            } catch (RuntimeException e) {
+                failures.increment();
+            }
+            final long requestEnd = System.nanoTime();
+            latencies[requestCount] = requestEnd - nextRequest;
+            serviceTimes[requestCount++] = requestEnd - requestStart;
+            nextRequest += intervalNanos;
+        }
+    }
+
+    private static long[] merge(final List<long[]> latencies) {
+        final long[] merged = latencies.stream()
+                .flatMapToLong(Arrays::stream)
+                .filter(latency -> latency > 0)
+                .toArray();
+        Arrays.sort(merged);
+        return merged;
+    }
+
+    private static void sleepNanos(final long nanos) {
+        try {
+            TimeUnit.NANOSECONDS.sleep(nanos);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Outcome of a load test run.
+     */
+    static final class Report {
+        private final String callbackExecutor;
+        private final long elapsedNanos;
+        private final long successes;
+        private final long emptyResults;
+        private final long failures;
+        private final int lateRequests;
+        private final long[] sortedLatencies;
+        private final long[] sortedServiceTimes;
+        private final long serverRequests;
+        private final int addedThreads;
+
+        private Report(final String callbackExecutor, final long elapsedNanos, final long successes,
+                       final long emptyResults, final long failures, final int lateRequests,
+                       final long[] sortedLatencies, final long[] sortedServiceTimes, final long serverRequests,
+                       final int addedThreads) {
+            this.callbackExecutor = callbackExecutor;
+            this.elapsedNanos = elapsedNanos;
+            this.successes = successes;
+            this.emptyResults = emptyResults;
+            this.failures = failures;
+            this.lateRequests = lateRequests;
+            this.sortedLatencies = sortedLatencies;
+            this.sortedServiceTimes = sortedServiceTimes;
+            this.serverRequests = serverRequests;
+            this.addedThreads = addedThreads;
+        }
+
+        long requests() {
+            return successes + emptyResults + failures;
+        }
+
+        long successes() {
+            return successes;
+        }
+
+        long failures() {
+            return failures;
+        }
+
+        double throughput() {
+            return requests() / (elapsedNanos / 1e9);
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return latency in milliseconds, from the time the request was due, below which given percentage of
+         * requests finished
+         */
+        double latencyMillis(final double percentile) {
+            return percentileMillis(sortedLatencies, percentile);
+        }
+
+        /**
+         * @param percentile between 0 and 100
+         * @return time in milliseconds, from the time the request was sent, below which given percentage of
+         * requests finished
+         */
+        double serviceTimeMillis(final double percentile) {
+            return percentileMillis(sortedServiceTimes, percentile);
+        }
+
+        private static double percentileMillis(final long[] sortedNanos, final double percentile) {
+            if (sortedNanos.length == 0) {
+                return 0;
+            }
+            final int index = (int) Math.ceil(percentile / 100 * sortedNanos.length) - 1;
+            return sortedNanos[Math.max(0, Math.min(index, sortedNanos.length - 1))] / 1e6;
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ENGLISH,
+                    "callback executor: %s%n"
+                            + "requests: %d (found %d, empty %d, failed %d), late: %d, server requests: %d%n"
+                            + "throughput: %.1f req/s%n"
+                            + "latency ms: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n"
+                            + "service time ms: p50 %.1f, p90 %.1f, p99 %.1f, p99.9 %.1f, max %.1f%n"
+                            + "peak threads added: %d",
+                    callbackExecutor, requests(), successes, emptyResults, failures, lateRequests, serverRequests,
+                    throughput(),
+                    latencyMillis(50), latencyMillis(90), latencyMillis(99), latencyMillis(99.9), latencyMillis(100),
+                    serviceTimeMillis(50), serviceTimeMillis(90), serviceTimeMillis(99), serviceTimeMillis(99.9),
+                    serviceTimeMillis(100),
+                    addedThreads);
+        }
+    }
+}
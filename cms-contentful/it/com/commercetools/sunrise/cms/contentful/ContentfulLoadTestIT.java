@@ -0,0 +1,49 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.FetchExecutors;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assume.assumeTrue;
+
+public class ContentfulLoadTestIT {
+
+    @Test
+    public void servesPagesFromStandInServer() throws Exception {
+        try (ContentfulStandInServer server = ContentfulStandInServer.builder()
+                .latencyMillis(ContentfulStandInServer.uniformLatency(1, 5))
+                .start()) {
+            ContentfulLoadTest.Report report = new ContentfulLoadTest(50, 5, 2000, 10, 5).run(server);
+
+            assertThat(report.requests()).isPositive();
+            assertThat(report.successes()).isEqualTo(report.requests());
+            assertThat(report.latencyMillis(50)).isPositive();
+        }
+    }
+
+    @Test
+    public void servesPagesOnVirtualThreads() throws Exception {
+        assumeTrue(FetchExecutors.isVirtualThreadsAvailable());
+        try (ContentfulStandInServer server = ContentfulStandInServer.builder()
+                .latencyMillis(ContentfulStandInServer.uniformLatency(1, 5))
+                .start()) {
+            ContentfulLoadTest.Report report = new ContentfulLoadTest(50, 5, 2000, 10, 5, true).run(server);
+
+            assertThat(report.requests()).isPositive();
+            assertThat(report.successes()).isEqualTo(report.requests());
+        }
+    }
+
+    @Test
+    public void reportsFailuresOfStandInServer() throws Exception {
+        try (ContentfulStandInServer server = ContentfulStandInServer.builder()
+                .errorRate(0.5)
+                .throttleRate(0.5)
+                .start()) {
+            ContentfulLoadTest.Report report = new ContentfulLoadTest(50, 5, 1000, 10, 5).run(server);
+
+            assertThat(report.requests()).isPositive();
+            assertThat(report.failures()).isEqualTo(report.requests());
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsPage;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContentfulLookupServiceIT {
+
+    private static final ContentfulLookup HOME = ContentfulLookup.of(ContentfulStandInServer.PAGE_TYPE,
+            ContentfulStandInServer.PAGE_QUERY_FIELD, "home");
+    private static final ContentfulLookup ABOUT = ContentfulLookup.of(ContentfulStandInServer.PAGE_TYPE,
+            ContentfulStandInServer.PAGE_QUERY_FIELD, "about");
+    private static final ContentfulLookup NEWS_TEASER = ContentfulLookup.byId("news-teaser");
+    private static final ContentfulLookup CONTACT = ContentfulLookup.byId("contact");
+
+    @Test
+    public void fetchesLookupsOfSameContentTypeAndLookupsByIdInOneRequestEach() throws Exception {
+        fetchesLookupsInOneRequestPerBatch(false);
+    }
+
+    @Test
+    public void withDirectParsing_fetchesLookupsInOneRequestPerBatch() throws Exception {
+        fetchesLookupsInOneRequestPerBatch(true);
+    }
+
+    private void fetchesLookupsInOneRequestPerBatch(final boolean directParsing) throws Exception {
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try (ContentfulStandInServer server = ContentfulStandInServer.builder().payloadSize(100).start()) {
+            final ContentfulLookupService service =
+                    SharedContentfulClient.builder(ContentfulStandInServer.SPACE_ID, "token")
+                            .endpoint(server.endpoint())
+                            .directParsing(directParsing)
+                            .build()
+                            .lookupService(executor);
+            // the space and its content types are fetched once, before the first lookup
+            get(service.pages(singletonList(HOME), singletonList(Locale.US)).get(HOME));
+            final long requestCount = server.requestCount();
+
+            final Map<ContentfulLookup, CompletionStage<Optional<CmsPage>>> pages =
+                    service.pages(asList(HOME, ABOUT, NEWS_TEASER, CONTACT, HOME), singletonList(Locale.US));
+
+            assertThat(pages).containsOnlyKeys(HOME, ABOUT, NEWS_TEASER, CONTACT);
+            assertThat(get(pages.get(HOME)).field("teaser.headline")).hasValue("Teaser of home");
+            assertThat(get(pages.get(ABOUT)).field("slug")).hasValue("about");
+            assertThat(get(pages.get(NEWS_TEASER)).field("headline")).hasValue("Teaser of news");
+            assertThat(get(pages.get(CONTACT)).field("teaser.headline")).hasValue("Teaser of contact");
+            assertThat(server.requestCount() - requestCount).isEqualTo(2);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static CmsPage get(final CompletionStage<Optional<CmsPage>> page) {
+        return page.toCompletableFuture().join().get();
+    }
+}
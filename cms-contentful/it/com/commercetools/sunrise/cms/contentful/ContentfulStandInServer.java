@@ -0,0 +1,409 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Local HTTP server emulating the parts of Contentful Delivery API used by {@link ContentfulCmsService}.
+ * <p>
+ * It serves the space, its content types and entries of a single 'page' content type with 'slug' query field,
+ * 'body' text field of configured size, 'tags' array and links to a 'teaser' entry and a 'hero' asset, which are
+ * included in the response. Every slug exists, and several pages can be looked up at once by their slugs or IDs
+ * with {@code [in]}. Responses are delayed according to configured latency distribution and configured share of them
+ * fails with HTTP Internal Server Error (500) or Too Many Requests (429).
+ * Entries are served with ETag and conditional requests are answered with HTTP Not Modified (304).
+ * <p>
+ * It also stands in for GraphQL Content API of the space at {@link #graphQLEndpoint()}. It does not execute queries,
+ * but it answers a query of the page collection with those of the fields of the page above which the query names.
+ */
+public final class ContentfulStandInServer implements AutoCloseable {
+
+    public static final String SPACE_ID = "standin";
+    public static final String PAGE_TYPE = "page";
+    public static final String PAGE_QUERY_FIELD = "slug";
+    private static final String LOCALE = "en-US";
+
+    private final HttpServer server;
+    private final ExecutorService serverExecutor;
+    private final String body;
+    private final LongSupplier latencyMillis;
+    private final double errorRate;
+    private final double throttleRate;
+    private final LongAdder requestCount = new LongAdder();
+    private final List<String> graphQLQueries = new CopyOnWriteArrayList<>();
+
+    private ContentfulStandInServer(final int payloadSize, final LongSupplier latencyMillis, final double errorRate,
+                                    final double throttleRate, final int serverThreads) throws IOException {
+        this.body = payload(payloadSize);
+        this.latencyMillis = latencyMillis;
+        this.errorRate = errorRate;
+        this.throttleRate = throttleRate;
+        this.serverExecutor = Executors.newFixedThreadPool(serverThreads);
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.setExecutor(serverExecutor);
+        server.createContext("/spaces/" + SPACE_ID, this::handle);
+        server.createContext("/content/v1/spaces/" + SPACE_ID, this::handleGraphQL);
+        server.start();
+    }
+
+    /**
+     * @return endpoint to be configured with {@link SharedContentfulClient.Builder#endpoint(String)}
+     */
+    public String endpoint() {
+        return "http://localhost:" + server.getAddress().getPort() + "/";
+    }
+
+    /**
+     * @return endpoint to be configured with {@link SharedContentfulClient.Builder#graphQLEndpoint(String)}
+     */
+    public String graphQLEndpoint() {
+        return endpoint();
+    }
+
+    /**
+     * @return GraphQL queries received so far
+     */
+    public List<String> graphQLQueries() {
+        return graphQLQueries;
+    }
+
+    public long requestCount() {
+        return requestCount.sum();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    private void handle(final HttpExchange exchange) throws IOException {
+        requestCount.increment();
+        try {
+            sleep(latencyMillis.getAsLong());
+            final String path = exchange.getRequestURI().getPath();
+            final Map<String, String> query = query(exchange.getRequestURI().getRawQuery());
+            final double random = ThreadLocalRandom.current().nextDouble();
+            if (random < errorRate) {
+                respond(exchange, 500, error("ServerError"));
+            } else if (random < errorRate + throttleRate) {
+                exchange.getResponseHeaders().set("X-Contentful-RateLimit-Reset", "1");
+                respond(exchange, 429, error("RateLimitExceeded"));
+            } else if (path.endsWith("/entries")) {
+                respondWithEntries(exchange, query);
+            } else if (path.endsWith("/content_types")) {
+                respond(exchange, 200, contentTypes());
+            } else if (path.equals("/spaces/" + SPACE_ID) || path.equals("/spaces/" + SPACE_ID + "/")) {
+                respond(exchange, 200, space());
+            } else {
+                respond(exchange, 404, error("NotFound"));
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void handleGraphQL(final HttpExchange exchange) throws IOException {
+        requestCount.increment();
+        try {
+            sleep(latencyMillis.getAsLong());
+            final GraphQLRequest request = new Gson().fromJson(
+                    new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8), GraphQLRequest.class);
+            graphQLQueries.add(request.query);
+            if (!request.query.contains(PAGE_TYPE + "Collection(")) {
+                respond(exchange, 400, "{\"errors\":[{\"message\":\"Stand-in supports only page collection\"}]}");
+            } else {
+                respond(exchange, 200, "{\"data\":{\"" + PAGE_TYPE + "Collection\":{\"items\":[{"
+                        + graphQLFields(request.query, String.valueOf(request.variables.get("key")))
+                        + "}]}}}");
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private String graphQLFields(final String query, final String slug) {
+        final List<String> fields = new ArrayList<>();
+        if (query.contains(" " + PAGE_QUERY_FIELD + " ")) {
+            fields.add("\"" + PAGE_QUERY_FIELD + "\":" + quote(slug));
+        }
+        if (query.contains(" body ")) {
+            fields.add("\"body\":" + quote(body));
+        }
+        if (query.contains(" tags ")) {
+            fields.add("\"tags\":[\"news\",\"sale\"]");
+        }
+        if (query.contains(" teaser {")) {
+            fields.add("\"teaser\":{\"headline\":" + quote("Teaser of " + slug) + "}");
+        }
+        if (query.contains(" hero {")) {
+            fields.add("\"hero\":{\"url\":\"https://images.ctfassets.net/" + SPACE_ID + "/hero.jpg\"}");
+        }
+        return String.join(",", fields);
+    }
+
+    /**
+     * Content never changes, so every response to the same query carries the same ETag.
+     */
+    private void respondWithEntries(final HttpExchange exchange, final Map<String, String> query) throws IOException {
+        final String entityTag = "\"" + Integer.toHexString(query.hashCode()) + "\"";
+        exchange.getResponseHeaders().set("ETag", entityTag);
+        if (entityTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+            exchange.sendResponseHeaders(304, -1);
+        } else {
+            respond(exchange, 200, entries(query));
+        }
+    }
+
+    /**
+     * Pages are looked up by their slug, which is their ID as well, with an exact match or with {@code [in]}.
+     * Entries can also be looked up by their IDs, including the teasers with IDs ending with {@code -teaser}.
+     */
+    private String entries(final Map<String, String> query) {
+        final boolean allLocales = "*".equals(query.get("locale"));
+        final List<String> items = new ArrayList<>();
+        final List<String> includedEntries = new ArrayList<>();
+        final List<String> includedAssets = new ArrayList<>();
+        final boolean byId = query.containsKey("sys.id") || query.containsKey("sys.id[in]");
+        for (String key : values(query, byId ? "sys.id" : "fields." + PAGE_QUERY_FIELD)) {
+            if (byId && key.endsWith("-teaser")) {
+                items.add(teaser(key.substring(0, key.length() - "-teaser".length()), allLocales));
+            } else {
+                items.add(page(key, allLocales));
+                includedEntries.add(teaser(key, allLocales));
+                includedAssets.add(hero(key, allLocales));
+            }
+        }
+        return "{\"sys\":{\"type\":\"Array\"},\"total\":" + items.size() + ",\"skip\":0,\"limit\":100,"
+                + "\"items\":[" + String.join(",", items) + "],"
+                + "\"includes\":{\"Entry\":[" + String.join(",", includedEntries) + "],"
+                + "\"Asset\":[" + String.join(",", includedAssets) + "]}}";
+    }
+
+    private String page(final String slug, final boolean allLocales) {
+        return "{" + sys("Entry", slug, PAGE_TYPE, allLocales) + ","
+                + "\"fields\":{"
+                + "\"" + PAGE_QUERY_FIELD + "\":" + localized(quote(slug), allLocales) + ","
+                + "\"body\":" + localized(quote(body), allLocales) + ","
+                + "\"tags\":" + localized("[\"news\",\"sale\"]", allLocales) + ","
+                + "\"teaser\":" + localized(link("Entry", slug + "-teaser"), allLocales) + ","
+                + "\"hero\":" + localized(link("Asset", slug + "-hero"), allLocales)
+                + "}}";
+    }
+
+    private static String teaser(final String slug, final boolean allLocales) {
+        return "{" + sys("Entry", slug + "-teaser", "teaser", allLocales) + ","
+                + "\"fields\":{\"headline\":" + localized(quote("Teaser of " + slug), allLocales) + "}}";
+    }
+
+    private static String hero(final String slug, final boolean allLocales) {
+        return "{" + sys("Asset", slug + "-hero", null, allLocales) + ","
+                + "\"fields\":{\"title\":" + localized("\"Hero\"", allLocales) + ","
+                + "\"file\":" + localized("{\"url\":\"//images.ctfassets.net/" + SPACE_ID + "/hero.jpg\","
+                + "\"details\":{\"size\":1024,\"image\":{\"width\":640,\"height\":480}},"
+                + "\"fileName\":\"hero.jpg\",\"contentType\":\"image/jpeg\"}", allLocales)
+                + "}}";
+    }
+
+    /**
+     * Values of given parameter, listed with {@code [in]} or given exactly, or an empty one if it is missing.
+     */
+    private static List<String> values(final Map<String, String> query, final String name) {
+        final String values = query.get(name + "[in]");
+        return values != null ? Arrays.asList(values.split(",")) : singletonList(query.getOrDefault(name, ""));
+    }
+
+    private static String sys(final String type, final String id, final String contentType, final boolean allLocales) {
+        return "\"sys\":{\"type\":\"" + type + "\",\"id\":" + quote(id) + ",\"revision\":1,"
+                + "\"createdAt\":\"2017-01-01T00:00:00.000Z\",\"updatedAt\":\"2017-01-01T00:00:00.000Z\","
+                + (allLocales ? "" : "\"locale\":\"" + LOCALE + "\",")
+                + (contentType != null ? "\"contentType\":" + link("ContentType", contentType) + "," : "")
+                + "\"space\":" + link("Space", SPACE_ID) + "}";
+    }
+
+    private static String link(final String linkType, final String id) {
+        return "{\"sys\":{\"type\":\"Link\",\"linkType\":\"" + linkType + "\",\"id\":" + quote(id) + "}}";
+    }
+
+    private static String contentTypes() {
+        return "{\"sys\":{\"type\":\"Array\"},\"total\":2,\"skip\":0,\"limit\":1000,\"items\":[{"
+                + "\"sys\":{\"type\":\"ContentType\",\"id\":\"" + PAGE_TYPE + "\"},"
+                + "\"name\":\"Page\",\"displayField\":\"" + PAGE_QUERY_FIELD + "\",\"fields\":["
+                + "{\"id\":\"" + PAGE_QUERY_FIELD + "\",\"name\":\"Slug\",\"type\":\"Symbol\"},"
+                + "{\"id\":\"body\",\"name\":\"Body\",\"type\":\"Text\"},"
+                + "{\"id\":\"tags\",\"name\":\"Tags\",\"type\":\"Array\",\"items\":{\"type\":\"Symbol\"}},"
+                + "{\"id\":\"teaser\",\"name\":\"Teaser\",\"type\":\"Link\",\"linkType\":\"Entry\"},"
+                + "{\"id\":\"hero\",\"name\":\"Hero\",\"type\":\"Link\",\"linkType\":\"Asset\"}]},{"
+                + "\"sys\":{\"type\":\"ContentType\",\"id\":\"teaser\"},"
+                + "\"name\":\"Teaser\",\"displayField\":\"headline\",\"fields\":["
+                + "{\"id\":\"headline\",\"name\":\"Headline\",\"type\":\"Symbol\"}]}]}";
+    }
+
+    private static String space() {
+        return "{\"sys\":{\"type\":\"Space\",\"id\":\"" + SPACE_ID + "\"},\"name\":\"Stand-in\","
+                + "\"locales\":[{\"code\":\"" + LOCALE + "\",\"default\":true,\"name\":\"English\"}]}";
+    }
+
+    private static String error(final String id) {
+        return "{\"sys\":{\"type\":\"Error\",\"id\":\"" + id + "\"},\"message\":\"Stand-in failure\"}";
+    }
+
+    private static String localized(final String value, final boolean allLocales) {
+        return allLocales ? "{\"" + LOCALE + "\":" + value + "}" : value;
+    }
+
+    private static String quote(final String value) {
+        return "\"" + value.replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+    }
+
+    private static String payload(final int size) {
+        final StringBuilder payload = new StringBuilder(size);
+        while (payload.length() < size) {
+            payload.append("Lorem ipsum dolor sit amet. ");
+        }
+        payload.setLength(size);
+        return payload.toString();
+    }
+
+    private static void respond(final HttpExchange exchange, final int code, final String json) throws IOException {
+        final byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/vnd.contentful.delivery.v1+json");
+        exchange.sendResponseHeaders(code, bytes.length);
+        try (OutputStream output = exchange.getResponseBody()) {
+            output.write(bytes);
+        }
+    }
+
+    private static Map<String, String> query(final String rawQuery) throws IOException {
+        final Map<String, String> query = new HashMap<>();
+        if (rawQuery != null) {
+            for (String parameter : rawQuery.split("&")) {
+                final String[] nameAndValue = parameter.split("=", 2);
+                query.put(URLDecoder.decode(nameAndValue[0], "UTF-8"),
+                        nameAndValue.length > 1 ? URLDecoder.decode(nameAndValue[1], "UTF-8") : "");
+            }
+        }
+        return query;
+    }
+
+    private static void sleep(final long millis) {
+        if (millis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    public static LongSupplier constantLatency(final long millis) {
+        return () -> millis;
+    }
+
+    public static LongSupplier uniformLatency(final long minMillis, final long maxMillis) {
+        return () -> ThreadLocalRandom.current().nextLong(minMillis, maxMillis + 1);
+    }
+
+    /**
+     * Latency with long tail, where given median is exceeded by half of the responses and the spread is controlled
+     * by the standard deviation of the underlying normal distribution.
+     */
+    public static LongSupplier logNormalLatency(final long medianMillis, final double sigma) {
+        return () -> Math.round(medianMillis * Math.exp(sigma * ThreadLocalRandom.current().nextGaussian()));
+    }
+
+    private static final class GraphQLRequest {
+        private String query = "";
+        private Map<String, Object> variables = new HashMap<>();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder of {@link ContentfulStandInServer}.
+     */
+    public static final class Builder {
+
+        private int payloadSize = 10 * 1024;
+        private LongSupplier latencyMillis = constantLatency(0);
+        private double errorRate = 0;
+        private double throttleRate = 0;
+        private int serverThreads = 64;
+
+        private Builder() {
+        }
+
+        /**
+         * @param payloadSize length of the 'body' field of every entry, 10 KiB by default
+         * @return this builder
+         */
+        public Builder payloadSize(final int payloadSize) {
+            this.payloadSize = payloadSize;
+            return this;
+        }
+
+        /**
+         * @param latencyMillis supplier of the delay of every response, no delay by default
+         * @return this builder
+         */
+        public Builder latencyMillis(final LongSupplier latencyMillis) {
+            this.latencyMillis = latencyMillis;
+            return this;
+        }
+
+        /**
+         * @param errorRate share of responses failing with HTTP Internal Server Error (500), none by default
+         * @return this builder
+         */
+        public Builder errorRate(final double errorRate) {
+            this.errorRate = errorRate;
+            return this;
+        }
+
+        /**
+         * @param throttleRate share of responses failing with HTTP Too Many Requests (429), none by default
+         * @return this builder
+         */
+        public Builder throttleRate(final double throttleRate) {
+            this.throttleRate = throttleRate;
+            return this;
+        }
+
+        /**
+         * @param serverThreads number of threads serving requests, 64 by default
+         * @return this builder
+         */
+        public Builder serverThreads(final int serverThreads) {
+            this.serverThreads = serverThreads;
+            return this;
+        }
+
+        public ContentfulStandInServer start() throws IOException {
+            return new ContentfulStandInServer(payloadSize, latencyMillis, errorRate, throttleRate, serverThreads);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsPage;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ContentfulTracingIT {
+
+    @Test
+    public void tracesEveryPhaseOfFetch() throws Exception {
+        final List<String> spanNames = new CopyOnWriteArrayList<>();
+        final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        final ContentfulTracer tracer = (name, parent) -> {
+            spanNames.add(name);
+            return new AttributeCollectingSpan(attributes);
+        };
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ContentfulStandInServer server = ContentfulStandInServer.builder().payloadSize(1000).start()) {
+            final ContentfulCmsService service =
+                    SharedContentfulClient.builder(ContentfulStandInServer.SPACE_ID, "token")
+                            .endpoint(server.endpoint())
+                            .tracer(tracer)
+                            .build()
+                            .service(ContentfulStandInServer.PAGE_TYPE, ContentfulStandInServer.PAGE_QUERY_FIELD,
+                                    executor);
+
+            final Optional<CmsPage> page = service.page("home", singletonList(Locale.US)).toCompletableFuture().join();
+
+            assertThat(page).isPresent();
+            assertThat(spanNames).containsExactly(FetchTrace.PAGE_SPAN, FetchTrace.QUEUE_SPAN, FetchTrace.HTTP_SPAN,
+                    FetchTrace.DESERIALIZATION_SPAN, FetchTrace.CALLBACK_SPAN);
+            assertThat(attributes)
+                    .containsEntry(FetchTrace.PAGE_KEY, "home")
+                    .containsEntry(FetchTrace.LOCALE, "en-US")
+                    .containsEntry(FetchTrace.STATUS_CODE, 200L)
+                    .containsEntry(FetchTrace.ITEM_COUNT, 1L);
+            assertThat((Long) attributes.get(FetchTrace.PAYLOAD_BYTES)).isGreaterThan(1000L);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static final class AttributeCollectingSpan implements ContentfulSpan {
+        private final Map<String, Object> attributes;
+
+        private AttributeCollectingSpan(final Map<String, Object> attributes) {
+            this.attributes = attributes;
+        }
+
+        @Override
+        public ContentfulSpan setAttribute(final String key, final String value) {
+            attributes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public ContentfulSpan setAttribute(final String key, final long value) {
+            attributes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public void recordException(final Throwable error) {
+        }
+
+        @Override
+        public Scope makeCurrent() {
+            return () -> {
+            };
+        }
+
+        @Override
+        public void end() {
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsPage;
+import org.junit.Test;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class DirectParsingIT {
+
+    @Test
+    public void directlyParsedPageHasSameFieldsAsPageParsedBySdk() throws Exception {
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try (ContentfulStandInServer server = ContentfulStandInServer.builder().payloadSize(1000).start()) {
+            final CmsPage sdkPage = page(server, false, executor);
+            final CmsPage directPage = page(server, true, executor);
+
+            assertThat(directPage.allFields().get())
+                    .isEqualTo(sdkPage.allFields().get())
+                    .containsEntry("teaser.headline", "Teaser of home")
+                    .containsEntry("hero", "//images.ctfassets.net/standin/hero.jpg")
+                    .containsEntry("tags[1]", "sale");
+            assertThat(directPage.field("teaser.headline")).isEqualTo(sdkPage.field("teaser.headline"));
+            assertThat(directPage.version()).isEqualTo(sdkPage.version());
+            assertThat(directPage.lastModified()).isEqualTo(sdkPage.lastModified());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static CmsPage page(final ContentfulStandInServer server, final boolean directParsing,
+                                final ExecutorService executor) {
+        return SharedContentfulClient.builder(ContentfulStandInServer.SPACE_ID, "token")
+                .endpoint(server.endpoint())
+                .directParsing(directParsing)
+                .build()
+                .service(ContentfulStandInServer.PAGE_TYPE, ContentfulStandInServer.PAGE_QUERY_FIELD, executor)
+                .page("home", singletonList(Locale.US))
+                .toCompletableFuture()
+                .join()
+                .get();
+    }
+}
@@ -0,0 +1,340 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsPage;
+import com.commercetools.sunrise.cms.CmsService;
+import com.commercetools.sunrise.cms.CmsServiceException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * Cache of pages of a content type which are requested by several of their fields, e.g. by slug, by a legacy key
+ * or by entry ID, keeping each page only once.
+ * <p>
+ * Every fetched page is stored under the ID of its entry and the locales it was requested for, and the values of all
+ * the configured alias fields of the entry are indexed to that ID. A page requested by any alias which has been
+ * indexed is then served from the cache, and a page is fetched only once no matter by how many of its aliases
+ * it is requested. {@link #invalidate(String)} drops a page together with all its aliases, e.g. when Contentful
+ * notifies about a change of its entry.
+ * <p>
+ * Expired pages are fetched again by their ID. The least recently used pages are dropped, with their aliases, once
+ * there are more of them than configured. Concurrent requests for the same alias result in a single fetch,
+ * and failures are not cached.
+ * <p>
+ * Pages are fetched by {@link ContentfulLookupService}, which is given the alias or the ID to look the entry up by.
+ */
+public final class AliasedPageCache {
+
+    private static final String ID_FIELD = "sys.id";
+
+    private final String pageType;
+    private final List<String> aliasFields;
+    private final BiFunction<ContentfulLookup, List<Locale>, CompletionStage<Optional<CmsPage>>> fetcher;
+    private final long ttlMillis;
+    private final LongSupplier clock;
+    private final Map<AliasKey, CachedPage> pages;
+    private final Map<AliasKey, AliasKey> aliases = new HashMap<>();
+    private final ConcurrentMap<AliasKey, CompletableFuture<Optional<CmsPage>>> pendingPages =
+            new ConcurrentHashMap<>();
+
+    AliasedPageCache(final String pageType, final List<String> aliasFields,
+                     final BiFunction<ContentfulLookup, List<Locale>, CompletionStage<Optional<CmsPage>>> fetcher,
+                     final int maxPages, final long ttlMillis, final LongSupplier clock) {
+        this.pageType = pageType;
+        this.aliasFields = Collections.unmodifiableList(new ArrayList<>(aliasFields));
+        this.fetcher = fetcher;
+        this.ttlMillis = ttlMillis;
+        this.clock = clock;
+        this.pages = new LinkedHashMap<AliasKey, CachedPage>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<AliasKey, CachedPage> eldest) {
+                if (size() > maxPages) {
+                    removeAliases(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Get a service providing the pages by the value of given alias field.
+     *
+     * @param aliasField one of the configured alias fields
+     * @return service sharing the cached pages with the services of all other aliases
+     * @throws IllegalArgumentException if the field is not configured as alias
+     */
+    public CmsService by(final String aliasField) {
+        if (!aliasFields.contains(aliasField)) {
+            throw new IllegalArgumentException("Field " + aliasField + " is not an alias of " + pageType
+                    + ", expected one of " + aliasFields);
+        }
+        return (pageKey, locales) -> page(new AliasKey(aliasField, pageKey, locales));
+    }
+
+    /**
+     * Get a service providing the pages by the ID of their entry.
+     *
+     * @return service sharing the cached pages with the services of all the aliases
+     */
+    public CmsService byId() {
+        return (pageKey, locales) -> page(new AliasKey(ID_FIELD, pageKey, locales));
+    }
+
+    /**
+     * Drop the page of given entry for all the locales, together with all its aliases.
+     *
+     * @param entryId ID of the entry of the page
+     */
+    public void invalidate(final String entryId) {
+        synchronized (pages) {
+            final Iterator<Map.Entry<AliasKey, CachedPage>> cachedPages = pages.entrySet().iterator();
+            while (cachedPages.hasNext()) {
+                final Map.Entry<AliasKey, CachedPage> cachedPage = cachedPages.next();
+                if (cachedPage.getKey().value.equals(entryId)) {
+                    removeAliases(cachedPage.getKey(), cachedPage.getValue());
+                    cachedPages.remove();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of cached pages, each counted once regardless of its aliases
+     */
+    public int size() {
+        synchronized (pages) {
+            return pages.size();
+        }
+    }
+
+    private CompletionStage<Optional<CmsPage>> page(final AliasKey key) {
+        final AliasKey idKey;
+        synchronized (pages) {
+            idKey = key.isId() ? key : aliases.get(key);
+            final CachedPage cachedPage = idKey != null ? pages.get(idKey) : null;
+            if (cachedPage != null && !cachedPage.isExpired(clock.getAsLong())) {
+                return CompletableFuture.completedFuture(Optional.of(cachedPage.page));
+            }
+        }
+        return load(idKey != null ? idKey : key);
+    }
+
+    /**
+     * Fetch the page by given key unless it is already being fetched, and index it under all its aliases.
+     * <p>
+     * Each caller gets its own future, so that one of them cancelling it does not affect the others.
+     */
+    private CompletionStage<Optional<CmsPage>> load(final AliasKey fetchKey) {
+        final CompletableFuture<Optional<CmsPage>> future = new CompletableFuture<>();
+        final CompletableFuture<Optional<CmsPage>> pendingPage = pendingPages.putIfAbsent(fetchKey, future);
+        if (pendingPage != null) {
+            return pendingPage.thenApply(Function.identity());
+        }
+        fetcher.apply(fetchKey.toLookup(pageType), fetchKey.locales).whenComplete((page, error) -> {
+            Throwable failure = error;
+            if (error == null) {
+                try {
+                    if (page.isPresent()) {
+                        put(page.get(), fetchKey);
+                    } else if (fetchKey.isId()) {
+                        invalidate(fetchKey.value);
+                    }
+                } catch (RuntimeException e) {
+                    failure = e;
+                }
+            }
+            pendingPages.remove(fetchKey, future);
+            if (failure != null) {
+                future.completeExceptionally(failure);
+            } else {
+                future.complete(page);
+            }
+        });
+        return future.thenApply(Function.identity());
+    }
+
+    /**
+     * Store the page under the ID of its entry, and index it under the values of its alias fields, as well as
+     * under the alias it was fetched by, even if the entry does not provide its value as string, e.g. for all
+     * the locales at once.
+     */
+    private void put(final CmsPage page, final AliasKey fetchKey) {
+        if (!(page instanceof ContentfulCmsPage)) {
+            throw new CmsServiceException("Page of " + fetchKey + " cannot be cached by its entry ID", null);
+        }
+        final ContentfulCmsPage contentfulPage = (ContentfulCmsPage) page;
+        final List<Locale> locales = fetchKey.locales;
+        final AliasKey idKey = new AliasKey(ID_FIELD, contentfulPage.entry().id(), locales);
+        final List<AliasKey> pageAliases = new ArrayList<>(aliasFields.size() + 1);
+        for (String aliasField : aliasFields) {
+            final Object value = contentfulPage.entry().getField(aliasField);
+            if (value instanceof String) {
+                pageAliases.add(new AliasKey(aliasField, (String) value, locales));
+            }
+        }
+        if (!fetchKey.isId() && !pageAliases.contains(fetchKey)) {
+            pageAliases.add(fetchKey);
+        }
+        synchronized (pages) {
+            final CachedPage stalePage = pages.get(idKey);
+            if (stalePage != null) {
+                removeAliases(idKey, stalePage);
+            }
+            pages.put(idKey, new CachedPage(page, clock.getAsLong(), pageAliases));
+            pageAliases.forEach(alias -> aliases.put(alias, idKey));
+        }
+    }
+
+    /**
+     * Remove the aliases of given page which still lead to it, to be called while holding the lock.
+     */
+    private void removeAliases(final AliasKey idKey, final CachedPage cachedPage) {
+        cachedPage.aliases.forEach(alias -> aliases.remove(alias, idKey));
+    }
+
+    /**
+     * Create builder of a cache of the pages of given content type, fetched by given lookup service.
+     *
+     * @param lookupService fetching the pages
+     * @param pageType      Contentful model's page type
+     * @return builder with default settings
+     */
+    public static Builder builder(final ContentfulLookupService lookupService, final String pageType) {
+        return new Builder(lookupService, pageType);
+    }
+
+    /**
+     * Builder of {@link AliasedPageCache}.
+     */
+    public static final class Builder {
+
+        private final ContentfulLookupService lookupService;
+        private final String pageType;
+        private final List<String> aliasFields = new ArrayList<>();
+        private int maxPages = 1000;
+        private long ttlMillis = TimeUnit.MINUTES.toMillis(5);
+
+        private Builder(final ContentfulLookupService lookupService, final String pageType) {
+            this.lookupService = lookupService;
+            this.pageType = pageType;
+        }
+
+        /**
+         * Field of the page type whose value identifies a page, e.g. {@code slug}.
+         *
+         * @param aliasField field of the page type, expected to be unique
+         * @return this builder
+         */
+        public Builder alias(final String aliasField) {
+            aliasFields.add(aliasField);
+            return this;
+        }
+
+        /**
+         * Maximum number of cached pages, each counted once regardless of its aliases.
+         *
+         * @param maxPages 1000 by default
+         * @return this builder
+         */
+        public Builder maxPages(final int maxPages) {
+            this.maxPages = maxPages;
+            return this;
+        }
+
+        /**
+         * Time after which a cached page is fetched again.
+         *
+         * @param ttl  5 minutes by default
+         * @param unit time unit of given duration
+         * @return this builder
+         */
+        public Builder ttl(final long ttl, final TimeUnit unit) {
+            this.ttlMillis = unit.toMillis(ttl);
+            return this;
+        }
+
+        public AliasedPageCache build() {
+            return new AliasedPageCache(pageType, aliasFields, (lookup, locales) ->
+                    lookupService.pages(Collections.singletonList(lookup), locales).get(lookup),
+                    maxPages, ttlMillis, System::currentTimeMillis);
+        }
+    }
+
+    /**
+     * Value of a field identifying a page for given locales, either an alias or the ID of its entry.
+     */
+    private static final class AliasKey {
+        private final String field;
+        private final String value;
+        private final List<Locale> locales;
+
+        private AliasKey(final String field, final String value, final List<Locale> locales) {
+            this.field = field;
+            this.value = value;
+            this.locales = Collections.unmodifiableList(new ArrayList<>(locales));
+        }
+
+        private boolean isId() {
+            return ID_FIELD.equals(field);
+        }
+
+        private ContentfulLookup toLookup(final String pageType) {
+            return isId() ? ContentfulLookup.byId(value) : ContentfulLookup.of(pageType, field, value);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final AliasKey that = (AliasKey) o;
+            return field.equals(that.field) && value.equals(that.value) && locales.equals(that.locales);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(field, value, locales);
+        }
+
+        @Override
+        public String toString() {
+            return field + "=" + value + locales;
+        }
+    }
+
+    private final class CachedPage {
+        private final CmsPage page;
+        private final long loadedAt;
+        private final List<AliasKey> aliases;
+
+        private CachedPage(final CmsPage page, final long loadedAt, final List<AliasKey> aliases) {
+            this.page = page;
+            this.loadedAt = loadedAt;
+            this.aliases = aliases;
+        }
+
+        private boolean isExpired(final long now) {
+            return now - loadedAt >= ttlMillis;
+        }
+    }
+}
@@ -0,0 +1,108 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.contentful.java.cda.CDAClient;
+import com.contentful.java.cda.CDAContentType;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.LongSupplier;
+
+/**
+ * Content types of the space, fetched through Contentful SDK once and kept for the lifetime of the client.
+ * <p>
+ * They are fetched again whenever a content type which is not known is asked for, e.g. after a new one has been
+ * added to the space, but at most once per {@link #REFETCH_INTERVAL_MILLIS}, so that requests for a content type
+ * which does not exist fail right away instead of fetching all the content types each. Concurrent fetches are
+ * prevented by a {@link ReentrantLock}, which unlike a monitor lets a virtual thread waiting for the response release
+ * its carrier thread.
+ */
+final class ContentTypeCache {
+
+    // number of content types fetched at once; 1000 is Contentful's max
+    private static final int CONTENT_TYPES_LIMIT = 1000;
+    static final long REFETCH_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(10);
+
+    private final CDAClient cdaClient;
+    private final LongSupplier clock;
+    private final ReentrantLock fetchLock = new ReentrantLock();
+    private volatile Map<String, CDAContentType> contentTypes = Collections.emptyMap();
+    private boolean fetched;
+    private long fetchedAt;
+
+    ContentTypeCache(final CDAClient cdaClient) {
+        this(cdaClient, System::currentTimeMillis);
+    }
+
+    ContentTypeCache(final CDAClient cdaClient, final LongSupplier clock) {
+        this.cdaClient = cdaClient;
+        this.clock = clock;
+    }
+
+    /**
+     * Get content type of given ID, fetching the content types in the current thread if it is not known and they
+     * have not been fetched within {@link #REFETCH_INTERVAL_MILLIS}.
+     *
+     * @param id of the content type
+     * @return the content type
+     * @throws IllegalStateException if the content type is not defined in the space
+     */
+    CDAContentType get(final String id) {
+        CDAContentType contentType = contentTypes.get(id);
+        if (contentType == null) {
+            fetchLock.lock();
+            try {
+                contentType = contentTypes.get(id);
+                if (contentType == null && (!fetched || clock.getAsLong() - fetchedAt >= REFETCH_INTERVAL_MILLIS)) {
+                    contentTypes = fetchContentTypes();
+                    contentType = contentTypes.get(id);
+                }
+            } finally {
+                fetchLock.unlock();
+            }
+        }
+        if (contentType == null) {
+            throw new IllegalStateException("Content type " + id + " is not defined on CMS");
+        }
+        return contentType;
+    }
+
+    /**
+     * Get all the content types of the space, fetching them in the current thread if none is known yet.
+     *
+     * @return the content types
+     */
+    Collection<CDAContentType> all() {
+        Map<String, CDAContentType> knownContentTypes = contentTypes;
+        if (knownContentTypes.isEmpty()) {
+            fetchLock.lock();
+            try {
+                if (!fetched) {
+                    contentTypes = fetchContentTypes();
+                }
+                knownContentTypes = contentTypes;
+            } finally {
+                fetchLock.unlock();
+            }
+        }
+        return knownContentTypes.values();
+    }
+
+    /**
+     * Must be called while holding {@link #fetchLock}.
+     */
+    private Map<String, CDAContentType> fetchContentTypes() {
+        final Map<String, CDAContentType> fetchedContentTypes = new HashMap<>();
+        cdaClient.fetch(CDAContentType.class)
+                .where("limit", String.valueOf(CONTENT_TYPES_LIMIT))
+                .all()
+                .items()
+                .forEach(item -> fetchedContentTypes.put(item.id(), (CDAContentType) item));
+        fetched = true;
+        fetchedAt = clock.getAsLong();
+        return Collections.unmodifiableMap(fetchedContentTypes);
+    }
+}
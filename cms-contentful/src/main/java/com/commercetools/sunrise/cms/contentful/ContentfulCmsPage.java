@@ -1,13 +1,24 @@
 package com.commercetools.sunrise.cms.contentful;
 
+import com.commercetools.sunrise.cms.CmsAsset;
 import com.commercetools.sunrise.cms.CmsPage;
+import com.contentful.java.cda.CDAAsset;
 import com.contentful.java.cda.CDAEntry;
 import com.contentful.java.cda.CDAField;
+import com.contentful.java.cda.CDAResource;
 import org.apache.commons.lang3.StringUtils;
 
 import javax.annotation.Nullable;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -26,15 +37,52 @@ import static org.apache.commons.lang3.StringUtils.split;
  * {@link ContentfulCmsPage#field(String)} method.
  * Last path segment (or the first one if there is only one segment) is supposed to match a field which
  * should be representable as a string.
+ * <p>
+ * If the page is created with a {@link RenderedTextCache}, {@link #html(String)} provides HTML rendered from
+ * fields of type Text, e.g. Markdown, once per revision of their entries.
+ * <p>
+ * Linked assets are described by {@link #asset(String)} along with their metadata and the variants of images
+ * configured by {@link ImageVariants}. Each asset linked from the page is described once, on first request, so
+ * the memory kept for the descriptions is bounded by the assets of the page rather than by the paths asked for.
  */
 public class ContentfulCmsPage implements CmsPage {
 
     private static final Pattern ARRAY_KEY_PATTERN = Pattern.compile("(.+)\\[(\\d+)\\]$");
 
     private final CDAEntry cdaEntry;
+    @Nullable
+    private final RenderedTextCache renderedTexts;
+    private final ImageVariants imageVariants;
+    @Nullable
+    private final String entityTag;
+    private final Map<CDAAsset, CmsAsset> assets = Collections.synchronizedMap(new IdentityHashMap<>());
+    @Nullable
+    private volatile Map<String, String> allFields;
+    @Nullable
+    private volatile ContentVersion contentVersion;
 
     public ContentfulCmsPage(final CDAEntry cdaEntry) {
+        this(cdaEntry, null, ImageVariants.defaults(), null);
+    }
+
+    ContentfulCmsPage(final CDAEntry cdaEntry, @Nullable final RenderedTextCache renderedTexts,
+                      final ImageVariants imageVariants, @Nullable final String entityTag) {
         this.cdaEntry = cdaEntry;
+        this.renderedTexts = renderedTexts;
+        this.imageVariants = imageVariants;
+        this.entityTag = entityTag;
+    }
+
+    CDAEntry entry() {
+        return cdaEntry;
+    }
+
+    /**
+     * @return ETag of the response the page was read from, or null if it is not known
+     */
+    @Nullable
+    String entityTag() {
+        return entityTag;
     }
 
     @Override
@@ -50,6 +98,157 @@ public class ContentfulCmsPage implements CmsPage {
                 findContent(lastEntry, fieldKey));
     }
 
+    /**
+     * Get HTML rendered from the field of type Text identified by the given path.
+     *
+     * @param path identifying the field (e.g. banner[2].description)
+     * @return HTML of the field, or absent if not found, not of type Text, or if the page has no renderer
+     */
+    @Override
+    public Optional<String> html(final String path) {
+        if (renderedTexts == null || StringUtils.isBlank(path)) {
+            return Optional.empty();
+        }
+
+        final String[] pathSegments = split(path, ".");
+        final String fieldKey = pathSegments[pathSegments.length - 1];
+        final String[] entryPathSegments = createEntryPathSegments(pathSegments);
+        return findEntry(entryPathSegments).flatMap(lastEntry ->
+                findText(lastEntry, fieldKey).map(text ->
+                        renderedTexts.render(lastEntry, fieldKey, text)));
+    }
+
+    /**
+     * Get the asset linked from the field identified by the given path, along with its metadata and, if it is
+     * an image, its variants.
+     *
+     * @param path identifying the field (e.g. banner[2].image)
+     * @return the asset, or absent if not found or if the field does not link an asset
+     */
+    @Override
+    public Optional<CmsAsset> asset(final String path) {
+        if (StringUtils.isBlank(path)) {
+            return Optional.empty();
+        }
+        return findAsset(path).map(asset -> assets.computeIfAbsent(asset, imageVariants::describe));
+    }
+
+    private Optional<CDAAsset> findAsset(final String path) {
+        final String[] pathSegments = split(path, ".");
+        final String fieldKey = pathSegments[pathSegments.length - 1];
+        final String[] entryPathSegments = createEntryPathSegments(pathSegments);
+        return findEntry(entryPathSegments).flatMap(lastEntry -> {
+            final Matcher arrayMatcher = ARRAY_KEY_PATTERN.matcher(fieldKey);
+            final Optional<Object> field = arrayMatcher.find()
+                    ? getFieldFromArray(lastEntry, arrayMatcher)
+                    : Optional.ofNullable(lastEntry.getField(fieldKey));
+            return field
+                    .filter(asset -> asset instanceof CDAAsset)
+                    .map(asset -> (CDAAsset) asset);
+        });
+    }
+
+    /**
+     * Get string representations of all the fields in the subtree of contained {@link CDAEntry}.
+     * <p>
+     * They are collected once, on first request. Entries linked more than once within the same path are visited
+     * only once, which protects against cycles in the content.
+     *
+     * @return content of all the fields keyed by their paths
+     */
+    @Override
+    public Optional<Map<String, String>> allFields() {
+        Map<String, String> fields = allFields;
+        if (fields == null) {
+            fields = new HashMap<>();
+            collectFields(cdaEntry, "", Collections.newSetFromMap(new IdentityHashMap<>()), fields);
+            fields = Collections.unmodifiableMap(fields);
+            allFields = fields;
+        }
+        return Optional.of(fields);
+    }
+
+    /**
+     * Get a hash of the identifiers, revisions and locales of all the entries and assets in the subtree of contained
+     * {@link CDAEntry}.
+     * <p>
+     * Contentful increments the revision of an entry or asset on every publication, so the hash changes whenever
+     * the content of the page or of anything it links to gets republished. It is computed once, on first request,
+     * together with {@link #lastModified()}.
+     *
+     * @return version of the content of this page, or absent if revision of some entry or asset is not known
+     */
+    @Override
+    public Optional<String> version() {
+        return Optional.ofNullable(contentVersion().version);
+    }
+
+    /**
+     * Get the latest time any of the entries and assets in the subtree of contained {@link CDAEntry} was updated at.
+     *
+     * @return time of the latest modification, or absent if not known for any entry or asset
+     */
+    @Override
+    public Optional<Instant> lastModified() {
+        return Optional.ofNullable(contentVersion().lastModified);
+    }
+
+    private ContentVersion contentVersion() {
+        ContentVersion version = contentVersion;
+        if (version == null) {
+            final Set<CDAResource> resources = Collections.newSetFromMap(new IdentityHashMap<>());
+            collectResources(cdaEntry, resources);
+            version = ContentVersion.of(resources);
+            contentVersion = version;
+        }
+        return version;
+    }
+
+    private void collectResources(@Nullable final Object field, final Set<CDAResource> resources) {
+        if (field instanceof List) {
+            ((List<?>) field).forEach(item -> collectResources(item, resources));
+        } else if (field instanceof CDAAsset) {
+            resources.add((CDAAsset) field);
+        } else if (field instanceof CDAEntry && resources.add((CDAEntry) field)) {
+            final CDAEntry entry = (CDAEntry) field;
+            for (CDAField contentTypeField : entry.contentType().fields()) {
+                collectResources(entry.getField(contentTypeField.id()), resources);
+            }
+        }
+    }
+
+    private void collectFields(final CDAEntry entry, final String pathPrefix, final Set<CDAEntry> visitedEntries,
+                               final Map<String, String> fields) {
+        if (!visitedEntries.add(entry)) {
+            return;
+        }
+        for (CDAField contentTypeField : entry.contentType().fields()) {
+            final String path = pathPrefix + contentTypeField.id();
+            final Object field = entry.getField(contentTypeField.id());
+            if (isArray(contentTypeField) && field instanceof List) {
+                final List<?> items = (List<?>) field;
+                for (int i = 0; i < items.size(); i++) {
+                    collectField(items.get(i), contentTypeField, path + "[" + i + "]", visitedEntries, fields);
+                }
+            } else if (!isArray(contentTypeField)) {
+                collectField(field, contentTypeField, path, visitedEntries, fields);
+            }
+        }
+        visitedEntries.remove(entry);
+    }
+
+    private void collectField(@Nullable final Object field, final CDAField contentTypeField, final String path,
+                              final Set<CDAEntry> visitedEntries, final Map<String, String> fields) {
+        if (field instanceof CDAEntry) {
+            collectFields((CDAEntry) field, path + ".", visitedEntries, fields);
+        } else if (field != null) {
+            final String content = getContentBasedOnType(field, contentTypeField);
+            if (content != null) {
+                fields.put(path, content);
+            }
+        }
+    }
+
     /**
      * Form an array with last segment skipped which is expected to be a field name.
      *
@@ -141,6 +340,21 @@ public class ContentfulCmsPage implements CmsPage {
                         getContentBasedOnType(field, contentTypeField)));
     }
 
+    /**
+     * Extract content of a field of type Text from an entry.
+     *
+     * @param entry    should contain expected field
+     * @param fieldKey id of field to be search inside entry, possibly with array index
+     * @return content of the field, or empty optional object if it is not of type Text
+     */
+    private Optional<String> findText(final CDAEntry entry, final String fieldKey) {
+        final Matcher arrayMatcher = ARRAY_KEY_PATTERN.matcher(fieldKey);
+        final String fieldId = arrayMatcher.find() ? arrayMatcher.group(1) : fieldKey;
+        final boolean isText = entry.contentType().fields().stream()
+                .anyMatch(field -> field.id().equals(fieldId) && FieldType.isText(field));
+        return isText ? findContent(entry, fieldKey) : Optional.empty();
+    }
+
     /**
      * Try to get a field from input entry which is supposed to contain an array of fields.
      * <p>
@@ -191,4 +405,50 @@ public class ContentfulCmsPage implements CmsPage {
     private String getContentBasedOnType(final Object field, final CDAField contentType) {
         return toStringStrategy(contentType).apply(field);
     }
+
+    /**
+     * Version and last modification time derived from the system attributes of a set of entries and assets.
+     */
+    private static final class ContentVersion {
+        @Nullable
+        private final String version;
+        @Nullable
+        private final Instant lastModified;
+
+        private ContentVersion(@Nullable final String version, @Nullable final Instant lastModified) {
+            this.version = version;
+            this.lastModified = lastModified;
+        }
+
+        private static ContentVersion of(final Set<CDAResource> resources) {
+            Set<String> revisions = new TreeSet<>();
+            Instant lastModified = null;
+            for (CDAResource resource : resources) {
+                final Map<String, Object> attrs = resource.attrs() != null ? resource.attrs() : Collections.emptyMap();
+                final Object revision = attrs.get("revision");
+                if (revisions != null && revision instanceof Number) {
+                    revisions.add(resource.id() + ":" + ((Number) revision).longValue() + ":" + attrs.get("locale"));
+                } else {
+                    revisions = null;
+                }
+                final Instant updatedAt = parseInstant(attrs.get("updatedAt"));
+                if (updatedAt != null && (lastModified == null || updatedAt.isAfter(lastModified))) {
+                    lastModified = updatedAt;
+                }
+            }
+            return new ContentVersion(revisions != null ? RevisionHash.of(revisions) : null, lastModified);
+        }
+
+        @Nullable
+        private static Instant parseInstant(@Nullable final Object value) {
+            if (value instanceof String) {
+                try {
+                    return Instant.parse((String) value);
+                } catch (DateTimeParseException e) {
+                    return null;
+                }
+            }
+            return null;
+        }
+    }
 }
@@ -3,6 +3,7 @@ package com.commercetools.sunrise.cms.contentful;
 import com.commercetools.sunrise.cms.CmsPage;
 import com.commercetools.sunrise.cms.CmsService;
 import com.commercetools.sunrise.cms.CmsServiceException;
+import com.commercetools.sunrise.cms.FetchScheduler;
 import com.contentful.java.cda.CDAArray;
 import com.contentful.java.cda.CDACallback;
 import com.contentful.java.cda.CDAClient;
@@ -11,14 +12,21 @@ import com.contentful.java.cda.CDALocale;
 import com.contentful.java.cda.CDAResource;
 import org.apache.commons.lang3.StringUtils;
 
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionStage;
 import java.util.concurrent.Executor;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Service providing access to CMS pages from Contentful platform.
@@ -31,24 +39,59 @@ import java.util.function.Supplier;
  * <p>
  * Contentful's JVM executor is synchronous and for that reason this service is built with additional {@link Executor}
  * parameter to provide its user with control over execution context in which requests are executed.
+ * <p>
+ * Several instances of the service can share connections to Contentful by being created with the same
+ * {@link SharedContentfulClient}.
+ * <p>
+ * If the shared client is configured with {@link FetchScheduler}, fetches of this service are scheduled as
+ * interactive, except for {@link #allPages(List)} which is always scheduled as background. Background jobs, e.g.
+ * refreshing or warming up a cache, should use the service returned by {@link #inBackground()}.
+ * <p>
+ * If the shared client is configured with {@link RetryPolicy}, page fetches failing transiently are tried again
+ * after a delay, within the same slot of the scheduler.
  */
 public class ContentfulCmsService implements CmsService {
 
+    // levels of entries to include in fetched hierarchy; 10 is Contentful's max
+    private static final int INCLUDE_LEVELS = 10;
+    // number of entries fetched at once when enumerating all pages; 1000 is Contentful's max
+    private static final int DEFAULT_BATCH_SIZE = 100;
+    private static final int MAX_BATCH_SIZE = 1000;
+
+    private final SharedContentfulClient sharedClient;
     private final CDAClient client;
     private final String pageType;
     private final String pageQueryField;
     private final Executor callbackExecutor;
+    private final FetchScheduler.Priority priority;
 
-    private ContentfulCmsService(final CDAClient client, final String pageType, final String pageQueryField,
-                                 final Executor callbackExecutor) {
-        this.client = client;
+    private ContentfulCmsService(final SharedContentfulClient sharedClient, final String pageType,
+                                 final String pageQueryField, final Executor callbackExecutor,
+                                 final FetchScheduler.Priority priority) {
+        this.sharedClient = sharedClient;
+        this.client = sharedClient.cdaClient();
         this.pageType = pageType;
-        this.pageQueryField = "fields." + pageQueryField;
+        this.pageQueryField = pageQueryField;
         this.callbackExecutor = callbackExecutor;
+        this.priority = priority;
+    }
+
+    /**
+     * Get a view of this service whose fetches are scheduled as background ones, to be used by jobs nobody is
+     * waiting for, so that they do not delay interactive requests.
+     *
+     * @return service sharing everything with this one but the priority of fetches
+     */
+    public ContentfulCmsService inBackground() {
+        return new ContentfulCmsService(sharedClient, pageType, pageQueryField, callbackExecutor,
+                FetchScheduler.Priority.BACKGROUND);
     }
 
     /**
      * Get the page content corresponding to the given key.
+     * <p>
+     * Cancelling the returned future cancels the request to Contentful: it is skipped if it has not been started
+     * yet or aborted if it is in progress.
      *
      * @param pageKey identifying the page
      * @param locales for the localized content inside the page
@@ -58,8 +101,131 @@ public class ContentfulCmsService implements CmsService {
      */
     @Override
     public CompletionStage<Optional<CmsPage>> page(final String pageKey, final List<Locale> locales) {
-        return fetchEntry(pageKey, getLocaleForContentful(locales))
-                .thenApply(cdaEntry -> cdaEntry.map(ContentfulCmsPage::new));
+        return fetchPage(pageKey, getLocaleForContentful(locales));
+    }
+
+    /**
+     * Get the page content corresponding to the given key, skipping the transfer of it if it has not changed since
+     * the cached page was fetched.
+     * <p>
+     * Contentful is asked with a conditional request carrying the ETag of the response the cached page was read from,
+     * and the cached page is kept if the content is confirmed to be not modified. If the content has changed and
+     * the shared client reads responses directly, the page is read from the response to the conditional request.
+     * Otherwise, or if the ETag of the cached page is not known, the page is fetched as usual.
+     * <p>
+     * Cancelling the returned future cancels the conditional request, or the fetch of the page if it has started.
+     *
+     * @param pageKey    identifying the page
+     * @param locales    for the localized content inside the page
+     * @param cachedPage previously fetched page for the same key and locales
+     * @return a {@link CompletionStage} containing the up to date page content identified by the key,
+     * or absent if it could not be found, or a {@link CmsServiceException} if there was a problem
+     * when obtaining content
+     */
+    @Override
+    public CompletionStage<Optional<CmsPage>> refresh(final String pageKey, final List<Locale> locales,
+                                                      final CmsPage cachedPage) {
+        final String locale = getLocaleForContentful(locales);
+        final Map<String, String> query = entriesQuery(pageKey, locale);
+        final String entityTag = cachedPage instanceof ContentfulCmsPage
+                ? ((ContentfulCmsPage) cachedPage).entityTag()
+                : null;
+        final CompletableFuture<EntityTagRevalidator.Revalidation> revalidation = sharedClient.schedule(priority, () ->
+                sharedClient.revalidate(query, entityTag, callbackExecutor));
+        final CompletableFuture<Optional<CmsPage>> refreshed = new CompletableFuture<>();
+        revalidation.whenComplete((revalidated, error) -> {
+            if (error != null) {
+                refreshed.completeExceptionally(error);
+            } else if (revalidated.isNotModified()) {
+                refreshed.complete(Optional.of(cachedPage));
+            } else if (revalidated.entries().isPresent()) {
+                final FetchTrace trace = sharedClient.startTrace(pageKey, locale, INCLUDE_LEVELS);
+                new ContentCallback(pageKey, locale, trace).read(revalidated.entries().get())
+                        .whenComplete((page, pageError) -> {
+                            if (pageError != null) {
+                                refreshed.completeExceptionally(pageError);
+                            } else {
+                                refreshed.complete(page);
+                            }
+                        });
+            } else if (!refreshed.isDone()) {
+                final CompletableFuture<Optional<CmsPage>> page = page(pageKey, locales).toCompletableFuture();
+                propagateCancellation(refreshed, page);
+                page.whenComplete((result, pageError) -> {
+                    if (pageError != null) {
+                        refreshed.completeExceptionally(pageError);
+                    } else {
+                        refreshed.complete(result);
+                    }
+                });
+            }
+        });
+        return propagateCancellation(refreshed, revalidation);
+    }
+
+    /**
+     * Get all the pages of the page type, e.g. to build a sitemap or a search index.
+     * <p>
+     * Pages are fetched in batches of {@value DEFAULT_BATCH_SIZE}, see {@link #allPages(List, int)}.
+     *
+     * @param locales for the localized content inside the pages
+     * @return lazily populated stream of all the pages
+     */
+    public Stream<CmsPage> allPages(final List<Locale> locales) {
+        return allPages(locales, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Get all the pages of the page type, e.g. to build a sitemap or a search index.
+     * <p>
+     * Pages are fetched in batches of given size ordered by their ID, as they are consumed from the returned stream.
+     * The next batch is fetched while the current one is being consumed, but never further ahead, so that the memory
+     * used does not depend on the number of pages. Consuming the stream blocks while waiting for a batch, and failure
+     * to fetch one is thrown as {@link CmsServiceException}. Closing the stream cancels the batch being fetched.
+     * <p>
+     * Pages published or deleted while the stream is being consumed might be skipped or provided twice.
+     *
+     * @param locales   for the localized content inside the pages
+     * @param batchSize number of pages fetched at once, up to 1000; bigger batches mean fewer requests
+     *                  but more memory used, depending on the size of the pages including their linked entries
+     * @return lazily populated stream of all the pages
+     */
+    public Stream<CmsPage> allPages(final List<Locale> locales, final int batchSize) {
+        if (batchSize <= 0 || batchSize > MAX_BATCH_SIZE) {
+            throw new IllegalArgumentException("Batch size must be between 1 and " + MAX_BATCH_SIZE);
+        }
+        final String locale = getLocaleForContentful(locales);
+        final PaginatedEntriesSpliterator entries = new PaginatedEntriesSpliterator(skip ->
+                sharedClient.schedule(FetchScheduler.Priority.BACKGROUND, () ->
+                        new EntriesCallback(locale, skip, batchSize).fetch()), batchSize);
+        return StreamSupport.stream(entries, false)
+                .onClose(entries::close)
+                .map(sharedClient::page);
+    }
+
+    /**
+     * Make cancellation of the dependent future cancel the future it depends on as well.
+     */
+    private static <T> CompletableFuture<T> propagateCancellation(final CompletableFuture<T> dependent,
+                                                                 final CompletableFuture<?> source) {
+        dependent.whenComplete((result, error) -> {
+            if (dependent.isCancelled()) {
+                source.cancel(false);
+            }
+        });
+        return dependent;
+    }
+
+    /**
+     * Parameters of the entries query in the form they are sent by {@link ContentCallback#fetch()}.
+     */
+    private Map<String, String> entriesQuery(final String pageKey, final String locale) {
+        final Map<String, String> query = new HashMap<>();
+        query.put("content_type", pageType);
+        query.put("include", String.valueOf(INCLUDE_LEVELS));
+        query.put("locale", locale);
+        query.put(pageQueryField, pageKey);
+        return query;
     }
 
     /**
@@ -75,12 +241,27 @@ public class ContentfulCmsService implements CmsService {
         return locales.isEmpty() ? "*" : locales.get(0).toLanguageTag();
     }
 
-    private CompletableFuture<Optional<CDAEntry>> fetchEntry(final String pageKey, final String locale) {
-        return new ContentCallback(pageKey, locale).fetch();
+    /**
+     * Fetch the page once the scheduler allows it. Its trace starts right away, so that waiting for the scheduler
+     * is traced as part of waiting in the queue.
+     */
+    private CompletableFuture<Optional<CmsPage>> fetchPage(final String pageKey, final String locale) {
+        final FetchTrace trace = sharedClient.startTrace(pageKey, locale, INCLUDE_LEVELS);
+        final CompletableFuture<Optional<CmsPage>> page = sharedClient.schedule(priority, () ->
+                new ContentCallback(pageKey, locale, trace).fetch());
+        page.whenComplete((result, error) -> {
+            if (page.isCancelled()) {
+                trace.finished(error);
+            }
+        });
+        return page;
     }
 
     /**
      * Create new instance of {@link ContentfulCmsService} based on Contentful account credentials.
+     * <p>
+     * Every instance created this way holds its own connections to Contentful. Use
+     * {@link #of(SharedContentfulClient, String, String, Executor)} to share them between several instances.
      *
      * @param spaceId          Contentful space ID
      * @param token            access token to given space
@@ -91,20 +272,83 @@ public class ContentfulCmsService implements CmsService {
      */
     public static ContentfulCmsService of(final String spaceId, final String token, final String pageType,
                                           final String pageQueryField, final Executor callbackExecutor) {
-        return of(() -> createClient(spaceId, token), pageType, pageQueryField, callbackExecutor);
+        return of(SharedContentfulClient.of(spaceId, token), pageType, pageQueryField, callbackExecutor);
+    }
+
+    /**
+     * Create new instance of {@link ContentfulCmsService} talking to Contentful through given shared client.
+     *
+     * @param sharedClient     client whose connections are shared with other services
+     * @param pageType         Contentful model's page type to be queried against
+     * @param pageQueryField   pageType field against which query will be run
+     * @param callbackExecutor defines execution context in which requests are executed
+     * @return instance of this service ready to serve content based on given configuration
+     */
+    public static ContentfulCmsService of(final SharedContentfulClient sharedClient, final String pageType,
+                                          final String pageQueryField, final Executor callbackExecutor) {
+        return new ContentfulCmsService(sharedClient, pageType, "fields." + pageQueryField, callbackExecutor,
+                FetchScheduler.Priority.INTERACTIVE);
     }
 
     static ContentfulCmsService of(final Supplier<CDAClient> contentfulClientProvider,
                                    final String pageType, final String pageQueryField,
                                    final Executor callbackExecutor) {
-        return new ContentfulCmsService(contentfulClientProvider.get(), pageType, pageQueryField, callbackExecutor);
+        return of(new SharedContentfulClient(contentfulClientProvider.get(), null, null, null, ContentfulTracer.NOOP,
+                null, null, null, null, null, ImageVariants.defaults(), RetryPolicy.none()),
+                pageType, pageQueryField, callbackExecutor);
     }
 
-    private static CDAClient createClient(final String spaceId, final String token) {
-        return CDAClient.builder()
-                .setSpace(spaceId)
-                .setToken(token)
-                .build();
+    /**
+     * Fetches a batch of entries of the page type, in the order of their ID, for given locale.
+     * <p>
+     * Cancelling the future cancels the request to Contentful.
+     */
+    class EntriesCallback extends CDACallback<CDAArray> {
+        private final String locale;
+        private final int skip;
+        private final int limit;
+        private final CompletableFuture<List<CDAEntry>> future = new CompletableFuture<>();
+
+        private EntriesCallback(final String locale, final int skip, final int limit) {
+            this.locale = locale;
+            this.skip = skip;
+            this.limit = limit;
+            future.whenComplete((result, error) -> {
+                if (future.isCancelled()) {
+                    cancel();
+                }
+            });
+        }
+
+        private CompletableFuture<List<CDAEntry>> fetch() {
+            callbackExecutor.execute(() -> {
+                if (!future.isDone()) {
+                    client.fetch(CDAEntry.class)
+                            .withContentType(pageType)
+                            .include(INCLUDE_LEVELS)
+                            .where("locale", locale)
+                            .where("order", "sys.id")
+                            .where("skip", String.valueOf(skip))
+                            .where("limit", String.valueOf(limit))
+                            .all(this);
+                }
+            });
+            return future;
+        }
+
+        @Override
+        protected void onSuccess(final CDAArray result) {
+            future.complete(result.items().stream()
+                    .filter(item -> item instanceof CDAEntry)
+                    .map(item -> (CDAEntry) item)
+                    .collect(Collectors.toList()));
+        }
+
+        @Override
+        protected void onFailure(final Throwable error) {
+            future.completeExceptionally(new CmsServiceException("Could not fetch entries of " + pageType
+                    + " starting at " + skip, error));
+        }
     }
 
     /**
@@ -114,52 +358,158 @@ public class ContentfulCmsService implements CmsService {
     class ContentCallback {
         private final String pageKey;
         private final String locale;
+        private final FetchTrace trace;
 
-        private ContentCallback(final String pageKey, final String locale) {
+        private ContentCallback(final String pageKey, final String locale, final FetchTrace trace) {
             this.pageKey = pageKey;
             this.locale = locale;
+            this.trace = trace;
         }
 
         /**
          * Execute request to Contentful inside configured {@link Executor} context.
+         * <p>
+         * The request is skipped if returned future is already completed, i.e. cancelled, by the time it is executed.
+         * <p>
+         * The fetch is traced with {@link FetchTrace}, whose context is carried over to the executor thread.
+         * <p>
+         * If the shared client reads responses directly, the request is sent and its response read in the executor
+         * thread, otherwise they are left to Contentful SDK.
+         * <p>
+         * A failed request which the retry policy allows to be tried again is executed the same way after a delay.
          */
-        private CompletableFuture<Optional<CDAEntry>> fetch() {
-            ContentfulCallback contentfulCallback = new ContentfulCallback();
-            callbackExecutor.execute(() ->
-                    client.fetch(CDAEntry.class)
-                            .withContentType(pageType) // mandatory when filtering by fields in contentful
-                            .include(10) // levels of entries to include in fetched hierarchy; 10 is Contentful's max
-                            .where("locale", locale)
-                            .where(pageQueryField, pageKey)
-                            .all(contentfulCallback)
-            );
+        private CompletableFuture<Optional<CmsPage>> fetch() {
+            ContentfulCallback contentfulCallback = new ContentfulCallback(trace);
+            CompletableFuture<Optional<CmsPage>> future = contentfulCallback.toCompletableFuture();
+            sharedClient.retryPolicy().fetchStarted();
+            callbackExecutor.execute(() -> attempt(contentfulCallback, future));
+            return future;
+        }
+
+        /**
+         * Pick the page out of given entries read from a response already, in the current thread.
+         */
+        private CompletableFuture<Optional<CmsPage>> read(final DirectEntriesFetcher.Entries entries) {
+            final ContentfulCallback contentfulCallback = new ContentfulCallback(trace);
+            try (ContentfulSpan.Scope scope = trace.dequeued()) {
+                contentfulCallback.onItems(entries.items(), entries.entityTag());
+            }
             return contentfulCallback.toCompletableFuture();
         }
 
+        private void attempt(final ContentfulCallback contentfulCallback,
+                             final CompletableFuture<Optional<CmsPage>> future) {
+            try (ContentfulSpan.Scope scope = trace.dequeued()) {
+                if (!future.isDone()) {
+                    if (sharedClient.isTracingRequests()) {
+                        Runnable forgetRequest = sharedClient.expectRequest(entriesQuery(pageKey, locale), trace);
+                        future.whenComplete((result, error) -> forgetRequest.run());
+                    }
+                    if (sharedClient.isFetchingDirectly(locale)) {
+                        fetchDirectly(contentfulCallback, future);
+                    } else {
+                        contentfulCallback.expectEntityTag(
+                                sharedClient.expectEntityTag(entriesQuery(pageKey, locale), future));
+                        client.fetch(CDAEntry.class)
+                                .withContentType(pageType) // mandatory when filtering by fields in contentful
+                                .include(INCLUDE_LEVELS)
+                                .where("locale", locale)
+                                .where(pageQueryField, pageKey)
+                                .all(contentfulCallback);
+                    }
+                }
+            }
+        }
+
+        private void fetchDirectly(final ContentfulCallback contentfulCallback,
+                                   final CompletableFuture<Optional<CmsPage>> future) {
+            final DirectEntriesFetcher.Entries entries;
+            try {
+                entries = sharedClient.fetchDirectly(entriesQuery(pageKey, locale), future);
+            } catch (IOException | RuntimeException e) {
+                contentfulCallback.onFailure(e);
+                return;
+            }
+            contentfulCallback.onItems(entries.items(), entries.entityTag());
+        }
+
         /**
          * Wrapper for Contentful's callback which verifies that only single (unique) item was fetched and returns it
          * wrapped into {@link CompletableFuture}.
          * <p>
-         * In case fetching failed a meaningful message is returned in {@link CmsServiceException}.
+         * In case fetching failed and it is not going to be tried again, a meaningful message is returned
+         * in {@link CmsServiceException}.
+         * <p>
+         * Cancelling the future cancels this callback, which aborts the HTTP call in progress.
          */
         class ContentfulCallback extends CDACallback<CDAArray> {
-            private final CompletableFuture<Optional<CDAEntry>> future = new CompletableFuture<>();
+            private final CompletableFuture<Optional<CmsPage>> future = new CompletableFuture<>();
+            private final FetchTrace trace;
+            private int retries = 0;
+            @Nullable
+            private volatile EntityTagInterceptor.Expectation entityTagExpectation;
+
+            ContentfulCallback(final FetchTrace trace) {
+                this.trace = trace;
+                future.whenComplete((result, error) -> {
+                    if (future.isCancelled()) {
+                        cancel();
+                        trace.finished(error);
+                    }
+                });
+            }
+
+            /**
+             * Let the ETag of the response to the request about to be sent through Contentful SDK go along with
+             * the page.
+             */
+            private void expectEntityTag(@Nullable final EntityTagInterceptor.Expectation expectation) {
+                this.entityTagExpectation = expectation;
+            }
 
             @Override
             protected void onSuccess(final CDAArray result) {
-                List<CDAResource> items = result.items();
-                if (items.isEmpty()) {
-                    future.complete(Optional.empty());
-                } else if (items.size() > 1) {
-                    completeExceptionally("Non unique identifier used. Result contains more than one page for "
-                            + pageKey, null);
-                } else {
-                    future.complete(Optional.of((CDAEntry) items.get(0)));
+                final EntityTagInterceptor.Expectation expectation = entityTagExpectation;
+                onItems(result.items(), expectation != null ? expectation.entityTag() : null);
+            }
+
+            private void onItems(final List<CDAResource> items, @Nullable final String entityTag) {
+                trace.callbackStarted(items.size());
+                try {
+                    if (items.isEmpty()) {
+                        future.complete(Optional.empty());
+                    } else if (items.size() > 1) {
+                        completeExceptionally("Non unique identifier used. Result contains more than one page for "
+                                + pageKey, null);
+                    } else {
+                        future.complete(Optional.of(sharedClient.page((CDAEntry) items.get(0), entityTag)));
+                    }
+                } finally {
+                    trace.finished(null);
                 }
             }
 
             @Override
             protected void onFailure(final Throwable error) {
+                if (!future.isDone()) {
+                    final RetryPolicy retryPolicy = sharedClient.retryPolicy();
+                    final long retryDelayMillis = retryPolicy.retryDelayMillis(error, retries);
+                    if (retryDelayMillis >= 0) {
+                        trace.retrying(error, ++retries);
+                        retryPolicy.schedule(retryDelayMillis, () ->
+                                callbackExecutor.execute(() -> attempt(this, future)));
+                        return;
+                    }
+                }
+                trace.callbackStarted(-1);
+                try {
+                    handleFailure(error);
+                } finally {
+                    trace.finished(error);
+                }
+            }
+
+            private void handleFailure(final Throwable error) {
                 try {
                     if (StringUtils.contains(error.getMessage(), "code=400") && localeNotInSpace()) {
                         // Contentful responds with HTTP Bad Request (400) in several cases one of which is
@@ -186,7 +536,7 @@ public class ContentfulCmsService implements CmsService {
                         .noneMatch(cdaLocale -> Objects.equals(cdaLocale.code(), locale));
             }
 
-            private CompletableFuture<Optional<CDAEntry>> toCompletableFuture() {
+            private CompletableFuture<Optional<CmsPage>> toCompletableFuture() {
                 return future;
             }
         }
@@ -0,0 +1,119 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsPage;
+import com.commercetools.sunrise.cms.CmsPageSnapshot;
+import com.commercetools.sunrise.cms.CmsService;
+import com.commercetools.sunrise.cms.CmsServiceException;
+import com.commercetools.sunrise.cms.FetchScheduler;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+
+/**
+ * Service providing access to CMS pages from Contentful platform through its GraphQL Content API.
+ * <p>
+ * Unlike {@link ContentfulCmsService}, which fetches whole trees of entries, this service fetches only the fields
+ * on the paths it is created with, e.g. those used by the templates rendering the pages, in a single request.
+ * The paths have the same form and their values the same string representation as with {@link ContentfulCmsPage},
+ * but the pages provide values only for these paths.
+ * <p>
+ * The query is built on the first fetch from the content types of the space, which are fetched through
+ * {@link SharedContentfulClient} once. As with {@link ContentfulCmsService}, a page is identified by the value of
+ * the query field, requests are executed in the context of the callback executor, cancelling the returned future
+ * cancels the request, and if the shared client is configured with {@link FetchScheduler}, fetches are scheduled as
+ * interactive.
+ */
+public final class ContentfulGraphQLCmsService implements CmsService {
+
+    private final SharedContentfulClient sharedClient;
+    private final String pageType;
+    private final String pageQueryField;
+    private final List<String> fieldPaths;
+    private final Executor callbackExecutor;
+    @Nullable
+    private volatile GraphQLPageQuery query;
+
+    private ContentfulGraphQLCmsService(final SharedContentfulClient sharedClient, final String pageType,
+                                        final String pageQueryField, final List<String> fieldPaths,
+                                        final Executor callbackExecutor) {
+        this.sharedClient = sharedClient;
+        this.pageType = pageType;
+        this.pageQueryField = pageQueryField;
+        this.fieldPaths = fieldPaths;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    /**
+     * Get the fields on the configured paths of the page corresponding to the given key.
+     *
+     * @param pageKey identifying the page
+     * @param locales for the localized content inside the page, of which only the first one is used;
+     *                if empty the default locale of the space is used
+     * @return a {@link CompletionStage} containing the page content identified by the key,
+     * or absent if it could not be found, or a {@link CmsServiceException} if there was a problem
+     * when obtaining content
+     */
+    @Override
+    public CompletionStage<Optional<CmsPage>> page(final String pageKey, final List<Locale> locales) {
+        final Map<String, Object> variables = new HashMap<>();
+        variables.put("key", pageKey);
+        variables.put("locale", locales.isEmpty() ? null : locales.get(0).toLanguageTag());
+        return sharedClient.schedule(FetchScheduler.Priority.INTERACTIVE, () -> fetch(pageKey, variables));
+    }
+
+    private CompletableFuture<Optional<CmsPage>> fetch(final String pageKey, final Map<String, Object> variables) {
+        final CompletableFuture<Optional<CmsPage>> future = new CompletableFuture<>();
+        callbackExecutor.execute(() -> {
+            if (!future.isDone()) {
+                try {
+                    final GraphQLPageQuery pageQuery = query();
+                    final Map<String, Object> data = sharedClient.graphQLClient()
+                            .execute(pageQuery.query(), variables, future);
+                    future.complete(pageQuery.fields(data).map(CmsPageSnapshot::of));
+                } catch (IOException | RuntimeException e) {
+                    future.completeExceptionally(new CmsServiceException("Could not fetch content for " + pageKey, e));
+                }
+            }
+        });
+        return future;
+    }
+
+    private GraphQLPageQuery query() {
+        GraphQLPageQuery pageQuery = query;
+        if (pageQuery == null) {
+            final ContentTypeCache contentTypes = sharedClient.graphQLClient().contentTypes();
+            pageQuery = GraphQLPageQuery.of(contentTypes.get(pageType), pageQueryField, fieldPaths,
+                    contentTypes.all());
+            query = pageQuery;
+        }
+        return pageQuery;
+    }
+
+    /**
+     * Create new instance of {@link ContentfulGraphQLCmsService} talking to Contentful through given shared client.
+     *
+     * @param sharedClient     client whose connections are shared with other services
+     * @param pageType         Contentful model's page type to be queried against
+     * @param pageQueryField   pageType field against which query will be run
+     * @param fieldPaths       paths of the fields to be fetched, e.g. {@code banner.slides[2].image}
+     * @param callbackExecutor defines execution context in which requests are executed
+     * @return instance of this service ready to serve content based on given configuration
+     */
+    public static ContentfulGraphQLCmsService of(final SharedContentfulClient sharedClient, final String pageType,
+                                                 final String pageQueryField, final Collection<String> fieldPaths,
+                                                 final Executor callbackExecutor) {
+        return new ContentfulGraphQLCmsService(sharedClient, pageType, pageQueryField,
+                Collections.unmodifiableList(new ArrayList<>(fieldPaths)), callbackExecutor);
+    }
+}
@@ -0,0 +1,98 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import javax.annotation.Nullable;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * Lookup of a single entry to be fetched by {@link ContentfulLookupService} together with other lookups.
+ * <p>
+ * As with {@link ContentfulCmsService}, an entry is identified by the value of a query field of its content type,
+ * which should be unique. Entries can also be looked up by their ID regardless of their content type.
+ */
+public final class ContentfulLookup {
+
+    private static final String ID_FIELD = "sys.id";
+
+    @Nullable
+    private final String contentType;
+    private final String queryField;
+    private final String key;
+
+    private ContentfulLookup(@Nullable final String contentType, final String queryField, final String key) {
+        this.contentType = contentType;
+        this.queryField = queryField;
+        this.key = key;
+    }
+
+    /**
+     * @return content type of the entry, or absent if it is looked up by its ID
+     */
+    public Optional<String> contentType() {
+        return Optional.ofNullable(contentType);
+    }
+
+    /**
+     * @return query parameter the entry is looked up by, e.g. {@code fields.slug} or {@code sys.id}
+     */
+    public String queryField() {
+        return queryField;
+    }
+
+    /**
+     * @return value of the query field identifying the entry
+     */
+    public String key() {
+        return key;
+    }
+
+    boolean isById() {
+        return contentType == null;
+    }
+
+    @Override
+    public boolean equals(final Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final ContentfulLookup that = (ContentfulLookup) o;
+        return Objects.equals(contentType, that.contentType)
+                && queryField.equals(that.queryField)
+                && key.equals(that.key);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(contentType, queryField, key);
+    }
+
+    @Override
+    public String toString() {
+        return (contentType != null ? contentType + " with " : "entry with ") + queryField + "=" + key;
+    }
+
+    /**
+     * Look up the entry of given content type by the value of its query field.
+     *
+     * @param contentType Contentful model's content type of the entry
+     * @param queryField  field of the content type identifying the entry
+     * @param key         value of the query field
+     * @return lookup of the entry
+     */
+    public static ContentfulLookup of(final String contentType, final String queryField, final String key) {
+        return new ContentfulLookup(contentType, "fields." + queryField, key);
+    }
+
+    /**
+     * Look up the entry by its ID, regardless of its content type.
+     *
+     * @param id of the entry
+     * @return lookup of the entry
+     */
+    public static ContentfulLookup byId(final String id) {
+        return new ContentfulLookup(null, ID_FIELD, id);
+    }
+}
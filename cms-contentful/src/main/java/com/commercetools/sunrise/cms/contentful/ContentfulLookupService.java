@@ -0,0 +1,255 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsPage;
+import com.commercetools.sunrise.cms.CmsServiceException;
+import com.commercetools.sunrise.cms.FetchScheduler;
+import com.contentful.java.cda.CDAArray;
+import com.contentful.java.cda.CDACallback;
+import com.contentful.java.cda.CDAEntry;
+import com.contentful.java.cda.CDAResource;
+import com.contentful.java.cda.FetchQuery;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+/**
+ * Service fetching entries of several content types at once, e.g. a landing page, a set of promo banners and
+ * a navigation menu needed to render a single response.
+ * <p>
+ * Lookups are sent in as few requests as Contentful Delivery API allows. Filtering by a field requires the content
+ * type to be specified, so the lookups of the same content type by the same query field are combined into a single
+ * request with the {@code [in]} operator, and the lookups by ID are combined into a single request regardless of
+ * their content types. Requests for different content types are sent concurrently through
+ * {@link SharedContentfulClient}, whose connections are shared, or multiplexed over a single one with HTTP/2.
+ * <p>
+ * Results are provided per lookup, so that a failed or ambiguous lookup does not affect the others. As with
+ * {@link ContentfulCmsService}, requests are executed in the context of the callback executor, are scheduled as
+ * interactive if the shared client is configured with {@link FetchScheduler}, and cancelling the futures of all
+ * the lookups sent in one request cancels the request.
+ */
+public final class ContentfulLookupService {
+
+    // levels of entries to include in fetched hierarchy; 10 is Contentful's max
+    private static final int INCLUDE_LEVELS = 10;
+    // number of keys combined into a single request, keeping its URL reasonably short
+    private static final int MAX_KEYS_PER_REQUEST = 100;
+    // entries fetched per request, enough to detect keys identifying more than one entry; 1000 is Contentful's max
+    private static final int LIMIT = 1000;
+
+    private final SharedContentfulClient sharedClient;
+    private final Executor callbackExecutor;
+    private final FetchScheduler.Priority priority;
+
+    private ContentfulLookupService(final SharedContentfulClient sharedClient, final Executor callbackExecutor,
+                                    final FetchScheduler.Priority priority) {
+        this.sharedClient = sharedClient;
+        this.callbackExecutor = callbackExecutor;
+        this.priority = priority;
+    }
+
+    /**
+     * Get a view of this service whose fetches are scheduled as background ones.
+     *
+     * @return service sharing everything with this one but the priority of fetches
+     */
+    public ContentfulLookupService inBackground() {
+        return new ContentfulLookupService(sharedClient, callbackExecutor, FetchScheduler.Priority.BACKGROUND);
+    }
+
+    /**
+     * Get the pages of all given lookups.
+     *
+     * @param lookups identifying the entries to be fetched
+     * @param locales for the localized content inside the pages
+     * @return for each of the distinct lookups, in the order given, a {@link CompletionStage} containing the page
+     * found by it, or absent if it could not be found, or a {@link CmsServiceException} if there was a problem
+     * when obtaining content
+     */
+    public Map<ContentfulLookup, CompletionStage<Optional<CmsPage>>> pages(final Collection<ContentfulLookup> lookups,
+                                                                           final List<Locale> locales) {
+        final String locale = locales.isEmpty() ? "*" : locales.get(0).toLanguageTag();
+        final Map<ContentfulLookup, CompletionStage<Optional<CmsPage>>> pages = new LinkedHashMap<>();
+        for (List<ContentfulLookup> batch : batches(lookups)) {
+            final CompletableFuture<List<CDAResource>> items = sharedClient.schedule(priority, () ->
+                    new BatchCallback(batch, locale).fetch());
+            final AtomicInteger pendingLookups = new AtomicInteger(batch.size());
+            for (ContentfulLookup lookup : batch) {
+                final CompletableFuture<Optional<CmsPage>> page = items.thenApply(result -> find(lookup, result));
+                page.whenComplete((result, error) -> {
+                    if (page.isCancelled() && pendingLookups.decrementAndGet() == 0) {
+                        items.cancel(false);
+                    }
+                });
+                pages.put(lookup, page);
+            }
+        }
+        return pages;
+    }
+
+    /**
+     * Split distinct lookups into groups which can be fetched with a single request each. Keys containing a comma
+     * cannot be listed with {@code [in]}, so they are looked up on their own.
+     */
+    static List<List<ContentfulLookup>> batches(final Collection<ContentfulLookup> lookups) {
+        final Map<List<String>, List<ContentfulLookup>> groups = new LinkedHashMap<>();
+        final List<List<ContentfulLookup>> batches = new ArrayList<>();
+        lookups.stream().distinct().forEach(lookup -> {
+            if (lookup.key().contains(",")) {
+                batches.add(Collections.singletonList(lookup));
+            } else {
+                final List<String> group = new ArrayList<>(2);
+                group.add(lookup.contentType().orElse(null));
+                group.add(lookup.queryField());
+                groups.computeIfAbsent(group, g -> new ArrayList<>()).add(lookup);
+            }
+        });
+        groups.values().forEach(group -> {
+            for (int from = 0; from < group.size(); from += MAX_KEYS_PER_REQUEST) {
+                batches.add(group.subList(from, Math.min(group.size(), from + MAX_KEYS_PER_REQUEST)));
+            }
+        });
+        return batches;
+    }
+
+    /**
+     * Parameters of the entries query fetching all the lookups of the batch, which share content type and query field.
+     */
+    static Map<String, String> entriesQuery(final List<ContentfulLookup> batch, final String locale) {
+        final ContentfulLookup first = batch.get(0);
+        final Map<String, String> query = new HashMap<>();
+        first.contentType().ifPresent(contentType -> query.put("content_type", contentType));
+        query.put("include", String.valueOf(INCLUDE_LEVELS));
+        query.put("locale", locale);
+        query.put("limit", String.valueOf(LIMIT));
+        if (batch.size() == 1) {
+            query.put(first.queryField(), first.key());
+        } else {
+            query.put(first.queryField() + "[in]", batch.stream()
+                    .map(ContentfulLookup::key)
+                    .collect(Collectors.joining(",")));
+        }
+        return query;
+    }
+
+    private Optional<CmsPage> find(final ContentfulLookup lookup, final List<CDAResource> items) {
+        final List<CDAEntry> entries = items.stream()
+                .filter(item -> item instanceof CDAEntry && matches(lookup, (CDAEntry) item))
+                .map(item -> (CDAEntry) item)
+                .collect(Collectors.toList());
+        if (entries.size() > 1) {
+            throw new CmsServiceException("Non unique identifier used. Result contains more than one page for "
+                    + lookup, null);
+        }
+        return entries.stream().findFirst().map(sharedClient::page);
+    }
+
+    private static boolean matches(final ContentfulLookup lookup, final CDAEntry entry) {
+        if (lookup.isById()) {
+            return lookup.key().equals(entry.id());
+        }
+        final String field = lookup.queryField().substring("fields.".length());
+        return lookup.contentType().get().equals(entry.contentType().id())
+                && matchesKey(lookup.key(), entry.getField(field));
+    }
+
+    /**
+     * Numbers are read as {@link Double} and rendered by {@link ContentfulCmsPage} as e.g. {@code 42.0}, so they are
+     * compared by value with the key, which is what Contentful filtered them by. Other values are compared in their
+     * string form, as rendered by {@link ContentfulCmsPage}.
+     */
+    private static boolean matchesKey(final String key, @Nullable final Object value) {
+        if (value instanceof Number) {
+            try {
+                return new BigDecimal(key).compareTo(new BigDecimal(value.toString())) == 0;
+            } catch (NumberFormatException e) {
+                return false;
+            }
+        }
+        return value != null && key.equals(String.valueOf(value));
+    }
+
+    /**
+     * Create new instance of {@link ContentfulLookupService} talking to Contentful through given shared client.
+     *
+     * @param sharedClient     client whose connections are shared with other services
+     * @param callbackExecutor defines execution context in which requests are executed
+     * @return instance of this service ready to serve content based on given configuration
+     */
+    public static ContentfulLookupService of(final SharedContentfulClient sharedClient,
+                                             final Executor callbackExecutor) {
+        return new ContentfulLookupService(sharedClient, callbackExecutor, FetchScheduler.Priority.INTERACTIVE);
+    }
+
+    /**
+     * Fetches the entries of a batch of lookups, through Contentful SDK or directly, depending on the shared client.
+     * <p>
+     * Cancelling the future cancels the request to Contentful.
+     */
+    class BatchCallback extends CDACallback<CDAArray> {
+        private final List<ContentfulLookup> batch;
+        private final String locale;
+        private final CompletableFuture<List<CDAResource>> future = new CompletableFuture<>();
+
+        private BatchCallback(final List<ContentfulLookup> batch, final String locale) {
+            this.batch = batch;
+            this.locale = locale;
+            future.whenComplete((result, error) -> {
+                if (future.isCancelled()) {
+                    cancel();
+                }
+            });
+        }
+
+        private CompletableFuture<List<CDAResource>> fetch() {
+            callbackExecutor.execute(() -> {
+                if (!future.isDone()) {
+                    final Map<String, String> query = entriesQuery(batch, locale);
+                    if (sharedClient.isFetchingDirectly(locale)) {
+                        fetchDirectly(query);
+                    } else {
+                        final FetchQuery<CDAEntry> fetchQuery = sharedClient.cdaClient().fetch(CDAEntry.class);
+                        query.forEach(fetchQuery::where);
+                        fetchQuery.all(this);
+                    }
+                }
+            });
+            return future;
+        }
+
+        private void fetchDirectly(final Map<String, String> query) {
+            final List<CDAResource> items;
+            try {
+                items = sharedClient.fetchDirectly(query, future).items();
+            } catch (IOException | RuntimeException e) {
+                onFailure(e);
+                return;
+            }
+            future.complete(items);
+        }
+
+        @Override
+        protected void onSuccess(final CDAArray result) {
+            future.complete(result.items());
+        }
+
+        @Override
+        protected void onFailure(final Throwable error) {
+            future.completeExceptionally(new CmsServiceException("Could not fetch content for " + batch, error));
+        }
+    }
+}
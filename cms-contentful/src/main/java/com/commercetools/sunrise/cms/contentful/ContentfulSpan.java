@@ -0,0 +1,70 @@
+package com.commercetools.sunrise.cms.contentful;
+
+/**
+ * Span started by {@link ContentfulTracer}, mirroring the span of OpenTelemetry.
+ * <p>
+ * Spans might be ended and given attributes on other threads than the one they were started on.
+ */
+public interface ContentfulSpan {
+
+    /**
+     * Span which records nothing.
+     */
+    ContentfulSpan NOOP = new ContentfulSpan() {
+        @Override
+        public ContentfulSpan setAttribute(final String key, final String value) {
+            return this;
+        }
+
+        @Override
+        public ContentfulSpan setAttribute(final String key, final long value) {
+            return this;
+        }
+
+        @Override
+        public void recordException(final Throwable error) {
+        }
+
+        @Override
+        public Scope makeCurrent() {
+            return () -> {
+            };
+        }
+
+        @Override
+        public void end() {
+        }
+    };
+
+    ContentfulSpan setAttribute(String key, String value);
+
+    ContentfulSpan setAttribute(String key, long value);
+
+    /**
+     * Mark the span as failed with given error.
+     *
+     * @param error the operation traced by the span failed with
+     */
+    void recordException(Throwable error);
+
+    /**
+     * Make this span the current context of the calling thread, until the returned scope is closed.
+     * <p>
+     * It is used on the thread of the callback executor, so that the caller's context is propagated to anything
+     * traced while the request to Contentful is being sent.
+     *
+     * @return scope to be closed on the same thread
+     */
+    Scope makeCurrent();
+
+    void end();
+
+    /**
+     * Period in which a span is the current context of a thread.
+     */
+    interface Scope extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+}
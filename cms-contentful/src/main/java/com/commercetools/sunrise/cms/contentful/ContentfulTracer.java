@@ -0,0 +1,44 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import javax.annotation.Nullable;
+
+/**
+ * Hook for tracing requests to Contentful, e.g. with OpenTelemetry, without depending on any tracing library.
+ * <p>
+ * Every page fetched by {@link ContentfulCmsService} is traced as a span named "contentful.page", started
+ * on the thread requesting the page, with child spans for each phase of the fetch:
+ * <ul>
+ * <li>"contentful.queue" - waiting for a thread of the callback executor</li>
+ * <li>"contentful.http" - HTTP exchange with Contentful, including the transfer of the response body, which is
+ * parsed as it streams in</li>
+ * <li>"contentful.deserialization" - the rest of the parsing after the body has been transferred, and resolution of
+ * links</li>
+ * <li>"contentful.callback" - handling of the result and completion of the page future</li>
+ * </ul>
+ * Spans carry page key ("cms.page_key"), locale ("cms.locale"), include depth ("contentful.include"), size of the
+ * response body in bytes ("contentful.payload_bytes") and number of fetched items ("contentful.item_count") as
+ * attributes. A fetch tried again by {@link RetryPolicy} has an HTTP span per attempt, and the number of retries
+ * ("contentful.retries") as well as the failures of previous attempts recorded in its page span.
+ * <p>
+ * Tracer is configured with {@link SharedContentfulClient.Builder#tracer(ContentfulTracer)}.
+ */
+public interface ContentfulTracer {
+
+    /**
+     * Tracer which records nothing, used unless another one is configured.
+     */
+    ContentfulTracer NOOP = (name, parent) -> ContentfulSpan.NOOP;
+
+    /**
+     * Start a new span.
+     * <p>
+     * A span without parent is started on the thread requesting the page and should be made a child of the context
+     * current on that thread, e.g. {@code Context.current()} in OpenTelemetry. Its children might be started on other
+     * threads and should be made children of given parent only.
+     *
+     * @param name   of the span
+     * @param parent of the span, or null for the span of the whole fetch
+     * @return started span
+     */
+    ContentfulSpan startSpan(String name, @Nullable ContentfulSpan parent);
+}
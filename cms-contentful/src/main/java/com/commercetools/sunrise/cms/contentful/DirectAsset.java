@@ -0,0 +1,54 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.contentful.java.cda.CDAAsset;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Asset read by {@link DirectEntriesParser} straight from the JSON response of Contentful, for a single locale.
+ */
+final class DirectAsset extends CDAAsset {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, Object> sys;
+    private final Map<String, Object> fields;
+
+    DirectAsset(final Map<String, Object> sys, final Map<String, Object> fields) {
+        this.sys = Collections.unmodifiableMap(sys);
+        this.fields = Collections.unmodifiableMap(fields);
+    }
+
+    @Override
+    public String id() {
+        return (String) sys.get("id");
+    }
+
+    @Override
+    public Map<String, Object> attrs() {
+        return sys;
+    }
+
+    @Override
+    public String url() {
+        final Object file = fields.get("file");
+        return file instanceof Map ? (String) ((Map<?, ?>) file).get("url") : null;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getField(final String key) {
+        return (T) fields.get(key);
+    }
+
+    @Override
+    public Map<String, Object> rawFields() {
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return "DirectAsset{id=" + id() + "}";
+    }
+}
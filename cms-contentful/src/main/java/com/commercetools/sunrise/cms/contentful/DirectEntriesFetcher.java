@@ -0,0 +1,98 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.contentful.java.cda.CDAResource;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Sends entries queries outside of Contentful SDK and reads their responses with {@link DirectEntriesParser}.
+ * <p>
+ * Content types, needed to tell how to represent fields as strings, are taken from {@link ContentTypeCache}.
+ * <p>
+ * Given a {@link ResourceInterner}, entries and assets are shared among all the pages fetched by the client.
+ */
+final class DirectEntriesFetcher {
+
+    private final OkHttpClient httpClient;
+    private final HttpUrl entriesUrl;
+    private final DirectEntriesParser parser;
+
+    DirectEntriesFetcher(final OkHttpClient httpClient, final HttpUrl entriesUrl,
+                         final ContentTypeCache contentTypes, @Nullable final ResourceInterner interner) {
+        this.httpClient = httpClient;
+        this.entriesUrl = entriesUrl;
+        this.parser = new DirectEntriesParser(contentTypes::get, interner);
+    }
+
+    /**
+     * Execute the entries query in the current thread.
+     *
+     * @param query  parameters of the entries query as sent by Contentful SDK, for a single locale
+     * @param future completed with the result of the fetch, whose cancellation aborts the request
+     * @return the items of the response, with their links resolved, and its ETag
+     * @throws IOException if the request fails, with the status code in the message in the form the SDK reports it
+     */
+    Entries fetch(final Map<String, String> query, final CompletableFuture<?> future) throws IOException {
+        final HttpUrl.Builder urlBuilder = entriesUrl.newBuilder();
+        query.forEach(urlBuilder::addQueryParameter);
+        final Call call = httpClient.newCall(new Request.Builder().url(urlBuilder.build()).build());
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        final Response response = call.execute();
+        try {
+            return read(response);
+        } finally {
+            response.body().close();
+        }
+    }
+
+    /**
+     * Read the response of an entries query in the current thread, e.g. of a conditional one, leaving it open.
+     *
+     * @param response to the entries query, for a single locale
+     * @return the items of the response, with their links resolved, and its ETag
+     * @throws IOException if the request failed, with the status code in the message in the form the SDK reports it
+     */
+    Entries read(final Response response) throws IOException {
+        if (!response.isSuccessful()) {
+            throw new IOException("Contentful responded with code=" + response.code()
+                    + " message=" + response.message());
+        }
+        return new Entries(parser.parse(response.body().charStream()), response.header("ETag"));
+    }
+
+    /**
+     * Items read from a response to an entries query, along with the ETag of the response they were read from.
+     */
+    static final class Entries {
+        private final List<CDAResource> items;
+        @Nullable
+        private final String entityTag;
+
+        Entries(final List<CDAResource> items, @Nullable final String entityTag) {
+            this.items = items;
+            this.entityTag = entityTag;
+        }
+
+        List<CDAResource> items() {
+            return items;
+        }
+
+        @Nullable
+        String entityTag() {
+            return entityTag;
+        }
+    }
+}
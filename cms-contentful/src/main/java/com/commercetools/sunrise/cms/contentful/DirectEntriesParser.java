@@ -0,0 +1,375 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.contentful.java.cda.CDAContentType;
+import com.contentful.java.cda.CDAEntry;
+import com.contentful.java.cda.CDAResource;
+import com.google.gson.stream.JsonReader;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Reads the response of Contentful entries query for a single locale straight into {@link DirectEntry} and
+ * {@link DirectAsset}, without the object graph Contentful SDK builds on the way.
+ * <p>
+ * The JSON is streamed once. Of the system attributes only those read by {@link ContentfulCmsPage} are kept, and
+ * field values are read the way Gson reads them for Contentful SDK: numbers as {@link Double}, objects as maps and
+ * arrays as lists. Links in fields, or in arrays in fields, are then resolved against the returned items and the
+ * included entries and assets, so that the nodes point directly to each other. Unresolvable links, e.g. to
+ * unpublished entries, are read as {@code null} values, or left out of arrays.
+ * <p>
+ * Read nodes cannot be modified. If the parser is given a {@link ResourceInterner}, the entries and assets already
+ * read for other pages are reused in place of the equal ones read from the response.
+ */
+final class DirectEntriesParser {
+
+    private final Function<String, CDAContentType> contentTypes;
+    @Nullable
+    private final ResourceInterner interner;
+
+    /**
+     * @param contentTypes provides content type of given ID
+     * @param interner     shares entries and assets among pages, or null if they should not be shared
+     */
+    DirectEntriesParser(final Function<String, CDAContentType> contentTypes,
+                        @Nullable final ResourceInterner interner) {
+        this.contentTypes = contentTypes;
+        this.interner = interner;
+    }
+
+    /**
+     * Read the response of an entries query.
+     *
+     * @param json response body
+     * @return the items of the response, with their links resolved
+     * @throws IOException if the response cannot be read or is not a valid array of entries
+     */
+    List<CDAResource> parse(final Reader json) throws IOException {
+        final JsonReader reader = new JsonReader(json);
+        final List<ParsedEntry> entries = new ArrayList<>();
+        final Map<String, DirectAsset> assets = new HashMap<>();
+        int itemCount = 0;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "items":
+                    // items go first, so that they take precedence over included entries with the same ID
+                    final List<ParsedEntry> items = new ArrayList<>();
+                    readEntries(reader, items);
+                    itemCount = items.size();
+                    entries.addAll(0, items);
+                    break;
+                case "includes":
+                    readIncludes(reader, entries, assets);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        final List<CDAResource> items = resolve(entries, itemCount, assets);
+        return interner != null ? intern(items, entries, assets, interner) : items;
+    }
+
+    private List<CDAResource> resolve(final List<ParsedEntry> parsedEntries, final int itemCount,
+                                      final Map<String, DirectAsset> assets) {
+        final Map<String, DirectEntry> entries = new HashMap<>();
+        final List<CDAResource> items = new ArrayList<>(itemCount);
+        for (final ParsedEntry parsedEntry : parsedEntries) {
+            final DirectEntry entry = parsedEntry.toEntry(contentTypes);
+            entries.putIfAbsent(entry.id(), entry);
+            if (items.size() < itemCount) {
+                items.add(entry);
+            }
+        }
+        parsedEntries.forEach(parsedEntry -> parsedEntry.fields.replaceAll((name, value) ->
+                replaceLinks(value, link -> link instanceof Link ? ((Link) link).target(entries, assets) : link)));
+        return items;
+    }
+
+    /**
+     * Replace the nodes read from the response by the equal ones already interned, and intern the rest.
+     * <p>
+     * Nodes replaced by interned ones are dropped, while links of the others are redirected to the interned nodes
+     * before they are interned themselves, so that no node is modified once it can be reached by other pages.
+     */
+    private static List<CDAResource> intern(final List<CDAResource> items, final List<ParsedEntry> parsedEntries,
+                                            final Map<String, DirectAsset> assets, final ResourceInterner interner) {
+        final Map<CDAResource, CDAResource> interned = new IdentityHashMap<>();
+        final Map<CDAResource, String> keysToIntern = new IdentityHashMap<>();
+        for (final DirectAsset asset : assets.values()) {
+            findInterned(asset, ResourceInterner.assetKey(asset), interner, interned, keysToIntern);
+        }
+        final List<CDAEntry> entries = new ArrayList<>(parsedEntries.size());
+        parsedEntries.forEach(parsedEntry -> entries.add(parsedEntry.entry));
+        final Map<CDAEntry, String> entryKeys = ResourceInterner.entryKeys(entries);
+        for (final CDAEntry entry : entries) {
+            findInterned(entry, entryKeys.get(entry), interner, interned, keysToIntern);
+        }
+        parsedEntries.stream()
+                .filter(parsedEntry -> interned.get(parsedEntry.entry) == parsedEntry.entry)
+                .forEach(parsedEntry -> parsedEntry.fields.replaceAll((name, value) ->
+                        replaceLinks(value, node -> interned.getOrDefault(node, (CDAResource) node))));
+        keysToIntern.forEach((node, key) -> interned.put(node, interner.intern(key, node)));
+        final List<CDAResource> internedItems = new ArrayList<>(items.size());
+        items.forEach(item -> internedItems.add(interned.get(item)));
+        return internedItems;
+    }
+
+    private static void findInterned(final CDAResource node, @Nullable final String key,
+                                     final ResourceInterner interner, final Map<CDAResource, CDAResource> interned,
+                                     final Map<CDAResource, String> keysToIntern) {
+        final CDAResource existingNode = key != null ? interner.get(key) : null;
+        if (existingNode != null) {
+            interned.put(node, existingNode);
+        } else {
+            interned.put(node, node);
+            if (key != null) {
+                keysToIntern.put(node, key);
+            }
+        }
+    }
+
+    /**
+     * Replace links in given field value, or in the array it is, and leave out those replaced by {@code null} from
+     * the array.
+     */
+    @Nullable
+    private static Object replaceLinks(@Nullable final Object value, final Function<Object, Object> replacement) {
+        if (value instanceof Link || value instanceof CDAResource) {
+            return replacement.apply(value);
+        } else if (value instanceof List && containsLinks((List<?>) value)) {
+            final List<Object> replacedValues = new ArrayList<>(((List<?>) value).size());
+            for (final Object item : (List<?>) value) {
+                final Object replacedItem = item instanceof Link || item instanceof CDAResource
+                        ? replacement.apply(item)
+                        : item;
+                if (replacedItem != null) {
+                    replacedValues.add(replacedItem);
+                }
+            }
+            return Collections.unmodifiableList(replacedValues);
+        }
+        return value;
+    }
+
+    private static boolean containsLinks(final List<?> values) {
+        return values.stream().anyMatch(item -> item instanceof Link || item instanceof CDAResource);
+    }
+
+    private static void readEntries(final JsonReader reader, final List<ParsedEntry> entries) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            entries.add(readEntry(reader));
+        }
+        reader.endArray();
+    }
+
+    private static void readIncludes(final JsonReader reader, final List<ParsedEntry> entries,
+                                     final Map<String, DirectAsset> assets) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "Entry":
+                    readEntries(reader, entries);
+                    break;
+                case "Asset":
+                    reader.beginArray();
+                    while (reader.hasNext()) {
+                        final DirectAsset asset = readAsset(reader);
+                        assets.put(asset.id(), asset);
+                    }
+                    reader.endArray();
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+    }
+
+    private static ParsedEntry readEntry(final JsonReader reader) throws IOException {
+        final ParsedEntry entry = new ParsedEntry();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "sys":
+                    entry.contentTypeId = readSys(reader, entry.sys);
+                    break;
+                case "fields":
+                    readFields(reader, entry.fields);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return entry;
+    }
+
+    private static DirectAsset readAsset(final JsonReader reader) throws IOException {
+        final Map<String, Object> sys = new HashMap<>();
+        final Map<String, Object> fields = new LinkedHashMap<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "sys":
+                    readSys(reader, sys);
+                    break;
+                case "fields":
+                    readFields(reader, fields);
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new DirectAsset(sys, fields);
+    }
+
+    /**
+     * Read the system attributes needed by {@link ContentfulCmsPage}.
+     *
+     * @return ID of the content type, if any
+     */
+    @Nullable
+    private static String readSys(final JsonReader reader, final Map<String, Object> sys) throws IOException {
+        String contentTypeId = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            switch (name) {
+                case "id":
+                case "type":
+                case "locale":
+                case "updatedAt":
+                    sys.put(name, reader.nextString());
+                    break;
+                case "revision":
+                    sys.put(name, reader.nextDouble());
+                    break;
+                case "contentType":
+                    final Object link = Link.from(readValue(reader));
+                    contentTypeId = link instanceof Link ? ((Link) link).id : null;
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return contentTypeId;
+    }
+
+    private static void readFields(final JsonReader reader, final Map<String, Object> fields) throws IOException {
+        reader.beginObject();
+        while (reader.hasNext()) {
+            final String name = reader.nextName();
+            final Object value = readValue(reader);
+            fields.put(name, value instanceof List ? Link.fromItems((List<?>) value) : Link.from(value));
+        }
+        reader.endObject();
+    }
+
+    @Nullable
+    private static Object readValue(final JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BEGIN_ARRAY:
+                final List<Object> list = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    list.add(readValue(reader));
+                }
+                reader.endArray();
+                return Collections.unmodifiableList(list);
+            case BEGIN_OBJECT:
+                final Map<String, Object> map = new LinkedHashMap<>();
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    map.put(reader.nextName(), readValue(reader));
+                }
+                reader.endObject();
+                return Collections.unmodifiableMap(map);
+            case STRING:
+                return reader.nextString();
+            case NUMBER:
+                return reader.nextDouble();
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case NULL:
+                reader.nextNull();
+                return null;
+            default:
+                throw new IOException("Unexpected JSON token " + reader.peek() + " at " + reader.getPath());
+        }
+    }
+
+    private static final class ParsedEntry {
+        private final Map<String, Object> sys = new HashMap<>();
+        private final Map<String, Object> fields = new LinkedHashMap<>();
+        @Nullable
+        private String contentTypeId;
+        @Nullable
+        private DirectEntry entry;
+
+        private DirectEntry toEntry(final Function<String, CDAContentType> contentTypes) {
+            entry = new DirectEntry(sys, contentTypeId != null ? contentTypes.apply(contentTypeId) : null, fields);
+            return entry;
+        }
+    }
+
+    /**
+     * Reference to an entry or asset, i.e. object {@code {"sys": {"type": "Link", "linkType": ..., "id": ...}}}.
+     */
+    private static final class Link {
+        private final String linkType;
+        private final String id;
+
+        private Link(final String linkType, final String id) {
+            this.linkType = linkType;
+            this.id = id;
+        }
+
+        @Nullable
+        private CDAResource target(final Map<String, DirectEntry> entries, final Map<String, DirectAsset> assets) {
+            return "Asset".equals(linkType) ? assets.get(id) : entries.get(id);
+        }
+
+        /**
+         * @return list with links in place of the items representing them, or given list if there are none
+         */
+        private static List<?> fromItems(final List<?> values) {
+            if (values.stream().noneMatch(item -> from(item) instanceof Link)) {
+                return values;
+            }
+            final List<Object> items = new ArrayList<>(values.size());
+            values.forEach(item -> items.add(from(item)));
+            return items;
+        }
+
+        /**
+         * @return link represented by given value, or the value itself if it is not a link
+         */
+        @Nullable
+        private static Object from(@Nullable final Object value) {
+            final Object sys = value instanceof Map && ((Map<?, ?>) value).size() == 1
+                    ? ((Map<?, ?>) value).get("sys")
+                    : null;
+            if (sys instanceof Map) {
+                final Map<?, ?> sysMap = (Map<?, ?>) sys;
+                if ("Link".equals(sysMap.get("type")) && sysMap.get("id") instanceof String) {
+                    return new Link(String.valueOf(sysMap.get("linkType")), (String) sysMap.get("id"));
+                }
+            }
+            return value;
+        }
+    }
+}
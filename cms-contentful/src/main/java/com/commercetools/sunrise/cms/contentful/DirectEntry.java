@@ -0,0 +1,62 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.contentful.java.cda.CDAContentType;
+import com.contentful.java.cda.CDAEntry;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Entry read by {@link DirectEntriesParser} straight from the JSON response of Contentful, for a single locale.
+ * <p>
+ * It holds nothing but its system attributes, its content type shared with all other entries of the same type
+ * and its fields, whose links are resolved to other entries and assets. It is read by {@link ContentfulCmsPage}
+ * the same way as entries built by Contentful SDK.
+ * <p>
+ * Its attributes and fields cannot be modified, so it can be shared among pages, see {@link ResourceInterner}.
+ */
+final class DirectEntry extends CDAEntry {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<String, Object> sys;
+    private final CDAContentType contentType;
+    private final Map<String, Object> fields;
+
+    DirectEntry(final Map<String, Object> sys, final CDAContentType contentType, final Map<String, Object> fields) {
+        this.sys = Collections.unmodifiableMap(sys);
+        this.contentType = contentType;
+        this.fields = Collections.unmodifiableMap(fields);
+    }
+
+    @Override
+    public String id() {
+        return (String) sys.get("id");
+    }
+
+    @Override
+    public Map<String, Object> attrs() {
+        return sys;
+    }
+
+    @Override
+    public CDAContentType contentType() {
+        return contentType;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T getField(final String key) {
+        return (T) fields.get(key);
+    }
+
+    @Override
+    public Map<String, Object> rawFields() {
+        return fields;
+    }
+
+    @Override
+    public String toString() {
+        return "DirectEntry{id=" + id() + "}";
+    }
+}
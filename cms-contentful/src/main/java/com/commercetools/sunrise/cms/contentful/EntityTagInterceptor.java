@@ -0,0 +1,133 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Hands the ETag of the response to a page fetch over to the fetch, so that it is kept along with the page built
+ * from that response, see {@link ContentfulCmsPage#entityTag()}.
+ * <p>
+ * It is installed as an interceptor of the HTTP client used by Contentful SDK, which sends requests on its own
+ * threads, so the fetch is matched with its request by the query like in {@link TracingInterceptor}. A fetch
+ * announces the query it is going to send with {@link #expect(Map, CompletableFuture)} and receives the ETag once
+ * the request has been answered. Queries are told apart independently of the order of their parameters.
+ * <p>
+ * Requests of several fetches of the same query under way at once cannot be told apart, so none of these fetches
+ * receives an ETag. Their pages are fetched in full when refreshed, rather than checked against the ETag of
+ * a response they might not have been read from.
+ */
+final class EntityTagInterceptor implements Interceptor {
+
+    private final HttpUrl entriesUrl;
+    private final ConcurrentMap<String, Queue<Expectation>> expectedRequests = new ConcurrentHashMap<>();
+
+    EntityTagInterceptor(final HttpUrl entriesUrl) {
+        this.entriesUrl = entriesUrl;
+    }
+
+    /**
+     * Announce that the fetch is going to send an entries query.
+     * <p>
+     * The expectation is forgotten once the fetch is finished, unless it has been cancelled, in which case its
+     * request may still be sent and has to be told apart from the requests of other fetches.
+     *
+     * @param query parameters of the entries query as sent by Contentful SDK
+     * @param fetch completed once the fetch is finished
+     * @return the expectation receiving the ETag of the response
+     */
+    Expectation expect(final Map<String, String> query, final CompletableFuture<?> fetch) {
+        final HttpUrl.Builder urlBuilder = entriesUrl.newBuilder();
+        query.forEach(urlBuilder::addQueryParameter);
+        final String key = key(urlBuilder.build());
+        final Expectation expectation = new Expectation();
+        expectedRequests.compute(key, (k, expectations) -> {
+            final Queue<Expectation> expected = expectations != null ? expectations : new ArrayDeque<>();
+            if (!expected.isEmpty()) {
+                expected.forEach(Expectation::markAmbiguous);
+                expectation.markAmbiguous();
+            }
+            expected.add(expectation);
+            return expected;
+        });
+        fetch.whenComplete((result, error) -> {
+            if (!fetch.isCancelled()) {
+                expectedRequests.computeIfPresent(key, (k, expectations) -> {
+                    expectations.remove(expectation);
+                    return expectations.isEmpty() ? null : expectations;
+                });
+            }
+        });
+        return expectation;
+    }
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        final Request request = chain.request();
+        final Expectation expectation = "GET".equals(request.method()) && request.header("If-None-Match") == null
+                ? takeExpected(request.url())
+                : null;
+        final Response response = chain.proceed(request);
+        if (expectation != null && response.code() == HttpURLConnection.HTTP_OK) {
+            expectation.entityTag = response.header("ETag");
+        }
+        return response;
+    }
+
+    @Nullable
+    private Expectation takeExpected(final HttpUrl url) {
+        final Expectation[] expectation = new Expectation[1];
+        expectedRequests.computeIfPresent(key(url), (key, expectations) -> {
+            expectation[0] = expectations.poll();
+            return expectations.isEmpty() ? null : expectations;
+        });
+        return expectation[0];
+    }
+
+    /**
+     * Form a key of the query which does not depend on the order of its parameters.
+     */
+    static String key(final HttpUrl url) {
+        final StringBuilder key = new StringBuilder(url.encodedPath());
+        for (String name : new TreeSet<>(url.queryParameterNames())) {
+            for (String value : url.queryParameterValues(name)) {
+                key.append('&').append(name).append('=').append(value);
+            }
+        }
+        return key.toString();
+    }
+
+    /**
+     * Request announced by a fetch, which receives the ETag of its response.
+     */
+    static final class Expectation {
+        private volatile boolean ambiguous;
+        @Nullable
+        private volatile String entityTag;
+
+        private void markAmbiguous() {
+            ambiguous = true;
+        }
+
+        /**
+         * @return the ETag of the successful response to the request, or null if there is none or it is not known
+         * whether the response belongs to this request
+         */
+        @Nullable
+        String entityTag() {
+            return ambiguous ? null : entityTag;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Checks with a conditional request whether the response to Contentful entries query has changed since
+ * the cached page was read from it.
+ * <p>
+ * Request is sent with 'If-None-Match' header carrying the ETag of the response the page was read from, see
+ * {@link ContentfulCmsPage#entityTag()}. Unchanged content is confirmed by Contentful with HTTP Not Modified (304)
+ * and an empty body, so neither the payload is transferred nor the entries graph is built again.
+ * <p>
+ * Changed content comes with the new response in full. Given a {@link DirectEntriesFetcher} it is read right away,
+ * along with its ETag, otherwise it is dropped and the page has to be fetched again, which takes a second request.
+ */
+final class EntityTagRevalidator {
+
+    private final OkHttpClient httpClient;
+    private final HttpUrl entriesUrl;
+
+    EntityTagRevalidator(final OkHttpClient httpClient, final HttpUrl entriesUrl) {
+        this.httpClient = httpClient;
+        this.entriesUrl = entriesUrl;
+    }
+
+    /**
+     * Execute conditional request inside given {@link Executor} context.
+     *
+     * @param query     parameters of the entries query as sent by Contentful SDK
+     * @param entityTag of the response the cached page was read from
+     * @param executor  defines execution context in which the request is executed
+     * @param reader    reads the response if the content has changed, or null if it should not be read
+     * @return whether the content is known not to have changed, and the entries of the changed content if read
+     */
+    CompletableFuture<Revalidation> revalidate(final Map<String, String> query, final String entityTag,
+                                               final Executor executor, @Nullable final DirectEntriesFetcher reader) {
+        final HttpUrl.Builder urlBuilder = entriesUrl.newBuilder();
+        query.forEach(urlBuilder::addQueryParameter);
+        final HttpUrl url = urlBuilder.build();
+        final CompletableFuture<Revalidation> future = new CompletableFuture<>();
+        executor.execute(() -> {
+            if (!future.isDone()) {
+                future.complete(revalidate(url, entityTag, reader));
+            }
+        });
+        return future;
+    }
+
+    private Revalidation revalidate(final HttpUrl url, final String entityTag,
+                                    @Nullable final DirectEntriesFetcher reader) {
+        final Request request = new Request.Builder()
+                .url(url)
+                .header("If-None-Match", entityTag)
+                .build();
+        try {
+            final Response response = httpClient.newCall(request).execute();
+            try {
+                if (response.code() == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                    return Revalidation.NOT_MODIFIED;
+                } else if (reader != null && response.code() == HttpURLConnection.HTTP_OK) {
+                    return new Revalidation(false, reader.read(response));
+                }
+                return Revalidation.MODIFIED;
+            } finally {
+                response.body().close();
+            }
+        } catch (IOException | RuntimeException e) {
+            // the page is fetched in full then, which reports the problem if it persists
+            return Revalidation.MODIFIED;
+        }
+    }
+
+    /**
+     * Outcome of a conditional request.
+     */
+    static final class Revalidation {
+        static final Revalidation NOT_MODIFIED = new Revalidation(true, null);
+        static final Revalidation MODIFIED = new Revalidation(false, null);
+
+        private final boolean notModified;
+        @Nullable
+        private final DirectEntriesFetcher.Entries entries;
+
+        private Revalidation(final boolean notModified, @Nullable final DirectEntriesFetcher.Entries entries) {
+            this.notModified = notModified;
+            this.entries = entries;
+        }
+
+        /**
+         * @return true if the content is known not to have changed, false if it has changed or it cannot be told
+         */
+        boolean isNotModified() {
+            return notModified;
+        }
+
+        /**
+         * @return the entries of the changed content, with their links resolved and the ETag of the response,
+         * if they have been read from the response
+         */
+        Optional<DirectEntriesFetcher.Entries> entries() {
+            return Optional.ofNullable(entries);
+        }
+    }
+}
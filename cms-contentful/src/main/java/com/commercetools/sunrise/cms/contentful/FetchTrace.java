@@ -0,0 +1,190 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import javax.annotation.Nullable;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Spans of a single page fetch, started and ended as the fetch goes through its phases.
+ * <p>
+ * Phases are run by different threads, hence all the methods hold a lock. It is a {@link ReentrantLock} rather than
+ * a monitor, as spans are ended by the tracer, which may block, e.g. while exporting them, and a virtual thread
+ * blocked while holding a monitor pins its carrier thread. Each span is ended only once,
+ * and {@link #finished(Throwable)} ends any span left open, e.g. when the fetch is cancelled while queued.
+ */
+final class FetchTrace {
+
+    static final String PAGE_SPAN = "contentful.page";
+    static final String QUEUE_SPAN = "contentful.queue";
+    static final String HTTP_SPAN = "contentful.http";
+    static final String DESERIALIZATION_SPAN = "contentful.deserialization";
+    static final String CALLBACK_SPAN = "contentful.callback";
+
+    static final String PAGE_KEY = "cms.page_key";
+    static final String LOCALE = "cms.locale";
+    static final String INCLUDE = "contentful.include";
+    static final String PAYLOAD_BYTES = "contentful.payload_bytes";
+    static final String ITEM_COUNT = "contentful.item_count";
+    static final String STATUS_CODE = "http.status_code";
+    static final String RETRIES = "contentful.retries";
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final ContentfulTracer tracer;
+    private final ContentfulSpan pageSpan;
+    @Nullable
+    private ContentfulSpan queueSpan;
+    @Nullable
+    private ContentfulSpan deserializationSpan;
+    @Nullable
+    private ContentfulSpan callbackSpan;
+    private boolean finished = false;
+
+    private FetchTrace(final ContentfulTracer tracer, final ContentfulSpan pageSpan) {
+        this.tracer = tracer;
+        this.pageSpan = pageSpan;
+        this.queueSpan = tracer.startSpan(QUEUE_SPAN, pageSpan);
+    }
+
+    /**
+     * Start tracing a fetch on the thread requesting the page, which begins with waiting in the queue.
+     */
+    static FetchTrace start(final ContentfulTracer tracer, final String pageKey, final String locale,
+                            final int includeLevels) {
+        final ContentfulSpan pageSpan = tracer.startSpan(PAGE_SPAN, null)
+                .setAttribute(PAGE_KEY, pageKey)
+                .setAttribute(LOCALE, locale)
+                .setAttribute(INCLUDE, includeLevels);
+        return new FetchTrace(tracer, pageSpan);
+    }
+
+    /**
+     * The fetch got a thread of the callback executor.
+     *
+     * @return scope propagating the context of the fetch to that thread
+     */
+    ContentfulSpan.Scope dequeued() {
+        lock.lock();
+        try {
+            endQueueSpan();
+            return pageSpan.makeCurrent();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    ContentfulSpan httpStarted() {
+        lock.lock();
+        try {
+            return tracer.startSpan(HTTP_SPAN, pageSpan);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The response has been transferred, and it is going to be parsed.
+     */
+    void httpFinished(final ContentfulSpan httpSpan, final int statusCode, final long payloadBytes) {
+        lock.lock();
+        try {
+            httpSpan.setAttribute(STATUS_CODE, statusCode)
+                    .setAttribute(PAYLOAD_BYTES, payloadBytes)
+                    .end();
+            pageSpan.setAttribute(PAYLOAD_BYTES, payloadBytes);
+            if (!finished && deserializationSpan == null) {
+                deserializationSpan = tracer.startSpan(DESERIALIZATION_SPAN, pageSpan);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    void httpFailed(final ContentfulSpan httpSpan, final Throwable error) {
+        lock.lock();
+        try {
+            httpSpan.recordException(error);
+            httpSpan.end();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The fetch failed, and it is going to be tried again after a delay, which is traced as part of the page span.
+     *
+     * @param error   the fetch failed with
+     * @param retries number of times the fetch has been tried again, including this time
+     */
+    void retrying(final Throwable error, final int retries) {
+        lock.lock();
+        try {
+            endDeserializationSpan();
+            pageSpan.recordException(error);
+            pageSpan.setAttribute(RETRIES, retries);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The result has been handed over to the callback.
+     *
+     * @param itemCount number of fetched items, or negative if the fetch failed
+     */
+    void callbackStarted(final int itemCount) {
+        lock.lock();
+        try {
+            endQueueSpan();
+            endDeserializationSpan();
+            if (!finished && callbackSpan == null) {
+                callbackSpan = tracer.startSpan(CALLBACK_SPAN, pageSpan);
+                if (itemCount >= 0) {
+                    callbackSpan.setAttribute(ITEM_COUNT, itemCount);
+                    pageSpan.setAttribute(ITEM_COUNT, itemCount);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * The page future has been completed.
+     *
+     * @param error the fetch failed with, or null if it succeeded
+     */
+    void finished(@Nullable final Throwable error) {
+        lock.lock();
+        try {
+            if (finished) {
+                return;
+            }
+            finished = true;
+            endQueueSpan();
+            endDeserializationSpan();
+            if (callbackSpan != null) {
+                callbackSpan.end();
+                callbackSpan = null;
+            }
+            if (error != null) {
+                pageSpan.recordException(error);
+            }
+            pageSpan.end();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void endQueueSpan() {
+        if (queueSpan != null) {
+            queueSpan.end();
+            queueSpan = null;
+        }
+    }
+
+    private void endDeserializationSpan() {
+        if (deserializationSpan != null) {
+            deserializationSpan.end();
+            deserializationSpan = null;
+        }
+    }
+}
@@ -63,6 +63,10 @@ enum FieldType {
         return field -> null;
     }
 
+    static boolean isText(final CDAField contentType) {
+        return TEXT.type().equals(getType(contentType));
+    }
+
     static boolean isArray(final CDAField contentType) {
         return ARRAY.type().equals(contentType.type());
     }
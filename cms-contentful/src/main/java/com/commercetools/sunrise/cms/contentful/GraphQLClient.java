@@ -0,0 +1,109 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+
+/**
+ * Sends queries to Contentful GraphQL Content API of a space.
+ * <p>
+ * Results are read the way Gson reads them for Contentful SDK: numbers as {@link Double}, objects as maps and arrays
+ * as lists.
+ */
+final class GraphQLClient {
+
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    private static final Type RESULT_TYPE = new TypeToken<Map<String, Object>>() {
+    }.getType();
+
+    private final OkHttpClient httpClient;
+    private final HttpUrl url;
+    private final ContentTypeCache contentTypes;
+    private final Gson gson = new Gson();
+
+    GraphQLClient(final OkHttpClient httpClient, final HttpUrl url, final ContentTypeCache contentTypes) {
+        this.httpClient = httpClient;
+        this.url = url;
+        this.contentTypes = contentTypes;
+    }
+
+    /**
+     * @return content types of the space, needed to build queries
+     */
+    ContentTypeCache contentTypes() {
+        return contentTypes;
+    }
+
+    /**
+     * Execute the query in the current thread.
+     *
+     * @param query     GraphQL query
+     * @param variables values of the variables of the query
+     * @param future    completed with the result of the fetch, whose cancellation aborts the request
+     * @return data of the result
+     * @throws IOException if the request fails or the result contains errors
+     */
+    Map<String, Object> execute(final String query, final Map<String, Object> variables,
+                                final CompletableFuture<?> future) throws IOException {
+        final Map<String, Object> body = new HashMap<>();
+        body.put("query", query);
+        body.put("variables", variables);
+        final Call call = httpClient.newCall(new Request.Builder()
+                .url(url)
+                .post(RequestBody.create(JSON, gson.toJson(body)))
+                .build());
+        future.whenComplete((result, error) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+        });
+        final Response response = call.execute();
+        try {
+            final Map<String, Object> result = readResult(response);
+            final Object errors = result.get("errors");
+            if (errors instanceof List && !((List<?>) errors).isEmpty()) {
+                throw new IOException("Contentful GraphQL query failed with code=" + response.code() + ": "
+                        + errorMessages((List<?>) errors));
+            }
+            if (!response.isSuccessful() || !(result.get("data") instanceof Map)) {
+                throw new IOException("Contentful GraphQL query failed with code=" + response.code()
+                        + " message=" + response.message());
+            }
+            @SuppressWarnings("unchecked")
+            final Map<String, Object> data = (Map<String, Object>) result.get("data");
+            return data;
+        } finally {
+            response.body().close();
+        }
+    }
+
+    private Map<String, Object> readResult(final Response response) throws IOException {
+        try {
+            final Map<String, Object> result = gson.fromJson(response.body().charStream(), RESULT_TYPE);
+            return result != null ? result : new HashMap<>();
+        } catch (JsonParseException e) {
+            throw new IOException("Could not read result of Contentful GraphQL query with code=" + response.code(), e);
+        }
+    }
+
+    private static String errorMessages(final List<?> errors) {
+        return errors.stream()
+                .map(error -> error instanceof Map ? String.valueOf(((Map<?, ?>) error).get("message")) : "?")
+                .collect(Collectors.joining("; "));
+    }
+}
@@ -0,0 +1,309 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.contentful.java.cda.CDAContentType;
+import com.contentful.java.cda.CDAField;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static com.commercetools.sunrise.cms.contentful.FieldType.isArray;
+import static org.apache.commons.lang3.StringUtils.split;
+
+/**
+ * Query of Contentful GraphQL Content API selecting just the fields on given paths of a page, and mapping of its
+ * result to the values of these paths.
+ * <p>
+ * Paths have the form read by {@link ContentfulCmsPage#field(String)}, e.g. {@code banner.slides[2].image}. Linked
+ * entries are selected with a fragment for every content type they might have, and arrays of linked entries and
+ * assets are limited to the highest index on the paths. Only fields of the types listed in {@link FieldType} are
+ * selected, and paths not leading to such a field, e.g. to a field of an unknown name or to an entry, are left out of
+ * the query altogether, in the same way {@link ContentfulCmsPage} finds no value for them.
+ * <p>
+ * Values are represented as strings the same way {@link ContentfulCmsPage} does it, except for the URL of assets,
+ * which GraphQL provides with the protocol and which is therefore turned into the protocol relative form of Contentful
+ * Delivery API.
+ */
+final class GraphQLPageQuery {
+
+    private static final Pattern ARRAY_KEY_PATTERN = Pattern.compile("(.+)\\[(\\d+)\\]$");
+    private static final String LINK = "Link";
+    private static final String ENTRY = "Entry";
+
+    private final String query;
+    private final String collectionField;
+    private final List<String> paths;
+
+    private GraphQLPageQuery(final String query, final String collectionField, final List<String> paths) {
+        this.query = query;
+        this.collectionField = collectionField;
+        this.paths = paths;
+    }
+
+    /**
+     * @return query taking the value of the query field as {@code key} variable and the locale as {@code locale}
+     * variable
+     */
+    String query() {
+        return query;
+    }
+
+    /**
+     * Read the values of the paths from the result of the query.
+     *
+     * @param data data of the query result
+     * @return the values keyed by their paths, or absent if no page matched the key
+     * @throws IllegalStateException if more than one page matched the key
+     */
+    Optional<Map<String, String>> fields(final Map<String, Object> data) {
+        final Object collection = data.get(collectionField);
+        final Object items = collection instanceof Map ? ((Map<?, ?>) collection).get("items") : null;
+        if (!(items instanceof List) || ((List<?>) items).isEmpty()) {
+            return Optional.empty();
+        }
+        if (((List<?>) items).size() > 1) {
+            throw new IllegalStateException("Non unique identifier used. Result contains more than one page");
+        }
+        final Object page = ((List<?>) items).get(0);
+        final Map<String, String> fields = new HashMap<>();
+        for (final String path : paths) {
+            final String value = toString(find(page, parse(path)));
+            if (value != null) {
+                fields.put(path, value);
+            }
+        }
+        return Optional.of(fields);
+    }
+
+    /**
+     * Build query of given fields of a page.
+     *
+     * @param pageType       content type of the page
+     * @param pageQueryField field of the page type identifying the page
+     * @param paths          paths of the fields to be selected
+     * @param contentTypes   all the content types of the space
+     * @return query selecting the fields
+     */
+    static GraphQLPageQuery of(final CDAContentType pageType, final String pageQueryField,
+                               final Collection<String> paths, final Collection<CDAContentType> contentTypes) {
+        final List<List<Segment>> parsedPaths = new ArrayList<>();
+        paths.forEach(path -> parsedPaths.add(parse(path)));
+        final String collectionField = uncapitalize(typeName(pageType)) + "Collection";
+        final StringBuilder query = new StringBuilder("query($key: String!, $locale: String) { ")
+                .append(collectionField)
+                .append("(where: {").append(pageQueryField).append(": $key}, locale: $locale, limit: 2) { items { ");
+        final int selectionStart = query.length();
+        appendSelection(query, pageType, parsedPaths, contentTypes);
+        if (query.length() == selectionStart) {
+            query.append("sys { id } ");
+        }
+        query.append("} } }");
+        return new GraphQLPageQuery(query.toString(), collectionField, new ArrayList<>(paths));
+    }
+
+    /**
+     * Select the fields of an entry of given content type on given paths.
+     */
+    private static void appendSelection(final StringBuilder query, final CDAContentType contentType,
+                                        final List<List<Segment>> paths,
+                                        final Collection<CDAContentType> contentTypes) {
+        final Map<String, List<List<Segment>>> pathsByField = new LinkedHashMap<>();
+        paths.forEach(path -> pathsByField.computeIfAbsent(path.get(0).name, name -> new ArrayList<>()).add(path));
+        pathsByField.forEach((name, fieldPaths) -> findField(contentType, name).ifPresent(field ->
+                appendField(query, field, fieldPaths, contentTypes)));
+    }
+
+    private static void appendField(final StringBuilder query, final CDAField field,
+                                    final List<List<Segment>> paths, final Collection<CDAContentType> contentTypes) {
+        final boolean array = isArray(field);
+        final String type = array ? stringValue(field.items().get("type")) : field.type();
+        final String linkType = array ? stringValue(field.items().get("linkType")) : field.linkType();
+        int limit = 0;
+        boolean selected = false;
+        final List<List<Segment>> subpaths = new ArrayList<>();
+        for (final List<Segment> path : paths) {
+            final Segment segment = path.get(0);
+            if (array == (segment.index < 0)) {
+                continue;
+            }
+            if (path.size() > 1) {
+                subpaths.add(path.subList(1, path.size()));
+            } else {
+                selected = true;
+            }
+            limit = Math.max(limit, segment.index + 1);
+        }
+        if (LINK.equals(type) && ENTRY.equals(linkType)) {
+            if (!subpaths.isEmpty()) {
+                final StringBuilder fragments = new StringBuilder();
+                appendFragments(fragments, field, subpaths, contentTypes);
+                if (fragments.length() > 0) {
+                    appendReference(query, field.id(), array, limit, fragments);
+                }
+            }
+        } else if (selected) {
+            if (LINK.equals(type) && FieldType.ASSET.type().equals(linkType)) {
+                appendReference(query, field.id(), array, limit, "url ");
+            } else if (FieldType.LOCATION.type().equals(type)) {
+                query.append(field.id()).append(" { lat lon } ");
+            } else if (isSupported(type)) {
+                query.append(field.id()).append(' ');
+            }
+        }
+    }
+
+    private static void appendReference(final StringBuilder query, final String name, final boolean array,
+                                        final int limit, final CharSequence selection) {
+        if (array) {
+            query.append(name).append("Collection(limit: ").append(limit).append(") { items { ")
+                    .append(selection).append("} } ");
+        } else {
+            query.append(name).append(" { ").append(selection).append("} ");
+        }
+    }
+
+    /**
+     * Select the fields on given paths in every content type the linked entry might have.
+     */
+    private static void appendFragments(final StringBuilder query, final CDAField field,
+                                        final List<List<Segment>> paths,
+                                        final Collection<CDAContentType> contentTypes) {
+        final List<String> allowedContentTypes = allowedContentTypes(field);
+        for (final CDAContentType contentType : contentTypes) {
+            if (allowedContentTypes.isEmpty() || allowedContentTypes.contains(contentType.id())) {
+                final StringBuilder selection = new StringBuilder();
+                appendSelection(selection, contentType, paths, contentTypes);
+                if (selection.length() > 0) {
+                    query.append("... on ").append(typeName(contentType)).append(" { ").append(selection)
+                            .append("} ");
+                }
+            }
+        }
+    }
+
+    /**
+     * @return IDs of the content types given link field is validated to, or empty if it can link any entry
+     */
+    @SuppressWarnings("unchecked")
+    private static List<String> allowedContentTypes(final CDAField field) {
+        final Object validations = isArray(field) ? field.items().get("validations") : field.validations();
+        if (validations instanceof List) {
+            for (final Object validation : (List<?>) validations) {
+                final Object linkContentType = validation instanceof Map
+                        ? ((Map<?, ?>) validation).get("linkContentType")
+                        : null;
+                if (linkContentType instanceof List) {
+                    return (List<String>) linkContentType;
+                }
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    private static Optional<CDAField> findField(final CDAContentType contentType, final String name) {
+        return contentType.fields().stream()
+                .filter(field -> field.id().equals(name))
+                .findAny();
+    }
+
+    private static boolean isSupported(@Nullable final String type) {
+        for (final FieldType fieldType : FieldType.values()) {
+            if (fieldType.type().equals(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Nullable
+    private static Object find(@Nullable final Object page, final List<Segment> path) {
+        Object value = page;
+        for (final Segment segment : path) {
+            if (!(value instanceof Map)) {
+                return null;
+            }
+            final Map<?, ?> fields = (Map<?, ?>) value;
+            if (segment.index < 0) {
+                value = fields.get(segment.name);
+            } else {
+                final Object collection = fields.get(segment.name + "Collection");
+                final Object items = collection instanceof Map
+                        ? ((Map<?, ?>) collection).get("items")
+                        : fields.get(segment.name);
+                value = items instanceof List && segment.index < ((List<?>) items).size()
+                        ? ((List<?>) items).get(segment.index)
+                        : null;
+            }
+        }
+        return value;
+    }
+
+    @Nullable
+    private static String toString(@Nullable final Object value) {
+        if (value instanceof Map) {
+            final Map<?, ?> fields = (Map<?, ?>) value;
+            if (fields.containsKey("url")) {
+                final String url = stringValue(fields.get("url"));
+                return url != null ? url.replaceFirst("^https?:", "") : null;
+            } else if (fields.containsKey("lat")) {
+                return String.valueOf(fields);
+            }
+            return null;
+        }
+        return value != null && !(value instanceof List) ? String.valueOf(value) : null;
+    }
+
+    private static List<Segment> parse(final String path) {
+        final List<Segment> segments = new ArrayList<>();
+        for (final String key : split(path, ".")) {
+            final Matcher arrayMatcher = ARRAY_KEY_PATTERN.matcher(key);
+            segments.add(arrayMatcher.find()
+                    ? new Segment(arrayMatcher.group(1), Integer.parseInt(arrayMatcher.group(2)))
+                    : new Segment(key, -1));
+        }
+        return segments;
+    }
+
+    /**
+     * Name of the GraphQL type of given content type, its ID in pascal case without any other characters.
+     */
+    static String typeName(final CDAContentType contentType) {
+        final StringBuilder name = new StringBuilder();
+        for (final String part : contentType.id().split("[^A-Za-z0-9]+")) {
+            if (!part.isEmpty()) {
+                name.append(Character.toUpperCase(part.charAt(0))).append(part.substring(1));
+            }
+        }
+        if (name.length() == 0 || Character.isDigit(name.charAt(0))) {
+            name.insert(0, "ContentType");
+        }
+        return name.toString();
+    }
+
+    private static String uncapitalize(final String name) {
+        return Character.toLowerCase(name.charAt(0)) + name.substring(1);
+    }
+
+    @Nullable
+    private static String stringValue(@Nullable final Object value) {
+        return value instanceof String ? (String) value : null;
+    }
+
+    private static final class Segment {
+        private final String name;
+        private final int index;
+
+        private Segment(final String name, final int index) {
+            this.name = name;
+            this.index = index;
+        }
+    }
+}
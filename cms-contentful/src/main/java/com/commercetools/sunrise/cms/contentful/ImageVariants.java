@@ -0,0 +1,134 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsAsset;
+import com.contentful.java.cda.CDAAsset;
+
+import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Variants of images to be offered by {@link ContentfulCmsPage#asset(String)}, served by Contentful Images API.
+ * <p>
+ * Each image gets a variant for every configured width smaller than the image, and one of the width of the image
+ * itself, in each of the configured formats, so that browsers can download the smallest sufficient file in the best
+ * format they support. Images are never scaled up. Vector images are served as they are, without variants.
+ */
+public final class ImageVariants {
+
+    private static final ImageVariants DEFAULTS = of(Arrays.asList(320, 640, 960, 1280, 1920),
+            Arrays.asList("avif", "webp"), 75);
+    private static final ImageVariants NONE = of(Collections.emptyList(), Collections.emptyList(), 0);
+
+    private final List<Integer> widths;
+    private final List<String> formats;
+    private final int quality;
+
+    private ImageVariants(final List<Integer> widths, final List<String> formats, final int quality) {
+        this.widths = widths;
+        this.formats = formats;
+        this.quality = quality;
+    }
+
+    /**
+     * Describe given asset along with the variants of it, if it is an image.
+     *
+     * @param asset linked from a page
+     * @return description of the asset, or null if it has no URL
+     */
+    @Nullable
+    CmsAsset describe(final CDAAsset asset) {
+        final String url = asset.url();
+        if (url == null) {
+            return null;
+        }
+        final String contentType = asset.mimeType();
+        final Map<?, ?> details = asset.fileField("details");
+        final Map<?, ?> image = details != null && details.get("image") instanceof Map
+                ? (Map<?, ?>) details.get("image")
+                : null;
+        final Integer width = image != null ? toInteger(image.get("width")) : null;
+        final Integer height = image != null ? toInteger(image.get("height")) : null;
+        final CmsAsset.Builder builder = CmsAsset.builder(url)
+                .contentType(contentType)
+                .size(details != null && details.get("size") instanceof Number
+                        ? ((Number) details.get("size")).longValue()
+                        : null)
+                .dimensions(width, height);
+        if (isScalable(contentType)) {
+            final List<Integer> variantWidths = variantWidths(width);
+            for (String format : formats) {
+                for (int variantWidth : variantWidths) {
+                    builder.variant(CmsAsset.ImageVariant.of(variantUrl(url, variantWidth, format), variantWidth,
+                            format));
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    private List<Integer> variantWidths(@Nullable final Integer width) {
+        if (width == null) {
+            return widths;
+        }
+        final List<Integer> variantWidths = new ArrayList<>();
+        widths.stream()
+                .filter(variantWidth -> variantWidth < width)
+                .forEach(variantWidths::add);
+        variantWidths.add(width);
+        return variantWidths;
+    }
+
+    private String variantUrl(final String url, final int width, final String format) {
+        return url + (url.contains("?") ? "&" : "?") + "w=" + width + "&fm=" + format
+                + (quality > 0 ? "&q=" + quality : "");
+    }
+
+    private static boolean isScalable(@Nullable final String contentType) {
+        return contentType != null && contentType.startsWith("image/") && !contentType.startsWith("image/svg");
+    }
+
+    @Nullable
+    private static Integer toInteger(@Nullable final Object value) {
+        return value instanceof Number ? ((Number) value).intValue() : null;
+    }
+
+    /**
+     * Variants of widths from 320 to 1920 pixels in AVIF and WebP format, with quality 75.
+     *
+     * @return default variants
+     */
+    public static ImageVariants defaults() {
+        return DEFAULTS;
+    }
+
+    /**
+     * No variants, assets are described with their original file only.
+     *
+     * @return no variants
+     */
+    public static ImageVariants none() {
+        return NONE;
+    }
+
+    /**
+     * Create variants of given widths in given formats.
+     *
+     * @param widths  in pixels, in ascending order
+     * @param formats supported by Contentful Images API, e.g. avif, webp, jpg or png, in order of preference
+     * @param quality from 1 to 100, or 0 to leave it to Contentful
+     * @return variants of images
+     */
+    public static ImageVariants of(final List<Integer> widths, final List<String> formats, final int quality) {
+        if (quality < 0 || quality > 100) {
+            throw new IllegalArgumentException("Quality must be between 0 and 100");
+        }
+        final List<Integer> sortedWidths = new ArrayList<>(widths);
+        Collections.sort(sortedWidths);
+        return new ImageVariants(Collections.unmodifiableList(sortedWidths),
+                Collections.unmodifiableList(new ArrayList<>(formats)), quality);
+    }
+}
@@ -0,0 +1,114 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsServiceException;
+import com.contentful.java.cda.CDAEntry;
+
+import javax.annotation.Nullable;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Sequential {@link Spliterator} over entries fetched in batches of fixed size.
+ * <p>
+ * The first batch is requested on the first advance. Whenever a batch is taken for processing, the next one is
+ * requested right away, so that it is transferred while the current one is being processed. Only the current batch
+ * and the one being prefetched are held at any time, so the memory used does not depend on the number of entries.
+ * A batch smaller than the batch size is considered the last one.
+ * <p>
+ * Advancing blocks until the batch it needs is fetched. Failure to fetch a batch is thrown as
+ * {@link CmsServiceException} from the advance that needed it.
+ */
+final class PaginatedEntriesSpliterator implements Spliterator<CDAEntry>, AutoCloseable {
+
+    private final IntFunction<CompletableFuture<List<CDAEntry>>> batchFetcher;
+    private final int batchSize;
+    private Iterator<CDAEntry> currentBatch = Collections.emptyIterator();
+    @Nullable
+    private CompletableFuture<List<CDAEntry>> nextBatch;
+    private int nextSkip = 0;
+    private boolean exhausted = false;
+
+    /**
+     * @param batchFetcher requests the batch starting at given number of entries to skip
+     * @param batchSize    number of entries requested in every batch
+     */
+    PaginatedEntriesSpliterator(final IntFunction<CompletableFuture<List<CDAEntry>>> batchFetcher,
+                                final int batchSize) {
+        this.batchFetcher = batchFetcher;
+        this.batchSize = batchSize;
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super CDAEntry> action) {
+        while (!currentBatch.hasNext()) {
+            if (exhausted) {
+                return false;
+            }
+            if (nextBatch == null) {
+                nextBatch = requestBatch();
+            }
+            final List<CDAEntry> batch = await(nextBatch);
+            if (batch.size() < batchSize) {
+                exhausted = true;
+                nextBatch = null;
+            } else {
+                nextBatch = requestBatch();
+            }
+            currentBatch = batch.iterator();
+        }
+        action.accept(currentBatch.next());
+        return true;
+    }
+
+    @Override
+    @Nullable
+    public Spliterator<CDAEntry> trySplit() {
+        return null;
+    }
+
+    @Override
+    public long estimateSize() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    /**
+     * Cancel the prefetched batch, if any, and stop advancing.
+     */
+    @Override
+    public void close() {
+        exhausted = true;
+        currentBatch = Collections.emptyIterator();
+        if (nextBatch != null) {
+            nextBatch.cancel(false);
+            nextBatch = null;
+        }
+    }
+
+    private CompletableFuture<List<CDAEntry>> requestBatch() {
+        final CompletableFuture<List<CDAEntry>> batch = batchFetcher.apply(nextSkip);
+        nextSkip += batchSize;
+        return batch;
+    }
+
+    private static List<CDAEntry> await(final CompletableFuture<List<CDAEntry>> batch) {
+        try {
+            return batch.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof CmsServiceException) {
+                throw (CmsServiceException) e.getCause();
+            }
+            throw new CmsServiceException("Could not fetch batch of entries", e.getCause());
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.TextRenderer;
+import com.contentful.java.cda.CDAEntry;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Keeps the HTML rendered from text fields of entries by {@link TextRenderer}, so that each text is rendered once
+ * per revision of its entry instead of on every request.
+ * <p>
+ * Rendered texts are kept by the ID, locale and revision of their entry and the key of their field, so a republished
+ * entry is rendered again, while the pages sharing an entry, e.g. a footer, share its rendered texts as well.
+ * The least recently used texts are dropped when the cache is full. Texts of entries whose revision is not known are
+ * rendered on every request.
+ */
+final class RenderedTextCache {
+
+    private final TextRenderer renderer;
+    private final Map<String, String> renderedTexts;
+
+    RenderedTextCache(final TextRenderer renderer, final int capacity) {
+        this.renderer = renderer;
+        this.renderedTexts = Collections.synchronizedMap(new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(final Map.Entry<String, String> eldest) {
+                return size() > capacity;
+            }
+        });
+    }
+
+    /**
+     * Get the HTML of the text of given field, rendering it unless it has already been rendered for the same
+     * revision of the entry.
+     *
+     * @param entry    containing the field
+     * @param fieldKey key of the field within the entry, including array index if any, e.g. {@code paragraphs[2]}
+     * @param text     content of the field
+     * @return HTML rendered from the text
+     */
+    String render(final CDAEntry entry, final String fieldKey, final String text) {
+        final Map<String, Object> attrs = entry.attrs() != null ? entry.attrs() : Collections.emptyMap();
+        final Object revision = attrs.get("revision");
+        if (!(revision instanceof Number)) {
+            return renderer.render(text);
+        }
+        final String key = entry.id() + ":" + attrs.get("locale") + ":" + ((Number) revision).longValue() + ":"
+                + fieldKey;
+        final String cached = renderedTexts.get(key);
+        if (cached != null) {
+            return cached;
+        }
+        // rendering is kept out of the lock, a text rendered concurrently by several threads is the same anyway
+        final String html = renderer.render(text);
+        renderedTexts.put(key, html);
+        return html;
+    }
+
+    int size() {
+        return renderedTexts.size();
+    }
+}
@@ -0,0 +1,224 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.contentful.java.cda.CDAEntry;
+import com.contentful.java.cda.CDAField;
+import com.contentful.java.cda.CDAResource;
+
+import javax.annotation.Nullable;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shares one instance of an entry or asset among all the pages linking it, e.g. footer, navigation or legal blocks.
+ * <p>
+ * An asset is identified by its ID, revision and locale. An entry is identified by its ID, revision and locale together
+ * with the identities of the entries and assets it links to, which are computed first, so that every entry is hashed
+ * once however deep the content below it is. Entries linking each other in a cycle are identified together. Entries
+ * with the same identity therefore have the same fields and link to the same content, down to the links that could
+ * not be resolved, so replacing one with the other does not change anything a page can read. Entries and assets whose
+ * revision is not known are never shared.
+ * <p>
+ * Interned instances are only weakly referenced, so they are kept as long as some cached page links them.
+ */
+final class ResourceInterner {
+
+    private final ConcurrentMap<String, KeyedReference> resources = new ConcurrentHashMap<>();
+    private final ReferenceQueue<CDAResource> collected = new ReferenceQueue<>();
+
+    /**
+     * @param key identity of the resource
+     * @return the interned resource with given identity, if any
+     */
+    @Nullable
+    CDAResource get(final String key) {
+        expungeCollected();
+        final KeyedReference reference = resources.get(key);
+        return reference != null ? reference.get() : null;
+    }
+
+    /**
+     * Intern given resource, unless another one with the same identity has been interned in the meantime.
+     *
+     * @param key      identity of the resource
+     * @param resource to be shared, which must not be modified anymore
+     * @return the interned resource with given identity
+     */
+    CDAResource intern(final String key, final CDAResource resource) {
+        expungeCollected();
+        final KeyedReference reference = new KeyedReference(key, resource, collected);
+        while (true) {
+            final KeyedReference existing = resources.putIfAbsent(key, reference);
+            if (existing == null) {
+                return resource;
+            }
+            final CDAResource existingResource = existing.get();
+            if (existingResource != null) {
+                return existingResource;
+            }
+            if (resources.replace(key, existing, reference)) {
+                return resource;
+            }
+        }
+    }
+
+    /**
+     * @return number of interned resources, including those collected but not yet removed
+     */
+    int size() {
+        expungeCollected();
+        return resources.size();
+    }
+
+    private void expungeCollected() {
+        KeyedReference reference;
+        while ((reference = (KeyedReference) collected.poll()) != null) {
+            resources.remove(reference.key, reference);
+        }
+    }
+
+    /**
+     * @return identity of the asset, or absent if its revision is not known
+     */
+    @Nullable
+    static String assetKey(final CDAResource asset) {
+        final String revisionKey = revisionKey(asset);
+        return revisionKey != null ? "Asset:" + revisionKey : null;
+    }
+
+    /**
+     * Compute the identities of given entries and of all the entries they link to, each of them once.
+     *
+     * @param entries whose identities are needed
+     * @return identities of the entries, null for those whose revision or the revision of anything they link to is
+     * not known
+     */
+    static Map<CDAEntry, String> entryKeys(final Collection<? extends CDAEntry> entries) {
+        final EntryKeys entryKeys = new EntryKeys();
+        entries.forEach(entry -> {
+            if (!entryKeys.index.containsKey(entry)) {
+                entryKeys.visit(entry);
+            }
+        });
+        return entryKeys.keys;
+    }
+
+    @Nullable
+    private static String revisionKey(final CDAResource resource) {
+        final Map<String, Object> attrs = resource.attrs();
+        final Object revision = attrs != null ? attrs.get("revision") : null;
+        return revision instanceof Number
+                ? resource.id() + ":" + ((Number) revision).longValue() + ":" + attrs.get("locale")
+                : null;
+    }
+
+    private static List<CDAResource> links(final CDAEntry entry) {
+        final List<CDAResource> links = new ArrayList<>();
+        for (CDAField contentTypeField : entry.contentType().fields()) {
+            final Object field = entry.getField(contentTypeField.id());
+            if (field instanceof List) {
+                ((List<?>) field).stream()
+                        .filter(item -> item instanceof CDAResource)
+                        .forEach(item -> links.add((CDAResource) item));
+            } else if (field instanceof CDAResource) {
+                links.add((CDAResource) field);
+            }
+        }
+        return links;
+    }
+
+    /**
+     * Keys entries bottom-up with Tarjan's algorithm, which finds the cycles of linked entries after everything they
+     * link to. The entries of a cycle share a hash of their revisions and of the identities of what they link to.
+     */
+    private static final class EntryKeys {
+        private final Map<CDAEntry, String> keys = new IdentityHashMap<>();
+        private final Map<CDAEntry, Integer> index = new IdentityHashMap<>();
+        private final Map<CDAEntry, Integer> lowLink = new IdentityHashMap<>();
+        private final Deque<CDAEntry> stack = new ArrayDeque<>();
+        private final Set<CDAEntry> onStack = Collections.newSetFromMap(new IdentityHashMap<>());
+
+        private void visit(final CDAEntry entry) {
+            index.put(entry, index.size());
+            lowLink.put(entry, index.get(entry));
+            stack.push(entry);
+            onStack.add(entry);
+            for (CDAResource link : links(entry)) {
+                if (link instanceof CDAEntry) {
+                    final CDAEntry linkedEntry = (CDAEntry) link;
+                    if (!index.containsKey(linkedEntry)) {
+                        visit(linkedEntry);
+                        lowLink.put(entry, Math.min(lowLink.get(entry), lowLink.get(linkedEntry)));
+                    } else if (onStack.contains(linkedEntry)) {
+                        lowLink.put(entry, Math.min(lowLink.get(entry), index.get(linkedEntry)));
+                    }
+                }
+            }
+            if (lowLink.get(entry).equals(index.get(entry))) {
+                final List<CDAEntry> cycle = new ArrayList<>();
+                CDAEntry member;
+                do {
+                    member = stack.pop();
+                    onStack.remove(member);
+                    cycle.add(member);
+                } while (member != entry);
+                keyCycle(cycle);
+            }
+        }
+
+        private void keyCycle(final List<CDAEntry> cycle) {
+            final Set<CDAEntry> members = Collections.newSetFromMap(new IdentityHashMap<>());
+            members.addAll(cycle);
+            final Set<String> identities = identities(cycle, members);
+            final String hash = identities != null ? RevisionHash.of(identities) : null;
+            cycle.forEach(member -> keys.put(member, hash != null ? "Entry:" + member.id() + "@" + hash : null));
+        }
+
+        /**
+         * @return identities of the entries of the cycle and of what they link to outside of it, or null if the
+         * revision of any of them is not known
+         */
+        @Nullable
+        private Set<String> identities(final List<CDAEntry> cycle, final Set<CDAEntry> members) {
+            final Set<String> identities = new TreeSet<>();
+            for (CDAEntry member : cycle) {
+                final String revisionKey = revisionKey(member);
+                if (revisionKey == null) {
+                    return null;
+                }
+                identities.add("Entry:" + revisionKey);
+                for (CDAResource link : links(member)) {
+                    if (!members.contains(link)) {
+                        final String linkKey = link instanceof CDAEntry ? keys.get(link) : assetKey(link);
+                        if (linkKey == null) {
+                            return null;
+                        }
+                        identities.add(linkKey);
+                    }
+                }
+            }
+            return identities;
+        }
+    }
+
+    private static final class KeyedReference extends WeakReference<CDAResource> {
+        private final String key;
+
+        private KeyedReference(final String key, final CDAResource resource,
+                               final ReferenceQueue<CDAResource> queue) {
+            super(resource, queue);
+            this.key = key;
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import java.io.EOFException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Decides whether a failed page fetch is tried again, and when.
+ * <p>
+ * Only transient failures are retried, see {@link #isTransient(Throwable)}: a request Contentful rejected, e.g. with
+ * 400 Bad Request, 401 Unauthorized or 404 Not Found, fails the same way every time. Retries are delayed with
+ * exponential backoff and full jitter, i.e. by a random time between zero and a cap doubling with every retry, so that
+ * fetches failed by the same outage do not hit Contentful again all at once.
+ * <p>
+ * Retries are moreover limited by a budget shared by all the services of the client, so that they add at most a given
+ * share to the traffic. Every fetch earns that share of a retry, and every retry spends a whole one, up to a burst
+ * of retries saved while Contentful was healthy. While Contentful is down, the budget runs out and failures are passed
+ * on right away instead of multiplying the load.
+ * <p>
+ * Policy is configured with {@link SharedContentfulClient.Builder#retryPolicy(RetryPolicy)}, and one instance should
+ * not be shared by several clients unless they should share the budget.
+ */
+public final class RetryPolicy {
+
+    private static final RetryPolicy NONE = builder().maxRetries(0).build();
+    // code of the HTTP response as found in messages of Contentful SDK and of this module, e.g. "code=503"
+    private static final Pattern STATUS_CODE = Pattern.compile("code=(\\d{3})");
+    // budget is kept in thousandths of a retry, so that fetches can earn fractions of a retry
+    private static final long RETRY_COST = 1000;
+
+    private final int maxRetries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+    private final long earnedPerFetch;
+    private final long maxBudget;
+    private final Predicate<Throwable> retryable;
+    private final AtomicLong budget;
+    private final LongAdder retriesAttempted = new LongAdder();
+    private final LongAdder retriesSuppressed = new LongAdder();
+
+    private RetryPolicy(final Builder builder) {
+        this.maxRetries = builder.maxRetries;
+        this.baseDelayMillis = builder.baseDelayMillis;
+        this.maxDelayMillis = builder.maxDelayMillis;
+        this.earnedPerFetch = Math.round(builder.budgetRatio * RETRY_COST);
+        this.maxBudget = builder.maxBurst * RETRY_COST;
+        this.retryable = builder.retryable;
+        this.budget = new AtomicLong(maxBudget);
+    }
+
+    /**
+     * @return number of failed fetches tried again
+     */
+    public long retriesAttempted() {
+        return retriesAttempted.sum();
+    }
+
+    /**
+     * @return number of failed fetches which would have been tried again, but the budget was spent
+     */
+    public long retriesSuppressed() {
+        return retriesSuppressed.sum();
+    }
+
+    /**
+     * A fetch is going to be sent for the first time, which earns its share of a retry.
+     */
+    void fetchStarted() {
+        if (maxRetries > 0) {
+            budget.accumulateAndGet(earnedPerFetch, (current, earned) -> Math.min(maxBudget, current + earned));
+        }
+    }
+
+    /**
+     * Decide whether a failed fetch is tried again, spending a retry of the budget if so.
+     *
+     * @param error   the fetch failed with
+     * @param retries number of times the fetch has been tried again already
+     * @return delay in milliseconds after which the fetch is tried again, or negative if it is not
+     */
+    long retryDelayMillis(final Throwable error, final int retries) {
+        if (retries >= maxRetries || !retryable.test(error)) {
+            return -1;
+        }
+        if (!spendRetry()) {
+            retriesSuppressed.increment();
+            return -1;
+        }
+        retriesAttempted.increment();
+        final long cap = Math.min(maxDelayMillis, baseDelayMillis << Math.min(retries, 30));
+        return ThreadLocalRandom.current().nextLong(cap + 1);
+    }
+
+    /**
+     * Run given retry once the delay passes, on a thread meant only to hand it over to the callback executor.
+     */
+    void schedule(final long delayMillis, final Runnable retry) {
+        RetryTimer.INSTANCE.schedule(retry, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    private boolean spendRetry() {
+        long current;
+        do {
+            current = budget.get();
+            if (current < RETRY_COST) {
+                return false;
+            }
+        } while (!budget.compareAndSet(current, current - RETRY_COST));
+        return true;
+    }
+
+    /**
+     * Whether given failure is likely to go away when the fetch is tried again: a response with status 408 Request
+     * Timeout, 429 Too Many Requests or 5xx other than 501 Not Implemented, or a timeout, refused or reset connection,
+     * or a connection closed before the response was read. Any other response, as well as a cancelled request, is not.
+     *
+     * @param error the fetch failed with
+     * @return true if the fetch should be tried again
+     */
+    public static boolean isTransient(final Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            final Matcher statusCode = STATUS_CODE.matcher(String.valueOf(cause.getMessage()));
+            if (statusCode.find()) {
+                final int code = Integer.parseInt(statusCode.group(1));
+                return code == 408 || code == 429 || (code >= 500 && code != 501);
+            }
+            if (cause instanceof SocketTimeoutException || cause instanceof ConnectException
+                    || cause instanceof SocketException || cause instanceof EOFException) {
+                return true;
+            }
+            if (cause instanceof InterruptedIOException) {
+                return false;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return policy passing on every failure right away, used unless another one is configured
+     */
+    public static RetryPolicy none() {
+        return NONE;
+    }
+
+    /**
+     * Create builder of a policy retrying transient failures up to 2 times, with delays capped at 50 ms for the first
+     * retry up to 1 second, and a budget of 10% of the fetches with a burst of 10 retries.
+     *
+     * @return builder of the policy
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Builder of {@link RetryPolicy}.
+     */
+    public static final class Builder {
+
+        private int maxRetries = 2;
+        private long baseDelayMillis = 50;
+        private long maxDelayMillis = TimeUnit.SECONDS.toMillis(1);
+        private double budgetRatio = 0.1;
+        private int maxBurst = 10;
+        private Predicate<Throwable> retryable = RetryPolicy::isTransient;
+
+        private Builder() {
+        }
+
+        /**
+         * @param maxRetries number of times a fetch is tried again at most, 2 by default
+         * @return this builder
+         */
+        public Builder maxRetries(final int maxRetries) {
+            if (maxRetries < 0) {
+                throw new IllegalArgumentException("Number of retries must not be negative, got " + maxRetries);
+            }
+            this.maxRetries = maxRetries;
+            return this;
+        }
+
+        /**
+         * Caps of the random delay before a retry, doubling with every retry from the base up to the max.
+         *
+         * @param baseDelay cap of the delay before the first retry, 50 ms by default
+         * @param maxDelay  cap of the delay before any retry, 1 second by default
+         * @param unit      time unit of given durations
+         * @return this builder
+         */
+        public Builder backoff(final long baseDelay, final long maxDelay, final TimeUnit unit) {
+            if (baseDelay <= 0 || baseDelay > maxDelay) {
+                throw new IllegalArgumentException("Base delay must be positive and not longer than max delay, got "
+                        + baseDelay + " and " + maxDelay);
+            }
+            this.baseDelayMillis = unit.toMillis(baseDelay);
+            this.maxDelayMillis = unit.toMillis(maxDelay);
+            return this;
+        }
+
+        /**
+         * Budget limiting retries to a share of the fetches.
+         *
+         * @param ratio    retries allowed per fetch, between 0 and 1, 0.1 by default
+         * @param maxBurst retries that can be saved up and spent at once, 10 by default
+         * @return this builder
+         */
+        public Builder budget(final double ratio, final int maxBurst) {
+            if (ratio < 0 || ratio > 1 || maxBurst < 1) {
+                throw new IllegalArgumentException("Budget must allow between 0 and 1 retries per fetch and a burst "
+                        + "of at least 1, got " + ratio + " and " + maxBurst);
+            }
+            this.budgetRatio = ratio;
+            this.maxBurst = maxBurst;
+            return this;
+        }
+
+        /**
+         * @param retryable decides whether a failure is worth trying again, {@link #isTransient(Throwable)} by default
+         * @return this builder
+         */
+        public Builder retryOn(final Predicate<Throwable> retryable) {
+            this.retryable = retryable;
+            return this;
+        }
+
+        public RetryPolicy build() {
+            return new RetryPolicy(this);
+        }
+    }
+
+    /**
+     * Timer of delayed retries shared by all the policies, created on first retry. It only hands retries over to
+     * the callback executors, so a single daemon thread is enough.
+     */
+    private static final class RetryTimer {
+        static final ScheduledExecutorService INSTANCE = createTimer();
+
+        private static ScheduledExecutorService createTimer() {
+            final ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, runnable -> {
+                final Thread thread = new Thread(runnable, "contentful-retry");
+                thread.setDaemon(true);
+                return thread;
+            });
+            timer.setRemoveOnCancelPolicy(true);
+            return timer;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * SHA-1 hash of the revisions of a set of entries and assets, which identifies their content.
+ */
+final class RevisionHash {
+
+    private RevisionHash() {
+    }
+
+    /**
+     * @param revisions identities of the revisions, in a stable order
+     * @return hex encoded SHA-1 of the revisions, each of them followed by a new line
+     */
+    static String of(final Iterable<String> revisions) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        revisions.forEach(revision -> digest.update((revision + "\n").getBytes(StandardCharsets.UTF_8)));
+        final StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest()) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
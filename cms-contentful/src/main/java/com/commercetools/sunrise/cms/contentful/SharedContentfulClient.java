@@ -0,0 +1,647 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.FetchExecutors;
+import com.commercetools.sunrise.cms.FetchScheduler;
+import com.commercetools.sunrise.cms.TextRenderer;
+import com.contentful.java.cda.CDAClient;
+import com.contentful.java.cda.CDAEntry;
+import okhttp3.ConnectionPool;
+import okhttp3.HttpUrl;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Contentful client meant to be shared by several instances of {@link ContentfulCmsService}.
+ * <p>
+ * Instance of the service is created per Contentful page type and query field, but all the instances created
+ * with the same shared client talk to Contentful through a single {@link CDAClient} and therefore reuse the same
+ * HTTP connection pool and TLS sessions.
+ * <p>
+ * Underlying HTTP client can be tuned with {@link Builder}.
+ * <p>
+ * Pages fetched by the services keep the ETags of their responses, which lets services refresh them with conditional
+ * requests.
+ * <p>
+ * Fetches of pages by all the services can be traced with {@link ContentfulTracer}, and limited by a common
+ * {@link FetchScheduler}, which lets interactive fetches go ahead of background ones. Page fetches failing
+ * transiently can be tried again within a budget shared by all the services, see {@link RetryPolicy}.
+ * <p>
+ * Responses to page fetches can be read directly into the page, bypassing the object graph built by Contentful SDK,
+ * see {@link Builder#directParsing(boolean)}.
+ * <p>
+ * Pages of all the services provide {@link ContentfulCmsPage#html(String)} if the client is configured with
+ * a {@link TextRenderer}, whose results are cached for all of them, see {@link Builder#textRenderer(TextRenderer)}.
+ * <p>
+ * Services fetching only selected fields of pages through Contentful GraphQL Content API can be created with
+ * {@link #graphQLService(String, String, Collection, Executor)}, and services fetching entries of several content
+ * types at once with {@link #lookupService(Executor)}.
+ * <p>
+ * Services created without a callback executor block in a thread of their own per fetch, which is a virtual thread
+ * on Java 21 or newer, see {@link FetchExecutors#threadPerFetch(String)}.
+ */
+public final class SharedContentfulClient {
+
+    private static final String DEFAULT_ENDPOINT = "https://cdn.contentful.com/";
+    private static final String DEFAULT_GRAPHQL_ENDPOINT = "https://graphql.contentful.com/";
+
+    private final CDAClient cdaClient;
+    @Nullable
+    private final OkHttpClient httpClient;
+    @Nullable
+    private final EntityTagRevalidator revalidator;
+    @Nullable
+    private final EntityTagInterceptor entityTags;
+    private final ContentfulTracer tracer;
+    @Nullable
+    private final TracingInterceptor tracingInterceptor;
+    @Nullable
+    private final FetchScheduler scheduler;
+    @Nullable
+    private final DirectEntriesFetcher directFetcher;
+    @Nullable
+    private final GraphQLClient graphQLClient;
+    @Nullable
+    private final RenderedTextCache renderedTexts;
+    private final ImageVariants imageVariants;
+    private final RetryPolicy retryPolicy;
+
+    SharedContentfulClient(final CDAClient cdaClient, @Nullable final OkHttpClient httpClient,
+                           @Nullable final EntityTagRevalidator revalidator,
+                           @Nullable final EntityTagInterceptor entityTags, final ContentfulTracer tracer,
+                           @Nullable final TracingInterceptor tracingInterceptor,
+                           @Nullable final FetchScheduler scheduler,
+                           @Nullable final DirectEntriesFetcher directFetcher,
+                           @Nullable final GraphQLClient graphQLClient,
+                           @Nullable final RenderedTextCache renderedTexts,
+                           final ImageVariants imageVariants,
+                           final RetryPolicy retryPolicy) {
+        this.cdaClient = cdaClient;
+        this.httpClient = httpClient;
+        this.revalidator = revalidator;
+        this.entityTags = entityTags;
+        this.tracer = tracer;
+        this.tracingInterceptor = tracingInterceptor;
+        this.scheduler = scheduler;
+        this.directFetcher = directFetcher;
+        this.graphQLClient = graphQLClient;
+        this.renderedTexts = renderedTexts;
+        this.imageVariants = imageVariants;
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Create new instance of {@link ContentfulCmsService} talking to Contentful through this client.
+     *
+     * @param pageType         Contentful model's page type to be queried against
+     * @param pageQueryField   pageType field against which query will be run
+     * @param callbackExecutor defines execution context in which requests are executed
+     * @return instance of the service sharing connections with all other services created by this client
+     */
+    public ContentfulCmsService service(final String pageType, final String pageQueryField,
+                                        final Executor callbackExecutor) {
+        return ContentfulCmsService.of(this, pageType, pageQueryField, callbackExecutor);
+    }
+
+    /**
+     * Create new instance of {@link ContentfulCmsService} talking to Contentful through this client, fetching every
+     * page in a thread of its own, which is a virtual thread if the JVM supports them.
+     *
+     * @param pageType       Contentful model's page type to be queried against
+     * @param pageQueryField pageType field against which query will be run
+     * @return instance of the service sharing connections with all other services created by this client
+     */
+    public ContentfulCmsService service(final String pageType, final String pageQueryField) {
+        return service(pageType, pageQueryField, DefaultFetchExecutor.INSTANCE);
+    }
+
+    /**
+     * Create new instance of {@link ContentfulGraphQLCmsService} talking to Contentful GraphQL Content API through
+     * this client.
+     *
+     * @param pageType         Contentful model's page type to be queried against
+     * @param pageQueryField   pageType field against which query will be run
+     * @param fieldPaths       paths of the fields to be fetched, e.g. {@code banner.slides[2].image}
+     * @param callbackExecutor defines execution context in which requests are executed
+     * @return instance of the service sharing connections with all other services created by this client
+     */
+    public ContentfulGraphQLCmsService graphQLService(final String pageType, final String pageQueryField,
+                                                      final Collection<String> fieldPaths,
+                                                      final Executor callbackExecutor) {
+        return ContentfulGraphQLCmsService.of(this, pageType, pageQueryField, fieldPaths, callbackExecutor);
+    }
+
+    /**
+     * Create new instance of {@link ContentfulGraphQLCmsService} talking to Contentful GraphQL Content API through
+     * this client, fetching every page in a thread of its own, which is a virtual thread if the JVM supports them.
+     *
+     * @param pageType       Contentful model's page type to be queried against
+     * @param pageQueryField pageType field against which query will be run
+     * @param fieldPaths     paths of the fields to be fetched, e.g. {@code banner.slides[2].image}
+     * @return instance of the service sharing connections with all other services created by this client
+     */
+    public ContentfulGraphQLCmsService graphQLService(final String pageType, final String pageQueryField,
+                                                      final Collection<String> fieldPaths) {
+        return graphQLService(pageType, pageQueryField, fieldPaths, DefaultFetchExecutor.INSTANCE);
+    }
+
+    /**
+     * Create new instance of {@link ContentfulLookupService} talking to Contentful through this client.
+     *
+     * @param callbackExecutor defines execution context in which requests are executed
+     * @return instance of the service sharing connections with all other services created by this client
+     */
+    public ContentfulLookupService lookupService(final Executor callbackExecutor) {
+        return ContentfulLookupService.of(this, callbackExecutor);
+    }
+
+    /**
+     * Create new instance of {@link ContentfulLookupService} talking to Contentful through this client, fetching
+     * every lookup in a thread of its own, which is a virtual thread if the JVM supports them.
+     *
+     * @return instance of the service sharing connections with all other services created by this client
+     */
+    public ContentfulLookupService lookupService() {
+        return lookupService(DefaultFetchExecutor.INSTANCE);
+    }
+
+    /**
+     * Wrap fetched entry into a page rendering its texts with the configured renderer, if any.
+     */
+    ContentfulCmsPage page(final CDAEntry entry) {
+        return page(entry, null);
+    }
+
+    /**
+     * Wrap fetched entry into a page keeping the ETag of the response it was read from, which lets the page be
+     * refreshed with a conditional request.
+     */
+    ContentfulCmsPage page(final CDAEntry entry, @Nullable final String entityTag) {
+        return new ContentfulCmsPage(entry, renderedTexts, imageVariants, entityTag);
+    }
+
+    RetryPolicy retryPolicy() {
+        return retryPolicy;
+    }
+
+    CDAClient cdaClient() {
+        return cdaClient;
+    }
+
+    @Nullable
+    OkHttpClient httpClient() {
+        return httpClient;
+    }
+
+    /**
+     * Start given fetch once the configured scheduler allows it, or right away if there is none.
+     */
+    <T> CompletableFuture<T> schedule(final FetchScheduler.Priority priority,
+                                      final Supplier<CompletableFuture<T>> fetch) {
+        return scheduler != null ? scheduler.schedule(priority, fetch) : fetch.get();
+    }
+
+    /**
+     * Start tracing a fetch of a page with the configured tracer.
+     */
+    FetchTrace startTrace(final String pageKey, final String locale, final int includeLevels) {
+        return FetchTrace.start(tracer, pageKey, locale, includeLevels);
+    }
+
+    boolean isTracingRequests() {
+        return tracingInterceptor != null;
+    }
+
+    /**
+     * Announce that given entries query is going to be sent as part of the traced fetch.
+     *
+     * @param query parameters of the entries query as sent by Contentful SDK
+     * @param trace of the fetch
+     * @return action forgetting the expected request, to be run once the fetch is finished
+     */
+    Runnable expectRequest(final Map<String, String> query, final FetchTrace trace) {
+        return tracingInterceptor != null ? tracingInterceptor.expect(query, trace) : () -> {
+        };
+    }
+
+    /**
+     * Announce that given entries query is going to be sent through Contentful SDK as part of a page fetch, so that
+     * the fetch receives the ETag of the response.
+     *
+     * @param query parameters of the entries query as sent by Contentful SDK
+     * @param fetch completed once the fetch is finished
+     * @return the expectation receiving the ETag, or null if ETags are not collected
+     */
+    @Nullable
+    EntityTagInterceptor.Expectation expectEntityTag(final Map<String, String> query,
+                                                     final CompletableFuture<?> fetch) {
+        return entityTags != null ? entityTags.expect(query, fetch) : null;
+    }
+
+    /**
+     * Check whether the response to given entries query has not changed since the cached page was read from it.
+     * If it has, and responses are read directly for the locale of the query, the new response is read as well.
+     *
+     * @param query     parameters of the entries query as sent by Contentful SDK
+     * @param entityTag of the response the cached page was read from, if known
+     * @param executor  defines execution context in which the request is executed
+     * @return whether the content is known not to have changed, and the entries of the changed content if read
+     */
+    CompletableFuture<EntityTagRevalidator.Revalidation> revalidate(final Map<String, String> query,
+                                                                    @Nullable final String entityTag,
+                                                                    final Executor executor) {
+        if (revalidator == null || entityTag == null) {
+            return CompletableFuture.completedFuture(EntityTagRevalidator.Revalidation.MODIFIED);
+        }
+        final DirectEntriesFetcher reader = isFetchingDirectly(query.get("locale")) ? directFetcher : null;
+        return revalidator.revalidate(query, entityTag, executor, reader);
+    }
+
+    GraphQLClient graphQLClient() {
+        if (graphQLClient == null) {
+            throw new IllegalStateException("GraphQL Content API is not configured");
+        }
+        return graphQLClient;
+    }
+
+    /**
+     * Whether given locale can be fetched with {@link #fetchDirectly(Map, CompletableFuture)}, which reads responses
+     * for a single locale only.
+     */
+    boolean isFetchingDirectly(final String locale) {
+        return directFetcher != null && !"*".equals(locale);
+    }
+
+    /**
+     * Execute the entries query in the current thread, reading its response without Contentful SDK.
+     *
+     * @param query  parameters of the entries query as sent by Contentful SDK
+     * @param future completed with the result of the fetch, whose cancellation aborts the request
+     * @return the items of the response, with their links resolved, and its ETag
+     * @throws IOException if the request fails or its response cannot be read
+     */
+    DirectEntriesFetcher.Entries fetchDirectly(final Map<String, String> query, final CompletableFuture<?> future)
+            throws IOException {
+        if (directFetcher == null) {
+            throw new IllegalStateException("Direct parsing is not enabled");
+        }
+        return directFetcher.fetch(query, future);
+    }
+
+    /**
+     * Create new instance of shared client with default HTTP settings.
+     *
+     * @param spaceId Contentful space ID
+     * @param token   access token to given space
+     * @return shared client ready to be used by several services
+     */
+    public static SharedContentfulClient of(final String spaceId, final String token) {
+        return builder(spaceId, token).build();
+    }
+
+    /**
+     * Create builder of shared client allowing to tune its HTTP settings.
+     *
+     * @param spaceId Contentful space ID
+     * @param token   access token to given space
+     * @return builder with default HTTP settings
+     */
+    public static Builder builder(final String spaceId, final String token) {
+        return new Builder(spaceId, token);
+    }
+
+    /**
+     * Executor of services created without one, created on first use and shared by all the clients. Its threads are
+     * daemons or virtual, so it never needs to be shut down.
+     */
+    private static final class DefaultFetchExecutor {
+        static final ExecutorService INSTANCE = FetchExecutors.threadPerFetch("contentful-fetch");
+    }
+
+    /**
+     * Builder of {@link SharedContentfulClient} exposing settings of the underlying HTTP client.
+     */
+    public static final class Builder {
+
+        private final String spaceId;
+        private final String token;
+        private String endpoint = DEFAULT_ENDPOINT;
+        private String graphQLEndpoint = DEFAULT_GRAPHQL_ENDPOINT;
+        private boolean http2 = true;
+        private boolean gzip = true;
+        private int maxIdleConnections = 5;
+        private long keepAliveMillis = TimeUnit.MINUTES.toMillis(5);
+        private long connectTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+        private long readTimeoutMillis = TimeUnit.SECONDS.toMillis(10);
+        private ContentfulTracer tracer = ContentfulTracer.NOOP;
+        @Nullable
+        private FetchScheduler scheduler = null;
+        private boolean directParsing = false;
+        private boolean sharedEntries = false;
+        @Nullable
+        private TextRenderer textRenderer = null;
+        private int maxRenderedTexts = 10_000;
+        private ImageVariants imageVariants = ImageVariants.defaults();
+        private RetryPolicy retryPolicy = RetryPolicy.none();
+
+        private Builder(final String spaceId, final String token) {
+            this.spaceId = spaceId;
+            this.token = token;
+        }
+
+        /**
+         * URL of Contentful Delivery API, e.g. to go through a proxy or to talk to a stand-in server.
+         *
+         * @param endpoint https://cdn.contentful.com/ by default
+         * @return this builder
+         */
+        public Builder endpoint(final String endpoint) {
+            this.endpoint = endpoint;
+            return this;
+        }
+
+        /**
+         * URL of Contentful GraphQL Content API, e.g. to go through a proxy or to talk to a stand-in server.
+         *
+         * @param graphQLEndpoint https://graphql.contentful.com/ by default
+         * @return this builder
+         */
+        public Builder graphQLEndpoint(final String graphQLEndpoint) {
+            this.graphQLEndpoint = graphQLEndpoint;
+            return this;
+        }
+
+        /**
+         * Whether HTTP/2 should be negotiated with Contentful. If disabled only HTTP/1.1 is used.
+         *
+         * @param http2 true by default
+         * @return this builder
+         */
+        public Builder http2(final boolean http2) {
+            this.http2 = http2;
+            return this;
+        }
+
+        /**
+         * Whether responses should be requested gzip compressed.
+         *
+         * @param gzip true by default
+         * @return this builder
+         */
+        public Builder gzip(final boolean gzip) {
+            this.gzip = gzip;
+            return this;
+        }
+
+        /**
+         * Maximum number of idle connections kept in the pool.
+         *
+         * @param maxIdleConnections 5 by default
+         * @return this builder
+         */
+        public Builder maxIdleConnections(final int maxIdleConnections) {
+            this.maxIdleConnections = maxIdleConnections;
+            return this;
+        }
+
+        /**
+         * Time an idle connection is kept alive in the pool.
+         *
+         * @param keepAlive 5 minutes by default
+         * @param unit      time unit of given duration
+         * @return this builder
+         */
+        public Builder keepAlive(final long keepAlive, final TimeUnit unit) {
+            this.keepAliveMillis = unit.toMillis(keepAlive);
+            return this;
+        }
+
+        /**
+         * @param connectTimeout 10 seconds by default
+         * @param unit           time unit of given duration
+         * @return this builder
+         */
+        public Builder connectTimeout(final long connectTimeout, final TimeUnit unit) {
+            this.connectTimeoutMillis = unit.toMillis(connectTimeout);
+            return this;
+        }
+
+        /**
+         * @param readTimeout 10 seconds by default
+         * @param unit        time unit of given duration
+         * @return this builder
+         */
+        public Builder readTimeout(final long readTimeout, final TimeUnit unit) {
+            this.readTimeoutMillis = unit.toMillis(readTimeout);
+            return this;
+        }
+
+        /**
+         * Tracer of page fetches, e.g. an adapter of OpenTelemetry.
+         *
+         * @param tracer {@link ContentfulTracer#NOOP} by default
+         * @return this builder
+         */
+        public Builder tracer(final ContentfulTracer tracer) {
+            this.tracer = tracer;
+            return this;
+        }
+
+        /**
+         * Scheduler limiting the fetches of all the services, and letting interactive fetches go ahead of background
+         * ones, e.g. {@code FetchScheduler.of(32, 8)}.
+         *
+         * @param scheduler none by default, which starts every fetch right away
+         * @return this builder
+         */
+        public Builder scheduler(final FetchScheduler scheduler) {
+            this.scheduler = scheduler;
+            return this;
+        }
+
+        /**
+         * Whether responses to page fetches should be read straight into the page with a streaming parser, instead of
+         * being deserialized into the object graph of Contentful SDK first. It uses less CPU and produces far less
+         * garbage per fetch, while the fields of the page stay the same. Only pages for a single locale are read
+         * this way, pages for all locales are always read by the SDK.
+         *
+         * @param directParsing false by default
+         * @return this builder
+         */
+        public Builder directParsing(final boolean directParsing) {
+            this.directParsing = directParsing;
+            return this;
+        }
+
+        /**
+         * Whether directly parsed pages should share the entries and assets they link, e.g. footer, navigation or
+         * legal blocks, instead of each holding its own copy, so that the memory taken by cached pages does not grow
+         * with the number of pages linking the same content. An entry is shared only by pages linking the same
+         * revisions of it and of everything it links to, so the fields of every page stay the same. Shared entries
+         * and assets are kept as long as some page links them.
+         * <p>
+         * It applies only with {@link #directParsing(boolean)} enabled.
+         *
+         * @param sharedEntries false by default
+         * @return this builder
+         */
+        public Builder sharedEntries(final boolean sharedEntries) {
+            this.sharedEntries = sharedEntries;
+            return this;
+        }
+
+        /**
+         * Renderer of fields of type Text, e.g. from Markdown to HTML, provided by
+         * {@link ContentfulCmsPage#html(String)}. Each text is rendered once per revision of its entry, and kept for
+         * all the pages sharing the entry.
+         *
+         * @param textRenderer none by default, in which case pages provide no HTML
+         * @return this builder
+         */
+        public Builder textRenderer(final TextRenderer textRenderer) {
+            this.textRenderer = textRenderer;
+            return this;
+        }
+
+        /**
+         * Maximum number of rendered texts kept, the least recently used ones are dropped first.
+         *
+         * @param maxRenderedTexts 10000 by default
+         * @return this builder
+         */
+        public Builder maxRenderedTexts(final int maxRenderedTexts) {
+            this.maxRenderedTexts = maxRenderedTexts;
+            return this;
+        }
+
+        /**
+         * Variants of images offered by {@link ContentfulCmsPage#asset(String)}, e.g. to be listed in {@code srcset}.
+         *
+         * @param imageVariants {@link ImageVariants#defaults()} by default
+         * @return this builder
+         */
+        public Builder imageVariants(final ImageVariants imageVariants) {
+            this.imageVariants = imageVariants;
+            return this;
+        }
+
+        /**
+         * Policy trying page fetches failed by transient errors again, e.g. {@code RetryPolicy.builder().build()}.
+         * Its retry budget and metrics are shared by all the services of the client.
+         *
+         * @param retryPolicy {@link RetryPolicy#none()} by default, which passes on every failure right away
+         * @return this builder
+         */
+        public Builder retryPolicy(final RetryPolicy retryPolicy) {
+            this.retryPolicy = retryPolicy;
+            return this;
+        }
+
+        public SharedContentfulClient build() {
+            final CDAClient.Builder cdaClientBuilder = CDAClient.builder()
+                    .setEndpoint(endpoint)
+                    .setSpace(spaceId)
+                    .setToken(token);
+            final EntityTagInterceptor entityTags = new EntityTagInterceptor(entriesUrl());
+            final TracingInterceptor tracingInterceptor = tracer != ContentfulTracer.NOOP
+                    ? new TracingInterceptor(entriesUrl())
+                    : null;
+            final OkHttpClient httpClient = createHttpClient(cdaClientBuilder.defaultCallFactoryBuilder(), entityTags,
+                    tracingInterceptor);
+            final CDAClient cdaClient = cdaClientBuilder
+                    .setCallFactory(httpClient)
+                    .build();
+            final OkHttpClient directClient = createDirectClient(httpClient, tracingInterceptor);
+            final EntityTagRevalidator revalidator = new EntityTagRevalidator(directClient, entriesUrl());
+            final ContentTypeCache contentTypes = new ContentTypeCache(cdaClient);
+            final ResourceInterner interner = sharedEntries ? new ResourceInterner() : null;
+            final DirectEntriesFetcher directFetcher = directParsing
+                    ? new DirectEntriesFetcher(directClient, entriesUrl(), contentTypes, interner)
+                    : null;
+            final GraphQLClient graphQLClient = new GraphQLClient(directClient, graphQLUrl(), contentTypes);
+            final RenderedTextCache renderedTexts = textRenderer != null
+                    ? new RenderedTextCache(textRenderer, maxRenderedTexts)
+                    : null;
+            return new SharedContentfulClient(cdaClient, httpClient, revalidator, entityTags, tracer,
+                    tracingInterceptor, scheduler, directFetcher, graphQLClient, renderedTexts, imageVariants,
+                    retryPolicy);
+        }
+
+        /**
+         * Tune HTTP client provided by Contentful so that its authorization and error handling stay in place.
+         */
+        private OkHttpClient createHttpClient(final OkHttpClient.Builder httpClientBuilder,
+                                              final EntityTagInterceptor entityTags,
+                                              @Nullable final TracingInterceptor tracingInterceptor) {
+            if (tracingInterceptor != null) {
+                httpClientBuilder.addInterceptor(tracingInterceptor);
+            }
+            httpClientBuilder.addInterceptor(entityTags);
+            httpClientBuilder
+                    .connectionPool(new ConnectionPool(maxIdleConnections, keepAliveMillis, TimeUnit.MILLISECONDS))
+                    .protocols(http2
+                            ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                            : Collections.singletonList(Protocol.HTTP_1_1))
+                    .connectTimeout(connectTimeoutMillis, TimeUnit.MILLISECONDS)
+                    .readTimeout(readTimeoutMillis, TimeUnit.MILLISECONDS);
+            return addOwnInterceptors(httpClientBuilder).build();
+        }
+
+        /**
+         * Derive HTTP client for conditional requests and directly parsed fetches which are sent outside of
+         * Contentful SDK and therefore cannot rely on its interceptors. It still shares connection pool with the
+         * client used by the SDK.
+         */
+        private OkHttpClient createDirectClient(final OkHttpClient httpClient,
+                                                @Nullable final TracingInterceptor tracingInterceptor) {
+            final OkHttpClient.Builder httpClientBuilder = httpClient.newBuilder();
+            httpClientBuilder.interceptors().clear();
+            httpClientBuilder.networkInterceptors().clear();
+            if (tracingInterceptor != null) {
+                httpClientBuilder.addInterceptor(tracingInterceptor);
+            }
+            httpClientBuilder.addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                    .header("Authorization", "Bearer " + token)
+                    .build()));
+            return addOwnInterceptors(httpClientBuilder).build();
+        }
+
+        private OkHttpClient.Builder addOwnInterceptors(final OkHttpClient.Builder httpClientBuilder) {
+            if (!gzip) {
+                // OkHttp transparently asks for gzip unless the request states its own encoding
+                httpClientBuilder.addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                        .header("Accept-Encoding", "identity")
+                        .build()));
+            }
+            return httpClientBuilder;
+        }
+
+        private HttpUrl graphQLUrl() {
+            return HttpUrl.parse(graphQLEndpoint).newBuilder()
+                    .addPathSegment("content")
+                    .addPathSegment("v1")
+                    .addPathSegment("spaces")
+                    .addPathSegment(spaceId)
+                    .build();
+        }
+
+        private HttpUrl entriesUrl() {
+            return HttpUrl.parse(endpoint).newBuilder()
+                    .addPathSegment("spaces")
+                    .addPathSegment(spaceId)
+                    .addPathSegment("entries")
+                    .build();
+        }
+    }
+}
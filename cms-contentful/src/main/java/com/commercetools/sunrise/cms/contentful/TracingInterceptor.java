@@ -0,0 +1,151 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.ForwardingSource;
+import okio.Okio;
+import okio.Source;
+
+import javax.annotation.Nullable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Traces HTTP exchanges of page fetches with {@link FetchTrace}.
+ * <p>
+ * Contentful SDK sends requests on its own threads, so the fetch is matched with its request by the query. A fetch
+ * announces the query it is going to send with {@link #expect(Map, FetchTrace)} and the first request with that
+ * query is traced as its HTTP exchange. Requests nobody expects, e.g. for the space or content types, or conditional
+ * requests refreshing pages, pass through untouched.
+ * <p>
+ * The body of traced responses keeps streaming to the parser, while its bytes are counted on their way. The HTTP span
+ * ends once the body has been read to its end or closed, so that it covers the transfer of the body.
+ */
+final class TracingInterceptor implements Interceptor {
+
+    private final HttpUrl entriesUrl;
+    private final ConcurrentMap<String, Queue<FetchTrace>> expectedRequests = new ConcurrentHashMap<>();
+
+    TracingInterceptor(final HttpUrl entriesUrl) {
+        this.entriesUrl = entriesUrl;
+    }
+
+    /**
+     * Announce that the fetch is going to send an entries query.
+     *
+     * @param query parameters of the entries query as sent by Contentful SDK
+     * @param trace of the fetch
+     * @return action forgetting the expected request, in case it has not been sent
+     */
+    Runnable expect(final Map<String, String> query, final FetchTrace trace) {
+        final HttpUrl.Builder urlBuilder = entriesUrl.newBuilder();
+        query.forEach(urlBuilder::addQueryParameter);
+        final String key = EntityTagInterceptor.key(urlBuilder.build());
+        expectedRequests.compute(key, (k, traces) -> {
+            final Queue<FetchTrace> expectedTraces = traces != null ? traces : new ArrayDeque<>();
+            expectedTraces.add(trace);
+            return expectedTraces;
+        });
+        return () -> expectedRequests.computeIfPresent(key, (k, traces) -> {
+            traces.remove(trace);
+            return traces.isEmpty() ? null : traces;
+        });
+    }
+
+    @Override
+    public Response intercept(final Chain chain) throws IOException {
+        final Request request = chain.request();
+        final FetchTrace trace = "GET".equals(request.method()) && request.header("If-None-Match") == null
+                ? takeExpected(request.url())
+                : null;
+        if (trace == null) {
+            return chain.proceed(request);
+        }
+        final ContentfulSpan httpSpan = trace.httpStarted();
+        try {
+            final Response response = chain.proceed(request);
+            final ResponseBody body = response.body();
+            final Source tracedSource = new TracedSource(body.source(), trace, httpSpan, response.code());
+            return response.newBuilder()
+                    .body(ResponseBody.create(body.contentType(), body.contentLength(), Okio.buffer(tracedSource)))
+                    .build();
+        } catch (IOException | RuntimeException e) {
+            trace.httpFailed(httpSpan, e);
+            throw e;
+        }
+    }
+
+    /**
+     * Source of a response body counting the bytes read from it, which ends the HTTP span at the end of the body,
+     * when it is closed or when reading it fails, whichever comes first.
+     */
+    private static final class TracedSource extends ForwardingSource {
+        private final FetchTrace trace;
+        private final ContentfulSpan httpSpan;
+        private final int statusCode;
+        private long bytesRead;
+        private boolean ended;
+
+        private TracedSource(final Source delegate, final FetchTrace trace, final ContentfulSpan httpSpan,
+                             final int statusCode) {
+            super(delegate);
+            this.trace = trace;
+            this.httpSpan = httpSpan;
+            this.statusCode = statusCode;
+        }
+
+        @Override
+        public long read(final Buffer sink, final long byteCount) throws IOException {
+            final long read;
+            try {
+                read = super.read(sink, byteCount);
+            } catch (IOException | RuntimeException e) {
+                if (!ended) {
+                    ended = true;
+                    trace.httpFailed(httpSpan, e);
+                }
+                throw e;
+            }
+            if (read == -1) {
+                finished();
+            } else {
+                bytesRead += read;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                finished();
+            }
+        }
+
+        private void finished() {
+            if (!ended) {
+                ended = true;
+                trace.httpFinished(httpSpan, statusCode, bytesRead);
+            }
+        }
+    }
+
+    @Nullable
+    private FetchTrace takeExpected(final HttpUrl url) {
+        final FetchTrace[] trace = new FetchTrace[1];
+        expectedRequests.computeIfPresent(EntityTagInterceptor.key(url), (key, traces) -> {
+            trace[0] = traces.poll();
+            return traces.isEmpty() ? null : traces;
+        });
+        return trace[0];
+    }
+}
@@ -0,0 +1,196 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsPage;
+import com.commercetools.sunrise.cms.CmsService;
+import com.contentful.java.cda.CDAEntry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class AliasedPageCacheTest {
+
+    private static final List<Locale> LOCALES = singletonList(Locale.GERMANY);
+    private static final long TTL = TimeUnit.MINUTES.toMillis(5);
+
+    private final Map<String, CDAEntry> entries = new HashMap<>();
+    private final List<ContentfulLookup> lookups = new ArrayList<>();
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void fetchesPageOnceForAllItsAliases() throws Exception {
+        entries.put("id1", entry("id1", "home", "legacy-home"));
+        final AliasedPageCache cache = cache(10);
+
+        final Optional<CmsPage> bySlug = get(cache.by("slug"), "home");
+        final Optional<CmsPage> byLegacyKey = get(cache.by("legacyKey"), "legacy-home");
+        final Optional<CmsPage> byId = get(cache.byId(), "id1");
+
+        assertThat(bySlug).isPresent();
+        assertThat(byLegacyKey.get()).isSameAs(bySlug.get());
+        assertThat(byId.get()).isSameAs(bySlug.get());
+        assertThat(lookups).containsExactly(ContentfulLookup.of("page", "slug", "home"));
+        assertThat(cache.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void cachesPagesPerLocales() throws Exception {
+        entries.put("id1", entry("id1", "home", "legacy-home"));
+        final AliasedPageCache cache = cache(10);
+
+        get(cache.by("slug"), "home");
+        cache.by("slug").page("home", singletonList(Locale.ENGLISH)).toCompletableFuture().get();
+
+        assertThat(lookups).hasSize(2);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void invalidatesPageWithAllItsAliases() throws Exception {
+        entries.put("id1", entry("id1", "home", "legacy-home"));
+        final AliasedPageCache cache = cache(10);
+        get(cache.by("slug"), "home");
+
+        cache.invalidate("id1");
+        get(cache.by("legacyKey"), "legacy-home");
+
+        assertThat(lookups).containsExactly(
+                ContentfulLookup.of("page", "slug", "home"),
+                ContentfulLookup.of("page", "legacyKey", "legacy-home"));
+    }
+
+    @Test
+    public void dropsAliasesOfEvictedPages() throws Exception {
+        entries.put("id1", entry("id1", "home", "legacy-home"));
+        entries.put("id2", entry("id2", "about", "legacy-about"));
+        final AliasedPageCache cache = cache(1);
+
+        get(cache.by("slug"), "home");
+        get(cache.by("slug"), "about");
+        get(cache.by("legacyKey"), "legacy-home");
+
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(lookups).containsExactly(
+                ContentfulLookup.of("page", "slug", "home"),
+                ContentfulLookup.of("page", "slug", "about"),
+                ContentfulLookup.of("page", "legacyKey", "legacy-home"));
+    }
+
+    @Test
+    public void refetchesExpiredPageById() throws Exception {
+        entries.put("id1", entry("id1", "home", "legacy-home"));
+        final AliasedPageCache cache = cache(10);
+        get(cache.by("slug"), "home");
+
+        entries.put("id1", entry("id1", "start", "legacy-home"));
+        now.addAndGet(TTL);
+
+        assertThat(get(cache.by("legacyKey"), "legacy-home")).isPresent();
+        assertThat(lookups).containsExactly(
+                ContentfulLookup.of("page", "slug", "home"),
+                ContentfulLookup.byId("id1"));
+        get(cache.by("slug"), "start");
+        assertThat(lookups).hasSize(2);
+        get(cache.by("slug"), "home");
+        assertThat(lookups).hasSize(3);
+    }
+
+    @Test
+    public void dropsPageWhoseEntryIsGone() throws Exception {
+        entries.put("id1", entry("id1", "home", "legacy-home"));
+        final AliasedPageCache cache = cache(10);
+        get(cache.by("slug"), "home");
+
+        entries.clear();
+        now.addAndGet(TTL);
+
+        assertThat(get(cache.by("slug"), "home")).isEmpty();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void fetchesConcurrentlyRequestedPageOnce() throws Exception {
+        final CompletableFuture<Optional<CmsPage>> pendingPage = new CompletableFuture<>();
+        final List<ContentfulLookup> pendingLookups = new ArrayList<>();
+        final AliasedPageCache cache = new AliasedPageCache("page", Arrays.asList("slug", "legacyKey"),
+                (lookup, locales) -> {
+                    pendingLookups.add(lookup);
+                    return pendingPage;
+                }, 10, TTL, now::get);
+
+        final CompletionStage<Optional<CmsPage>> first = cache.by("slug").page("home", LOCALES);
+        final CompletionStage<Optional<CmsPage>> second = cache.by("slug").page("home", LOCALES);
+        pendingPage.complete(Optional.of(new ContentfulCmsPage(entry("id1", "home", "legacy-home"))));
+
+        assertThat(first.toCompletableFuture().get()).isPresent();
+        assertThat(second.toCompletableFuture().get()).isPresent();
+        assertThat(pendingLookups).hasSize(1);
+    }
+
+    @Test
+    public void doesNotCacheFailures() throws Exception {
+        final List<ContentfulLookup> failedLookups = new ArrayList<>();
+        final AliasedPageCache cache = new AliasedPageCache("page", singletonList("slug"), (lookup, locales) -> {
+            failedLookups.add(lookup);
+            final CompletableFuture<Optional<CmsPage>> failure = new CompletableFuture<>();
+            failure.completeExceptionally(new IllegalStateException("Contentful is down"));
+            return failure;
+        }, 10, TTL, now::get);
+
+        assertThat(catchThrowable(() -> get(cache.by("slug"), "home")))
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(catchThrowable(() -> get(cache.by("slug"), "home")))
+                .hasCauseInstanceOf(IllegalStateException.class);
+        assertThat(failedLookups).hasSize(2);
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void rejectsUnknownAliasField() throws Exception {
+        final AliasedPageCache cache = cache(10);
+
+        assertThat(catchThrowable(() -> cache.by("title"))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private AliasedPageCache cache(final int maxPages) {
+        return new AliasedPageCache("page", Arrays.asList("slug", "legacyKey"), this::fetch, maxPages, TTL, now::get);
+    }
+
+    private CompletionStage<Optional<CmsPage>> fetch(final ContentfulLookup lookup, final List<Locale> locales) {
+        lookups.add(lookup);
+        final Optional<CmsPage> page = entries.values().stream()
+                .filter(entry -> lookup.contentType().isPresent()
+                        ? lookup.key().equals(entry.getField(lookup.queryField().substring("fields.".length())))
+                        : lookup.key().equals(entry.id()))
+                .findFirst()
+                .map(entry -> (CmsPage) new ContentfulCmsPage(entry));
+        return CompletableFuture.completedFuture(page);
+    }
+
+    private static Optional<CmsPage> get(final CmsService service, final String pageKey) throws Exception {
+        return service.page(pageKey, LOCALES).toCompletableFuture().get();
+    }
+
+    private static CDAEntry entry(final String id, final String slug, final String legacyKey) {
+        final CDAEntry entry = mock(CDAEntry.class);
+        when(entry.id()).thenReturn(id);
+        when(entry.getField("slug")).thenReturn(slug);
+        when(entry.getField("legacyKey")).thenReturn(legacyKey);
+        return entry;
+    }
+}
@@ -0,0 +1,93 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.contentful.java.cda.CDAArray;
+import com.contentful.java.cda.CDAClient;
+import com.contentful.java.cda.CDAContentType;
+import com.contentful.java.cda.CDAResource;
+import com.contentful.java.cda.FetchQuery;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.contentType;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ContentTypeCacheTest {
+
+    private final List<CDAResource> contentTypes = new ArrayList<>();
+    private final AtomicLong now = new AtomicLong();
+
+    @Test
+    public void fetchesContentTypesOnce() throws Exception {
+        contentTypes.add(contentType("page"));
+        final FetchQuery<CDAContentType> fetchQuery = fetchQuery();
+        final ContentTypeCache cache = new ContentTypeCache(client(fetchQuery), now::get);
+
+        assertThat(cache.get("page").id()).isEqualTo("page");
+        assertThat(cache.get("page").id()).isEqualTo("page");
+        assertThat(cache.all()).hasSize(1);
+        verify(fetchQuery, times(1)).all();
+    }
+
+    @Test
+    public void refetchesUnknownContentTypeAtMostOncePerInterval() throws Exception {
+        contentTypes.add(contentType("page"));
+        final FetchQuery<CDAContentType> fetchQuery = fetchQuery();
+        final ContentTypeCache cache = new ContentTypeCache(client(fetchQuery), now::get);
+        cache.get("page");
+
+        now.addAndGet(ContentTypeCache.REFETCH_INTERVAL_MILLIS);
+        contentTypes.add(contentType("banner"));
+
+        assertThat(cache.get("banner").id()).isEqualTo("banner");
+        assertThat(catchThrowable(() -> cache.get("menu"))).isInstanceOf(IllegalStateException.class);
+        assertThat(catchThrowable(() -> cache.get("menu"))).isInstanceOf(IllegalStateException.class);
+        verify(fetchQuery, times(2)).all();
+
+        now.addAndGet(ContentTypeCache.REFETCH_INTERVAL_MILLIS);
+
+        assertThat(catchThrowable(() -> cache.get("menu"))).isInstanceOf(IllegalStateException.class);
+        verify(fetchQuery, times(3)).all();
+    }
+
+    @Test
+    public void doesNotRefetchEmptySpace() throws Exception {
+        final FetchQuery<CDAContentType> fetchQuery = fetchQuery();
+        final ContentTypeCache cache = new ContentTypeCache(client(fetchQuery), now::get);
+
+        assertThat(cache.all()).isEmpty();
+        assertThat(catchThrowable(() -> cache.get("page"))).isInstanceOf(IllegalStateException.class);
+        verify(fetchQuery, times(1)).all();
+    }
+
+    private static CDAClient client(final FetchQuery<CDAContentType> fetchQuery) {
+        final CDAClient client = mock(CDAClient.class);
+        when(client.fetch(CDAContentType.class)).thenReturn(fetchQuery);
+        return client;
+    }
+
+    @SuppressWarnings("unchecked")
+    private FetchQuery<CDAContentType> fetchQuery() {
+        final FetchQuery<CDAContentType> fetchQuery = mock(FetchQuery.class);
+        when(fetchQuery.where(anyString(), anyString())).thenReturn(fetchQuery);
+        when(fetchQuery.all()).thenAnswer(invocation -> result(new ArrayList<>(contentTypes)));
+        return fetchQuery;
+    }
+
+    private static CDAArray result(final List<CDAResource> items) {
+        return new CDAArray() {
+            @Override
+            public List<CDAResource> items() {
+                return items;
+            }
+        };
+    }
+}
@@ -1,10 +1,12 @@
 package com.commercetools.sunrise.cms.contentful;
 
+import com.commercetools.sunrise.cms.CmsAsset;
 import com.commercetools.sunrise.cms.CmsPage;
 import com.contentful.java.cda.CDAAsset;
 import com.contentful.java.cda.CDAEntry;
 import org.junit.Test;
 
+import java.time.Instant;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.HashMap;
@@ -211,6 +213,117 @@ public class ContentfulCmsPageTest {
         assertThat(content2).isNotPresent();
     }
 
+    @Test
+    public void allFieldsContainEveryLeafOfTheSubtree() {
+        CDAEntry fourth = mockEntryWithField("fourth", createArray("text", "text2"), TEXT.type());
+        CDAEntry third = mockEntryWithField("third", createArray(fourth, "text3"), TEXT.type());
+        CDAEntry second = mockEntryWithField("second", third, "Link");
+        CDAEntry first = mockEntryWithField("first", second, "Link");
+        CmsPage cmsPage = new ContentfulCmsPage(first);
+
+        Optional<Map<String, String>> allFields = cmsPage.allFields();
+
+        assertThat(allFields).isPresent();
+        assertThat(allFields.get())
+                .containsEntry("first.second.third[1].fourth[1]", "text")
+                .containsEntry("first.second.third[1].fourth[2]", "text2")
+                .containsEntry("first.second.third[2]", "text3");
+        allFields.get().forEach((path, content) -> assertThat(cmsPage.field(path)).hasValue(content));
+    }
+
+    @Test
+    public void versionChangesWithRevisionOfLinkedEntry() {
+        CDAEntry linked = mockEntryWithField("title", "text", TEXT.type());
+        mockSystemAttributes(linked, "linked", 1, "2017-01-01T00:00:00Z");
+        CDAEntry root = mockEntryWithField("linked", linked, "Link");
+        mockSystemAttributes(root, "root", 3, "2017-02-01T00:00:00Z");
+        CmsPage cmsPage = new ContentfulCmsPage(root);
+        Optional<String> version = cmsPage.version();
+
+        mockSystemAttributes(linked, "linked", 2, "2017-03-01T00:00:00Z");
+        CmsPage republishedPage = new ContentfulCmsPage(root);
+
+        assertThat(version).isPresent();
+        assertThat(new ContentfulCmsPage(root).version()).isNotEqualTo(version);
+        assertThat(cmsPage.version()).isEqualTo(version);
+        assertThat(cmsPage.lastModified()).hasValue(Instant.parse("2017-02-01T00:00:00Z"));
+        assertThat(republishedPage.lastModified()).hasValue(Instant.parse("2017-03-01T00:00:00Z"));
+    }
+
+    @Test
+    public void versionIsAbsentWhenRevisionIsUnknown() {
+        CDAEntry root = mockEntryWithField("title", "text", TEXT.type());
+
+        assertThat(new ContentfulCmsPage(root).version()).isNotPresent();
+        assertThat(new ContentfulCmsPage(root).lastModified()).isNotPresent();
+    }
+
+    @Test
+    public void htmlIsRenderedFromTextFields() {
+        CDAEntry linked = mockEntryWithField("description", "*new*", TEXT.type());
+        mockSystemAttributes(linked, "linked", 1, "2017-01-01T00:00:00Z");
+        CDAEntry root = mockEntryWithField("banner", linked, "Link");
+        RenderedTextCache renderedTexts = new RenderedTextCache(text -> "<em>new</em>", 10);
+
+        CmsPage cmsPage = new ContentfulCmsPage(root, renderedTexts, ImageVariants.defaults(), null);
+
+        assertThat(cmsPage.html("banner.description")).hasValue("<em>new</em>");
+        assertThat(cmsPage.field("banner.description")).hasValue("*new*");
+        assertThat(cmsPage.html("banner.missing")).isNotPresent();
+        assertThat(renderedTexts.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void htmlIsNotRenderedFromOtherFields() {
+        CDAEntry root = mockEntryWithField("title", "*new*", SYMBOL.type());
+
+        CmsPage cmsPage = new ContentfulCmsPage(root, new RenderedTextCache(text -> "<em>new</em>", 10),
+                ImageVariants.defaults(), null);
+
+        assertThat(cmsPage.html("title")).isNotPresent();
+    }
+
+    @Test
+    public void htmlIsAbsentWithoutRenderer() {
+        CmsPage cmsPage = new ContentfulCmsPage(mockEntryWithField("description", "*new*", TEXT.type()));
+
+        assertThat(cmsPage.html("description")).isNotPresent();
+    }
+
+    @Test
+    public void assetIsDescribedOncePerPage() {
+        CDAAsset image = ImageVariantsTest.mockAsset("//img/a.jpg", "image/jpeg", 1000);
+        CDAEntry linked = mockEntryWithField("images", createArray(image), ASSET.type());
+        CDAEntry root = mockEntryWithField("banner", linked, "Link");
+        CmsPage cmsPage = new ContentfulCmsPage(root);
+
+        Optional<CmsAsset> asset = cmsPage.asset("banner.images[1]");
+
+        assertThat(asset).isPresent();
+        assertThat(asset.get().width()).hasValue(1000);
+        assertThat(asset.get().variants()).isNotEmpty();
+        assertThat(cmsPage.asset("banner.images[1]").get()).isSameAs(asset.get());
+        assertThat(cmsPage.field("banner.images[1]")).hasValue("//img/a.jpg");
+    }
+
+    @Test
+    public void assetIsAbsentForOtherFields() {
+        CmsPage cmsPage = new ContentfulCmsPage(mockEntryWithField("title", "Content of a field", SYMBOL.type()));
+
+        assertThat(cmsPage.asset("title")).isNotPresent();
+        assertThat(cmsPage.asset("missing")).isNotPresent();
+    }
+
+    private void mockSystemAttributes(final CDAEntry entry, final String id, final int revision,
+                                      final String updatedAt) {
+        Map<String, Object> attrs = new HashMap<>();
+        attrs.put("id", id);
+        attrs.put("revision", (double) revision);
+        attrs.put("updatedAt", updatedAt);
+        when(entry.id()).thenReturn(id);
+        when(entry.attrs()).thenReturn(attrs);
+    }
+
     private CDAAsset mockAsset(final String value) {
         CDAAsset assetContent = mock(CDAAsset.class);
         when(assetContent.url()).thenReturn(value);
@@ -3,6 +3,7 @@ package com.commercetools.sunrise.cms.contentful;
 import com.commercetools.sunrise.cms.CmsPage;
 import com.commercetools.sunrise.cms.CmsService;
 import com.commercetools.sunrise.cms.CmsServiceException;
+import com.commercetools.sunrise.cms.FetchScheduler;
 import com.contentful.java.cda.CDAArray;
 import com.contentful.java.cda.CDAClient;
 import com.contentful.java.cda.CDAEntry;
@@ -11,17 +12,24 @@ import com.contentful.java.cda.CDASpace;
 import com.contentful.java.cda.FetchQuery;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.mockEntryWithField;
 import static com.commercetools.sunrise.cms.contentful.FieldType.BOOLEAN;
 import static java.util.Collections.emptyList;
+import static java.util.Collections.nCopies;
 import static java.util.Collections.singletonList;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.ThrowableAssert.catchThrowable;
@@ -30,7 +38,9 @@ import static org.mockito.Matchers.isA;
 import static org.mockito.Matchers.same;
 import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -128,6 +138,217 @@ public class ContentfulCmsServiceTest {
         assertThat(thrown).hasCauseInstanceOf(CmsServiceException.class);
     }
 
+    @Test
+    public void whenRefreshWithoutKnownEntityTag_thenFetchAgain() {
+        FetchQuery<CDAEntry> fetchQuery =
+                getFetchQuery(singletonList(mockEntryWithField("aField", true, BOOLEAN.type())));
+        CDAClient cdaClient = mockCdaClient(fetchQuery);
+        CmsService cmsService = service(() -> cdaClient);
+        CmsPage cachedPage = mock(CmsPage.class);
+
+        Optional<CmsPage> page = get(cmsService.refresh("aPage", emptyList(), cachedPage));
+
+        assertThat(page).isPresent();
+        assertThat(page.get()).isNotSameAs(cachedPage);
+        verify(fetchQuery).where(eq("fields.pageQueryField"), eq("aPage"));
+    }
+
+    @Test
+    public void whenCancelledBeforeExecution_thenRequestIsSkipped() {
+        CDAClient cdaClient = mock(CDAClient.class);
+        List<Runnable> queuedTasks = new ArrayList<>();
+        CmsService cmsService = ContentfulCmsService.of(() -> cdaClient, "pageType", "pageQueryField", queuedTasks::add);
+
+        CompletableFuture<Optional<CmsPage>> page = cmsService.page("aPage", emptyList()).toCompletableFuture();
+        page.cancel(true);
+        queuedTasks.forEach(Runnable::run);
+
+        assertThat(page.isCancelled()).isTrue();
+        verify(cdaClient, never()).fetch(CDAEntry.class);
+    }
+
+    @Test
+    public void whenCancelledDuringExecution_thenContentfulCallbackIsCancelled() {
+        SpiedFetchQuery fetchQuery = SpiedFetchQuery.of();
+        AtomicReference<ContentfulCmsService.ContentCallback.ContentfulCallback> pendingCallback = new AtomicReference<>();
+        Class<ContentfulCmsService.ContentCallback.ContentfulCallback> clazz = ContentfulCmsService.ContentCallback.ContentfulCallback.class;
+        doAnswer(invocation -> {
+            pendingCallback.set(invocation.getArgumentAt(0, clazz));
+            return null;
+        }).when(fetchQuery).all(isA(clazz));
+        CmsService cmsService = service(() -> mockCdaClient(fetchQuery));
+
+        CompletableFuture<Optional<CmsPage>> page = cmsService.page("aPage", emptyList()).toCompletableFuture();
+        assertThat(pendingCallback.get().isCancelled()).isFalse();
+        page.cancel(true);
+
+        assertThat(pendingCallback.get().isCancelled()).isTrue();
+    }
+
+    @Test
+    public void whenRefreshCancelledAfterContentChanged_thenContentfulCallbackIsCancelled() {
+        SpiedFetchQuery fetchQuery = SpiedFetchQuery.of();
+        AtomicReference<ContentfulCmsService.ContentCallback.ContentfulCallback> pendingCallback = new AtomicReference<>();
+        Class<ContentfulCmsService.ContentCallback.ContentfulCallback> clazz = ContentfulCmsService.ContentCallback.ContentfulCallback.class;
+        doAnswer(invocation -> {
+            pendingCallback.set(invocation.getArgumentAt(0, clazz));
+            return null;
+        }).when(fetchQuery).all(isA(clazz));
+        CmsService cmsService = service(() -> mockCdaClient(fetchQuery));
+
+        CompletableFuture<Optional<CmsPage>> page = cmsService.refresh("aPage", emptyList(), mock(CmsPage.class))
+                .toCompletableFuture();
+        assertThat(pendingCallback.get().isCancelled()).isFalse();
+        page.cancel(true);
+
+        assertThat(page.isCancelled()).isTrue();
+        assertThat(pendingCallback.get().isCancelled()).isTrue();
+    }
+
+    @Test
+    public void fetchIsTraced() {
+        FetchQuery<CDAEntry> fetchQuery = getFetchQuery(singletonList(mockEntryWithField("aField", true, BOOLEAN.type())));
+        RecordingTracer tracer = new RecordingTracer();
+        CmsService cmsService = ContentfulCmsService.of(
+                new SharedContentfulClient(mockCdaClient(fetchQuery), null, null, null, tracer, null, null, null, null,
+                        null, ImageVariants.defaults(), RetryPolicy.none()),
+                "pageType", "pageQueryField", Runnable::run);
+
+        Optional<CmsPage> page = get(cmsService.page("aPage", singletonList(Locale.GERMANY)));
+
+        assertThat(page).isPresent();
+        assertThat(tracer.spans).extracting(span -> span.name)
+                .containsExactly(FetchTrace.PAGE_SPAN, FetchTrace.QUEUE_SPAN, FetchTrace.CALLBACK_SPAN);
+        assertThat(tracer.spans).extracting(span -> span.endCount).containsOnly(1);
+        assertThat(tracer.span(FetchTrace.PAGE_SPAN).attributes)
+                .containsEntry(FetchTrace.PAGE_KEY, "aPage")
+                .containsEntry(FetchTrace.LOCALE, "de-DE")
+                .containsEntry(FetchTrace.ITEM_COUNT, 1L);
+    }
+
+    @Test
+    public void backgroundFetchesAreScheduledBehindInteractiveOnes() {
+        SpiedFetchQuery fetchQuery = SpiedFetchQuery.of();
+        List<ContentfulCmsService.ContentCallback.ContentfulCallback> pendingCallbacks = new ArrayList<>();
+        Class<ContentfulCmsService.ContentCallback.ContentfulCallback> clazz = ContentfulCmsService.ContentCallback.ContentfulCallback.class;
+        doAnswer(invocation -> {
+            pendingCallbacks.add(invocation.getArgumentAt(0, clazz));
+            return null;
+        }).when(fetchQuery).all(isA(clazz));
+        FetchScheduler scheduler = FetchScheduler.of(2, 1);
+        ContentfulCmsService cmsService = ContentfulCmsService.of(
+                new SharedContentfulClient(mockCdaClient(fetchQuery), null, null, null, ContentfulTracer.NOOP, null,
+                        scheduler, null, null, null, ImageVariants.defaults(), RetryPolicy.none()),
+                "pageType", "pageQueryField", Runnable::run);
+
+        cmsService.inBackground().page("background1", emptyList());
+        cmsService.inBackground().page("background2", emptyList());
+        CompletableFuture<Optional<CmsPage>> interactivePage = cmsService.page("interactive", emptyList())
+                .toCompletableFuture();
+
+        assertThat(pendingCallbacks).hasSize(2);
+        assertThat(scheduler.queuedFetches(FetchScheduler.Priority.BACKGROUND)).isEqualTo(1);
+        pendingCallbacks.get(1).onSuccess(mockClientResult(emptyList()));
+        assertThat(interactivePage.join()).isNotPresent();
+        assertThat(pendingCallbacks).hasSize(3);
+    }
+
+    @Test
+    public void allPagesAreFetchedInBatches() {
+        SpiedFetchQuery fetchQuery = SpiedFetchQuery.of();
+        CDAEntry entry = mockEntryWithField("aField", true, BOOLEAN.type());
+        AtomicInteger batchCount = new AtomicInteger();
+        Class<ContentfulCmsService.EntriesCallback> clazz = ContentfulCmsService.EntriesCallback.class;
+        doAnswer(invocation -> {
+            List<CDAResource> batch = new ArrayList<>(nCopies(batchCount.getAndIncrement() == 0 ? 2 : 1, entry));
+            invocation.getArgumentAt(0, clazz).onSuccess(mockClientResult(batch));
+            return null;
+        }).when(fetchQuery).all(isA(clazz));
+        ContentfulCmsService cmsService = ContentfulCmsService.of(() -> mockCdaClient(fetchQuery),
+                "pageType", "pageQueryField", Runnable::run);
+
+        List<CmsPage> pages = cmsService.allPages(singletonList(Locale.GERMANY), 2).collect(Collectors.toList());
+
+        assertThat(pages).hasSize(3);
+        verify(fetchQuery).where("skip", "0");
+        verify(fetchQuery).where("skip", "2");
+        verify(fetchQuery, never()).where("skip", "4");
+        verify(fetchQuery, times(2)).where("limit", "2");
+        verify(fetchQuery, times(2)).where("order", "sys.id");
+    }
+
+    @Test
+    public void failureToFetchBatchIsThrownFromStream() {
+        SpiedFetchQuery fetchQuery = SpiedFetchQuery.of();
+        Class<ContentfulCmsService.EntriesCallback> clazz = ContentfulCmsService.EntriesCallback.class;
+        doAnswer(invocation -> {
+            invocation.getArgumentAt(0, clazz).onFailure(new RuntimeException("failed"));
+            return null;
+        }).when(fetchQuery).all(isA(clazz));
+        ContentfulCmsService cmsService = ContentfulCmsService.of(() -> mockCdaClient(fetchQuery),
+                "pageType", "pageQueryField", Runnable::run);
+
+        Throwable thrown = catchThrowable(() -> cmsService.allPages(emptyList()).count());
+
+        assertThat(thrown).isInstanceOf(CmsServiceException.class);
+    }
+
+    @Test
+    public void transientFailureIsRetried() {
+        SpiedFetchQuery fetchQuery = SpiedFetchQuery.of();
+        AtomicInteger attempts = new AtomicInteger();
+        Class<ContentfulCmsService.ContentCallback.ContentfulCallback> clazz = ContentfulCmsService.ContentCallback.ContentfulCallback.class;
+        doAnswer(invocation -> {
+            ContentfulCmsService.ContentCallback.ContentfulCallback callback = invocation.getArgumentAt(0, clazz);
+            if (attempts.getAndIncrement() == 0) {
+                callback.onFailure(new Exception("code=503"));
+            } else {
+                callback.onSuccess(mockClientResult(singletonList(mockEntryWithField("aField", true, BOOLEAN.type()))));
+            }
+            return null;
+        }).when(fetchQuery).all(isA(clazz));
+        RetryPolicy retryPolicy = RetryPolicy.builder().backoff(1, 1, TimeUnit.MILLISECONDS).build();
+        CmsService cmsService = service(mockCdaClient(fetchQuery), retryPolicy);
+
+        Optional<CmsPage> page = get(cmsService.page("aPage", emptyList()));
+
+        assertThat(page).isPresent();
+        assertThat(attempts.get()).isEqualTo(2);
+        assertThat(retryPolicy.retriesAttempted()).isEqualTo(1);
+    }
+
+    @Test
+    public void failureIsPassedOnOnceRetriesAreSpent() {
+        FetchQuery<CDAEntry> fetchQuery = getFetchQueryForException(new Exception("code=503"));
+        RetryPolicy retryPolicy = RetryPolicy.builder().maxRetries(2).backoff(1, 1, TimeUnit.MILLISECONDS).build();
+        CmsService cmsService = service(mockCdaClient(fetchQuery), retryPolicy);
+
+        Throwable thrown = catchThrowable(() -> get(cmsService.page("aPage", emptyList())));
+
+        assertThat(thrown).hasCauseInstanceOf(CmsServiceException.class);
+        verify(fetchQuery, times(3)).all(isA(ContentfulCmsService.ContentCallback.ContentfulCallback.class));
+        assertThat(retryPolicy.retriesAttempted()).isEqualTo(2);
+    }
+
+    @Test
+    public void rejectedRequestIsNotRetried() {
+        FetchQuery<CDAEntry> fetchQuery = getFetchQueryForException(new Exception("code=404"));
+        RetryPolicy retryPolicy = RetryPolicy.builder().build();
+        CmsService cmsService = service(mockCdaClient(fetchQuery), retryPolicy);
+
+        Throwable thrown = catchThrowable(() -> get(cmsService.page("aPage", emptyList())));
+
+        assertThat(thrown).hasCauseInstanceOf(CmsServiceException.class);
+        verify(fetchQuery).all(isA(ContentfulCmsService.ContentCallback.ContentfulCallback.class));
+        assertThat(retryPolicy.retriesAttempted()).isZero();
+    }
+
+    private static CmsService service(CDAClient cdaClient, RetryPolicy retryPolicy) {
+        return ContentfulCmsService.of(new SharedContentfulClient(cdaClient, null, null, null, ContentfulTracer.NOOP,
+                null, null, null, null, null, ImageVariants.none(), retryPolicy),
+                "pageType", "pageQueryField", Runnable::run);
+    }
+
     private static CmsService service(Supplier<CDAClient> mockCdaClient) {
         return ContentfulCmsService.of(mockCdaClient, "pageType", "pageQueryField", Runnable::run);
     }
@@ -0,0 +1,195 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsPage;
+import com.commercetools.sunrise.cms.CmsServiceException;
+import com.contentful.java.cda.CDAArray;
+import com.contentful.java.cda.CDAClient;
+import com.contentful.java.cda.CDAEntry;
+import com.contentful.java.cda.CDAResource;
+import com.contentful.java.cda.FetchQuery;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.mockEntryWithField;
+import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.sharedClient;
+import static com.commercetools.sunrise.cms.contentful.FieldType.BOOLEAN;
+import static com.commercetools.sunrise.cms.contentful.FieldType.NUMBER;
+import static com.commercetools.sunrise.cms.contentful.FieldType.SYMBOL;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ContentfulLookupServiceTest {
+
+    private static final ContentfulLookup HOME = ContentfulLookup.of("page", "slug", "home");
+    private static final ContentfulLookup ABOUT = ContentfulLookup.of("page", "slug", "about");
+    private static final ContentfulLookup MENU = ContentfulLookup.of("menu", "name", "main");
+    private static final ContentfulLookup BANNER = ContentfulLookup.byId("banner");
+
+    private final List<ContentfulLookupService.BatchCallback> pendingCallbacks = new ArrayList<>();
+
+    @Test
+    public void batchesLookupsOfSameContentTypeAndQueryField() throws Exception {
+        final List<List<ContentfulLookup>> batches = ContentfulLookupService.batches(
+                asList(HOME, MENU, ABOUT, BANNER, ContentfulLookup.byId("other"), HOME));
+
+        assertThat(batches).containsExactly(asList(HOME, ABOUT), singletonList(MENU),
+                asList(BANNER, ContentfulLookup.byId("other")));
+    }
+
+    @Test
+    public void looksUpKeysWithCommaOnTheirOwn() throws Exception {
+        final ContentfulLookup withComma = ContentfulLookup.of("page", "slug", "a,b");
+
+        final List<List<ContentfulLookup>> batches = ContentfulLookupService.batches(asList(HOME, withComma, ABOUT));
+
+        assertThat(batches).containsExactly(singletonList(withComma), asList(HOME, ABOUT));
+    }
+
+    @Test
+    public void queriesBatchWithInOperator() throws Exception {
+        final Map<String, String> query = ContentfulLookupService.entriesQuery(asList(HOME, ABOUT), "de-DE");
+
+        assertThat(query)
+                .containsEntry("content_type", "page")
+                .containsEntry("fields.slug[in]", "home,about")
+                .containsEntry("locale", "de-DE")
+                .doesNotContainKey("fields.slug");
+    }
+
+    @Test
+    public void queriesLookupsByIdRegardlessOfContentType() throws Exception {
+        final Map<String, String> query = ContentfulLookupService.entriesQuery(singletonList(BANNER), "de-DE");
+
+        assertThat(query)
+                .containsEntry("sys.id", "banner")
+                .doesNotContainKey("content_type");
+    }
+
+    @Test
+    public void providesPagePerLookup() throws Exception {
+        final FetchQuery<CDAEntry> fetchQuery = fetchQuery();
+        final ContentfulLookupService service = service(fetchQuery);
+
+        final Map<ContentfulLookup, CompletionStage<Optional<CmsPage>>> pages =
+                service.pages(asList(HOME, ABOUT, MENU), singletonList(Locale.GERMANY));
+        pendingCallbacks.get(0).onSuccess(result(entry("page", "slug", "home")));
+        pendingCallbacks.get(1).onSuccess(result(entry("menu", "name", "main")));
+
+        assertThat(pendingCallbacks).hasSize(2);
+        assertThat(get(pages.get(HOME)).get().field("slug")).hasValue("home");
+        assertThat(get(pages.get(ABOUT))).isNotPresent();
+        assertThat(get(pages.get(MENU)).get().field("name")).hasValue("main");
+        verify(fetchQuery).where(eq("fields.slug[in]"), eq("home,about"));
+    }
+
+    @Test
+    public void providesPagesLookedUpByNumberAndBooleanFields() throws Exception {
+        final ContentfulLookup byNumber = ContentfulLookup.of("page", "position", "42");
+        final ContentfulLookup byBoolean = ContentfulLookup.of("menu", "main", "true");
+        final ContentfulLookupService service = service(fetchQuery());
+
+        final Map<ContentfulLookup, CompletionStage<Optional<CmsPage>>> pages =
+                service.pages(asList(byNumber, byBoolean), singletonList(Locale.GERMANY));
+        pendingCallbacks.get(0).onSuccess(result(entry("page", "position", 42.0, NUMBER.type())));
+        pendingCallbacks.get(1).onSuccess(result(entry("menu", "main", true, BOOLEAN.type())));
+
+        assertThat(get(pages.get(byNumber))).isPresent();
+        assertThat(get(pages.get(byBoolean))).isPresent();
+    }
+
+    @Test
+    public void failsOnlyLookupMatchingSeveralEntries() throws Exception {
+        final ContentfulLookupService service = service(fetchQuery());
+
+        final Map<ContentfulLookup, CompletionStage<Optional<CmsPage>>> pages =
+                service.pages(asList(HOME, ABOUT), singletonList(Locale.GERMANY));
+        pendingCallbacks.get(0).onSuccess(result(entry("page", "slug", "home"), entry("page", "slug", "home"),
+                entry("page", "slug", "about")));
+
+        assertThat(catchThrowable(() -> get(pages.get(HOME))).getCause()).isInstanceOf(CmsServiceException.class);
+        assertThat(get(pages.get(ABOUT))).isPresent();
+    }
+
+    @Test
+    public void failsAllLookupsOfFailedBatch() throws Exception {
+        final ContentfulLookupService service = service(fetchQuery());
+
+        final Map<ContentfulLookup, CompletionStage<Optional<CmsPage>>> pages =
+                service.pages(asList(HOME, ABOUT), singletonList(Locale.GERMANY));
+        pendingCallbacks.get(0).onFailure(new RuntimeException("failed"));
+
+        assertThat(catchThrowable(() -> get(pages.get(HOME))).getCause()).isInstanceOf(CmsServiceException.class);
+        assertThat(catchThrowable(() -> get(pages.get(ABOUT))).getCause()).isInstanceOf(CmsServiceException.class);
+    }
+
+    @Test
+    public void cancelsRequestOnlyIfAllItsLookupsAreCancelled() throws Exception {
+        final ContentfulLookupService service = service(fetchQuery());
+        final Map<ContentfulLookup, CompletionStage<Optional<CmsPage>>> pages =
+                service.pages(asList(HOME, ABOUT), singletonList(Locale.GERMANY));
+        final ContentfulLookupService.BatchCallback callback = pendingCallbacks.get(0);
+
+        pages.get(HOME).toCompletableFuture().cancel(false);
+
+        assertThat(callback.isCancelled()).isFalse();
+
+        pages.get(ABOUT).toCompletableFuture().cancel(false);
+
+        assertThat(callback.isCancelled()).isTrue();
+    }
+
+    private ContentfulLookupService service(final FetchQuery<CDAEntry> fetchQuery) {
+        final CDAClient client = mock(CDAClient.class);
+        when(client.fetch(same(CDAEntry.class))).thenReturn(fetchQuery);
+        return ContentfulLookupService.of(sharedClient(client), Runnable::run);
+    }
+
+    private FetchQuery<CDAEntry> fetchQuery() {
+        final FetchQuery<CDAEntry> fetchQuery = ContentfulCmsServiceTest.SpiedFetchQuery.of();
+        doAnswer(invocation -> {
+            pendingCallbacks.add(invocation.getArgumentAt(0, ContentfulLookupService.BatchCallback.class));
+            return null;
+        }).when(fetchQuery).all(isA(ContentfulLookupService.BatchCallback.class));
+        return fetchQuery;
+    }
+
+    private static CDAEntry entry(final String contentTypeId, final String queryField, final String key) {
+        return entry(contentTypeId, queryField, key, SYMBOL.type());
+    }
+
+    private static CDAEntry entry(final String contentTypeId, final String queryField, final Object key,
+                                  final String fieldType) {
+        final CDAEntry entry = mockEntryWithField(queryField, key, fieldType);
+        when(entry.contentType().id()).thenReturn(contentTypeId);
+        return entry;
+    }
+
+    private static CDAArray result(final CDAResource... items) {
+        return new CDAArray() {
+            @Override
+            public List<CDAResource> items() {
+                return asList(items);
+            }
+        };
+    }
+
+    private static Optional<CmsPage> get(final CompletionStage<Optional<CmsPage>> stage) {
+        return stage.toCompletableFuture().join();
+    }
+}
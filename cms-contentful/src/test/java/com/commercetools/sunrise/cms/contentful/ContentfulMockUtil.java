@@ -1,10 +1,12 @@
 package com.commercetools.sunrise.cms.contentful;
 
+import com.contentful.java.cda.CDAClient;
 import com.contentful.java.cda.CDAContentType;
 import com.contentful.java.cda.CDAEntry;
 import com.contentful.java.cda.CDAField;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -31,6 +33,37 @@ class ContentfulMockUtil {
         return mockCdaEntry;
     }
 
+    static SharedContentfulClient sharedClient(CDAClient cdaClient) {
+        return new SharedContentfulClient(cdaClient, null, null, null, ContentfulTracer.NOOP, null, null, null, null,
+                null, ImageVariants.defaults(), RetryPolicy.none());
+    }
+
+    static CDAContentType contentType(String id, CDAField... fields) {
+        CDAContentType contentType = mock(CDAContentType.class);
+        when(contentType.id()).thenReturn(id);
+        when(contentType.fields()).thenReturn(Arrays.asList(fields));
+        return contentType;
+    }
+
+    static CDAField field(String id, String type, String linkType) {
+        CDAField field = mock(CDAField.class);
+        when(field.id()).thenReturn(id);
+        when(field.type()).thenReturn(type);
+        when(field.linkType()).thenReturn(linkType);
+        return field;
+    }
+
+    static CDAField arrayField(String id, String itemType, String itemLinkType) {
+        CDAField field = field(id, "Array", null);
+        Map<String, Object> items = new HashMap<>();
+        items.put("type", itemType);
+        if (itemLinkType != null) {
+            items.put("linkType", itemLinkType);
+        }
+        when(field.items()).thenReturn(Collections.unmodifiableMap(items));
+        return field;
+    }
+
     private static CDAContentType mockContentType(String fieldName, Object fieldContent, String fieldType) {
         CDAField mockCdaField = mock(CDAField.class);
 
@@ -0,0 +1,200 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsPage;
+import com.contentful.java.cda.CDAContentType;
+import com.contentful.java.cda.CDAEntry;
+import com.contentful.java.cda.CDAResource;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.arrayField;
+import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.contentType;
+import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.field;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public class DirectEntriesParserTest {
+
+    private static final String RESPONSE = "{"
+            + "\"sys\":{\"type\":\"Array\"},\"total\":1,\"skip\":0,\"limit\":100,"
+            + "\"items\":[{"
+            + "  \"sys\":{\"id\":\"home\",\"type\":\"Entry\",\"revision\":3,\"locale\":\"en\","
+            + "    \"updatedAt\":\"2017-02-01T10:00:00.000Z\","
+            + "    \"space\":{\"sys\":{\"type\":\"Link\",\"linkType\":\"Space\",\"id\":\"space\"}},"
+            + "    \"contentType\":{\"sys\":{\"type\":\"Link\",\"linkType\":\"ContentType\",\"id\":\"page\"}}},"
+            + "  \"fields\":{"
+            + "    \"title\":\"Home\","
+            + "    \"count\":7,"
+            + "    \"location\":{\"lon\":19.62,\"lat\":51.37},"
+            + "    \"tags\":[\"a\",\"b\"],"
+            + "    \"banner\":{\"sys\":{\"type\":\"Link\",\"linkType\":\"Entry\",\"id\":\"banner\"}},"
+            + "    \"image\":{\"sys\":{\"type\":\"Link\",\"linkType\":\"Asset\",\"id\":\"image\"}},"
+            + "    \"unpublished\":{\"sys\":{\"type\":\"Link\",\"linkType\":\"Entry\",\"id\":\"draft\"}},"
+            + "    \"slides\":["
+            + "      {\"sys\":{\"type\":\"Link\",\"linkType\":\"Asset\",\"id\":\"draft\"}},"
+            + "      {\"sys\":{\"type\":\"Link\",\"linkType\":\"Asset\",\"id\":\"image\"}}]}}],"
+            + "\"includes\":{"
+            + "  \"Entry\":[{"
+            + "    \"sys\":{\"id\":\"banner\",\"type\":\"Entry\",\"revision\":1,\"locale\":\"en\","
+            + "      \"updatedAt\":\"2017-03-01T10:00:00.000Z\","
+            + "      \"contentType\":{\"sys\":{\"type\":\"Link\",\"linkType\":\"ContentType\",\"id\":\"banner\"}}},"
+            + "    \"fields\":{\"text\":\"Sale\","
+            + "      \"page\":{\"sys\":{\"type\":\"Link\",\"linkType\":\"Entry\",\"id\":\"home\"}}}}],"
+            + "  \"Asset\":[{"
+            + "    \"sys\":{\"id\":\"image\",\"type\":\"Asset\",\"revision\":2,\"locale\":\"en\","
+            + "      \"updatedAt\":\"2017-01-01T10:00:00.000Z\"},"
+            + "    \"fields\":{\"title\":\"Image\",\"file\":{\"url\":\"//images.ctfassets.net/image.jpg\","
+            + "      \"details\":{\"size\":1024},\"contentType\":\"image/jpeg\"}}}]}}";
+
+    private final Map<String, CDAContentType> contentTypes = new HashMap<>();
+
+    public DirectEntriesParserTest() {
+        contentTypes.put("page", contentType("page",
+                field("title", "Symbol", null),
+                field("count", "Integer", null),
+                field("location", "Location", null),
+                arrayField("tags", "Symbol", null),
+                field("banner", "Link", "Entry"),
+                field("image", "Link", "Asset"),
+                field("unpublished", "Link", "Entry"),
+                arrayField("slides", "Link", "Asset")));
+        contentTypes.put("banner", contentType("banner",
+                field("text", "Text", null),
+                field("page", "Link", "Entry")));
+    }
+
+    @Test
+    public void readsFieldsOfItems() throws Exception {
+        final CmsPage page = new ContentfulCmsPage(parseSingleEntry(RESPONSE));
+
+        assertThat(page.field("title")).hasValue("Home");
+        assertThat(page.field("count")).hasValue("7.0");
+        assertThat(page.field("location")).hasValue("{lon=19.62, lat=51.37}");
+        assertThat(page.field("tags[1]")).hasValue("b");
+    }
+
+    @Test
+    public void resolvesLinksToIncludedEntriesAndAssets() throws Exception {
+        final CmsPage page = new ContentfulCmsPage(parseSingleEntry(RESPONSE));
+
+        assertThat(page.field("banner.text")).hasValue("Sale");
+        assertThat(page.field("banner.page.title")).hasValue("Home");
+        assertThat(page.field("image")).hasValue("//images.ctfassets.net/image.jpg");
+    }
+
+    @Test
+    public void leavesOutUnresolvableLinks() throws Exception {
+        final CDAEntry entry = parseSingleEntry(RESPONSE);
+        final CmsPage page = new ContentfulCmsPage(entry);
+
+        assertThat(entry.<Object>getField("unpublished")).isNull();
+        assertThat(page.field("unpublished.title")).isNotPresent();
+        assertThat(page.field("slides[0]")).hasValue("//images.ctfassets.net/image.jpg");
+        assertThat(page.field("slides[1]")).isNotPresent();
+    }
+
+    @Test
+    public void keepsSystemAttributesNeededForVersion() throws Exception {
+        final CmsPage page = new ContentfulCmsPage(parseSingleEntry(RESPONSE));
+
+        assertThat(page.version()).isPresent();
+        assertThat(page.lastModified()).hasValue(Instant.parse("2017-03-01T10:00:00.000Z"));
+    }
+
+    @Test
+    public void readsEmptyResponse() throws Exception {
+        final List<CDAResource> items = parse("{\"sys\":{\"type\":\"Array\"},\"total\":0,\"items\":[]}");
+
+        assertThat(items).isEmpty();
+    }
+
+    @Test
+    public void failsOnUnknownContentType() throws Exception {
+        final String response = RESPONSE.replace("\"id\":\"banner\"}}}", "\"id\":\"unknown\"}}}");
+
+        final Throwable thrown = catchThrowable(() -> parse(response));
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void failsOnMalformedResponse() throws Exception {
+        final Throwable thrown = catchThrowable(() -> parse("{\"items\":[{\"sys\":"));
+
+        assertThat(thrown).isInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void readNodesCannotBeModified() throws Exception {
+        final CDAEntry entry = parseSingleEntry(RESPONSE);
+
+        final Throwable thrown = catchThrowable(() -> entry.rawFields().put("title", "Modified"));
+
+        assertThat(thrown).isInstanceOf(UnsupportedOperationException.class);
+    }
+
+    @Test
+    public void sharesLinkedEntriesAndAssetsAmongPages() throws Exception {
+        final ResourceInterner interner = new ResourceInterner();
+        final CDAEntry home = parseSingleEntry(RESPONSE, interner);
+        final String otherResponse = RESPONSE.replace("\"id\":\"home\"", "\"id\":\"other\"");
+
+        final CDAEntry otherPage = parseSingleEntry(otherResponse, interner);
+
+        assertThat(otherPage).isNotSameAs(home);
+        assertThat(otherPage.<Object>getField("image")).isSameAs(home.getField("image"));
+        assertThat(new ContentfulCmsPage(otherPage).field("banner.text")).hasValue("Sale");
+    }
+
+    @Test
+    public void sharesWholePageWithSameContent() throws Exception {
+        final ResourceInterner interner = new ResourceInterner();
+        final CDAEntry entry = parseSingleEntry(RESPONSE, interner);
+
+        assertThat(parseSingleEntry(RESPONSE, interner)).isSameAs(entry);
+    }
+
+    @Test
+    public void doesNotShareEntryLinkingOtherRevision() throws Exception {
+        final ResourceInterner interner = new ResourceInterner();
+        final CDAEntry entry = parseSingleEntry(RESPONSE, interner);
+        final String updatedResponse = RESPONSE.replace("\"revision\":2", "\"revision\":3");
+
+        final CDAEntry updatedEntry = parseSingleEntry(updatedResponse, interner);
+
+        assertThat(updatedEntry).isNotSameAs(entry);
+        assertThat(updatedEntry.<Object>getField("image")).isNotSameAs(entry.getField("image"));
+        // the banner links back to the page, which links the updated image
+        assertThat(updatedEntry.<Object>getField("banner")).isNotSameAs(entry.getField("banner"));
+    }
+
+    private CDAEntry parseSingleEntry(final String json) throws IOException {
+        return parseSingleEntry(json, null);
+    }
+
+    private CDAEntry parseSingleEntry(final String json, final ResourceInterner interner) throws IOException {
+        final List<CDAResource> items = parse(json, interner);
+        assertThat(items).hasSize(1);
+        return (CDAEntry) items.get(0);
+    }
+
+    private List<CDAResource> parse(final String json) throws IOException {
+        return parse(json, null);
+    }
+
+    private List<CDAResource> parse(final String json, final ResourceInterner interner) throws IOException {
+        return new DirectEntriesParser(id -> {
+            final CDAContentType contentType = contentTypes.get(id);
+            if (contentType == null) {
+                throw new IllegalStateException("Unknown content type " + id);
+            }
+            return contentType;
+        }, interner).parse(new StringReader(json));
+    }
+}
@@ -0,0 +1,126 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class EntityTagInterceptorTest {
+
+    private static final HttpUrl ENTRIES_URL = HttpUrl.parse("https://cdn.contentful.com/spaces/spaceId/entries");
+    private static final Map<String, String> QUERY = singletonMap("fields.slug", "home");
+
+    private final EntityTagInterceptor interceptor = new EntityTagInterceptor(ENTRIES_URL);
+
+    @Test
+    public void handsEntityTagOverToFetchRegardlessOfParametersOrder() throws Exception {
+        Map<String, String> query = new LinkedHashMap<>();
+        query.put("b", "2");
+        query.put("a", "1");
+        HttpUrl reorderedUrl = ENTRIES_URL.newBuilder().addQueryParameter("a", "1").addQueryParameter("b", "2").build();
+        EntityTagInterceptor.Expectation expectation = interceptor.expect(query, new CompletableFuture<>());
+
+        interceptor.intercept(chain(response(request(reorderedUrl), 200, "\"etag\"")));
+
+        assertThat(expectation.entityTag()).isEqualTo("\"etag\"");
+    }
+
+    @Test
+    public void handsNoEntityTagOverForUnsuccessfulResponse() throws Exception {
+        EntityTagInterceptor.Expectation expectation = interceptor.expect(QUERY, new CompletableFuture<>());
+
+        interceptor.intercept(chain(response(request(url(QUERY)), 500, "\"etag\"")));
+
+        assertThat(expectation.entityTag()).isNull();
+    }
+
+    @Test
+    public void leavesConditionalRequestsAlone() throws Exception {
+        EntityTagInterceptor.Expectation expectation = interceptor.expect(QUERY, new CompletableFuture<>());
+        Request conditionalRequest = request(url(QUERY)).newBuilder().header("If-None-Match", "\"old\"").build();
+
+        interceptor.intercept(chain(response(conditionalRequest, 200, "\"new\"")));
+        interceptor.intercept(chain(response(request(url(QUERY)), 200, "\"etag\"")));
+
+        assertThat(expectation.entityTag()).isEqualTo("\"etag\"");
+    }
+
+    @Test
+    public void handsNoEntityTagOverToConcurrentFetchesOfSameQuery() throws Exception {
+        EntityTagInterceptor.Expectation first = interceptor.expect(QUERY, new CompletableFuture<>());
+        EntityTagInterceptor.Expectation second = interceptor.expect(QUERY, new CompletableFuture<>());
+
+        interceptor.intercept(chain(response(request(url(QUERY)), 200, "\"new\"")));
+        interceptor.intercept(chain(response(request(url(QUERY)), 200, "\"old\"")));
+
+        assertThat(first.entityTag()).isNull();
+        assertThat(second.entityTag()).isNull();
+    }
+
+    @Test
+    public void keepsRequestOfCancelledFetchApartFromNextFetch() throws Exception {
+        CompletableFuture<Void> cancelledFetch = new CompletableFuture<>();
+        interceptor.expect(QUERY, cancelledFetch);
+        cancelledFetch.cancel(false);
+        EntityTagInterceptor.Expectation next = interceptor.expect(QUERY, new CompletableFuture<>());
+
+        interceptor.intercept(chain(response(request(url(QUERY)), 200, "\"stray\"")));
+        interceptor.intercept(chain(response(request(url(QUERY)), 200, "\"etag\"")));
+
+        assertThat(next.entityTag()).isNull();
+    }
+
+    @Test
+    public void forgetsExpectationOfFinishedFetch() throws Exception {
+        CompletableFuture<Void> failedFetch = new CompletableFuture<>();
+        interceptor.expect(QUERY, failedFetch);
+        failedFetch.completeExceptionally(new IllegalStateException());
+        EntityTagInterceptor.Expectation next = interceptor.expect(QUERY, new CompletableFuture<>());
+
+        interceptor.intercept(chain(response(request(url(QUERY)), 200, "\"etag\"")));
+
+        assertThat(next.entityTag()).isEqualTo("\"etag\"");
+    }
+
+    private static HttpUrl url(final Map<String, String> query) {
+        HttpUrl.Builder urlBuilder = ENTRIES_URL.newBuilder();
+        query.forEach(urlBuilder::addQueryParameter);
+        return urlBuilder.build();
+    }
+
+    private static Request request(final HttpUrl url) {
+        return new Request.Builder().url(url).build();
+    }
+
+    private static Interceptor.Chain chain(final Response response) throws Exception {
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(response.request());
+        when(chain.proceed(any(Request.class))).thenReturn(response);
+        return chain;
+    }
+
+    private static Response response(final Request request, final int code, final String entityTag) {
+        return new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("")
+                .header("ETag", entityTag)
+                .body(ResponseBody.create(MediaType.parse("application/json"), ""))
+                .build();
+    }
+}
@@ -0,0 +1,210 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsPage;
+import com.commercetools.sunrise.cms.CmsService;
+import com.commercetools.sunrise.cms.CmsServiceException;
+import com.contentful.java.cda.CDAArray;
+import com.contentful.java.cda.CDAClient;
+import com.contentful.java.cda.CDAEntry;
+import com.contentful.java.cda.CDAResource;
+import com.contentful.java.cda.FetchQuery;
+import okhttp3.Call;
+import okhttp3.HttpUrl;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static java.util.Collections.emptyList;
+import static java.util.Collections.singletonList;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class EntityTagRevalidatorTest {
+
+    private static final HttpUrl ENTRIES_URL = HttpUrl.parse("https://cdn.contentful.com/spaces/spaceId/entries");
+    private static final Map<String, String> QUERY = singletonMap("fields.slug", "home");
+    private static final List<Locale> LOCALES = singletonList(Locale.ENGLISH);
+
+    @Test
+    public void whenContentfulRespondsNotModified_thenNotModified() throws Exception {
+        OkHttpClient httpClient = mockHttpClient(304);
+        EntityTagRevalidator revalidator = new EntityTagRevalidator(httpClient, ENTRIES_URL);
+
+        boolean notModified = revalidator.revalidate(QUERY, "\"etag\"", Runnable::run, null).join().isNotModified();
+
+        assertThat(notModified).isTrue();
+        ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+        verify(httpClient).newCall(request.capture());
+        assertThat(request.getValue().header("If-None-Match")).isEqualTo("\"etag\"");
+    }
+
+    @Test
+    public void whenContentfulRespondsWithContent_thenModified() throws Exception {
+        EntityTagRevalidator revalidator = new EntityTagRevalidator(mockHttpClient(200), ENTRIES_URL);
+
+        boolean notModified = revalidator.revalidate(QUERY, "\"etag\"", Runnable::run, null).join().isNotModified();
+
+        assertThat(notModified).isFalse();
+    }
+
+    @Test
+    public void whenContentfulRespondsWithContent_thenItIsReadWithItsEntityTagIfReaderIsGiven() throws Exception {
+        OkHttpClient httpClient = mockHttpClient(200, "{\"items\":[]}", "\"new\"");
+        DirectEntriesFetcher reader = new DirectEntriesFetcher(httpClient, ENTRIES_URL,
+                new ContentTypeCache(mock(CDAClient.class)), null);
+        EntityTagRevalidator revalidator = new EntityTagRevalidator(httpClient, ENTRIES_URL);
+
+        EntityTagRevalidator.Revalidation revalidation = revalidator.revalidate(QUERY, "\"etag\"", Runnable::run,
+                reader).join();
+
+        assertThat(revalidation.isNotModified()).isFalse();
+        assertThat(revalidation.entries()).isPresent();
+        assertThat(revalidation.entries().get().items()).isEmpty();
+        assertThat(revalidation.entries().get().entityTag()).isEqualTo("\"new\"");
+    }
+
+    @Test
+    public void whenCachedPageHasNoEntityTag_thenItIsFetchedWithoutConditionalRequest() throws Exception {
+        OkHttpClient httpClient = mockHttpClient(304);
+        CDAClient cdaClient = mockCdaClient(fetchQuery(new AtomicInteger(1)));
+        CmsService cmsService = service(cdaClient, httpClient, null);
+
+        Optional<CmsPage> page = cmsService.refresh("home", LOCALES, mock(CmsPage.class)).toCompletableFuture().join();
+
+        assertThat(page).isEmpty();
+        verify(httpClient, never()).newCall(any(Request.class));
+        verify(cdaClient).fetch(CDAEntry.class);
+    }
+
+    @Test
+    public void whenRefreshedPageChanged_thenItIsFetchedWithSingleRequest() throws Exception {
+        OkHttpClient httpClient = mockHttpClient(200, "{\"items\":[]}", "\"new\"");
+        CDAClient cdaClient = mock(CDAClient.class);
+        DirectEntriesFetcher directFetcher = new DirectEntriesFetcher(httpClient, ENTRIES_URL,
+                new ContentTypeCache(cdaClient), null);
+        CmsService cmsService = service(cdaClient, httpClient, directFetcher);
+
+        Optional<CmsPage> page = cmsService.refresh("home", LOCALES, cachedPage("\"etag\""))
+                .toCompletableFuture().join();
+
+        assertThat(page).isEmpty();
+        ArgumentCaptor<Request> request = ArgumentCaptor.forClass(Request.class);
+        verify(httpClient, times(1)).newCall(request.capture());
+        assertThat(request.getValue().header("If-None-Match")).isEqualTo("\"etag\"");
+        verify(cdaClient, never()).fetch(CDAEntry.class);
+    }
+
+    @Test
+    public void whenPageFetchFailsAfterContentChanged_thenNextRefreshIsStillConditionalOnCachedPage() throws Exception {
+        OkHttpClient httpClient = mockHttpClient(200, "{\"items\":[]}", "\"new\"");
+        CmsService cmsService = service(mockCdaClient(fetchQuery(new AtomicInteger())), httpClient, null);
+        CmsPage cachedPage = cachedPage("\"old\"");
+
+        Throwable failedRefresh = catchThrowable(() ->
+                cmsService.refresh("home", LOCALES, cachedPage).toCompletableFuture().join());
+        Optional<CmsPage> page = cmsService.refresh("home", LOCALES, cachedPage).toCompletableFuture().join();
+
+        assertThat(failedRefresh).hasCauseInstanceOf(CmsServiceException.class);
+        assertThat(page).isEmpty();
+        ArgumentCaptor<Request> requests = ArgumentCaptor.forClass(Request.class);
+        verify(httpClient, times(2)).newCall(requests.capture());
+        assertThat(requests.getAllValues().stream()
+                .map(request -> request.header("If-None-Match"))
+                .collect(Collectors.toList()))
+                .containsExactly("\"old\"", "\"old\"");
+    }
+
+    private static CmsService service(CDAClient cdaClient, OkHttpClient httpClient,
+                                      DirectEntriesFetcher directFetcher) {
+        return ContentfulCmsService.of(new SharedContentfulClient(cdaClient, httpClient,
+                new EntityTagRevalidator(httpClient, ENTRIES_URL), null, ContentfulTracer.NOOP, null, null,
+                directFetcher, null, null, ImageVariants.defaults(), RetryPolicy.none()), "page", "slug",
+                Runnable::run);
+    }
+
+    private static CmsPage cachedPage(String entityTag) {
+        return new ContentfulCmsPage(mock(CDAEntry.class), null, ImageVariants.defaults(), entityTag);
+    }
+
+    private static CDAClient mockCdaClient(FetchQuery<CDAEntry> fetchQuery) {
+        CDAClient cdaClient = mock(CDAClient.class);
+        when(cdaClient.fetch(CDAEntry.class)).thenReturn(fetchQuery);
+        return cdaClient;
+    }
+
+    /**
+     * Fetch query whose first fetch fails, unless given count of fetches is above zero already.
+     */
+    private static FetchQuery<CDAEntry> fetchQuery(AtomicInteger fetches) {
+        FetchQuery<CDAEntry> fetchQuery = ContentfulCmsServiceTest.SpiedFetchQuery.of();
+        Class<ContentfulCmsService.ContentCallback.ContentfulCallback> clazz =
+                ContentfulCmsService.ContentCallback.ContentfulCallback.class;
+        doAnswer(invocation -> {
+            ContentfulCmsService.ContentCallback.ContentfulCallback callback = invocation.getArgumentAt(0, clazz);
+            if (fetches.getAndIncrement() == 0) {
+                callback.onFailure(new IOException("Connection reset"));
+            } else {
+                callback.onSuccess(new CDAArray() {
+                    @Override
+                    public List<CDAResource> items() {
+                        return emptyList();
+                    }
+                });
+            }
+            return null;
+        }).when(fetchQuery).all(isA(clazz));
+        return fetchQuery;
+    }
+
+    private static OkHttpClient mockHttpClient(final int code) throws Exception {
+        return mockHttpClient(code, "", null);
+    }
+
+    private static OkHttpClient mockHttpClient(final int code, final String body, final String entityTag)
+            throws Exception {
+        OkHttpClient httpClient = mock(OkHttpClient.class);
+        when(httpClient.newCall(any(Request.class))).thenAnswer(invocation -> {
+            Request request = invocation.getArgumentAt(0, Request.class);
+            Call call = mock(Call.class);
+            when(call.execute()).thenReturn(response(request, code, entityTag, body));
+            return call;
+        });
+        return httpClient;
+    }
+
+    private static Response response(final Request request, final int code, final String entityTag,
+                                     final String body) {
+        Response.Builder builder = new Response.Builder()
+                .request(request)
+                .protocol(Protocol.HTTP_1_1)
+                .code(code)
+                .message("")
+                .body(ResponseBody.create(MediaType.parse("application/json"), body));
+        if (entityTag != null) {
+            builder.header("ETag", entityTag);
+        }
+        return builder.build();
+    }
+}
@@ -0,0 +1,63 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import org.junit.Test;
+
+import static com.commercetools.sunrise.cms.contentful.FetchTrace.CALLBACK_SPAN;
+import static com.commercetools.sunrise.cms.contentful.FetchTrace.DESERIALIZATION_SPAN;
+import static com.commercetools.sunrise.cms.contentful.FetchTrace.HTTP_SPAN;
+import static com.commercetools.sunrise.cms.contentful.FetchTrace.PAGE_SPAN;
+import static com.commercetools.sunrise.cms.contentful.FetchTrace.QUEUE_SPAN;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class FetchTraceTest {
+
+    private final RecordingTracer tracer = new RecordingTracer();
+
+    @Test
+    public void tracesEveryPhaseAsChildOfPageSpan() throws Exception {
+        FetchTrace trace = FetchTrace.start(tracer, "home", "de-DE", 10);
+        trace.dequeued().close();
+        ContentfulSpan httpSpan = trace.httpStarted();
+        trace.httpFinished(httpSpan, 200, 1234);
+        trace.callbackStarted(1);
+        trace.finished(null);
+
+        assertThat(tracer.spans).extracting(span -> span.name)
+                .containsExactly(PAGE_SPAN, QUEUE_SPAN, HTTP_SPAN, DESERIALIZATION_SPAN, CALLBACK_SPAN);
+        RecordingTracer.RecordedSpan pageSpan = tracer.span(PAGE_SPAN);
+        assertThat(pageSpan.parent).isNull();
+        assertThat(tracer.spans.subList(1, tracer.spans.size())).extracting(span -> span.parent).containsOnly(pageSpan);
+        assertThat(tracer.spans).extracting(span -> span.endCount).containsOnly(1);
+        assertThat(pageSpan.attributes)
+                .containsEntry(FetchTrace.PAGE_KEY, "home")
+                .containsEntry(FetchTrace.LOCALE, "de-DE")
+                .containsEntry(FetchTrace.INCLUDE, 10L)
+                .containsEntry(FetchTrace.PAYLOAD_BYTES, 1234L)
+                .containsEntry(FetchTrace.ITEM_COUNT, 1L);
+        assertThat(tracer.span(HTTP_SPAN).attributes).containsEntry(FetchTrace.STATUS_CODE, 200L);
+        assertThat(pageSpan.error).isNull();
+    }
+
+    @Test
+    public void endsOpenSpansWhenFinishedEarly() throws Exception {
+        FetchTrace trace = FetchTrace.start(tracer, "home", "de-DE", 10);
+        RuntimeException cancellation = new RuntimeException("cancelled");
+
+        trace.finished(cancellation);
+        trace.finished(cancellation);
+
+        assertThat(tracer.spans).extracting(span -> span.name).containsExactly(PAGE_SPAN, QUEUE_SPAN);
+        assertThat(tracer.spans).extracting(span -> span.endCount).containsOnly(1);
+        assertThat(tracer.span(PAGE_SPAN).error).isSameAs(cancellation);
+    }
+
+    @Test
+    public void doesNotStartSpansAfterFinished() throws Exception {
+        FetchTrace trace = FetchTrace.start(tracer, "home", "de-DE", 10);
+        trace.finished(null);
+
+        trace.callbackStarted(1);
+
+        assertThat(tracer.spans).extracting(span -> span.name).containsExactly(PAGE_SPAN, QUEUE_SPAN);
+    }
+}
@@ -0,0 +1,113 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.contentful.java.cda.CDAContentType;
+import com.contentful.java.cda.CDAField;
+import com.google.gson.Gson;
+import com.google.gson.reflect.TypeToken;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.arrayField;
+import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.contentType;
+import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.field;
+import static java.util.Arrays.asList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.mockito.Mockito.when;
+
+public class GraphQLPageQueryTest {
+
+    private static final List<String> PATHS = asList("title", "tags[1]", "hero", "teaser.headline",
+            "teaser.image", "slides[2].caption", "location", "missing", "teaser", "tags");
+
+    private final CDAContentType page = contentType("page",
+            field("slug", "Symbol", null),
+            field("title", "Symbol", null),
+            field("body", "Text", null),
+            arrayField("tags", "Symbol", null),
+            field("hero", "Link", "Asset"),
+            validated(field("teaser", "Link", "Entry"), "teaser"),
+            arrayField("slides", "Link", "Entry"),
+            field("location", "Location", null));
+    private final CDAContentType teaser = contentType("teaser",
+            field("headline", "Symbol", null),
+            field("image", "Link", "Asset"));
+    private final CDAContentType slide = contentType("landing-slide",
+            field("caption", "Symbol", null));
+
+    @Test
+    public void selectsOnlyFieldsOnPaths() throws Exception {
+        final GraphQLPageQuery query = GraphQLPageQuery.of(page, "slug", PATHS, asList(page, teaser, slide));
+
+        assertThat(query.query()).isEqualTo("query($key: String!, $locale: String) { "
+                + "pageCollection(where: {slug: $key}, locale: $locale, limit: 2) { items { "
+                + "title "
+                + "tags "
+                + "hero { url } "
+                + "teaser { ... on Teaser { headline image { url } } } "
+                + "slidesCollection(limit: 3) { items { ... on LandingSlide { caption } } } "
+                + "location { lat lon } "
+                + "} } }");
+    }
+
+    @Test
+    public void readsValuesOfPathsFromResult() throws Exception {
+        final GraphQLPageQuery query = GraphQLPageQuery.of(page, "slug", PATHS, asList(page, teaser, slide));
+
+        final Map<String, String> fields = query.fields(data("{\"pageCollection\":{\"items\":[{"
+                + "\"title\":\"Home\","
+                + "\"tags\":[\"news\",\"sale\"],"
+                + "\"hero\":{\"url\":\"https://images.ctfassets.net/space/hero.jpg\"},"
+                + "\"teaser\":{\"headline\":\"Sale\",\"image\":null},"
+                + "\"slidesCollection\":{\"items\":[{},{\"caption\":\"Second\"},{\"caption\":\"Third\"}]},"
+                + "\"location\":{\"lat\":51.37,\"lon\":19.62}}]}}")).get();
+
+        assertThat(fields)
+                .containsEntry("title", "Home")
+                .containsEntry("tags[1]", "sale")
+                .containsEntry("hero", "//images.ctfassets.net/space/hero.jpg")
+                .containsEntry("teaser.headline", "Sale")
+                .containsEntry("slides[2].caption", "Third")
+                .containsEntry("location", "{lat=51.37, lon=19.62}")
+                .hasSize(6);
+    }
+
+    @Test
+    public void isEmptyIfNoPageMatches() throws Exception {
+        final GraphQLPageQuery query = GraphQLPageQuery.of(page, "slug", PATHS, asList(page, teaser, slide));
+
+        assertThat(query.fields(data("{\"pageCollection\":{\"items\":[]}}"))).isNotPresent();
+    }
+
+    @Test
+    public void failsIfMoreThanOnePageMatches() throws Exception {
+        final GraphQLPageQuery query = GraphQLPageQuery.of(page, "slug", PATHS, asList(page, teaser, slide));
+
+        final Throwable thrown = catchThrowable(() -> query.fields(data("{\"pageCollection\":{\"items\":[{},{}]}}")));
+
+        assertThat(thrown).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    public void namesTypesAfterContentTypes() throws Exception {
+        assertThat(GraphQLPageQuery.typeName(contentType("landingPage"))).isEqualTo("LandingPage");
+        assertThat(GraphQLPageQuery.typeName(contentType("landing-page"))).isEqualTo("LandingPage");
+        assertThat(GraphQLPageQuery.typeName(contentType("2page"))).isEqualTo("ContentType2page");
+    }
+
+    private static Map<String, Object> data(final String json) {
+        return new Gson().fromJson(json, new TypeToken<Map<String, Object>>() {
+        }.getType());
+    }
+
+    private static CDAField validated(final CDAField field, final String... contentTypes) {
+        final Map<String, Object> validation = new HashMap<>();
+        validation.put("linkContentType", asList(contentTypes));
+        when(field.validations()).thenReturn(Collections.singletonList(validation));
+        return field;
+    }
+}
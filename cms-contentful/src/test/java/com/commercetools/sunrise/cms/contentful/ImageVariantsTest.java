@@ -0,0 +1,77 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsAsset;
+import com.contentful.java.cda.CDAAsset;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ImageVariantsTest {
+
+    private final ImageVariants variants = ImageVariants.of(asList(640, 320, 1280), asList("avif", "webp"), 80);
+
+    @Test
+    public void describesAssetWithItsMetadata() throws Exception {
+        final CmsAsset asset = variants.describe(mockAsset("//img/a.jpg", "image/jpeg", 1000));
+
+        assertThat(asset.url()).isEqualTo("//img/a.jpg");
+        assertThat(asset.contentType()).hasValue("image/jpeg");
+        assertThat(asset.size()).hasValue(123456L);
+        assertThat(asset.width()).hasValue(1000);
+        assertThat(asset.height()).hasValue(500);
+    }
+
+    @Test
+    public void offersVariantsNoWiderThanImage() throws Exception {
+        final CmsAsset asset = variants.describe(mockAsset("//img/a.jpg", "image/jpeg", 1000));
+
+        assertThat(asset.srcset("avif")).isEqualTo("//img/a.jpg?w=320&fm=avif&q=80 320w, "
+                + "//img/a.jpg?w=640&fm=avif&q=80 640w, //img/a.jpg?w=1000&fm=avif&q=80 1000w");
+        assertThat(asset.variants("webp")).extracting(CmsAsset.ImageVariant::width).containsExactly(320, 640, 1000);
+    }
+
+    @Test
+    public void offersNoVariantsOfOtherFiles() throws Exception {
+        assertThat(variants.describe(mockAsset("//img/logo.svg", "image/svg+xml", 100)).variants()).isEmpty();
+        assertThat(variants.describe(mockAsset("//files/terms.pdf", "application/pdf", null)).variants()).isEmpty();
+    }
+
+    @Test
+    public void leavesQualityToContentfulIfNotGiven() throws Exception {
+        final CmsAsset asset = ImageVariants.of(singletonList(320), singletonList("webp"), 0)
+                .describe(mockAsset("//img/a.jpg", "image/jpeg", 1000));
+
+        assertThat(asset.srcset("webp")).isEqualTo("//img/a.jpg?w=320&fm=webp 320w, //img/a.jpg?w=1000&fm=webp 1000w");
+    }
+
+    @Test
+    public void requiresValidQuality() throws Exception {
+        final Throwable thrown = catchThrowable(() -> ImageVariants.of(singletonList(320), singletonList("webp"), 101));
+
+        assertThat(thrown).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    static CDAAsset mockAsset(final String url, final String mimeType, final Integer width) {
+        final CDAAsset asset = mock(CDAAsset.class);
+        final Map<String, Object> details = new HashMap<>();
+        details.put("size", 123456.0);
+        if (width != null) {
+            final Map<String, Object> image = new HashMap<>();
+            image.put("width", (double) width);
+            image.put("height", width / 2.0);
+            details.put("image", image);
+        }
+        when(asset.url()).thenReturn(url);
+        when(asset.mimeType()).thenReturn(mimeType);
+        when(asset.fileField("details")).thenReturn(details);
+        return asset;
+    }
+}
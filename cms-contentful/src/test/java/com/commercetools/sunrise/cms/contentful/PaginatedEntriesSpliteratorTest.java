@@ -0,0 +1,100 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsServiceException;
+import com.contentful.java.cda.CDAEntry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import static java.util.Collections.nCopies;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+import static org.mockito.Mockito.mock;
+
+public class PaginatedEntriesSpliteratorTest {
+
+    private final List<Integer> requestedSkips = new ArrayList<>();
+    private final List<CompletableFuture<List<CDAEntry>>> requestedBatches = new ArrayList<>();
+
+    @Test
+    public void providesEntriesOfAllBatches() throws Exception {
+        final CDAEntry entry = mock(CDAEntry.class);
+        final PaginatedEntriesSpliterator spliterator = new PaginatedEntriesSpliterator(skip -> {
+            requestedSkips.add(skip);
+            return CompletableFuture.completedFuture(nCopies(skip < 20 ? 10 : 3, entry));
+        }, 10);
+
+        final List<CDAEntry> entries = stream(spliterator).collect(Collectors.toList());
+
+        assertThat(entries).hasSize(23);
+        assertThat(requestedSkips).containsExactly(0, 10, 20);
+    }
+
+    @Test
+    public void doesNotRequestAnythingUntilAdvanced() throws Exception {
+        stream(new PaginatedEntriesSpliterator(this::pendingBatch, 10));
+
+        assertThat(requestedSkips).isEmpty();
+    }
+
+    @Test
+    public void prefetchesOnlyTheNextBatch() throws Exception {
+        final CDAEntry entry = mock(CDAEntry.class);
+        final PaginatedEntriesSpliterator spliterator = new PaginatedEntriesSpliterator(this::pendingBatch, 2);
+        requestedBatches.add(CompletableFuture.completedFuture(nCopies(2, entry)));
+
+        final boolean advanced = spliterator.tryAdvance(e -> {});
+
+        assertThat(advanced).isTrue();
+        assertThat(requestedSkips).containsExactly(0, 2);
+    }
+
+    @Test
+    public void closingCancelsPrefetchedBatch() throws Exception {
+        final CDAEntry entry = mock(CDAEntry.class);
+        final PaginatedEntriesSpliterator spliterator = new PaginatedEntriesSpliterator(this::pendingBatch, 2);
+        requestedBatches.add(CompletableFuture.completedFuture(nCopies(2, entry)));
+        final Stream<CDAEntry> stream = stream(spliterator).onClose(spliterator::close);
+        stream.findFirst();
+
+        stream.close();
+
+        assertThat(requestedBatches.get(1).isCancelled()).isTrue();
+        assertThat(spliterator.tryAdvance(e -> {})).isFalse();
+    }
+
+    @Test
+    public void throwsFailureOfBatch() throws Exception {
+        final CmsServiceException failure = new CmsServiceException("failed", null);
+        final PaginatedEntriesSpliterator spliterator = new PaginatedEntriesSpliterator(skip -> {
+            final CompletableFuture<List<CDAEntry>> batch = new CompletableFuture<>();
+            batch.completeExceptionally(failure);
+            return batch;
+        }, 10);
+
+        final Throwable thrown = catchThrowable(() -> spliterator.tryAdvance(e -> {}));
+
+        assertThat(thrown).isSameAs(failure);
+    }
+
+    /**
+     * Returns the batch prepared upfront for the request or a batch which never completes.
+     */
+    private CompletableFuture<List<CDAEntry>> pendingBatch(final int skip) {
+        final int index = requestedSkips.size();
+        requestedSkips.add(skip);
+        if (index >= requestedBatches.size()) {
+            requestedBatches.add(new CompletableFuture<>());
+        }
+        return requestedBatches.get(index);
+    }
+
+    private static Stream<CDAEntry> stream(final PaginatedEntriesSpliterator spliterator) {
+        return StreamSupport.stream(spliterator, false);
+    }
+}
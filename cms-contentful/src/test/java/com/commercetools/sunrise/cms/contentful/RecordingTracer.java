@@ -0,0 +1,76 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import javax.annotation.Nullable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Tracer keeping all the started spans in memory.
+ */
+class RecordingTracer implements ContentfulTracer {
+
+    final List<RecordedSpan> spans = new CopyOnWriteArrayList<>();
+
+    @Override
+    public ContentfulSpan startSpan(final String name, @Nullable final ContentfulSpan parent) {
+        RecordedSpan span = new RecordedSpan(name, (RecordedSpan) parent);
+        spans.add(span);
+        return span;
+    }
+
+    RecordedSpan span(final String name) {
+        return spans.stream()
+                .filter(span -> span.name.equals(name))
+                .findFirst()
+                .orElseThrow(() -> new AssertionError("No span " + name + " in " + spans));
+    }
+
+    static class RecordedSpan implements ContentfulSpan {
+        final String name;
+        @Nullable
+        final RecordedSpan parent;
+        final Map<String, Object> attributes = new ConcurrentHashMap<>();
+        volatile int endCount = 0;
+        volatile Throwable error;
+
+        RecordedSpan(final String name, @Nullable final RecordedSpan parent) {
+            this.name = name;
+            this.parent = parent;
+        }
+
+        @Override
+        public ContentfulSpan setAttribute(final String key, final String value) {
+            attributes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public ContentfulSpan setAttribute(final String key, final long value) {
+            attributes.put(key, value);
+            return this;
+        }
+
+        @Override
+        public void recordException(final Throwable error) {
+            this.error = error;
+        }
+
+        @Override
+        public Scope makeCurrent() {
+            return () -> {
+            };
+        }
+
+        @Override
+        public synchronized void end() {
+            endCount++;
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.TextRenderer;
+import com.contentful.java.cda.CDAEntry;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RenderedTextCacheTest {
+
+    private final List<String> renderedTexts = new ArrayList<>();
+    private final TextRenderer renderer = text -> {
+        renderedTexts.add(text);
+        return "<p>" + text + "</p>";
+    };
+
+    @Test
+    public void rendersTextOncePerRevision() throws Exception {
+        final RenderedTextCache cache = new RenderedTextCache(renderer, 10);
+        final CDAEntry entry = mockEntry("intro", "en", 1);
+
+        assertThat(cache.render(entry, "body", "Hello")).isEqualTo("<p>Hello</p>");
+        assertThat(cache.render(entry, "body", "Hello")).isEqualTo("<p>Hello</p>");
+        assertThat(renderedTexts).containsExactly("Hello");
+
+        assertThat(cache.render(mockEntry("intro", "en", 2), "body", "Hello again")).isEqualTo("<p>Hello again</p>");
+        assertThat(renderedTexts).containsExactly("Hello", "Hello again");
+    }
+
+    @Test
+    public void rendersFieldsAndLocalesSeparately() throws Exception {
+        final RenderedTextCache cache = new RenderedTextCache(renderer, 10);
+
+        cache.render(mockEntry("intro", "en", 1), "body", "Hello");
+        cache.render(mockEntry("intro", "en", 1), "footer", "Bye");
+        cache.render(mockEntry("intro", "de", 1), "body", "Hallo");
+
+        assertThat(renderedTexts).containsExactly("Hello", "Bye", "Hallo");
+        assertThat(cache.size()).isEqualTo(3);
+    }
+
+    @Test
+    public void dropsLeastRecentlyUsedTexts() throws Exception {
+        final RenderedTextCache cache = new RenderedTextCache(renderer, 2);
+        final CDAEntry entry = mockEntry("intro", "en", 1);
+
+        cache.render(entry, "first", "1");
+        cache.render(entry, "second", "2");
+        cache.render(entry, "first", "1");
+        cache.render(entry, "third", "3");
+        cache.render(entry, "first", "1");
+        cache.render(entry, "second", "2");
+
+        assertThat(renderedTexts).containsExactly("1", "2", "3", "2");
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void rendersTextOfUnknownRevisionEveryTime() throws Exception {
+        final RenderedTextCache cache = new RenderedTextCache(renderer, 10);
+        final CDAEntry entry = mock(CDAEntry.class);
+
+        cache.render(entry, "body", "Hello");
+        cache.render(entry, "body", "Hello");
+
+        assertThat(renderedTexts).containsExactly("Hello", "Hello");
+        assertThat(cache.size()).isZero();
+    }
+
+    private static CDAEntry mockEntry(final String id, final String locale, final int revision) {
+        final CDAEntry entry = mock(CDAEntry.class);
+        final Map<String, Object> attrs = new HashMap<>();
+        attrs.put("id", id);
+        attrs.put("locale", locale);
+        attrs.put("revision", (double) revision);
+        when(entry.id()).thenReturn(id);
+        when(entry.attrs()).thenReturn(attrs);
+        return entry;
+    }
+}
@@ -0,0 +1,99 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.contentful.java.cda.CDAAsset;
+import com.contentful.java.cda.CDAContentType;
+import com.contentful.java.cda.CDAEntry;
+import com.contentful.java.cda.CDAResource;
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.contentType;
+import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.field;
+import static java.util.Arrays.asList;
+import static java.util.Collections.singletonList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class ResourceInternerTest {
+
+    private final ResourceInterner interner = new ResourceInterner();
+
+    @Test
+    public void returnsFirstResourceInternedWithKey() throws Exception {
+        final CDAResource first = mock(CDAResource.class);
+        final CDAResource second = mock(CDAResource.class);
+
+        assertThat(interner.intern("key", first)).isSameAs(first);
+        assertThat(interner.intern("key", second)).isSameAs(first);
+        assertThat(interner.get("key")).isSameAs(first);
+        assertThat(interner.get("other")).isNull();
+        assertThat(interner.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void identifiesAssetByIdRevisionAndLocale() throws Exception {
+        final CDAAsset asset = mockAsset("image", 3.0);
+
+        assertThat(ResourceInterner.assetKey(asset)).isEqualTo("Asset:image:3:en");
+    }
+
+    @Test
+    public void doesNotIdentifyAssetWithoutRevision() throws Exception {
+        final CDAAsset asset = mockAsset("image", null);
+
+        assertThat(ResourceInterner.assetKey(asset)).isNull();
+    }
+
+    @Test
+    public void identifiesEntryByRevisionsOfLinkedContent() throws Exception {
+        final CDAEntry entry = mockEntry("page", 1.0, mockAsset("image", 2.0));
+        final CDAEntry sameEntry = mockEntry("page", 1.0, mockAsset("image", 2.0));
+        final CDAEntry entryLinkingUpdatedAsset = mockEntry("page", 1.0, mockAsset("image", 3.0));
+
+        final Map<CDAEntry, String> keys = ResourceInterner.entryKeys(
+                asList(entry, sameEntry, entryLinkingUpdatedAsset));
+
+        assertThat(keys.get(entry)).startsWith("Entry:page@").isEqualTo(keys.get(sameEntry));
+        assertThat(keys.get(entryLinkingUpdatedAsset)).isNotEqualTo(keys.get(entry));
+    }
+
+    @Test
+    public void doesNotIdentifyEntryLinkingContentWithoutRevision() throws Exception {
+        final CDAEntry linkedEntry = mockEntry("banner", null, mockAsset("image", 2.0));
+        final CDAEntry entry = mockEntry("page", 1.0, linkedEntry);
+
+        final Map<CDAEntry, String> keys = ResourceInterner.entryKeys(singletonList(entry));
+
+        assertThat(keys).containsEntry(entry, null).containsEntry(linkedEntry, null);
+    }
+
+    private static CDAEntry mockEntry(final String id, final Double revision, final CDAResource link) {
+        final Map<String, Object> attrs = new HashMap<>();
+        attrs.put("locale", "en");
+        if (revision != null) {
+            attrs.put("revision", revision);
+        }
+        final CDAContentType contentType = contentType(id, field("link", "Link", null));
+        final CDAEntry entry = mock(CDAEntry.class);
+        when(entry.id()).thenReturn(id);
+        when(entry.attrs()).thenReturn(attrs);
+        when(entry.contentType()).thenReturn(contentType);
+        when(entry.getField("link")).thenReturn(link);
+        return entry;
+    }
+
+    private static CDAAsset mockAsset(final String id, final Double revision) {
+        final Map<String, Object> attrs = new HashMap<>();
+        attrs.put("locale", "en");
+        if (revision != null) {
+            attrs.put("revision", revision);
+        }
+        final CDAAsset asset = mock(CDAAsset.class);
+        when(asset.id()).thenReturn(id);
+        when(asset.attrs()).thenReturn(attrs);
+        return asset;
+    }
+}
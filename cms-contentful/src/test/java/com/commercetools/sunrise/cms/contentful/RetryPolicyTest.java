@@ -0,0 +1,131 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.ThrowableAssert.catchThrowable;
+
+public class RetryPolicyTest {
+
+    @Test
+    public void retriesServerErrorsAndThrottling() {
+        assertThat(RetryPolicy.isTransient(httpFailure(500))).isTrue();
+        assertThat(RetryPolicy.isTransient(httpFailure(502))).isTrue();
+        assertThat(RetryPolicy.isTransient(httpFailure(503))).isTrue();
+        assertThat(RetryPolicy.isTransient(httpFailure(429))).isTrue();
+        assertThat(RetryPolicy.isTransient(httpFailure(408))).isTrue();
+    }
+
+    @Test
+    public void neverRetriesRejectedRequests() {
+        assertThat(RetryPolicy.isTransient(httpFailure(400))).isFalse();
+        assertThat(RetryPolicy.isTransient(httpFailure(401))).isFalse();
+        assertThat(RetryPolicy.isTransient(httpFailure(404))).isFalse();
+        assertThat(RetryPolicy.isTransient(httpFailure(501))).isFalse();
+    }
+
+    @Test
+    public void retriesBrokenConnections() {
+        assertThat(RetryPolicy.isTransient(new SocketTimeoutException("timeout"))).isTrue();
+        assertThat(RetryPolicy.isTransient(new ConnectException("Connection refused"))).isTrue();
+        assertThat(RetryPolicy.isTransient(new RuntimeException(new SocketException("Connection reset")))).isTrue();
+    }
+
+    @Test
+    public void doesNotRetryCancelledOrUnknownFailures() {
+        assertThat(RetryPolicy.isTransient(new InterruptedIOException("Canceled"))).isFalse();
+        assertThat(RetryPolicy.isTransient(new IOException("Canceled"))).isFalse();
+        assertThat(RetryPolicy.isTransient(new IllegalStateException("Content type page is not defined on CMS")))
+                .isFalse();
+    }
+
+    @Test
+    public void retriesUpToMaxRetries() {
+        RetryPolicy retryPolicy = RetryPolicy.builder().maxRetries(2).build();
+
+        assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 0)).isNotNegative();
+        assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 1)).isNotNegative();
+        assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 2)).isNegative();
+        assertThat(retryPolicy.retryDelayMillis(httpFailure(404), 0)).isNegative();
+        assertThat(retryPolicy.retriesAttempted()).isEqualTo(2);
+        assertThat(retryPolicy.retriesSuppressed()).isZero();
+    }
+
+    @Test
+    public void delaysRetriesWithinDoublingCap() {
+        RetryPolicy retryPolicy = RetryPolicy.builder()
+                .maxRetries(10)
+                .backoff(10, 50, TimeUnit.MILLISECONDS)
+                .budget(1, 1000)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 0)).isBetween(0L, 10L);
+            assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 1)).isBetween(0L, 20L);
+            assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 5)).isBetween(0L, 50L);
+        }
+    }
+
+    @Test
+    public void suppressesRetriesOverBudget() {
+        RetryPolicy retryPolicy = RetryPolicy.builder()
+                .maxRetries(1)
+                .budget(0.1, 2)
+                .build();
+
+        assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 0)).isNotNegative();
+        assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 0)).isNotNegative();
+        assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 0)).isNegative();
+        for (int i = 0; i < 10; i++) {
+            retryPolicy.fetchStarted();
+        }
+        assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 0)).isNotNegative();
+        assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 0)).isNegative();
+        assertThat(retryPolicy.retriesAttempted()).isEqualTo(3);
+        assertThat(retryPolicy.retriesSuppressed()).isEqualTo(2);
+    }
+
+    @Test
+    public void savesRetriesUpToMaxBurst() {
+        RetryPolicy retryPolicy = RetryPolicy.builder()
+                .maxRetries(1)
+                .budget(0.5, 2)
+                .build();
+
+        for (int i = 0; i < 100; i++) {
+            retryPolicy.fetchStarted();
+        }
+
+        assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 0)).isNotNegative();
+        assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 0)).isNotNegative();
+        assertThat(retryPolicy.retryDelayMillis(httpFailure(503), 0)).isNegative();
+    }
+
+    @Test
+    public void noneNeverRetries() {
+        assertThat(RetryPolicy.none().retryDelayMillis(httpFailure(503), 0)).isNegative();
+        assertThat(RetryPolicy.none().retriesSuppressed()).isZero();
+    }
+
+    @Test
+    public void rejectsInvalidSettings() {
+        assertThat(catchThrowable(() -> RetryPolicy.builder().maxRetries(-1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> RetryPolicy.builder().backoff(2, 1, TimeUnit.SECONDS)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(catchThrowable(() -> RetryPolicy.builder().budget(1.5, 10)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private static Exception httpFailure(final int statusCode) {
+        return new RuntimeException(new IOException("FAILED Response{protocol=h2, code=" + statusCode
+                + ", message=, url=https://cdn.contentful.com/spaces/space/entries}"));
+    }
+}
@@ -0,0 +1,74 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import com.commercetools.sunrise.cms.CmsService;
+import com.contentful.java.cda.CDAArray;
+import com.contentful.java.cda.CDAClient;
+import com.contentful.java.cda.CDAEntry;
+import com.contentful.java.cda.CDAResource;
+import com.contentful.java.cda.FetchQuery;
+import okhttp3.Protocol;
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.commercetools.sunrise.cms.contentful.ContentfulMockUtil.sharedClient;
+import static java.util.Collections.emptyList;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.isA;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SharedContentfulClientTest {
+
+    @Test
+    public void servicesCreatedWithSameClient_shareIt() {
+        CDAClient cdaClient = mock(CDAClient.class);
+        FetchQuery<CDAEntry> fetchQuery = emptyFetchQuery();
+        when(cdaClient.fetch(same(CDAEntry.class))).thenReturn(fetchQuery);
+        SharedContentfulClient sharedClient = sharedClient(cdaClient);
+
+        CmsService pages = sharedClient.service("page", "slug", Runnable::run);
+        CmsService banners = sharedClient.service("banner", "key", Runnable::run);
+        pages.page("home", emptyList()).toCompletableFuture().join();
+        banners.page("sale", emptyList()).toCompletableFuture().join();
+
+        verify(cdaClient, times(2)).fetch(CDAEntry.class);
+    }
+
+    @Test
+    public void whenHttp2Disabled_onlyHttp11IsUsed() {
+        SharedContentfulClient sharedClient = SharedContentfulClient.builder("spaceId", "token")
+                .http2(false)
+                .build();
+
+        assertThat(sharedClient.httpClient()).isNotNull();
+        assertThat(sharedClient.httpClient().protocols()).containsExactly(Protocol.HTTP_1_1);
+    }
+
+    @Test
+    public void whenHttp2Enabled_itIsPreferred() {
+        SharedContentfulClient sharedClient = SharedContentfulClient.of("spaceId", "token");
+
+        assertThat(sharedClient.httpClient()).isNotNull();
+        assertThat(sharedClient.httpClient().protocols()).containsExactly(Protocol.HTTP_2, Protocol.HTTP_1_1);
+    }
+
+    private static FetchQuery<CDAEntry> emptyFetchQuery() {
+        FetchQuery<CDAEntry> fetchQuery = ContentfulCmsServiceTest.SpiedFetchQuery.of();
+        Class<ContentfulCmsService.ContentCallback.ContentfulCallback> clazz = ContentfulCmsService.ContentCallback.ContentfulCallback.class;
+        doAnswer(invocation -> {
+            invocation.getArgumentAt(0, clazz).onSuccess(new CDAArray() {
+                @Override
+                public List<CDAResource> items() {
+                    return emptyList();
+                }
+            });
+            return null;
+        }).when(fetchQuery).all(isA(clazz));
+        return fetchQuery;
+    }
+}
@@ -0,0 +1,75 @@
+package com.commercetools.sunrise.cms.contentful;
+
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Protocol;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+import org.junit.Test;
+
+import static com.commercetools.sunrise.cms.contentful.FetchTrace.HTTP_SPAN;
+import static java.util.Collections.singletonMap;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TracingInterceptorTest {
+
+    private static final HttpUrl ENTRIES_URL = HttpUrl.parse("https://cdn.contentful.com/spaces/spaceId/entries");
+
+    private final RecordingTracer tracer = new RecordingTracer();
+    private final TracingInterceptor interceptor = new TracingInterceptor(ENTRIES_URL);
+
+    @Test
+    public void endsHttpSpanOnceBodyHasBeenStreamed() throws Exception {
+        interceptor.expect(singletonMap("fields.slug", "home"), FetchTrace.start(tracer, "home", "de-DE", 10));
+
+        Response response = interceptor.intercept(chain(response("fields.slug", "home", "0123456789")));
+
+        assertThat(tracer.span(HTTP_SPAN).endCount).isZero();
+        assertThat(response.body().string()).isEqualTo("0123456789");
+        assertThat(tracer.span(HTTP_SPAN).endCount).isEqualTo(1);
+        assertThat(tracer.span(HTTP_SPAN).attributes)
+                .containsEntry(FetchTrace.PAYLOAD_BYTES, 10L)
+                .containsEntry(FetchTrace.STATUS_CODE, 200L);
+    }
+
+    @Test
+    public void endsHttpSpanIfBodyIsClosedUnread() throws Exception {
+        interceptor.expect(singletonMap("fields.slug", "home"), FetchTrace.start(tracer, "home", "de-DE", 10));
+
+        interceptor.intercept(chain(response("fields.slug", "home", "0123456789"))).close();
+
+        assertThat(tracer.span(HTTP_SPAN).endCount).isEqualTo(1);
+        assertThat(tracer.span(HTTP_SPAN).attributes).containsEntry(FetchTrace.PAYLOAD_BYTES, 0L);
+    }
+
+    @Test
+    public void passesUnexpectedRequestsThrough() throws Exception {
+        Response response = response("fields.slug", "home", "0123456789");
+
+        assertThat(interceptor.intercept(chain(response))).isSameAs(response);
+        assertThat(tracer.spans).isEmpty();
+    }
+
+    private static Interceptor.Chain chain(final Response response) throws Exception {
+        Interceptor.Chain chain = mock(Interceptor.Chain.class);
+        when(chain.request()).thenReturn(response.request());
+        when(chain.proceed(any(Request.class))).thenReturn(response);
+        return chain;
+    }
+
+    private static Response response(final String name, final String value, final String body) {
+        return new Response.Builder()
+                .request(new Request.Builder().url(ENTRIES_URL.newBuilder().addQueryParameter(name, value).build())
+                        .build())
+                .protocol(Protocol.HTTP_1_1)
+                .code(200)
+                .message("")
+                .body(ResponseBody.create(MediaType.parse("application/json"), body))
+                .build();
+    }
+}